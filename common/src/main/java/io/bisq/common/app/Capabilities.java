@@ -10,16 +10,30 @@ public class Capabilities {
     // We don't use the Enum in any serialized data, as changes in the enum would break backwards compatibility. We use the ordinal integer instead.
     // Sequence in the enum must not be changed (append only).
     public enum Capability {
-        TRADE_STATISTICS
+        TRADE_STATISTICS,
+        // GetDataRequests with an ExcludedKeysFilter instead of the excluded keys
+        GET_DATA_RECONCILIATION,
+        // GetDataResponses split into several messages of limited size
+        CHUNKED_GET_DATA_RESPONSE,
+        // Large messages wrapped into a deflate compressed CompressedEnvelope
+        COMPRESSED_ENVELOPE,
+        // BroadcastMessages to the same peer sent together in a BundleOfEnvelopes
+        BUNDLE_OF_ENVELOPES,
+        // Large messages split into EnvelopeFrames so that messages of higher priority can be sent in between
+        ENVELOPE_FRAMES
     }
 
     public static void setCapabilities(ArrayList<Integer> capabilities) {
         Capabilities.capabilities = capabilities;
     }
 
-    @SuppressWarnings("ArraysAsListWithZeroOrOneArgument")
     private static ArrayList<Integer> capabilities = new ArrayList<>(Arrays.asList(
-            Capability.TRADE_STATISTICS.ordinal()
+            Capability.TRADE_STATISTICS.ordinal(),
+            Capability.GET_DATA_RECONCILIATION.ordinal(),
+            Capability.CHUNKED_GET_DATA_RESPONSE.ordinal(),
+            Capability.COMPRESSED_ENVELOPE.ordinal(),
+            Capability.BUNDLE_OF_ENVELOPES.ordinal(),
+            Capability.ENVELOPE_FRAMES.ordinal()
     ));
 
     /**
@@ -30,6 +30,7 @@ import org.slf4j.LoggerFactory;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.function.Supplier;
 
 public class Log {
     private static Logger logbackLogger;
@@ -113,6 +114,19 @@ public class Log {
         }
     }
 
+    // Use that for messages which are expensive to build (e.g. the toString of a network message), as the supplier is
+    // only called if trace is enabled
+    public static void traceCall(Supplier<String> messageSupplier) {
+        if (LoggerFactory.getLogger(Log.class).isTraceEnabled()) {
+            StackTraceElement stackTraceElement = new Throwable().getStackTrace()[1];
+            String methodName = stackTraceElement.getMethodName();
+            if (methodName.equals("<init>"))
+                methodName = "Constructor ";
+            String className = stackTraceElement.getClassName();
+            LoggerFactory.getLogger(className).trace("Called: {} [{}]", methodName, messageSupplier.get());
+        }
+    }
+
     public static void logIfStressTests(String msg) {
         if (DevEnv.STRESS_TEST_MODE)
             System.err.println(new SimpleDateFormat("HH:mm:ss.SSS").format(new Date()) +
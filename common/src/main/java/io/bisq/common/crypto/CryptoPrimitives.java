@@ -0,0 +1,129 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bisq.common.crypto;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Per thread instances of the JCA primitives we use on the hot paths (hashing, signing, encryption of every P2P
+ * message), so we don't pay for the provider lookup at each call. The instances are not thread safe, but each thread
+ * gets its own one. Callers must not keep a reference or use it reentrantly. Cipher, Mac and Signature are
+ * initialized with the key at each use, MessageDigest is reset.
+ * <p/>
+ * Also caches the public keys decoded from their X509 encoding, as we decode the same keys of offers and peers over
+ * and over again.
+ */
+final class CryptoPrimitives {
+    private static final int MAX_CACHED_PUBLIC_KEYS = 10_000;
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() ->
+            newInstance(() -> MessageDigest.getInstance("SHA-256", "BC")));
+
+    private static final Cache<ByteBuffer, PublicKey> SIG_PUBLIC_KEYS = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_PUBLIC_KEYS)
+            .build();
+    private static final Cache<ByteBuffer, PublicKey> ENCRYPTION_PUBLIC_KEYS = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_PUBLIC_KEYS)
+            .build();
+
+    private static final ThreadLocal<KeyFactory> SIG_KEY_FACTORY = ThreadLocal.withInitial(() ->
+            newInstance(() -> KeyFactory.getInstance(Sig.KEY_ALGO, "BC")));
+    private static final ThreadLocal<KeyFactory> ENCRYPTION_KEY_FACTORY = ThreadLocal.withInitial(() ->
+            newInstance(() -> KeyFactory.getInstance(Encryption.ASYM_KEY_ALGO, "BC")));
+
+    private static final ThreadLocal<Signature> SIGNATURE = ThreadLocal.withInitial(() ->
+            newInstance(() -> Signature.getInstance(Sig.ALGO, "BC")));
+    private static final ThreadLocal<Cipher> SYM_CIPHER = ThreadLocal.withInitial(() ->
+            newInstance(() -> Cipher.getInstance(Encryption.SYM_CIPHER, "BC")));
+    private static final ThreadLocal<Cipher> ASYM_CIPHER = ThreadLocal.withInitial(() ->
+            newInstance(() -> Cipher.getInstance(Encryption.ASYM_CIPHER, "BC")));
+    private static final ThreadLocal<Mac> HMAC = ThreadLocal.withInitial(() ->
+            newInstance(() -> Mac.getInstance(Encryption.HMAC, "BC")));
+
+    private interface Factory<T> {
+        T create() throws GeneralSecurityException;
+    }
+
+    // A missing provider or algorithm is a setup error, not a failure of a single operation
+    private static <T> T newInstance(Factory<T> factory) {
+        try {
+            return factory.create();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private CryptoPrimitives() {
+    }
+
+    static MessageDigest getSha256() {
+        MessageDigest digest = SHA_256.get();
+        // In case a previous use failed between update and digest
+        digest.reset();
+        return digest;
+    }
+
+    static Signature getSignature() {
+        return SIGNATURE.get();
+    }
+
+    static Cipher getSymCipher() {
+        return SYM_CIPHER.get();
+    }
+
+    static Cipher getAsymCipher() {
+        return ASYM_CIPHER.get();
+    }
+
+    static Mac getHmac() {
+        return HMAC.get();
+    }
+
+    static PublicKey getSigPublicKey(byte[] encodedKey) throws GeneralSecurityException {
+        return getPublicKey(SIG_PUBLIC_KEYS, SIG_KEY_FACTORY, encodedKey);
+    }
+
+    static PublicKey getEncryptionPublicKey(byte[] encodedKey) throws GeneralSecurityException {
+        return getPublicKey(ENCRYPTION_PUBLIC_KEYS, ENCRYPTION_KEY_FACTORY, encodedKey);
+    }
+
+    private static PublicKey getPublicKey(Cache<ByteBuffer, PublicKey> cache, ThreadLocal<KeyFactory> keyFactory,
+                                          byte[] encodedKey) throws GeneralSecurityException {
+        // We copy the bytes as the caller might change the array later
+        try {
+            return cache.get(ByteBuffer.wrap(encodedKey.clone()),
+                    () -> keyFactory.get().generatePublic(new X509EncodedKeySpec(encodedKey)));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof GeneralSecurityException)
+                throw (GeneralSecurityException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -29,7 +29,6 @@ import javax.crypto.SecretKey;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.security.*;
-import java.security.spec.InvalidKeySpecException;
 import java.security.spec.X509EncodedKeySpec;
 import java.util.Arrays;
 
@@ -38,12 +37,12 @@ public class Encryption {
     private static final Logger log = LoggerFactory.getLogger(Encryption.class);
 
     public static final String ASYM_KEY_ALGO = "RSA";
-    private static final String ASYM_CIPHER = "RSA/None/OAEPWithSHA256AndMGF1Padding";
+    static final String ASYM_CIPHER = "RSA/None/OAEPWithSHA256AndMGF1Padding";
 
     private static final String SYM_KEY_ALGO = "AES";
-    private static final String SYM_CIPHER = "AES";
+    static final String SYM_CIPHER = "AES";
 
-    private static final String HMAC = "HmacSHA256";
+    static final String HMAC = "HmacSHA256";
 
     public static KeyPair generateKeyPair() {
         long ts = System.currentTimeMillis();
@@ -67,7 +66,7 @@ public class Encryption {
 
     private static byte[] encrypt(byte[] payload, SecretKey secretKey) throws CryptoException {
         try {
-            Cipher cipher = Cipher.getInstance(SYM_CIPHER, "BC");
+            Cipher cipher = CryptoPrimitives.getSymCipher();
             cipher.init(Cipher.ENCRYPT_MODE, secretKey);
             return cipher.doFinal(payload);
         } catch (Throwable e) {
@@ -78,7 +77,7 @@ public class Encryption {
 
     private static byte[] decrypt(byte[] encryptedPayload, SecretKey secretKey) throws CryptoException {
         try {
-            Cipher cipher = Cipher.getInstance(SYM_CIPHER, "BC");
+            Cipher cipher = CryptoPrimitives.getSymCipher();
             cipher.init(Cipher.DECRYPT_MODE, secretKey);
             return cipher.doFinal(encryptedPayload);
         } catch (Throwable e) {
@@ -103,7 +102,7 @@ public class Encryption {
                 outputStream.write(hmac);
                 outputStream.flush();
                 payloadWithHmac = outputStream.toByteArray().clone();
-            } catch (IOException | NoSuchProviderException e) {
+            } catch (IOException | InvalidKeyException e) {
                 log.error(e.toString());
                 e.printStackTrace();
                 throw new RuntimeException("Could not create hmac");
@@ -135,8 +134,8 @@ public class Encryption {
         }
     }
 
-    private static byte[] getHmac(byte[] payload, SecretKey secretKey) throws NoSuchAlgorithmException, InvalidKeyException, NoSuchProviderException {
-        Mac mac = Mac.getInstance(HMAC, "BC");
+    private static byte[] getHmac(byte[] payload, SecretKey secretKey) throws InvalidKeyException {
+        Mac mac = CryptoPrimitives.getHmac();
         mac.init(secretKey);
         return mac.doFinal(payload);
     }
@@ -174,7 +173,7 @@ public class Encryption {
 
     public static byte[] encryptSecretKey(SecretKey secretKey, PublicKey publicKey) throws CryptoException {
         try {
-            Cipher cipher = Cipher.getInstance(ASYM_CIPHER, "BC");
+            Cipher cipher = CryptoPrimitives.getAsymCipher();
             cipher.init(Cipher.WRAP_MODE, publicKey);
             return cipher.wrap(secretKey);
         } catch (Throwable e) {
@@ -185,7 +184,7 @@ public class Encryption {
 
     public static SecretKey decryptSecretKey(byte[] encryptedSecretKey, PrivateKey privateKey) throws CryptoException {
         try {
-            Cipher cipher = Cipher.getInstance(ASYM_CIPHER, "BC");
+            Cipher cipher = CryptoPrimitives.getAsymCipher();
             cipher.init(Cipher.UNWRAP_MODE, privateKey);
             return (SecretKey) cipher.unwrap(encryptedSecretKey, "AES", Cipher.SECRET_KEY);
         } catch (Throwable e) {
@@ -226,8 +225,8 @@ public class Encryption {
      */
     public static PublicKey getPublicKeyFromBytes(byte[] encryptionPubKeyBytes) {
         try {
-            return KeyFactory.getInstance(Encryption.ASYM_KEY_ALGO, "BC").generatePublic(new X509EncodedKeySpec(encryptionPubKeyBytes));
-        } catch (InvalidKeySpecException | NoSuchAlgorithmException | NoSuchProviderException e) {
+            return CryptoPrimitives.getEncryptionPublicKey(encryptionPubKeyBytes);
+        } catch (GeneralSecurityException e) {
             log.error("Error creating sigPublicKey from bytes. sigPublicKeyBytes as hex={}, error={}", Utilities.bytesAsHexString(encryptionPubKeyBytes), e);
             e.printStackTrace();
             throw new KeyConversionException(e);
@@ -24,8 +24,6 @@ import org.slf4j.LoggerFactory;
 
 import java.nio.ByteBuffer;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
 
 public class Hash {
     private static final Logger log = LoggerFactory.getLogger(Hash.class);
@@ -35,15 +33,9 @@ public class Hash {
      * @return Hash of data
      */
     public static byte[] getHash(byte[] data) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256", "BC");
-            digest.update(data, 0, data.length);
-            return digest.digest();
-        } catch (NoSuchAlgorithmException | NoSuchProviderException e) {
-            log.error("Could not create MessageDigest for hash. " + e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException(e);
-        }
+        MessageDigest digest = CryptoPrimitives.getSha256();
+        digest.update(data, 0, data.length);
+        return digest.digest();
     }
 
     /**
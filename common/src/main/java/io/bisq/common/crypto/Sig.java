@@ -24,7 +24,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.security.*;
-import java.security.spec.InvalidKeySpecException;
 import java.security.spec.X509EncodedKeySpec;
 
 /**
@@ -39,7 +38,7 @@ public class Sig {
     private static final Logger log = LoggerFactory.getLogger(Sig.class);
 
     public static final String KEY_ALGO = "DSA";
-    private static final String ALGO = "SHA256withDSA";
+    static final String ALGO = "SHA256withDSA";
 
 
     /**
@@ -71,11 +70,11 @@ public class Sig {
      */
     public static byte[] sign(PrivateKey privateKey, byte[] data) throws CryptoException {
         try {
-            Signature sig = Signature.getInstance(ALGO, "BC");
+            Signature sig = CryptoPrimitives.getSignature();
             sig.initSign(privateKey);
             sig.update(data);
             return sig.sign();
-        } catch (SignatureException | NoSuchProviderException | InvalidKeyException | NoSuchAlgorithmException e) {
+        } catch (SignatureException | InvalidKeyException e) {
             throw new CryptoException("Signing failed. " + e.getMessage());
         }
     }
@@ -104,11 +103,11 @@ public class Sig {
      */
     public static boolean verify(PublicKey publicKey, byte[] data, byte[] signature) throws CryptoException {
         try {
-            Signature sig = Signature.getInstance(ALGO, "BC");
+            Signature sig = CryptoPrimitives.getSignature();
             sig.initVerify(publicKey);
             sig.update(data);
             return sig.verify(signature);
-        } catch (SignatureException | NoSuchProviderException | InvalidKeyException | NoSuchAlgorithmException e) {
+        } catch (SignatureException | InvalidKeyException e) {
             throw new CryptoException("Signature verification failed. " + e.getMessage());
         }
     }
@@ -132,8 +131,8 @@ public class Sig {
      */
     public static PublicKey getPublicKeyFromBytes(byte[] sigPublicKeyBytes) {
         try {
-            return KeyFactory.getInstance(Sig.KEY_ALGO, "BC").generatePublic(new X509EncodedKeySpec(sigPublicKeyBytes));
-        } catch (InvalidKeySpecException | NoSuchAlgorithmException | NoSuchProviderException e) {
+            return CryptoPrimitives.getSigPublicKey(sigPublicKeyBytes);
+        } catch (GeneralSecurityException e) {
             log.error("Error creating sigPublicKey from bytes. sigPublicKeyBytes as hex={}, error={}", Utilities.bytesAsHexString(sigPublicKeyBytes), e);
             e.printStackTrace();
             throw new KeyConversionException(e);
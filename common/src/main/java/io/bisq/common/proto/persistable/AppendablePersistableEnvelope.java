@@ -0,0 +1,10 @@
+package io.bisq.common.proto.persistable;
+
+/**
+ * PersistableEnvelope which supports incremental persistence. Instead of writing the whole object at each change
+ * the Storage appends a delta (an instance holding only the changed entries) to the file. At read the deltas are
+ * merged in the order they have been written into the object read from the snapshot at the beginning of the file.
+ */
+public interface AppendablePersistableEnvelope<T extends AppendablePersistableEnvelope<T>> extends PersistableEnvelope {
+    void merge(T delta);
+}
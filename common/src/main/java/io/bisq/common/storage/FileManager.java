@@ -18,34 +18,40 @@
 package io.bisq.common.storage;
 
 import com.google.common.util.concurrent.CycleDetectingLockFactory;
-import io.bisq.common.UserThread;
+import com.google.protobuf.CodedOutputStream;
+import io.bisq.common.proto.persistable.AppendablePersistableEnvelope;
 import io.bisq.common.proto.persistable.PersistableEnvelope;
 import io.bisq.common.proto.persistable.PersistenceProtoResolver;
-import io.bisq.common.util.Utilities;
 import io.bisq.generated.protobuffer.PB;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.*;
 import java.nio.file.Paths;
-import java.util.Random;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.locks.ReentrantLock;
 
 @Slf4j
 public class FileManager<T extends PersistableEnvelope> {
+    // If the appended deltas are larger than the snapshot (or at least that size) we write a new snapshot.
+    private static final long MIN_APPENDED_BYTES_FOR_COMPACTION = 1024 * 1024;
+
     private final File dir;
     private final File storageFile;
-    private final ScheduledThreadPoolExecutor executor;
-    private final AtomicBoolean savePending;
     private final long delay;
-    private final Callable<Void> saveFileTask;
+    private final PersistenceScheduler.SaveTask saveFileTask;
+    private volatile PersistenceScheduler.Priority priority = PersistenceScheduler.Priority.NORMAL;
     private T persistable;
     private final PersistenceProtoResolver persistenceProtoResolver;
     private final ReentrantLock writeLock = CycleDetectingLockFactory.newInstance(CycleDetectingLockFactory.Policies.THROW).newReentrantLock("writeLock");
 
+    // Deltas of AppendablePersistableEnvelopes which are not written yet. If a full save is requested they are dropped
+    // as the snapshot contains them.
+    private final List<T> pendingDeltas = new ArrayList<>();
+    private boolean snapshotRequired = true;
+    private long snapshotBytes;
+    private long appendedBytes;
+
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Constructor
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -54,30 +60,26 @@ public class FileManager<T extends PersistableEnvelope> {
         this.dir = dir;
         this.storageFile = storageFile;
         this.persistenceProtoResolver = persistenceProtoResolver;
-
-        executor = Utilities.getScheduledThreadPoolExecutor("FileManager", 1, 10, 5);
-
-        // File must only be accessed from the auto-save executor from now on, to avoid simultaneous access.
-        savePending = new AtomicBoolean();
         this.delay = delay;
 
+        // File must only be accessed from the save task from now on, to avoid simultaneous access.
         saveFileTask = () -> {
-            try {
-                Thread.currentThread().setName("Save-file-task-" + new Random().nextInt(10000));
-                // Runs in an auto save thread.
-                if (!savePending.getAndSet(false)) {
-                    // Some other scheduled request already beat us to it.
-                    return null;
+            // We hold the lock from taking the deltas until they are written so deltas are always written in
+            // the order they got queued up.
+            synchronized (FileManager.this) {
+                T snapshot;
+                List<T> deltas;
+                boolean writeSnapshot;
+                synchronized (pendingDeltas) {
+                    snapshot = persistable;
+                    deltas = new ArrayList<>(pendingDeltas);
+                    pendingDeltas.clear();
+                    writeSnapshot = snapshotRequired || appendedBytes > Math.max(snapshotBytes, MIN_APPENDED_BYTES_FOR_COMPACTION);
+                    snapshotRequired = false;
                 }
-                saveNowInternal(persistable);
-            } catch (Throwable e) {
-                log.error("Error during saveFileTask", e);
+                return writeSnapshot ? saveNowInternal(snapshot) : appendToFile(deltas);
             }
-            return null;
         };
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            UserThread.execute(FileManager.this::shutDown);
-        }, "FileManager.ShutDownHook"));
     }
 
 
@@ -100,21 +102,57 @@ public class FileManager<T extends PersistableEnvelope> {
     }
 
     public void saveLater(T persistable, long delayInMilli) {
-        this.persistable = persistable;
+        synchronized (pendingDeltas) {
+            this.persistable = persistable;
+            pendingDeltas.clear();
+            snapshotRequired = true;
+        }
+
+        scheduleSave(delayInMilli);
+    }
+
+    /**
+     * Queues up the append of a delta in the background. All deltas queued up until the save task runs are written
+     * in one append. If the appended deltas got too large we write a snapshot of persistable instead.
+     */
+    public void appendLater(T persistable, T delta, long delayInMilli) {
+        synchronized (pendingDeltas) {
+            this.persistable = persistable;
+            if (!snapshotRequired)
+                pendingDeltas.add(delta);
+        }
+
+        scheduleSave(delayInMilli);
+    }
 
-        if (savePending.getAndSet(true))
-            return;   // Already pending.
+    /**
+     * Saves of files with a higher priority are done first if the persistence threads are busy.
+     */
+    public void setPriority(PersistenceScheduler.Priority priority) {
+        this.priority = priority;
+    }
 
-        executor.schedule(saveFileTask, delayInMilli, TimeUnit.MILLISECONDS);
+    // Requests are coalesced by the scheduler as long as a save is pending
+    private void scheduleSave(long delayInMilli) {
+        PersistenceScheduler.getInstance().schedule(this, saveFileTask, delayInMilli, priority);
     }
 
     @SuppressWarnings("unchecked")
     public synchronized T read(File file) {
         log.debug("Read from disc: {}", file.getName());
 
-        try (final FileInputStream fileInputStream = new FileInputStream(file)) {
-            PB.PersistableEnvelope persistable = PB.PersistableEnvelope.parseDelimitedFrom(fileInputStream);
-            return (T) persistenceProtoResolver.fromProto(persistable);
+        try (final InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+            PB.PersistableEnvelope persistable = PB.PersistableEnvelope.parseDelimitedFrom(inputStream);
+            T result = (T) persistenceProtoResolver.fromProto(persistable);
+            if (result instanceof AppendablePersistableEnvelope) {
+                synchronized (pendingDeltas) {
+                    snapshotBytes = getDelimitedSize(persistable);
+                    appendedBytes = 0;
+                    snapshotRequired = false;
+                }
+                mergeAppendedDeltas((AppendablePersistableEnvelope) result, inputStream, file);
+            }
+            return result;
         } catch (Throwable t) {
             String errorMsg = "Exception at proto read: " + t.getMessage() + " file:" + file.getAbsolutePath();
             log.error(errorMsg, t);
@@ -142,18 +180,6 @@ public class FileManager<T extends PersistableEnvelope> {
     }
 
 
-    /**
-     * Shut down auto-saving.
-     */
-    void shutDown() {
-        executor.shutdown();
-        try {
-            executor.awaitTermination(5, TimeUnit.SECONDS);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
-    }
-
     public synchronized void removeAndBackupFile(String fileName) throws IOException {
         File corruptedBackupDir = new File(Paths.get(dir.getAbsolutePath(), "backup_of_corrupted_data").toString());
         if (!corruptedBackupDir.exists())
@@ -172,13 +198,83 @@ public class FileManager<T extends PersistableEnvelope> {
     // Private
     ///////////////////////////////////////////////////////////////////////////////////////////
 
-    private void saveNowInternal(T persistable) {
+    private long saveNowInternal(T persistable) {
         long now = System.currentTimeMillis();
-        saveToFile(persistable, dir, storageFile);
+        long bytes = saveToFile(persistable, dir, storageFile);
         log.trace("Save {} completed in {} msec", storageFile, System.currentTimeMillis() - now);
+        return bytes;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void mergeAppendedDeltas(AppendablePersistableEnvelope result, InputStream inputStream, File file) {
+        int numDeltas = 0;
+        long bytes = 0;
+        try {
+            PB.PersistableEnvelope delta;
+            while ((delta = PB.PersistableEnvelope.parseDelimitedFrom(inputStream)) != null) {
+                result.merge((AppendablePersistableEnvelope) persistenceProtoResolver.fromProto(delta));
+                bytes += getDelimitedSize(delta);
+                numDeltas++;
+            }
+        } catch (Throwable t) {
+            // Most likely the last append was interrupted (e.g. crash or power loss). We drop the incomplete delta and
+            // write a new snapshot at the next save so we don't append after the corrupted data.
+            log.warn("Could not read all appended deltas of file {}. We ignore the remaining data. Error: {}",
+                    file.getName(), t.getMessage());
+            synchronized (pendingDeltas) {
+                snapshotRequired = true;
+            }
+        }
+        synchronized (pendingDeltas) {
+            appendedBytes = bytes;
+        }
+        log.debug("Merged {} appended deltas ({} bytes) of file {}", numDeltas, bytes, file.getName());
+    }
+
+    private synchronized long appendToFile(List<T> deltas) {
+        if (deltas.isEmpty())
+            return 0;
+
+        long now = System.currentTimeMillis();
+        long bytes = 0;
+        try (FileOutputStream fileOutputStream = new FileOutputStream(storageFile, true)) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            for (T delta : deltas) {
+                PB.PersistableEnvelope protoDelta = (PB.PersistableEnvelope) delta.toProtoMessage();
+                protoDelta.writeDelimitedTo(outputStream);
+            }
+            bytes = outputStream.size();
+
+            writeLock.lock();
+            // We write all deltas with one write call to keep the risk of a partly written delta small
+            outputStream.writeTo(fileOutputStream);
+            fileOutputStream.flush();
+            fileOutputStream.getFD().sync();
+        } catch (Throwable t) {
+            log.error("Error at appendToFile, storageFile=" + storageFile.toString(), t);
+            synchronized (pendingDeltas) {
+                snapshotRequired = true;
+            }
+        } finally {
+            if (writeLock.isHeldByCurrentThread())
+                writeLock.unlock();
+        }
+
+        synchronized (pendingDeltas) {
+            appendedBytes += bytes;
+        }
+        log.trace("Append of {} deltas ({} bytes) to {} completed in {} msec",
+                deltas.size(), bytes, storageFile, System.currentTimeMillis() - now);
+        return bytes;
+    }
+
+    private static long getDelimitedSize(PB.PersistableEnvelope proto) {
+        int size = proto.getSerializedSize();
+        return CodedOutputStream.computeUInt32SizeNoTag(size) + size;
     }
 
-    private synchronized void saveToFile(T persistable, File dir, File storageFile) {
+    private synchronized long saveToFile(T persistable, File dir, File storageFile) {
+        long bytes = 0;
         File tempFile = null;
         FileOutputStream fileOutputStream = null;
         PrintWriter printWriter = null;
@@ -217,8 +313,17 @@ public class FileManager<T extends PersistableEnvelope> {
             // when rename temp file
             fileOutputStream.close();
             FileUtil.renameFile(tempFile, storageFile);
+
+            bytes = storageFile.length();
+            synchronized (pendingDeltas) {
+                snapshotBytes = bytes;
+                appendedBytes = 0;
+            }
         } catch (Throwable t) {
             log.error("Error at saveToFile, storageFile=" + storageFile.toString(), t);
+            synchronized (pendingDeltas) {
+                snapshotRequired = true;
+            }
         } finally {
             if (writeLock.isLocked())
                 writeLock.unlock();
@@ -240,5 +345,6 @@ public class FileManager<T extends PersistableEnvelope> {
                 log.error("Cannot close resources." + e.getMessage());
             }
         }
+        return bytes;
     }
 }
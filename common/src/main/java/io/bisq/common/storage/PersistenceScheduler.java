@@ -0,0 +1,302 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bisq.common.storage;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executes the delayed saves of all FileManagers with one small thread pool.
+ * <p/>
+ * Save requests are coalesced per file: as long as a save of a file is pending, further requests for that file are
+ * ignored as the save task writes the latest state at execution. When the delay is over the task is queued up by
+ * priority, so trades and wallet data get written before e.g. statistics if the writer threads are busy.
+ * <p/>
+ * At shutdown all pending saves are executed at once without waiting for their delay.
+ */
+@Slf4j
+public class PersistenceScheduler {
+    public enum Priority {
+        // Trades, open offers, disputes, wallet data
+        HIGH,
+        NORMAL,
+        // Data we can recover from the network, e.g. statistics or the BSQ chain state
+        LOW
+    }
+
+    /**
+     * Writes the file and returns the number of bytes written.
+     */
+    public interface SaveTask {
+        long save() throws Exception;
+    }
+
+    private static final int NUM_WRITER_THREADS = 2;
+    private static final long SHUT_DOWN_TIMEOUT_SEC = 10;
+
+    private static final PersistenceScheduler INSTANCE = new PersistenceScheduler(NUM_WRITER_THREADS);
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(INSTANCE::shutDown, "PersistenceScheduler.ShutDownHook"));
+    }
+
+    public static PersistenceScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    private final ScheduledThreadPoolExecutor timer;
+    private final ThreadPoolExecutor writers;
+    // Pending saves by file. A save is removed when it starts, so a request during the write schedules a new save.
+    private final Map<Object, PendingSave> pendingSaves = new HashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private boolean isShutDown;
+
+    // Metrics
+    private final AtomicLong numSaves = new AtomicLong();
+    private final AtomicLong numFailedSaves = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong totalSaveDuration = new AtomicLong();
+    private final AtomicLong maxSaveDuration = new AtomicLong();
+    private final AtomicLong maxQueueLatency = new AtomicLong();
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @VisibleForTesting
+    PersistenceScheduler(int numWriterThreads) {
+        timer = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                .setNameFormat("PersistenceScheduler-Timer")
+                .setDaemon(true)
+                .build());
+        timer.setRemoveOnCancelPolicy(true);
+
+        // The tasks are PendingSaves which are ordered by priority. We must use execute, as submit would wrap them.
+        writers = new ThreadPoolExecutor(numWriterThreads, numWriterThreads, 60, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("PersistenceScheduler-Writer-%d")
+                        .setDaemon(true)
+                        .setPriority(Thread.MIN_PRIORITY)
+                        .build());
+        writers.allowCoreThreadTimeOut(true);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Schedules the save task for the given file. If there is already a save pending for that file the request is
+     * ignored, except that the pending save gets the higher priority if the new request has a higher one.
+     *
+     * @param key Identifies the file, e.g. the FileManager
+     */
+    public void schedule(Object key, SaveTask saveTask, long delayInMilli, Priority priority) {
+        PendingSave lateSave = null;
+        synchronized (pendingSaves) {
+            PendingSave pendingSave = pendingSaves.get(key);
+            if (pendingSave != null) {
+                if (priority.compareTo(pendingSave.priority) < 0 && !pendingSave.isQueued)
+                    pendingSave.priority = priority;
+                return;
+            }
+
+            pendingSave = new PendingSave(key, saveTask, priority, sequence.incrementAndGet());
+            if (isShutDown) {
+                // Late requests (e.g. from other shutdown hooks) are written directly
+                lateSave = pendingSave;
+            } else {
+                pendingSaves.put(key, pendingSave);
+                PendingSave finalPendingSave = pendingSave;
+                pendingSave.delayFuture = timer.schedule(() -> enqueue(finalPendingSave), delayInMilli, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (lateSave != null)
+            execute(lateSave);
+    }
+
+    /**
+     * Writes all pending saves by priority without waiting for their delay and stops the scheduler. Later requests
+     * are written on the calling thread. Called by a shutdown hook.
+     */
+    public void shutDown() {
+        List<PendingSave> remaining;
+        synchronized (pendingSaves) {
+            if (isShutDown)
+                return;
+
+            isShutDown = true;
+            remaining = new ArrayList<>();
+            // If the delay is over but the save is not queued up yet, enqueue will ignore it after the shutdown
+            pendingSaves.values().stream()
+                    .filter(pendingSave -> !pendingSave.isQueued)
+                    .forEach(pendingSave -> {
+                        pendingSave.delayFuture.cancel(false);
+                        remaining.add(pendingSave);
+                    });
+        }
+        timer.shutdownNow();
+
+        long ts = System.currentTimeMillis();
+        // Saves already queued up are done by the writers
+        writers.shutdown();
+        try {
+            if (!writers.awaitTermination(SHUT_DOWN_TIMEOUT_SEC, TimeUnit.SECONDS))
+                log.warn("Not all queued up saves have been completed at shutdown");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        Collections.sort(remaining);
+        remaining.forEach(this::run);
+        log.info("Flushed {} pending saves at shutdown in {} ms", remaining.size(), System.currentTimeMillis() - ts);
+    }
+
+    public int getQueueDepth() {
+        synchronized (pendingSaves) {
+            return pendingSaves.size();
+        }
+    }
+
+    public long getNumSaves() {
+        return numSaves.get();
+    }
+
+    public long getNumFailedSaves() {
+        return numFailedSaves.get();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    public long getAverageSaveDuration() {
+        long numSaves = this.numSaves.get();
+        return numSaves > 0 ? totalSaveDuration.get() / numSaves : 0;
+    }
+
+    public long getMaxSaveDuration() {
+        return maxSaveDuration.get();
+    }
+
+    // Max. time a save waited for a writer thread after its delay was over
+    public long getMaxQueueLatency() {
+        return maxQueueLatency.get();
+    }
+
+    @Override
+    public String toString() {
+        return "PersistenceScheduler{" +
+                "queueDepth=" + getQueueDepth() +
+                ", numSaves=" + getNumSaves() +
+                ", numFailedSaves=" + getNumFailedSaves() +
+                ", bytesWritten=" + getBytesWritten() +
+                ", averageSaveDuration=" + getAverageSaveDuration() +
+                ", maxSaveDuration=" + getMaxSaveDuration() +
+                ", maxQueueLatency=" + getMaxQueueLatency() +
+                '}';
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void enqueue(PendingSave pendingSave) {
+        synchronized (pendingSaves) {
+            if (isShutDown)
+                return;
+            pendingSave.isQueued = true;
+            pendingSave.queuedAt = System.currentTimeMillis();
+        }
+        writers.execute(pendingSave);
+    }
+
+    private void run(PendingSave pendingSave) {
+        synchronized (pendingSaves) {
+            pendingSaves.remove(pendingSave.key);
+        }
+        execute(pendingSave);
+    }
+
+    private void execute(PendingSave pendingSave) {
+        long ts = System.currentTimeMillis();
+        if (pendingSave.queuedAt > 0)
+            updateMax(maxQueueLatency, ts - pendingSave.queuedAt);
+        try {
+            bytesWritten.addAndGet(pendingSave.saveTask.save());
+        } catch (Throwable t) {
+            numFailedSaves.incrementAndGet();
+            log.error("Error at save task of " + pendingSave.key, t);
+        }
+        long duration = System.currentTimeMillis() - ts;
+        numSaves.incrementAndGet();
+        totalSaveDuration.addAndGet(duration);
+        updateMax(maxSaveDuration, duration);
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Inner class
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private final class PendingSave implements Runnable, Comparable<PendingSave> {
+        private final Object key;
+        private final SaveTask saveTask;
+        private final long sequenceNr;
+        // Guarded by pendingSaves
+        private Priority priority;
+        private boolean isQueued;
+        private ScheduledFuture<?> delayFuture;
+        private volatile long queuedAt;
+
+        PendingSave(Object key, SaveTask saveTask, Priority priority, long sequenceNr) {
+            this.key = key;
+            this.saveTask = saveTask;
+            this.priority = priority;
+            this.sequenceNr = sequenceNr;
+        }
+
+        @Override
+        public void run() {
+            PersistenceScheduler.this.run(this);
+        }
+
+        // Higher priority first, same priority in the order of the requests
+        @Override
+        public int compareTo(PendingSave other) {
+            int result = priority.compareTo(other.priority);
+            return result != 0 ? result : Long.compare(sequenceNr, other.sequenceNr);
+        }
+    }
+}
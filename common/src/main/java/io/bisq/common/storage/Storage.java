@@ -18,6 +18,7 @@
 package io.bisq.common.storage;
 
 import com.google.inject.Inject;
+import io.bisq.common.proto.persistable.AppendablePersistableEnvelope;
 import io.bisq.common.proto.persistable.PersistableEnvelope;
 import io.bisq.common.proto.persistable.PersistenceProtoResolver;
 import org.slf4j.Logger;
@@ -28,6 +29,7 @@ import javax.inject.Named;
 import java.io.File;
 import java.io.IOException;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -42,6 +44,10 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * As the data are small and it is just one read access the performance penalty is small and might be even worse to create and setup a thread for it.
  * <p/>
  * The write operation used a background thread and supports a delayed write to avoid too many repeated write operations.
+ * All writes are executed by the shared PersistenceScheduler.
+ * <p/>
+ * AppendablePersistableEnvelopes with many small changes (e.g. the sequence number map) can be persisted incrementally
+ * with queueUpForAppend. The changes are appended to the file and merged at read.
  */
 public class Storage<T extends PersistableEnvelope> {
     private static final Logger log = LoggerFactory.getLogger(Storage.class);
@@ -63,6 +69,7 @@ public class Storage<T extends PersistableEnvelope> {
     private T persistable;
     private String fileName;
     private int numMaxBackupFiles = 10;
+    private PersistenceScheduler.Priority priority = PersistenceScheduler.Priority.NORMAL;
     private final PersistenceProtoResolver persistenceProtoResolver;
 
 
@@ -81,6 +88,7 @@ public class Storage<T extends PersistableEnvelope> {
         this.fileName = fileName;
         storageFile = new File(dir, fileName);
         fileManager = new FileManager<>(dir, storageFile, 300, persistenceProtoResolver);
+        fileManager.setPriority(priority);
 
         return getPersisted();
     }
@@ -96,6 +104,7 @@ public class Storage<T extends PersistableEnvelope> {
         this.fileName = fileName;
         storageFile = new File(dir, fileName);
         fileManager = new FileManager<>(dir, storageFile, 600, persistenceProtoResolver);
+        fileManager.setPriority(priority);
 
         return getPersisted();
     }
@@ -112,6 +121,13 @@ public class Storage<T extends PersistableEnvelope> {
         this.numMaxBackupFiles = numMaxBackupFiles;
     }
 
+    // Critical data like trades should use HIGH, data we can get again from the network LOW
+    public void setPriority(PersistenceScheduler.Priority priority) {
+        this.priority = priority;
+        if (fileManager != null)
+            fileManager.setPriority(priority);
+    }
+
     // Save delayed and on a background thread
     public void queueUpForSave(T persistable) {
         if (persistable != null) {
@@ -135,6 +151,20 @@ public class Storage<T extends PersistableEnvelope> {
         }
     }
 
+    /**
+     * Appends delta to the file instead of writing the whole persistable. Only supported for
+     * AppendablePersistableEnvelopes. persistable is the full object which gets written from time to time as new
+     * snapshot to keep the file compact.
+     */
+    public void queueUpForAppend(T persistable, T delta, long delayInMilli) {
+        checkArgument(delta instanceof AppendablePersistableEnvelope,
+                "queueUpForAppend is only supported for AppendablePersistableEnvelopes");
+        log.trace("append " + fileName);
+        checkNotNull(storageFile, "storageFile = null. Call setupFileStorage before using read/write.");
+
+        fileManager.appendLater(persistable, delta, delayInMilli);
+    }
+
     public void remove(String fileName) {
         fileManager.removeFile(fileName);
     }
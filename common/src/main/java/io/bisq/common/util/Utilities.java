@@ -404,6 +404,21 @@ public class Utilities {
         return toTruncatedString(message, 200);
     }
 
+    // Returns an object which creates the truncated string only when its toString gets called. Use it as log argument
+    // for messages which are expensive to render, so it is only done if the log level is enabled.
+    public static Object toLazyTruncatedString(Object message, int maxLength) {
+        return new Object() {
+            @Override
+            public String toString() {
+                return toTruncatedString(message, maxLength);
+            }
+        };
+    }
+
+    public static Object toLazyTruncatedString(Object message) {
+        return toLazyTruncatedString(message, 200);
+    }
+
     public static String getRandomPrefix(int minLength, int maxLength) {
         int length = minLength + new Random().nextInt(maxLength - minLength + 1);
         String result;
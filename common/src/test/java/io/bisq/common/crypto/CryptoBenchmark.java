@@ -0,0 +1,110 @@
+package io.bisq.common.crypto;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.Security;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Random;
+
+import static io.bisq.common.util.Benchmark.measure;
+
+/**
+ * Compares each crypto primitive on the hot paths (hash, sign, verify, AES with Hmac, RSA unwrap of the secret key
+ * and the decoding of a public key) when getting the JCA instance from the provider at every call, as we did before,
+ * against the per thread instances and the public key cache of CryptoPrimitives. The operations work on 1000 bytes.
+ */
+@Ignore("Benchmark")
+public class CryptoBenchmark {
+    private static final int NUM_WARM_UP_OPS = 2000;
+
+    private final byte[] data = new byte[1000];
+    private KeyPair sigKeyPair;
+    private KeyPair encryptionKeyPair;
+    private SecretKey secretKey;
+    private byte[] signature;
+    private byte[] encryptedSecretKey;
+    private byte[] encryptedPayload;
+    private byte[] sigPubKeyBytes;
+
+    @Before
+    public void setup() throws CryptoException {
+        Security.addProvider(new BouncyCastleProvider());
+        new Random(1).nextBytes(data);
+        sigKeyPair = Sig.generateKeyPair();
+        encryptionKeyPair = Encryption.generateKeyPair();
+        secretKey = Encryption.generateSecretKey();
+        signature = Sig.sign(sigKeyPair.getPrivate(), data);
+        encryptedSecretKey = Encryption.encryptSecretKey(secretKey, encryptionKeyPair.getPublic());
+        encryptedPayload = Encryption.encryptPayloadWithHmac(data, secretKey);
+        sigPubKeyBytes = Sig.getPublicKeyBytes(sigKeyPair.getPublic());
+    }
+
+    @Test
+    public void testHash() throws Exception {
+        measure("Hash lookup", NUM_WARM_UP_OPS, () -> MessageDigest.getInstance("SHA-256", "BC").digest(data));
+        measure("Hash cached", NUM_WARM_UP_OPS, () -> Hash.getHash(data));
+    }
+
+    @Test
+    public void testSign() throws Exception {
+        measure("Sign lookup", NUM_WARM_UP_OPS, () -> {
+            Signature sig = Signature.getInstance(Sig.ALGO, "BC");
+            sig.initSign(sigKeyPair.getPrivate());
+            sig.update(data);
+            sig.sign();
+        });
+        measure("Sign cached", NUM_WARM_UP_OPS, () -> Sig.sign(sigKeyPair.getPrivate(), data));
+    }
+
+    @Test
+    public void testVerify() throws Exception {
+        measure("Verify lookup", NUM_WARM_UP_OPS, () -> {
+            Signature sig = Signature.getInstance(Sig.ALGO, "BC");
+            sig.initVerify(sigKeyPair.getPublic());
+            sig.update(data);
+            sig.verify(signature);
+        });
+        measure("Verify cached", NUM_WARM_UP_OPS, () -> Sig.verify(sigKeyPair.getPublic(), data, signature));
+    }
+
+    @Test
+    public void testSymmetricWithHmac() throws Exception {
+        measure("AES+Hmac encrypt lookup", NUM_WARM_UP_OPS, () -> {
+            Mac mac = Mac.getInstance(Encryption.HMAC, "BC");
+            mac.init(secretKey);
+            mac.doFinal(data);
+            Cipher cipher = Cipher.getInstance(Encryption.SYM_CIPHER, "BC");
+            cipher.init(Cipher.ENCRYPT_MODE, secretKey);
+            cipher.doFinal(data);
+        });
+        measure("AES+Hmac encrypt cached", NUM_WARM_UP_OPS, () -> Encryption.encryptPayloadWithHmac(data, secretKey));
+        measure("AES+Hmac decrypt cached", NUM_WARM_UP_OPS, () -> Encryption.decryptPayloadWithHmac(encryptedPayload, secretKey));
+    }
+
+    @Test
+    public void testDecryptSecretKey() throws Exception {
+        measure("RSA unwrap lookup", NUM_WARM_UP_OPS, () -> {
+            Cipher cipher = Cipher.getInstance(Encryption.ASYM_CIPHER, "BC");
+            cipher.init(Cipher.UNWRAP_MODE, encryptionKeyPair.getPrivate());
+            cipher.unwrap(encryptedSecretKey, "AES", Cipher.SECRET_KEY);
+        });
+        measure("RSA unwrap cached", NUM_WARM_UP_OPS, () -> Encryption.decryptSecretKey(encryptedSecretKey, encryptionKeyPair.getPrivate()));
+    }
+
+    @Test
+    public void testPublicKeyFromBytes() throws Exception {
+        measure("PublicKey decode", NUM_WARM_UP_OPS, () ->
+                KeyFactory.getInstance(Sig.KEY_ALGO, "BC").generatePublic(new X509EncodedKeySpec(sigPubKeyBytes)));
+        measure("PublicKey cached", NUM_WARM_UP_OPS, () -> Sig.getPublicKeyFromBytes(sigPubKeyBytes));
+    }
+}
@@ -0,0 +1,81 @@
+package io.bisq.common.crypto;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.crypto.SecretKey;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class CryptoPrimitivesTest {
+    private KeyPair sigKeyPair;
+
+    @Before
+    public void setup() {
+        Security.addProvider(new BouncyCastleProvider());
+        sigKeyPair = Sig.generateKeyPair();
+    }
+
+    @Test
+    public void testConcurrentUse() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                byte[] data = new byte[]{(byte) i, 1, 2, 3};
+                results.add(executor.submit(() -> {
+                    byte[] expectedHash = MessageDigest.getInstance("SHA-256", "BC").digest(data);
+                    byte[] signature = Sig.sign(sigKeyPair.getPrivate(), data);
+                    return Arrays.equals(expectedHash, Hash.getHash(data))
+                            && Sig.verify(sigKeyPair.getPublic(), data, signature)
+                            && !Sig.verify(sigKeyPair.getPublic(), new byte[]{0}, signature);
+                }));
+            }
+            for (Future<Boolean> result : results)
+                assertTrue(result.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSymmetricWithHmac() throws CryptoException {
+        SecretKey secretKey = Encryption.generateSecretKey();
+        byte[] data = new byte[]{1, 2, 3, 4};
+        byte[] encrypted = Encryption.encryptPayloadWithHmac(data, secretKey);
+        assertArrayEquals(data, Encryption.decryptPayloadWithHmac(encrypted, secretKey));
+        // Reuses the cipher of this thread after a failed decryption
+        try {
+            Encryption.decryptPayloadWithHmac(encrypted, Encryption.generateSecretKey());
+            fail("Expected CryptoException");
+        } catch (CryptoException ignored) {
+        }
+        assertArrayEquals(data, Encryption.decryptPayloadWithHmac(encrypted, secretKey));
+    }
+
+    @Test
+    public void testPublicKeyCache() {
+        byte[] bytes = Sig.getPublicKeyBytes(sigKeyPair.getPublic());
+        PublicKey publicKey = Sig.getPublicKeyFromBytes(bytes);
+        assertEquals(sigKeyPair.getPublic(), publicKey);
+        assertSame(publicKey, Sig.getPublicKeyFromBytes(bytes.clone()));
+
+        // Changing the array must not change the cached entry
+        bytes[bytes.length - 1] ^= 1;
+        assertSame(publicKey, Sig.getPublicKeyFromBytes(Sig.getPublicKeyBytes(sigKeyPair.getPublic())));
+    }
+
+    @Test(expected = KeyConversionException.class)
+    public void testInvalidPublicKey() {
+        Sig.getPublicKeyFromBytes(new byte[]{1, 2, 3});
+    }
+}
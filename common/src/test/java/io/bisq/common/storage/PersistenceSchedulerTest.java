@@ -0,0 +1,90 @@
+package io.bisq.common.storage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PersistenceSchedulerTest {
+    private PersistenceScheduler scheduler;
+
+    @Before
+    public void setup() {
+        scheduler = new PersistenceScheduler(1);
+    }
+
+    @Test
+    public void testCoalescing() throws InterruptedException {
+        AtomicInteger numSaves = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1);
+        PersistenceScheduler.SaveTask saveTask = () -> {
+            numSaves.incrementAndGet();
+            latch.countDown();
+            return 10;
+        };
+        for (int i = 0; i < 10; i++)
+            scheduler.schedule("file", saveTask, 100, PersistenceScheduler.Priority.NORMAL);
+        assertEquals(1, scheduler.getQueueDepth());
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(1, numSaves.get());
+        assertEquals(0, scheduler.getQueueDepth());
+        assertEquals(10, scheduler.getBytesWritten());
+    }
+
+    @Test
+    public void testPriority() throws InterruptedException {
+        List<String> saved = new CopyOnWriteArrayList<>();
+        CountDownLatch blockWriter = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(4);
+        // Occupies the only writer thread until the other saves are queued up
+        scheduler.schedule("blocker", () -> {
+            blockWriter.await();
+            done.countDown();
+            return 0;
+        }, 0, PersistenceScheduler.Priority.NORMAL);
+        Thread.sleep(100);
+
+        scheduler.schedule("statistics", save(saved, "statistics", done), 0, PersistenceScheduler.Priority.LOW);
+        scheduler.schedule("peers", save(saved, "peers", done), 0, PersistenceScheduler.Priority.NORMAL);
+        scheduler.schedule("trades", save(saved, "trades", done), 0, PersistenceScheduler.Priority.HIGH);
+        Thread.sleep(100);
+        blockWriter.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("trades", "peers", "statistics"), saved);
+    }
+
+    @Test
+    public void testShutDownFlushesPendingSaves() {
+        List<String> saved = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+        scheduler.schedule("statistics", save(saved, "statistics", done), 60_000, PersistenceScheduler.Priority.LOW);
+        scheduler.schedule("trades", save(saved, "trades", done), 60_000, PersistenceScheduler.Priority.HIGH);
+
+        scheduler.shutDown();
+        assertEquals(Arrays.asList("trades", "statistics"), saved);
+        assertEquals(0, scheduler.getQueueDepth());
+
+        // Requests after the shutdown are written directly
+        scheduler.schedule("late", save(saved, "late", done), 60_000, PersistenceScheduler.Priority.NORMAL);
+        assertEquals(Arrays.asList("trades", "statistics", "late"), saved);
+    }
+
+    private static PersistenceScheduler.SaveTask save(List<String> saved, String name, CountDownLatch done) {
+        return () -> {
+            saved.add(name);
+            done.countDown();
+            return 1;
+        };
+    }
+}
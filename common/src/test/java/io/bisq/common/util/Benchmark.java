@@ -0,0 +1,83 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bisq.common.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Shared harness of the benchmarks in the test sources of all modules (shipped to the other modules with the test jar
+ * of common). The benchmarks are annotated with @Ignore("Benchmark") so they don't slow down the normal test run,
+ * remove the annotation to run one.
+ * <p/>
+ * measure() is for cheap operations: it runs the operation repeatedly for a fixed time after a warm up and logs the
+ * ops/sec and the bytes the operation allocated per op. time() is for expensive operations which run only once.
+ */
+@Slf4j
+public class Benchmark {
+    private static final long DURATION_NANOS = 2_000_000_000L;
+
+    public interface Operation {
+        void run() throws Exception;
+    }
+
+    public static void measure(String name, int numWarmUpOps, Operation operation) throws Exception {
+        for (int i = 0; i < numWarmUpOps; i++)
+            operation.run();
+
+        long allocatedBytes = getAllocatedBytes();
+        long numOps = 0;
+        long ts = System.nanoTime();
+        long duration;
+        do {
+            operation.run();
+            numOps++;
+            duration = System.nanoTime() - ts;
+        } while (duration < DURATION_NANOS);
+        allocatedBytes = getAllocatedBytes() - allocatedBytes;
+
+        if (allocatedBytes >= 0)
+            log.info("{}: {} ops/sec, {} allocated bytes/op", name, numOps * 1_000_000_000L / duration,
+                    allocatedBytes / numOps);
+        else
+            log.info("{}: {} ops/sec", name, numOps * 1_000_000_000L / duration);
+    }
+
+    // Runs the operation once and logs the throughput for the given number of ops it performs. Returns the duration
+    // in ms, so the caller can derive other rates from it.
+    public static long time(String name, long numOps, Operation operation) throws Exception {
+        long ts = System.nanoTime();
+        operation.run();
+        long durationMs = Math.max(1, (System.nanoTime() - ts) / 1_000_000);
+        log.info("{}: {} ops in {} ms ({} ops/sec)", name, numOps, durationMs, numOps * 1000L / durationMs);
+        return durationMs;
+    }
+
+    // Bytes allocated by the current thread or -1 if the JVM does not support measuring it
+    private static long getAllocatedBytes() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+            if (sunThreadMXBean.isThreadAllocatedMemorySupported() && sunThreadMXBean.isThreadAllocatedMemoryEnabled())
+                return sunThreadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
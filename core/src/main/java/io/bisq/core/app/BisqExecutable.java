@@ -25,6 +25,7 @@ import io.bisq.core.exceptions.BisqException;
 import io.bisq.core.util.joptsimple.EnumValueConverter;
 import io.bisq.network.NetworkOptionKeys;
 import io.bisq.network.p2p.P2PService;
+import io.bisq.network.p2p.network.MessageTrace;
 import joptsimple.OptionException;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
@@ -95,6 +96,14 @@ public abstract class BisqExecutable {
                 description("Use localhost P2P network for development", false))
                 .withRequiredArg()
                 .ofType(boolean.class);
+        parser.accepts(NetworkOptionKeys.USE_NIO_TRANSPORT,
+                description("Read from P2P connections with a few selector threads instead of one thread per connection", false))
+                .withRequiredArg()
+                .ofType(boolean.class);
+        parser.accepts(NetworkOptionKeys.MESSAGE_TRACE_SAMPLE_RATE,
+                description("Record only every n-th P2P message in the message trace, 0 disables it", MessageTrace.DEFAULT_SAMPLE_RATE))
+                .withRequiredArg()
+                .ofType(int.class);
         parser.accepts(NetworkOptionKeys.MAX_CONNECTIONS,
                 description("Max. connections a peer will try to keep", P2PService.MAX_CONNECTIONS_DEFAULT))
                 .withRequiredArg()
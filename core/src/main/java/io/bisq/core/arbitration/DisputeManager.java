@@ -30,6 +30,7 @@ import io.bisq.common.locale.Res;
 import io.bisq.common.proto.network.NetworkEnvelope;
 import io.bisq.common.proto.persistable.PersistedDataHost;
 import io.bisq.common.proto.persistable.PersistenceProtoResolver;
+import io.bisq.common.storage.PersistenceScheduler;
 import io.bisq.common.storage.Storage;
 import io.bisq.core.arbitration.messages.*;
 import io.bisq.core.btc.AddressEntry;
@@ -103,6 +104,7 @@ public class DisputeManager implements PersistedDataHost {
         this.keyRing = keyRing;
 
         disputeStorage = new Storage<>(storageDir, persistenceProtoResolver);
+        disputeStorage.setPriority(PersistenceScheduler.Priority.HIGH);
 
         openDisputes = new HashMap<>();
         closedDisputes = new HashMap<>();
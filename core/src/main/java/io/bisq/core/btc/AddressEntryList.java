@@ -21,6 +21,7 @@ import com.google.inject.Inject;
 import com.google.protobuf.Message;
 import io.bisq.common.proto.persistable.PersistableEnvelope;
 import io.bisq.common.proto.persistable.PersistedDataHost;
+import io.bisq.common.storage.PersistenceScheduler;
 import io.bisq.common.storage.Storage;
 import io.bisq.generated.protobuffer.PB;
 import lombok.Getter;
@@ -48,6 +49,7 @@ public final class AddressEntryList implements PersistableEnvelope, PersistedDat
     @Inject
     public AddressEntryList(Storage<AddressEntryList> storage) {
         this.storage = storage;
+        storage.setPriority(PersistenceScheduler.Priority.HIGH);
     }
 
     @Override
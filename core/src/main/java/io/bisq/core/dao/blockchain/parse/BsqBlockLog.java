@@ -0,0 +1,162 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bisq.core.dao.blockchain.parse;
+
+import io.bisq.core.dao.blockchain.vo.BsqBlock;
+import io.bisq.generated.protobuffer.PB;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only file with the reset blocks of the chain as length delimited protobuf messages, so we can serve a
+ * GetBsqBlocksRequest by reading the requested byte range instead of copying and resetting the blocks of the chain
+ * state. The offsets of the blocks are kept in memory.
+ * <p/>
+ * Only full nodes keep the log, as only they serve the GetBsqBlocksRequests. The log gets rewritten from the blocks
+ * of the chain state when a snapshot is applied (at startup and at a reorg).
+ * Not thread safe, the BsqChainState calls it inside its lock. After an IO error the log is closed until it gets
+ * rewritten and the BsqChainState serves the blocks from memory.
+ */
+@Slf4j
+class BsqBlockLog {
+    static final String FILE_NAME = "BsqBlocks.log";
+
+    private final File logFile;
+    @Nullable
+    private FileChannel channel;
+    // Start offsets of the blocks from firstHeight on
+    private final List<Long> offsets = new ArrayList<>();
+    private int firstHeight;
+    private long size;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    BsqBlockLog(File storageDir) {
+        logFile = new File(storageDir, FILE_NAME);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Replaces the content of the log with the given blocks
+    void rewrite(List<BsqBlock> bsqBlocks) {
+        close();
+        try {
+            channel = new RandomAccessFile(logFile, "rw").getChannel();
+            channel.truncate(0);
+            for (BsqBlock bsqBlock : bsqBlocks) {
+                append(bsqBlock);
+            }
+        } catch (IOException e) {
+            handleError(e);
+        }
+    }
+
+    void append(BsqBlock bsqBlock) {
+        if (channel == null)
+            return;
+
+        try {
+            if (!offsets.isEmpty() && bsqBlock.getHeight() != getLastHeight() + 1)
+                throw new IOException("Block does not connect to the log. height=" + bsqBlock.getHeight() +
+                        ", lastHeight=" + getLastHeight());
+
+            ByteBuffer buffer = ByteBuffer.wrap(getResettedBytes(bsqBlock));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, size + buffer.position());
+            }
+            if (offsets.isEmpty())
+                firstHeight = bsqBlock.getHeight();
+            offsets.add(size);
+            size += buffer.capacity();
+        } catch (IOException e) {
+            handleError(e);
+        }
+    }
+
+    boolean isOpen() {
+        return channel != null;
+    }
+
+    List<BsqBlock> getBlocksFrom(int fromBlockHeight) throws IOException {
+        List<BsqBlock> bsqBlocks = new ArrayList<>();
+        if (channel == null || offsets.isEmpty() || fromBlockHeight > getLastHeight())
+            return bsqBlocks;
+
+        long start = offsets.get(Math.max(0, fromBlockHeight - firstHeight));
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(size - start));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0)
+                throw new EOFException("Log is shorter than expected. size=" + size);
+        }
+
+        InputStream inputStream = new ByteArrayInputStream(buffer.array());
+        PB.BsqBlock proto;
+        while ((proto = PB.BsqBlock.parseDelimitedFrom(inputStream)) != null) {
+            bsqBlocks.add(BsqBlock.fromProto(proto));
+        }
+        return bsqBlocks;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private int getLastHeight() {
+        return firstHeight + offsets.size() - 1;
+    }
+
+    // We must not reset the block of the chain state, so we reset a copy
+    private static byte[] getResettedBytes(BsqBlock bsqBlock) throws IOException {
+        BsqBlock copy = BsqBlock.fromProto(bsqBlock.toProtoMessage());
+        copy.reset();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        copy.toProtoMessage().writeDelimitedTo(outputStream);
+        return outputStream.toByteArray();
+    }
+
+    private void handleError(IOException e) {
+        log.warn("We close the block log after an error. logFile={}, error={}", logFile, e.toString());
+        close();
+    }
+
+    private void close() {
+        offsets.clear();
+        size = 0;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Closing the block log failed. error={}", e.toString());
+            }
+            channel = null;
+        }
+    }
+}
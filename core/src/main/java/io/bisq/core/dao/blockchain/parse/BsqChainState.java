@@ -21,10 +21,12 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.protobuf.Message;
 import io.bisq.common.proto.persistable.PersistableEnvelope;
 import io.bisq.common.proto.persistable.PersistenceProtoResolver;
+import io.bisq.common.storage.PersistenceScheduler;
 import io.bisq.common.storage.Storage;
 import io.bisq.common.util.FunctionalReadWriteLock;
 import io.bisq.common.util.Tuple2;
 import io.bisq.core.app.BisqEnvironment;
+import io.bisq.core.dao.DaoOptionKeys;
 import io.bisq.core.dao.blockchain.exceptions.BlockNotConnectingException;
 import io.bisq.core.dao.blockchain.vo.*;
 import io.bisq.generated.protobuffer.PB;
@@ -34,6 +36,7 @@ import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -131,6 +134,17 @@ public class BsqChainState implements PersistableEnvelope {
     @Nullable
     transient private BsqChainState snapshotCandidate;
     transient private final FunctionalReadWriteLock lock;
+    // Outputs of the txs in txMap by their address. The output types get set while parsing, so we filter by type
+    // at lookup. Derived from txMap and not persisted.
+    transient private final Map<String, List<TxOutput>> txOutputsByAddressMap = new HashMap<>();
+    transient private int numIndexedTxOutputs;
+    // Incremented at each write, so we can reuse a clone as long as the state has not changed
+    transient private long version;
+    @Nullable
+    transient private volatile Tuple2<Long, BsqChainState> cachedClone;
+    // Only full nodes serve the GetBsqBlocksRequests, so lite nodes and clones don't keep the block log
+    @Nullable
+    transient private final BsqBlockLog bsqBlockLog;
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -140,7 +154,14 @@ public class BsqChainState implements PersistableEnvelope {
     @SuppressWarnings("WeakerAccess")
     @Inject
     public BsqChainState(PersistenceProtoResolver persistenceProtoResolver,
-                         @Named(Storage.STORAGE_DIR) File storageDir) {
+                         @Named(Storage.STORAGE_DIR) File storageDir,
+                         @Named(DaoOptionKeys.RPC_USER) String rpcUser) {
+        // Same check as in BsqBlockchainManager, with a RPC user we run as full node
+        this(persistenceProtoResolver, storageDir, rpcUser != null && !rpcUser.isEmpty());
+    }
+
+    @VisibleForTesting
+    BsqChainState(PersistenceProtoResolver persistenceProtoResolver, File storageDir, boolean isFullNode) {
 
         bsqBlocks = new LinkedList<>();
         txMap = new HashMap<>();
@@ -149,6 +170,8 @@ public class BsqChainState implements PersistableEnvelope {
         votingFees = new HashSet<>();
 
         storage = new Storage<>(storageDir, persistenceProtoResolver);
+        storage.setPriority(PersistenceScheduler.Priority.LOW);
+        bsqBlockLog = isFullNode ? new BsqBlockLog(storageDir) : null;
 
         switch (BisqEnvironment.getBaseCurrencyNetwork()) {
             case BTC_MAINNET:
@@ -200,8 +223,10 @@ public class BsqChainState implements PersistableEnvelope {
         this.genesisBlockHeight = genesisBlockHeight;
         this.chainHeadHeight = chainHeadHeight;
         this.genesisTx = genesisTx;
+        bsqBlockLog = null;
 
         lock = new FunctionalReadWriteLock(true);
+        txMap.values().forEach(this::addToTxOutputsByAddressMap);
 
         // not impl yet in PB
         compensationRequestFees = new HashSet<>();
@@ -256,20 +281,26 @@ public class BsqChainState implements PersistableEnvelope {
             BsqChainState snapshot = storage.initAndGetPersistedWithFileName("BsqChainState");
             bsqBlocks.clear();
             txMap.clear();
+            txOutputsByAddressMap.clear();
+            numIndexedTxOutputs = 0;
             unspentTxOutputsMap.clear();
             chainHeadHeight = 0;
             genesisTx = null;
+            version++;
 
             if (snapshot != null) {
                 log.info("applySnapshot snapshot.chainHeadHeight=" + snapshot.chainHeadHeight);
                 bsqBlocks.addAll(snapshot.bsqBlocks);
                 txMap.putAll(snapshot.txMap);
+                txMap.values().forEach(this::addToTxOutputsByAddressMap);
                 unspentTxOutputsMap.putAll(snapshot.unspentTxOutputsMap);
                 chainHeadHeight = snapshot.chainHeadHeight;
                 genesisTx = snapshot.genesisTx;
             } else {
                 log.info("Try to apply snapshot but no stored snapshot available");
             }
+            if (bsqBlockLog != null)
+                bsqBlockLog.rewrite(bsqBlocks);
 
             printDetails();
         });
@@ -291,12 +322,20 @@ public class BsqChainState implements PersistableEnvelope {
     void addBlock(BsqBlock block) throws BlockNotConnectingException {
         try {
             lock.write2(() -> {
-                if (!bsqBlocks.contains(block)) {
+                // Blocks are added in order of height, so we only need to search the list (comparing the blocks with
+                // all their txs) if the block is not above our chain head
+                boolean isKnownBlock = !bsqBlocks.isEmpty() &&
+                        block.getHeight() <= bsqBlocks.getLast().getHeight() &&
+                        bsqBlocks.contains(block);
+                if (!isKnownBlock) {
                     if (bsqBlocks.isEmpty() || (bsqBlocks.getLast().getHash().equals(block.getPreviousBlockHash()) &&
                             bsqBlocks.getLast().getHeight() + 1 == block.getHeight())) {
                         bsqBlocks.add(block);
+                        if (bsqBlockLog != null)
+                            bsqBlockLog.append(block);
                         block.getTxs().stream().forEach(BsqChainState.this::addTxToMap);
                         chainHeadHeight = block.getHeight();
+                        version++;
                         maybeMakeSnapshot();
                         printDetails();
                     } else {
@@ -320,22 +359,38 @@ public class BsqChainState implements PersistableEnvelope {
     }
 
     void addTxToMap(Tx tx) {
-        lock.write(() -> txMap.put(tx.getId(), tx));
+        lock.write(() -> {
+            // The parser adds BSQ txs already before the block gets added
+            Tx previous = txMap.put(tx.getId(), tx);
+            version++;
+            if (previous != tx) {
+                if (previous != null)
+                    removeFromTxOutputsByAddressMap(previous);
+                addToTxOutputsByAddressMap(tx);
+            }
+        });
     }
 
     void addUnspentTxOutput(TxOutput txOutput) {
         lock.write(() -> {
             checkArgument(txOutput.isVerified(), "txOutput must be verified at addUnspentTxOutput");
             unspentTxOutputsMap.put(txOutput.getTxIdIndexTuple(), txOutput);
+            version++;
         });
     }
 
     void removeUnspentTxOutput(TxOutput txOutput) {
-        lock.write(() -> unspentTxOutputsMap.remove(txOutput.getTxIdIndexTuple()));
+        lock.write(() -> {
+            unspentTxOutputsMap.remove(txOutput.getTxIdIndexTuple());
+            version++;
+        });
     }
 
     void setGenesisTx(Tx tx) {
-        lock.write(() -> genesisTx = tx);
+        lock.write(() -> {
+            genesisTx = tx;
+            version++;
+        });
     }
 
 
@@ -351,8 +406,17 @@ public class BsqChainState implements PersistableEnvelope {
         return lock.read(() -> genesisBlockHeight);
     }
 
+    // The clone is shared with other callers as long as the state has not changed, so it must not be modified
     public BsqChainState getClone() {
-        return getClone(this);
+        return lock.read(() -> {
+            Tuple2<Long, BsqChainState> cachedClone = this.cachedClone;
+            if (cachedClone != null && cachedClone.first == version)
+                return cachedClone.second;
+
+            BsqChainState clone = getClone(this);
+            this.cachedClone = new Tuple2<>(version, clone);
+            return clone;
+        });
     }
 
     public BsqChainState getClone(BsqChainState bsqChainState) {
@@ -363,10 +427,9 @@ public class BsqChainState implements PersistableEnvelope {
         return lock.read(() -> bsqBlocks.contains(bsqBlock));
     }
 
+    // Called for each input of each tx we parse, so we must not iterate the map
     Optional<TxOutput> getUnspentTxOutput(TxIdIndexTuple txIdIndexTuple) {
-        return lock.read(() -> unspentTxOutputsMap.entrySet().stream()
-                .filter(e -> e.getKey().equals(txIdIndexTuple))
-                .map(Map.Entry::getValue).findAny());
+        return lock.read(() -> Optional.ofNullable(unspentTxOutputsMap.get(txIdIndexTuple)));
     }
 
     public boolean isTxOutputSpendable(String txId, int index) {
@@ -394,12 +457,26 @@ public class BsqChainState implements PersistableEnvelope {
         return lock.read(() -> txMap);
     }
 
+    // We serve the blocks from the block log. If that is not available we copy the requested blocks, peers request
+    // usually only the few blocks above their chain head.
     public List<BsqBlock> getResettedBlocksFrom(int fromBlockHeight) {
         return lock.read(() -> {
-            BsqChainState clone = getClone();
-            List<BsqBlock> filtered = clone.bsqBlocks.stream()
-                    .filter(block -> block.getHeight() >= fromBlockHeight)
-                    .collect(Collectors.toList());
+            if (bsqBlockLog != null && bsqBlockLog.isOpen()) {
+                try {
+                    return bsqBlockLog.getBlocksFrom(fromBlockHeight);
+                } catch (IOException e) {
+                    log.warn("Reading the block log failed, we copy the blocks from memory. error={}", e.toString());
+                }
+            }
+
+            LinkedList<BsqBlock> filtered = new LinkedList<>();
+            Iterator<BsqBlock> iterator = bsqBlocks.descendingIterator();
+            while (iterator.hasNext()) {
+                BsqBlock block = iterator.next();
+                if (block.getHeight() < fromBlockHeight)
+                    break;
+                filtered.addFirst(BsqBlock.fromProto(block.toProtoMessage()));
+            }
             filtered.stream().forEach(BsqBlock::reset);
             return filtered;
         });
@@ -455,17 +532,13 @@ public class BsqChainState implements PersistableEnvelope {
     }
 
     boolean existsCompensationRequestBtcAddress(String btcAddress) {
-        return lock.read(() -> getAllTxOutputs().stream()
-                .filter(txOutput -> txOutput.isCompensationRequestBtcOutput() &&
-                        txOutput.getAddress().equals(btcAddress))
-                .findAny()
-                .isPresent());
+        return lock.read(() -> getTxOutputsByAddress(btcAddress).stream()
+                .anyMatch(TxOutput::isCompensationRequestBtcOutput));
     }
 
     Set<TxOutput> findSponsoringBtcOutputsWithSameBtcAddress(String btcAddress) {
-        return lock.read(() -> getAllTxOutputs().stream()
-                .filter(txOutput -> txOutput.isSponsoringBtcOutput() &&
-                        txOutput.getAddress().equals(btcAddress))
+        return lock.read(() -> getTxOutputsByAddress(btcAddress).stream()
+                .filter(TxOutput::isSponsoringBtcOutput)
                 .collect(Collectors.toSet()));
     }
 
@@ -494,38 +567,63 @@ public class BsqChainState implements PersistableEnvelope {
                     (snapshotCandidate == null ||
                             snapshotCandidate.chainHeadHeight != getChainHeadHeight())) {
                 // At trigger event we store the latest snapshotCandidate to disc
+                // The snapshotCandidate is a clone which never gets modified, so storage can persist it in its
+                // threaded context without cloning it again
                 if (snapshotCandidate != null) {
-                    // We clone because storage is in a threaded context
-                    final BsqChainState cloned = getClone(snapshotCandidate);
                     checkNotNull(storage, "storage must nto be null");
-                    storage.queueUpForSave(cloned);
-                    // dont access cloned anymore with methods as locks are transient!
-                    log.info("Saved snapshotCandidate to Disc at height " + cloned.chainHeadHeight);
+                    storage.queueUpForSave(snapshotCandidate);
+                    // dont access snapshotCandidate anymore with methods as locks are transient!
+                    log.info("Saved snapshotCandidate to Disc at height " + snapshotCandidate.chainHeadHeight);
                 }
                 // Now we clone and keep it in memory for the next trigger
-                snapshotCandidate = getClone(this);
+                snapshotCandidate = getClone();
                 // dont access cloned anymore with methods as locks are transient!
                 log.debug("Cloned new snapshotCandidate at height " + snapshotCandidate.chainHeadHeight);
             }
         });
     }
 
-    private Set<TxOutput> getAllTxOutputs() {
-        return txMap.values().stream()
-                .flatMap(tx -> tx.getOutputs().stream())
-                .collect(Collectors.toSet());
+    private List<TxOutput> getTxOutputsByAddress(String address) {
+        return txOutputsByAddressMap.getOrDefault(address, Collections.emptyList());
+    }
+
+    private void addToTxOutputsByAddressMap(Tx tx) {
+        tx.getOutputs().stream()
+                .filter(txOutput -> txOutput.getAddress() != null)
+                .forEach(txOutput -> {
+                    txOutputsByAddressMap.computeIfAbsent(txOutput.getAddress(), k -> new ArrayList<>(1)).add(txOutput);
+                    numIndexedTxOutputs++;
+                });
+    }
+
+    // TxOutput is mutable and its hashCode changes while parsing, so we remove by identity
+    private void removeFromTxOutputsByAddressMap(Tx tx) {
+        tx.getOutputs().stream()
+                .filter(txOutput -> txOutput.getAddress() != null)
+                .forEach(txOutput -> {
+                    List<TxOutput> txOutputs = txOutputsByAddressMap.get(txOutput.getAddress());
+                    if (txOutputs != null) {
+                        if (txOutputs.removeIf(e -> e == txOutput))
+                            numIndexedTxOutputs--;
+                        if (txOutputs.isEmpty())
+                            txOutputsByAddressMap.remove(txOutput.getAddress());
+                    }
+                });
     }
 
     private void printDetails() {
         log.debug("\nchainHeadHeight={}\n" +
                         "    blocks.size={}\n" +
                         "    txMap.size={}\n" +
+                        "    txOutputsByAddressMap.size={} (indexed txOutputs={})\n" +
                         "    unspentTxOutputsMap.size={}\n" +
                         "    compensationRequestFees.size={}\n" +
                         "    votingFees.size={}\n" +
                 getChainHeadHeight(),
                 bsqBlocks.size(),
                 txMap.size(),
+                txOutputsByAddressMap.size(),
+                numIndexedTxOutputs,
                 unspentTxOutputsMap.size(),
                 compensationRequestFees.size(),
                 votingFees.size());
@@ -18,8 +18,14 @@
 package io.bisq.core.dao.blockchain.parse;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.neemre.btcdcli4j.core.domain.Block;
 import io.bisq.common.app.DevEnv;
+import io.bisq.common.util.Tuple2;
 import io.bisq.core.dao.blockchain.exceptions.BlockNotConnectingException;
 import io.bisq.core.dao.blockchain.exceptions.BsqBlockchainException;
 import io.bisq.core.dao.blockchain.vo.*;
@@ -28,6 +34,7 @@ import lombok.extern.slf4j.Slf4j;
 import javax.annotation.concurrent.Immutable;
 import javax.inject.Inject;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -37,6 +44,9 @@ import static com.google.common.base.Preconditions.checkArgument;
 @Slf4j
 @Immutable
 public class BsqParser {
+    // Number of blocks we request from Bitcoin Core ahead of the block we parse
+    private static final int NUM_PREFETCHED_BLOCKS = 4;
+
     private final BsqChainState bsqChainState;
     private final OpReturnVerification opReturnVerification;
     private final IssuanceVerification issuanceVerification;
@@ -44,8 +54,10 @@ public class BsqParser {
 
     // Maybe we want to request fee at some point, leave it for now and disable it
     private boolean requestFee = false;
-    private final Map<Integer, Long> feesByBlock = new HashMap<>();
-    
+    private final Map<Integer, Long> feesByBlock = new ConcurrentHashMap<>();
+    // The RPC requests are the bottleneck of parsing, so we run them in parallel
+    private final ListeningExecutorService rpcRequestExecutor;
+
 
     @SuppressWarnings("WeakerAccess")
     @Inject
@@ -57,6 +69,12 @@ public class BsqParser {
         this.bsqChainState = bsqChainState;
         this.opReturnVerification = opReturnVerification;
         this.issuanceVerification = issuanceVerification;
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(RpcService.MAX_PARALLEL_REQUESTS,
+                RpcService.MAX_PARALLEL_REQUESTS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("RpcRequest-%d").setDaemon(true).build());
+        executor.allowCoreThreadTimeOut(true);
+        rpcRequestExecutor = MoreExecutors.listeningDecorator(executor);
     }
 
 
@@ -101,11 +119,22 @@ public class BsqParser {
                      String genesisTxId,
                      Consumer<BsqBlock> newBlockHandler)
             throws BsqBlockchainException, BlockNotConnectingException {
+        // We request the next blocks while we parse a block, but we parse and add the blocks strictly in order
+        Deque<ListenableFuture<Tuple2<Block, List<Tx>>>> requestedBlocks = new ArrayDeque<>();
         try {
+            int nextBlockHeightToRequest = startBlockHeight;
             for (int blockHeight = startBlockHeight; blockHeight <= chainHeadHeight; blockHeight++) {
+                while (nextBlockHeightToRequest <= chainHeadHeight &&
+                        nextBlockHeightToRequest <= blockHeight + NUM_PREFETCHED_BLOCKS) {
+                    requestedBlocks.add(requestBlockWithTxs(nextBlockHeightToRequest++));
+                }
+
                 long startTs = System.currentTimeMillis();
-                Block btcdBlock = rpcService.requestBlock(blockHeight);
+                Tuple2<Block, List<Tx>> blockWithTxs = getResult(requestedBlocks.poll());
+                log.debug("Waiting for the requested block took {} ms", System.currentTimeMillis() - startTs);
+                Block btcdBlock = blockWithTxs.first;
                 List<Tx> bsqTxsInBlock = findBsqTxsInBlock(btcdBlock,
+                        blockWithTxs.second,
                         genesisBlockHeight,
                         genesisTxId);
                 final BsqBlockVo bsqBlockVo = new BsqBlockVo(btcdBlock.getHeight(),
@@ -125,13 +154,16 @@ public class BsqParser {
             log.error(t.toString());
             t.printStackTrace();
             throw new BsqBlockchainException(t);
+        } finally {
+            // In case of an error we don't need the requested blocks anymore
+            requestedBlocks.forEach(future -> future.cancel(false));
         }
     }
 
     private List<Tx> findBsqTxsInBlock(Block btcdBlock,
+                                       List<Tx> txsInBlock,
                                        int genesisBlockHeight,
-                                       String genesisTxId)
-            throws BsqBlockchainException {
+                                       String genesisTxId) {
 
         int blockHeight = btcdBlock.getHeight();
         log.debug("Parse block at height={} ", blockHeight);
@@ -141,17 +173,10 @@ public class BsqParser {
         // We use a list as we want to maintain sorting of tx intra-block dependency
         List<Tx> bsqTxsInBlock = new ArrayList<>();
         // We add all transactions to the block
-        long startTs = System.currentTimeMillis();
-        for (String txId : btcdBlock.getTx()) {
-            if (requestFee)
-                rpcService.requestFees(txId, blockHeight, feesByBlock);
-
-            final Tx tx = rpcService.requestTx(txId, blockHeight);
+        for (Tx tx : txsInBlock) {
             txList.add(tx);
             checkForGenesisTx(genesisBlockHeight, genesisTxId, blockHeight, bsqTxsInBlock, tx);
         }
-        log.info("Requesting {} transactions took {} ms",
-                btcdBlock.getTx().size(), System.currentTimeMillis() - startTs);
         // Worst case is that all txs in a block are depending on another, so only one get resolved at each iteration.
         // Min tx size is 189 bytes (normally about 240 bytes), 1 MB can contain max. about 5300 txs (usually 2000).
         // Realistically we don't expect more then a few recursive calls.
@@ -170,7 +195,12 @@ public class BsqParser {
 
     BsqBlock parseBlock(Block btcdBlock, int genesisBlockHeight, String genesisTxId)
             throws BsqBlockchainException, BlockNotConnectingException {
+        long startTs = System.currentTimeMillis();
+        List<Tx> txsInBlock = getResult(requestTxs(btcdBlock)).second;
+        log.info("Requesting {} transactions took {} ms",
+                btcdBlock.getTx().size(), System.currentTimeMillis() - startTs);
         List<Tx> bsqTxsInBlock = findBsqTxsInBlock(btcdBlock,
+                txsInBlock,
                 genesisBlockHeight,
                 genesisTxId);
         final BsqBlockVo bsqBlockVo = new BsqBlockVo(btcdBlock.getHeight(),
@@ -183,6 +213,42 @@ public class BsqParser {
     }
 
 
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // RPC requests
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private ListenableFuture<Tuple2<Block, List<Tx>>> requestBlockWithTxs(int blockHeight) {
+        ListenableFuture<Block> blockFuture = rpcRequestExecutor.submit(() -> rpcService.requestBlock(blockHeight));
+        return Futures.transformAsync(blockFuture, this::requestTxs);
+    }
+
+    // The txs get requested in parallel, the list keeps the order of the txs in the block
+    private ListenableFuture<Tuple2<Block, List<Tx>>> requestTxs(Block btcdBlock) {
+        int blockHeight = btcdBlock.getHeight();
+        ListenableFuture<List<Tx>> txsFuture = Futures.allAsList(btcdBlock.getTx().stream()
+                .map(txId -> rpcRequestExecutor.submit(() -> {
+                    if (requestFee)
+                        rpcService.requestFees(txId, blockHeight, feesByBlock);
+                    return rpcService.requestTx(txId, blockHeight);
+                }))
+                .collect(Collectors.toList()));
+        return Futures.transformAsync(txsFuture, txs -> Futures.immediateFuture(new Tuple2<>(btcdBlock, txs)));
+    }
+
+    private static <T> T getResult(Future<T> future) throws BsqBlockchainException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BsqBlockchainException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BsqBlockchainException)
+                throw (BsqBlockchainException) e.getCause();
+            throw new BsqBlockchainException(e.getCause());
+        }
+    }
+
+
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Generic 
     ///////////////////////////////////////////////////////////////////////////////////////////
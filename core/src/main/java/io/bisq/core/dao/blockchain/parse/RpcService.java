@@ -55,6 +55,9 @@ import java.util.stream.Collectors;
 public class RpcService {
     private static final Logger log = LoggerFactory.getLogger(RpcService.class);
 
+    // Bitcoin Core handles 4 RPC requests in parallel by default (rpcthreads)
+    static final int MAX_PARALLEL_REQUESTS = 4;
+
     private final String rpcUser;
     private final String rpcPassword;
     private final String rpcPort;
@@ -87,6 +90,9 @@ public class RpcService {
         try {
             long startTs = System.currentTimeMillis();
             PoolingHttpClientConnectionManager cm = new PoolingHttpClientConnectionManager();
+            // The default of 2 connections per route would limit the parallel requests of the BsqParser
+            cm.setDefaultMaxPerRoute(MAX_PARALLEL_REQUESTS);
+            cm.setMaxTotal(MAX_PARALLEL_REQUESTS);
             CloseableHttpClient httpProvider = HttpClients.custom().setConnectionManager(cm).build();
             Properties nodeConfig = new Properties();
             nodeConfig.setProperty("node.bitcoind.rpc.protocol", "http");
@@ -98,11 +98,7 @@ public class CompensationRequestManager implements PersistedDataHost {
             });
 
             // At startup the P2PDataStorage inits earlier, otherwise we ge the listener called.
-            p2PService.getP2PDataStorage().getMap().values().forEach(e -> {
-                final StoragePayload storagePayload = e.getStoragePayload();
-                if (storagePayload instanceof CompensationRequestPayload)
-                    addToList((CompensationRequestPayload) storagePayload, false);
-            });
+            p2PService.getPayloads(CompensationRequestPayload.class).forEach(payload -> addToList(payload, false));
         }
     }
 
@@ -330,6 +330,8 @@ public abstract class Trade implements Tradable, Model {
     transient final private ObjectProperty<DisputeState> disputeStateProperty = new SimpleObjectProperty<>(disputeState);
     transient final private ObjectProperty<TradePeriodState> tradePeriodStateProperty = new SimpleObjectProperty<>(tradePeriodState);
     transient final private StringProperty errorMessageProperty = new SimpleStringProperty(errorMessage);
+    transient final private ObjectProperty<NodeAddress> tradingPeerNodeAddressProperty = new SimpleObjectProperty<>();
+    transient final private ObjectProperty<NodeAddress> arbitratorNodeAddressProperty = new SimpleObjectProperty<>();
 
     //  Mutable
     transient protected TradeProtocol tradeProtocol;
@@ -388,6 +390,7 @@ public abstract class Trade implements Tradable, Model {
         this(offer, txFee, takerFee, isCurrencyForTakerFeeBtc, storage, btcWalletService);
         this.tradePrice = tradePrice;
         this.tradingPeerNodeAddress = tradingPeerNodeAddress;
+        tradingPeerNodeAddressProperty.set(tradingPeerNodeAddress);
 
         setTradeAmount(tradeAmount);
     }
@@ -623,8 +626,10 @@ public abstract class Trade implements Tradable, Model {
     public void setTradingPeerNodeAddress(NodeAddress tradingPeerNodeAddress) {
         if (tradingPeerNodeAddress == null)
             log.error("tradingPeerAddress=null");
-        else
+        else {
             this.tradingPeerNodeAddress = tradingPeerNodeAddress;
+            tradingPeerNodeAddressProperty.set(tradingPeerNodeAddress);
+        }
     }
 
     @SuppressWarnings("NullableProblems")
@@ -650,6 +655,7 @@ public abstract class Trade implements Tradable, Model {
     @SuppressWarnings("NullableProblems")
     public void setArbitratorNodeAddress(NodeAddress arbitratorNodeAddress) {
         this.arbitratorNodeAddress = arbitratorNodeAddress;
+        arbitratorNodeAddressProperty.set(arbitratorNodeAddress);
         if (processModel.getUser() != null) {
             Arbitrator arbitrator = processModel.getUser().getAcceptedArbitratorByAddress(arbitratorNodeAddress);
             checkNotNull(arbitrator, "arbitrator must not be null");
@@ -772,6 +778,14 @@ public abstract class Trade implements Tradable, Model {
         return errorMessageProperty;
     }
 
+    public ReadOnlyObjectProperty<NodeAddress> tradingPeerNodeAddressProperty() {
+        return tradingPeerNodeAddressProperty;
+    }
+
+    public ReadOnlyObjectProperty<NodeAddress> arbitratorNodeAddressProperty() {
+        return arbitratorNodeAddressProperty;
+    }
+
     @Override
     public Date getDate() {
         return getTakeOfferDate();
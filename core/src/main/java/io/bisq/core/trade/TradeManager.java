@@ -27,6 +27,7 @@ import io.bisq.common.handlers.ResultHandler;
 import io.bisq.common.proto.network.NetworkEnvelope;
 import io.bisq.common.proto.persistable.PersistedDataHost;
 import io.bisq.common.proto.persistable.PersistenceProtoResolver;
+import io.bisq.common.storage.PersistenceScheduler;
 import io.bisq.common.storage.Storage;
 import io.bisq.core.btc.AddressEntry;
 import io.bisq.core.btc.AddressEntryException;
@@ -129,6 +130,7 @@ public class TradeManager implements PersistedDataHost {
         this.tradeStatisticsManager = tradeStatisticsManager;
 
         tradableListStorage = new Storage<>(storageDir, persistenceProtoResolver);
+        tradableListStorage.setPriority(PersistenceScheduler.Priority.HIGH);
 
         p2PService.addDecryptedDirectMessageListener(new DecryptedDirectMessageListener() {
             @Override
@@ -222,6 +224,8 @@ public class TradeManager implements PersistedDataHost {
 
         cleanUpAddressEntries();
 
+        updateWarmPeers();
+
         // We start later to have better connectivity to the network
         UserThread.runAfter(() -> publishTradeStatistics(tradesForStatistics),
                 90, TimeUnit.SECONDS);
@@ -311,6 +315,7 @@ public class TradeManager implements PersistedDataHost {
 
             initTrade(trade, trade.getProcessModel().isUseSavingsWallet(), trade.getProcessModel().getFundsNeededForTradeAsLong());
             tradableList.add(trade);
+            updateWarmPeers();
             ((MakerTrade) trade).handleTakeOfferRequest(message, peerNodeAddress);
         } else {
             // TODO respond
@@ -332,6 +337,10 @@ public class TradeManager implements PersistedDataHost {
                 keyRing,
                 useSavingsWallet,
                 fundsNeededForTrade);
+
+        // The addresses of the trading peer and the arbitrator get set by the trade protocol
+        trade.tradingPeerNodeAddressProperty().addListener((observable, oldValue, newValue) -> updateWarmPeers());
+        trade.arbitratorNodeAddressProperty().addListener((observable, oldValue, newValue) -> updateWarmPeers());
     }
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -427,6 +436,7 @@ public class TradeManager implements PersistedDataHost {
         initTrade(trade, useSavingsWallet, fundsNeededForTrade);
 
         tradableList.add(trade);
+        updateWarmPeers();
         ((TakerTrade) trade).takeAvailableOffer();
         tradeResultHandler.handleResult(trade);
     }
@@ -501,6 +511,20 @@ public class TradeManager implements PersistedDataHost {
 
     private void removeTrade(Trade trade) {
         tradableList.remove(trade);
+        updateWarmPeers();
+    }
+
+    // We keep the connections to the trading peers and arbitrators of our pending trades open, so the next trade
+    // message does not need to wait until Tor has created a new circuit
+    private void updateWarmPeers() {
+        Set<NodeAddress> nodeAddresses = new HashSet<>();
+        tradableList.forEach(trade -> {
+            if (trade.getTradingPeerNodeAddress() != null)
+                nodeAddresses.add(trade.getTradingPeerNodeAddress());
+            if (trade.getArbitratorNodeAddress() != null)
+                nodeAddresses.add(trade.getArbitratorNodeAddress());
+        });
+        p2PService.setWarmPeers(nodeAddresses);
     }
 
 
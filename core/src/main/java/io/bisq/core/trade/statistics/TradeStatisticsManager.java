@@ -9,6 +9,7 @@ import io.bisq.common.locale.Res;
 import io.bisq.common.proto.persistable.PersistedDataHost;
 import io.bisq.common.storage.FileUtil;
 import io.bisq.common.storage.JsonFileManager;
+import io.bisq.common.storage.PersistenceScheduler;
 import io.bisq.common.storage.Storage;
 import io.bisq.common.util.Utilities;
 import io.bisq.core.app.AppOptionKeys;
@@ -48,6 +49,7 @@ public class TradeStatisticsManager implements PersistedDataHost {
         jsonFileManager = new JsonFileManager(storageDir);
 
         this.statisticsStorage.setNumMaxBackupFiles(1);
+        this.statisticsStorage.setPriority(PersistenceScheduler.Priority.LOW);
 
         // TODO can be removed later. Just to clean up the old PersistedEntryMap and TradeStatisticsList which did 
         // not support multi base currencies 
@@ -121,13 +123,7 @@ public class TradeStatisticsManager implements PersistedDataHost {
         });
 
         // At startup the P2PDataStorage inits earlier, otherwise we ge the listener called.
-        final List<ProtectedStorageEntry> list = new ArrayList<>(p2PService.getP2PDataStorage().getMap().values());
-        list.forEach(e -> {
-            final StoragePayload storagePayload = e.getStoragePayload();
-            if (storagePayload instanceof TradeStatistics)
-                add((TradeStatistics) storagePayload, false);
-
-        });
+        p2PService.getPayloads(TradeStatistics.class).forEach(tradeStatistics -> add(tradeStatistics, false));
 
         statisticsStorage.queueUpForSave(new TradeStatisticsList(new ArrayList<>(tradeStatisticsSet)), 2000);
         dump();
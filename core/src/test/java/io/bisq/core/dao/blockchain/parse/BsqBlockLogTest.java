@@ -0,0 +1,86 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bisq.core.dao.blockchain.parse;
+
+import io.bisq.core.dao.blockchain.vo.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BsqBlockLogTest {
+    private BsqBlockLog bsqBlockLog;
+
+    @Before
+    public void setup() throws IOException {
+        bsqBlockLog = new BsqBlockLog(Files.createTempDirectory("bsq_block_log_test").toFile());
+    }
+
+    @Test
+    public void testAppendAndGetBlocksFrom() throws IOException {
+        bsqBlockLog.rewrite(Arrays.asList(getBsqBlock(10), getBsqBlock(11)));
+        BsqBlock bsqBlock = getBsqBlock(12);
+        bsqBlock.getTxs().get(0).setTxType(TxType.TRANSFER_BSQ);
+        bsqBlockLog.append(bsqBlock);
+
+        List<BsqBlock> bsqBlocks = bsqBlockLog.getBlocksFrom(11);
+        assertEquals(2, bsqBlocks.size());
+        assertEquals(11, bsqBlocks.get(0).getHeight());
+        assertEquals(12, bsqBlocks.get(1).getHeight());
+        // The log contains the reset blocks but must not reset the block of the chain state
+        assertEquals(TxType.UNDEFINED_TX_TYPE, bsqBlocks.get(1).getTxs().get(0).getTxType());
+        assertEquals(TxType.TRANSFER_BSQ, bsqBlock.getTxs().get(0).getTxType());
+
+        assertEquals(3, bsqBlockLog.getBlocksFrom(0).size());
+        assertTrue(bsqBlockLog.getBlocksFrom(13).isEmpty());
+    }
+
+    @Test
+    public void testRewrite() throws IOException {
+        bsqBlockLog.rewrite(Arrays.asList(getBsqBlock(10), getBsqBlock(11), getBsqBlock(12)));
+        bsqBlockLog.rewrite(Collections.singletonList(getBsqBlock(10)));
+        assertEquals(1, bsqBlockLog.getBlocksFrom(10).size());
+        assertTrue(bsqBlockLog.getBlocksFrom(11).isEmpty());
+    }
+
+    @Test
+    public void testNotConnectingBlockClosesLog() throws IOException {
+        bsqBlockLog.rewrite(Collections.singletonList(getBsqBlock(10)));
+        assertTrue(bsqBlockLog.isOpen());
+        bsqBlockLog.append(getBsqBlock(12));
+        assertFalse(bsqBlockLog.isOpen());
+        assertTrue(bsqBlockLog.getBlocksFrom(10).isEmpty());
+    }
+
+    private static BsqBlock getBsqBlock(int height) {
+        String txId = "tx" + height;
+        Tx tx = new Tx(new TxVo(txId, height, "hash" + height, 0),
+                Collections.singletonList(new TxInput(new TxInputVo("tx" + (height - 1), 0))),
+                Collections.singletonList(new TxOutput(new TxOutputVo(0, 1000, txId, null, "address", null, height))));
+        List<Tx> txs = new ArrayList<>();
+        txs.add(tx);
+        return new BsqBlock(new BsqBlockVo(height, "hash" + height, "hash" + (height - 1)), txs);
+    }
+}
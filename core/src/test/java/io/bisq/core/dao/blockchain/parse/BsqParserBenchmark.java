@@ -0,0 +1,140 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bisq.core.dao.blockchain.parse;
+
+import io.bisq.core.dao.blockchain.vo.*;
+import lombok.extern.slf4j.Slf4j;
+import mockit.Mocked;
+import mockit.integration.junit4.JMockit;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static io.bisq.common.util.Benchmark.time;
+
+/**
+ * Measures the blocks/sec of BsqParser.parseBsqBlocks, the path of a node getting the BSQ blocks from a full node,
+ * on a synthetic chain with a large set of unspent BSQ outputs. Each block contains BSQ txs spending a random
+ * unspent output and BTC txs with inputs unknown to the BsqChainState, so the parser looks up the unspent outputs
+ * for each input as it does with real blocks. No RPC is involved, see RpcFetchBenchmark for that.
+ * <p/>
+ * The chain has 10k blocks and not 100k: the BsqChainState clones its whole state for the snapshot every 100 blocks
+ * (SNAPSHOT_GRID), so the total parse time grows quadratically with the chain length. With 100k blocks of 55 txs the
+ * run would take far longer and need several GB of heap, and the clones instead of the UTXO lookups would dominate
+ * the result. The 20k genesis outputs still give a UTXO set large enough to show a linear lookup.
+ */
+@Slf4j
+@RunWith(JMockit.class)
+@Ignore("Benchmark")
+public class BsqParserBenchmark {
+    private static final int NUM_BLOCKS = 10_000;
+    private static final int NUM_GENESIS_OUTPUTS = 20_000;
+    private static final int NUM_BSQ_TXS_PER_BLOCK = 5;
+    private static final int NUM_BTC_TXS_PER_BLOCK = 50;
+    private static final int NUM_BTC_INPUTS = 3;
+    private static final long GENESIS_OUTPUT_VALUE = 1_000_000;
+
+    @Mocked
+    OpReturnVerification opReturnVerification;
+    @Mocked
+    IssuanceVerification issuanceVerification;
+
+    private BsqChainState bsqChainState;
+    private BsqParser bsqParser;
+    private final List<BsqBlock> bsqBlocks = new ArrayList<>();
+
+    @Before
+    public void setup() throws IOException {
+        File storageDir = Files.createTempDirectory("bsq_parser_benchmark").toFile();
+        bsqChainState = new BsqChainState(null, storageDir, false);
+        // Initializes the storage
+        bsqChainState.applySnapshot();
+        bsqParser = new BsqParser(null, bsqChainState, opReturnVerification, issuanceVerification);
+
+        Random random = new Random(1);
+        int height = bsqChainState.getGenesisBlockHeight();
+        String genesisTxId = bsqChainState.getGenesisTxId();
+        List<TxOutputVo> unspentTxOutputVos = new ArrayList<>();
+
+        List<TxOutput> genesisOutputs = new ArrayList<>();
+        for (int i = 0; i < NUM_GENESIS_OUTPUTS; i++) {
+            TxOutputVo txOutputVo = getTxOutputVo(i, GENESIS_OUTPUT_VALUE, genesisTxId, height);
+            genesisOutputs.add(new TxOutput(txOutputVo));
+            unspentTxOutputVos.add(txOutputVo);
+        }
+        Tx genesisTx = new Tx(new TxVo(genesisTxId, height, "block_" + height, 0), new ArrayList<>(), genesisOutputs);
+        bsqBlocks.add(new BsqBlock(new BsqBlockVo(height, "block_" + height, "block_" + (height - 1)),
+                Collections.singletonList(genesisTx)));
+
+        for (int i = 1; i < NUM_BLOCKS; i++) {
+            height++;
+            String blockHash = "block_" + height;
+            List<Tx> txs = new ArrayList<>();
+            for (int j = 0; j < NUM_BSQ_TXS_PER_BLOCK; j++) {
+                // We spend a random unspent output into two outputs which use up the whole input value
+                TxOutputVo spentTxOutputVo = unspentTxOutputVos.remove(random.nextInt(unspentTxOutputVos.size()));
+                String txId = "bsq_" + height + "_" + j;
+                List<TxInput> inputs = Collections.singletonList(new TxInput(new TxInputVo(spentTxOutputVo.getTxId(),
+                        spentTxOutputVo.getIndex())));
+                long value = spentTxOutputVo.getValue();
+                TxOutputVo txOutputVo1 = getTxOutputVo(0, value / 2, txId, height);
+                TxOutputVo txOutputVo2 = getTxOutputVo(1, value - value / 2, txId, height);
+                List<TxOutput> outputs = new ArrayList<>();
+                outputs.add(new TxOutput(txOutputVo1));
+                outputs.add(new TxOutput(txOutputVo2));
+                unspentTxOutputVos.add(txOutputVo1);
+                unspentTxOutputVos.add(txOutputVo2);
+                txs.add(new Tx(new TxVo(txId, height, blockHash, 0), inputs, outputs));
+            }
+            for (int j = 0; j < NUM_BTC_TXS_PER_BLOCK; j++) {
+                String txId = "btc_" + height + "_" + j;
+                List<TxInput> inputs = new ArrayList<>();
+                for (int k = 0; k < NUM_BTC_INPUTS; k++)
+                    inputs.add(new TxInput(new TxInputVo("unknown_" + random.nextInt(), k)));
+                txs.add(new Tx(new TxVo(txId, height, blockHash, 0), inputs,
+                        Collections.singletonList(new TxOutput(getTxOutputVo(0, 10_000, txId, height)))));
+            }
+            bsqBlocks.add(new BsqBlock(new BsqBlockVo(height, blockHash, "block_" + (height - 1)), txs));
+        }
+    }
+
+    @Test
+    public void testParseBsqBlocks() throws Exception {
+        time("Parse blocks", NUM_BLOCKS, () -> bsqParser.parseBsqBlocks(bsqBlocks,
+                bsqChainState.getGenesisBlockHeight(),
+                bsqChainState.getGenesisTxId(),
+                bsqBlock -> {
+                }));
+        log.info("{} inputs per block; txMap.size={}",
+                NUM_BSQ_TXS_PER_BLOCK + NUM_BTC_TXS_PER_BLOCK * NUM_BTC_INPUTS,
+                bsqChainState.getTxMap().size());
+    }
+
+    private static TxOutputVo getTxOutputVo(int index, long value, String txId, int blockHeight) {
+        return new TxOutputVo(index, value, txId, null, "address_" + txId + "_" + index, null, blockHeight);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bisq.core.dao.blockchain.parse;
+
+import com.neemre.btcdcli4j.core.domain.Block;
+import io.bisq.core.dao.blockchain.vo.*;
+import lombok.extern.slf4j.Slf4j;
+import mockit.Mocked;
+import mockit.integration.junit4.JMockit;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.bisq.common.util.Benchmark.time;
+
+/**
+ * Measures the RPC requests/sec of BsqParser.parseBlocks, the path of a full node parsing the blocks from Bitcoin
+ * Core, against a fake Bitcoin Core which answers each block and tx request after a fixed latency. The parsing is
+ * bound by the latency, so the log compares the duration with what serial requests would take at least.
+ */
+@Slf4j
+@RunWith(JMockit.class)
+@Ignore("Benchmark")
+public class RpcFetchBenchmark {
+    private static final int NUM_BLOCKS = 50;
+    private static final int NUM_TXS_PER_BLOCK = 200;
+    private static final long RPC_LATENCY_MS = 2;
+
+    @Mocked
+    OpReturnVerification opReturnVerification;
+    @Mocked
+    IssuanceVerification issuanceVerification;
+
+    private BsqChainState bsqChainState;
+    private FakeRpcService rpcService;
+    private BsqParser bsqParser;
+
+    @Before
+    public void setup() throws IOException {
+        File storageDir = Files.createTempDirectory("rpc_fetch_benchmark").toFile();
+        bsqChainState = new BsqChainState(null, storageDir, true);
+        bsqChainState.applySnapshot();
+        rpcService = new FakeRpcService(bsqChainState.getGenesisTxId());
+        bsqParser = new BsqParser(rpcService, bsqChainState, opReturnVerification, issuanceVerification);
+    }
+
+    @Test
+    public void testParseBlocks() throws Exception {
+        int genesisBlockHeight = bsqChainState.getGenesisBlockHeight();
+        long durationMs = time("Parse blocks", NUM_BLOCKS, () -> bsqParser.parseBlocks(genesisBlockHeight,
+                genesisBlockHeight + NUM_BLOCKS - 1,
+                genesisBlockHeight,
+                bsqChainState.getGenesisTxId(),
+                bsqBlock -> {
+                }));
+        int numRequests = rpcService.numRequests.get();
+        log.info("{} RPC requests ({} requests/sec). Serial requests would take at least {} ms",
+                numRequests, numRequests * 1000L / durationMs, numRequests * RPC_LATENCY_MS);
+    }
+
+    // Serves blocks with NUM_TXS_PER_BLOCK txs, the first block contains the genesis tx
+    private static class FakeRpcService extends RpcService {
+        private final String genesisTxId;
+        private final AtomicInteger numRequests = new AtomicInteger();
+        private int genesisBlockHeight = -1;
+
+        FakeRpcService(String genesisTxId) {
+            super("user", "password", "8332", "5158", false);
+            this.genesisTxId = genesisTxId;
+        }
+
+        @Override
+        Block requestBlock(int blockHeight) {
+            simulateLatency();
+            synchronized (this) {
+                if (genesisBlockHeight == -1)
+                    genesisBlockHeight = blockHeight;
+            }
+            List<String> txIds = new ArrayList<>();
+            txIds.add(blockHeight == genesisBlockHeight ? genesisTxId : "coinbase_" + blockHeight);
+            for (int i = 1; i < NUM_TXS_PER_BLOCK; i++) {
+                txIds.add("tx_" + blockHeight + "_" + i);
+            }
+            Block block = new Block();
+            block.setHeight(blockHeight);
+            block.setHash("block_" + blockHeight);
+            block.setPreviousBlockHash("block_" + (blockHeight - 1));
+            block.setTx(txIds);
+            return block;
+        }
+
+        @Override
+        Tx requestTx(String txId, int blockHeight) {
+            simulateLatency();
+            List<TxInput> inputs = new ArrayList<>();
+            if (!txId.equals(genesisTxId))
+                inputs.add(new TxInput(new TxInputVo("unknown_" + txId, 0)));
+            List<TxOutput> outputs = Collections.singletonList(new TxOutput(new TxOutputVo(0, 10_000, txId, null,
+                    "address_" + txId, null, blockHeight)));
+            return new Tx(new TxVo(txId, blockHeight, "block_" + blockHeight, 0), inputs, outputs);
+        }
+
+        private void simulateLatency() {
+            numRequests.incrementAndGet();
+            try {
+                Thread.sleep(RPC_LATENCY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
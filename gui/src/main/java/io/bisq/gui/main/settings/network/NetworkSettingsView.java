@@ -90,6 +90,7 @@ public class NetworkSettingsView extends ActivatableViewAndModel<GridPane, Activ
     private Subscription bitcoinPeersSubscription;
     private Subscription nodeAddressSubscription;
     private ChangeListener<Boolean> btcNodesFocusListener;
+    private Clock.Listener clockListener;
     private String btcNodesPreFocusText;
 
     @Inject
@@ -188,11 +189,22 @@ public class NetworkSettingsView extends ActivatableViewAndModel<GridPane, Activ
                         Res.get("settings.net.notKnownYet") :
                         p2PService.getAddress().getFullAddress()));
         numP2PPeersSubscription = EasyBind.subscribe(p2PService.getNumConnectedPeers(), numPeers -> updateP2PTable());
-        totalTrafficTextField.textProperty().bind(EasyBind.combine(Statistic.totalSentBytesProperty(),
-                Statistic.totalReceivedBytesProperty(),
-                (sent, received) -> Res.get("settings.net.sentReceived",
-                        formatter.formatBytes((long) sent),
-                        formatter.formatBytes((long) received))));
+        clockListener = new Clock.Listener() {
+            @Override
+            public void onSecondTick() {
+                updateTotalTraffic();
+            }
+
+            @Override
+            public void onMinuteTick() {
+            }
+
+            @Override
+            public void onMissedSecondTick(long missed) {
+            }
+        };
+        clock.addListener(clockListener);
+        updateTotalTraffic();
 
         sortedList.comparatorProperty().bind(tableView.comparatorProperty());
         tableView.setItems(sortedList);
@@ -235,13 +247,20 @@ public class NetworkSettingsView extends ActivatableViewAndModel<GridPane, Activ
         if (numP2PPeersSubscription != null)
             numP2PPeersSubscription.unsubscribe();
 
-        totalTrafficTextField.textProperty().unbind();
+        clock.removeListener(clockListener);
 
         sortedList.comparatorProperty().unbind();
         tableView.getItems().forEach(P2pNetworkListItem::cleanup);
         btcNodes.focusedProperty().removeListener(btcNodesFocusListener);
     }
 
+    // The statistic is updated by the connection threads, so we sample it
+    private void updateTotalTraffic() {
+        totalTrafficTextField.setText(Res.get("settings.net.sentReceived",
+                formatter.formatBytes(Statistic.getTotalSentBytes()),
+                formatter.formatBytes(Statistic.getTotalReceivedBytes())));
+    }
+
     private void updateP2PTable() {
         tableView.getItems().forEach(P2pNetworkListItem::cleanup);
         networkListItems.clear();
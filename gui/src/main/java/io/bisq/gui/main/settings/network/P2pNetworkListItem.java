@@ -36,7 +36,7 @@ public class P2pNetworkListItem {
 
     private final Statistic statistic;
     private final Connection connection;
-    private final Subscription sentBytesSubscription, receivedBytesSubscription, onionAddressSubscription, roundTripTimeSubscription;
+    private final Subscription onionAddressSubscription, roundTripTimeSubscription;
     private final Clock clock;
     private final BSFormatter formatter;
 
@@ -55,10 +55,6 @@ public class P2pNetworkListItem {
         this.formatter = formatter;
         this.statistic = connection.getStatistic();
 
-        sentBytesSubscription = EasyBind.subscribe(statistic.sentBytesProperty(),
-                e -> sentBytes.set(formatter.formatBytes((long) e)));
-        receivedBytesSubscription = EasyBind.subscribe(statistic.receivedBytesProperty(),
-                e -> receivedBytes.set(formatter.formatBytes((long) e)));
         onionAddressSubscription = EasyBind.subscribe(connection.peersNodeAddressProperty(),
                 nodeAddress -> onionAddress.set(nodeAddress != null ? nodeAddress.getFullAddress() : Res.get("settings.net.notKnownYet")));
         roundTripTimeSubscription = EasyBind.subscribe(statistic.roundTripTimeProperty(),
@@ -68,6 +64,7 @@ public class P2pNetworkListItem {
             @Override
             public void onSecondTick() {
                 onLastActivityChanged(statistic.getLastActivityTimestamp());
+                updateTraffic();
                 updatePeerType();
                 updateConnectionType();
             }
@@ -82,6 +79,7 @@ public class P2pNetworkListItem {
         };
         clock.addListener(listener);
         onLastActivityChanged(statistic.getLastActivityTimestamp());
+        updateTraffic();
         updatePeerType();
         updateConnectionType();
     }
@@ -93,9 +91,13 @@ public class P2pNetworkListItem {
         lastActivity.set(DurationFormatUtils.formatDuration(Math.abs(System.currentTimeMillis() - timeStamp), "mm:ss.SSS"));
     }
 
+    // The statistic is updated by the connection threads, so we sample it
+    private void updateTraffic() {
+        sentBytes.set(formatter.formatBytes(statistic.getSentBytes()));
+        receivedBytes.set(formatter.formatBytes(statistic.getReceivedBytes()));
+    }
+
     public void cleanup() {
-        sentBytesSubscription.unsubscribe();
-        receivedBytesSubscription.unsubscribe();
         onionAddressSubscription.unsubscribe();
         roundTripTimeSubscription.unsubscribe();
         clock.removeListener(listener);
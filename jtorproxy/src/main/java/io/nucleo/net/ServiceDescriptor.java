@@ -2,6 +2,7 @@ package io.nucleo.net;
 
 import java.io.IOException;
 import java.net.ServerSocket;
+import java.nio.channels.ServerSocketChannel;
 
 public abstract class ServiceDescriptor {
 
@@ -10,9 +11,15 @@ public abstract class ServiceDescriptor {
     protected final ServerSocket serverSocket;
 
     public ServiceDescriptor(String hostname, int servicePort) throws IOException {
+        this(hostname, servicePort, false);
+    }
+
+    // Sockets accepted by a channel based server socket can be used with a selector. We only use it if needed as
+    // the streams of a channel's socket don't allow to read and write at the same time from different threads.
+    public ServiceDescriptor(String hostname, int servicePort, boolean channelBased) throws IOException {
         this.hostname = hostname;
         this.servicePort = servicePort;
-        this.serverSocket = new ServerSocket();
+        this.serverSocket = channelBased ? ServerSocketChannel.open().socket() : new ServerSocket();
     }
 
     public String getHostname() {
@@ -9,6 +9,8 @@ public class NetworkOptionKeys {
     public static final String SEED_NODES_KEY = "seedNodes";
     public static final String MY_ADDRESS = "myAddress";
     public static final String BAN_LIST = "banList";
+    public static final String USE_NIO_TRANSPORT = "useNioTransport";
+    public static final String MESSAGE_TRACE_SAMPLE_RATE = "messageTraceSampleRate";
     //SOCKS_5_PROXY_BTC_ADDRESS used in network module so dont move it to BtcOptionKeys
     public static final String SOCKS_5_PROXY_BTC_ADDRESS = "socks5ProxyBtcAddress";
     public static final String SOCKS_5_PROXY_HTTP_ADDRESS = "socks5ProxyHttpAddress";
@@ -0,0 +1,46 @@
+package io.bisq.network.p2p;
+
+import io.bisq.common.app.Version;
+import io.bisq.common.proto.network.NetworkEnvelope;
+import io.bisq.generated.protobuffer.PB;
+import lombok.EqualsAndHashCode;
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Several messages to the same peer sent as one message. Only sent to peers supporting the BUNDLE_OF_ENVELOPES
+ * capability. The receiving Connection unpacks it and handles the envelopes as if they have been sent one by one,
+ * so we don't need a fromProto and it never reaches the NetworkProtoResolver.
+ */
+@EqualsAndHashCode(callSuper = true)
+@Value
+public final class BundleOfEnvelopes extends NetworkEnvelope {
+    private final List<NetworkEnvelope> envelopes;
+
+    public BundleOfEnvelopes(List<? extends NetworkEnvelope> envelopes) {
+        this(envelopes, Version.getP2PMessageVersion());
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // PROTO BUFFER
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private BundleOfEnvelopes(List<? extends NetworkEnvelope> envelopes, int messageVersion) {
+        super(messageVersion);
+        this.envelopes = new ArrayList<>(envelopes);
+    }
+
+    @Override
+    public PB.NetworkEnvelope toProtoNetworkEnvelope() {
+        return getNetworkEnvelopeBuilder()
+                .setBundleOfEnvelopes(PB.BundleOfEnvelopes.newBuilder()
+                        .addAllEnvelopes(envelopes.stream()
+                                .map(NetworkEnvelope::toProtoNetworkEnvelope)
+                                .collect(Collectors.toList())))
+                .build();
+    }
+}
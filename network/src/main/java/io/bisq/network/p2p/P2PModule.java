@@ -22,6 +22,7 @@ import com.google.inject.name.Names;
 import io.bisq.common.app.AppModule;
 import io.bisq.network.NetworkOptionKeys;
 import io.bisq.network.Socks5ProxyProvider;
+import io.bisq.network.p2p.network.MessageTrace;
 import io.bisq.network.p2p.seed.SeedNodesRepository;
 import org.springframework.core.env.Environment;
 
@@ -45,6 +46,12 @@ public class P2PModule extends AppModule {
         Boolean useLocalhostForP2P = environment.getProperty(NetworkOptionKeys.USE_LOCALHOST_FOR_P2P, boolean.class, false);
         bind(boolean.class).annotatedWith(Names.named(NetworkOptionKeys.USE_LOCALHOST_FOR_P2P)).toInstance(useLocalhostForP2P);
 
+        Boolean useNioTransport = environment.getProperty(NetworkOptionKeys.USE_NIO_TRANSPORT, boolean.class, false);
+        bind(boolean.class).annotatedWith(Names.named(NetworkOptionKeys.USE_NIO_TRANSPORT)).toInstance(useNioTransport);
+
+        Integer messageTraceSampleRate = environment.getProperty(NetworkOptionKeys.MESSAGE_TRACE_SAMPLE_RATE, int.class, MessageTrace.DEFAULT_SAMPLE_RATE);
+        bind(int.class).annotatedWith(Names.named(NetworkOptionKeys.MESSAGE_TRACE_SAMPLE_RATE)).toInstance(messageTraceSampleRate);
+
         File torDir = new File(environment.getRequiredProperty(NetworkOptionKeys.TOR_DIR));
         bind(File.class).annotatedWith(named(NetworkOptionKeys.TOR_DIR)).toInstance(torDir);
 
@@ -2,8 +2,7 @@ package io.bisq.network.p2p;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.FutureCallback;
-import com.google.common.util.concurrent.Futures;
-import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.*;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import io.bisq.common.Clock;
@@ -12,6 +11,7 @@ import io.bisq.common.app.Log;
 import io.bisq.common.crypto.CryptoException;
 import io.bisq.common.crypto.KeyRing;
 import io.bisq.common.crypto.PubKeyRing;
+import io.bisq.common.crypto.Sig;
 import io.bisq.common.proto.network.NetworkEnvelope;
 import io.bisq.common.proto.network.NetworkProtoResolver;
 import io.bisq.common.proto.persistable.PersistedDataHost;
@@ -28,6 +28,7 @@ import io.bisq.network.p2p.peers.BanList;
 import io.bisq.network.p2p.peers.BroadcastHandler;
 import io.bisq.network.p2p.peers.Broadcaster;
 import io.bisq.network.p2p.peers.PeerManager;
+import io.bisq.network.p2p.peers.WarmConnectionManager;
 import io.bisq.network.p2p.peers.getdata.RequestDataManager;
 import io.bisq.network.p2p.peers.keepalive.KeepAliveManager;
 import io.bisq.network.p2p.peers.peerexchange.PeerExchangeManager;
@@ -56,7 +57,7 @@ import java.io.File;
 import java.nio.file.Paths;
 import java.security.PublicKey;
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -66,6 +67,7 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
         HashMapChangedListener, PersistedDataHost {
     private static final Logger log = LoggerFactory.getLogger(P2PService.class);
     public static final int MAX_CONNECTIONS_DEFAULT = 12;
+    private static final int NUM_MAILBOX_DECRYPTION_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
 
     private final SeedNodesRepository seedNodesRepository;
     private final int port;
@@ -84,6 +86,7 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
     private PeerManager peerManager;
     private RequestDataManager requestDataManager;
     private PeerExchangeManager peerExchangeManager;
+    private ListeningExecutorService mailboxDecryptionExecutor;
 
     @SuppressWarnings("FieldCanBeLocal")
     private MonadicBinding<Boolean> networkReadyBinding;
@@ -91,6 +94,8 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
     private final Set<DecryptedMailboxListener> decryptedMailboxListeners = new CopyOnWriteArraySet<>();
     private final Set<P2PServiceListener> p2pServiceListeners = new CopyOnWriteArraySet<>();
     private final Map<String, ProtectedMailboxStorageEntry> mailboxMap = new HashMap<>();
+    // Only accessed from the UserThread
+    private final Deque<PendingDecryption> pendingDecryptions = new ArrayDeque<>();
     private final Set<Runnable> shutDownResultHandlers = new CopyOnWriteArraySet<>();
     private final BooleanProperty hiddenServicePublished = new SimpleBooleanProperty();
     private final BooleanProperty preliminaryDataReceived = new SimpleBooleanProperty();
@@ -101,6 +106,7 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
     private Subscription networkReadySubscription;
     private boolean isBootstrapped;
     private KeepAliveManager keepAliveManager;
+    private WarmConnectionManager warmConnectionManager;
     private final Socks5ProxyProvider socks5ProxyProvider;
     @Getter
     private Set<NodeAddress> seedNodeAddresses;
@@ -123,6 +129,8 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
                       @Named(NetworkOptionKeys.SEED_NODES_KEY) String seedNodes,
                       @Named(NetworkOptionKeys.MY_ADDRESS) String myAddress,
                       @Named(NetworkOptionKeys.BAN_LIST) String banList,
+                      @Named(NetworkOptionKeys.USE_NIO_TRANSPORT) boolean useNioTransport,
+                      @Named(NetworkOptionKeys.MESSAGE_TRACE_SAMPLE_RATE) int messageTraceSampleRate,
                       Clock clock,
                       Socks5ProxyProvider socks5ProxyProvider,
                       @Nullable EncryptionService encryptionService,
@@ -147,6 +155,9 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
                 networkProtoResolver,
                 persistenceProtoResolver
         );
+
+        networkNode.setUseNioTransport(useNioTransport);
+        MessageTrace.getInstance().setSampleRate(messageTraceSampleRate);
     }
 
     @VisibleForTesting
@@ -214,11 +225,19 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
 
         peerManager = new PeerManager(networkNode, maxConnections, seedNodeAddresses, storageDir, clock, persistenceProtoResolver);
         broadcaster = new Broadcaster(networkNode, peerManager);
-        p2PDataStorage = new P2PDataStorage(broadcaster, networkNode, storageDir, persistenceProtoResolver);
+        p2PDataStorage = new P2PDataStorage(broadcaster, networkNode, storageDir, persistenceProtoResolver,
+                networkProtoResolver);
         p2PDataStorage.addHashMapChangedListener(this);
         requestDataManager = new RequestDataManager(networkNode, p2PDataStorage, peerManager, seedNodeAddresses, this);
         peerExchangeManager = new PeerExchangeManager(networkNode, peerManager, seedNodeAddresses);
         keepAliveManager = new KeepAliveManager(networkNode, peerManager);
+        warmConnectionManager = new WarmConnectionManager(networkNode, peerManager, peerExchangeManager);
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(NUM_MAILBOX_DECRYPTION_THREADS,
+                NUM_MAILBOX_DECRYPTION_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("MailboxDecryption-%d").setDaemon(true).build());
+        executor.allowCoreThreadTimeOut(true);
+        mailboxDecryptionExecutor = MoreExecutors.listeningDecorator(executor);
 
         // We need to have both the initial data delivered and the hidden service published
         networkReadyBinding = EasyBind.combine(hiddenServicePublished, preliminaryDataReceived,
@@ -256,23 +275,24 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
     public void onAllServicesInitialized() {
         Log.traceCall();
         if (networkNode.getNodeAddress() != null) {
-            p2PDataStorage.getMap().values().stream().forEach(protectedStorageEntry -> {
-                if (protectedStorageEntry instanceof ProtectedMailboxStorageEntry)
-                    processProtectedMailboxStorageEntry((ProtectedMailboxStorageEntry) protectedStorageEntry);
-            });
+            processMyProtectedMailboxStorageEntries();
         } else {
             // If our HS is still not published 
             networkNode.nodeAddressProperty().addListener((observable, oldValue, newValue) -> {
-                if (newValue != null) {
-                    p2PDataStorage.getMap().values().stream().forEach(protectedStorageEntry -> {
-                        if (protectedStorageEntry instanceof ProtectedMailboxStorageEntry)
-                            processProtectedMailboxStorageEntry((ProtectedMailboxStorageEntry) protectedStorageEntry);
-                    });
-                }
+                if (newValue != null)
+                    processMyProtectedMailboxStorageEntries();
             });
         }
     }
 
+    // Mailbox entries are stored with the storage signature pub key of the receiver so we only need to try to
+    // decrypt those addressed to our key.
+    private void processMyProtectedMailboxStorageEntries() {
+        optionalKeyRing.ifPresent(keyRing ->
+                p2PDataStorage.getMailboxEntriesByReceiversPubKey(keyRing.getSignatureKeyPair().getPublic())
+                        .forEach(this::processProtectedMailboxStorageEntry));
+    }
+
     public void shutDown(Runnable shutDownCompleteHandler) {
         Log.traceCall();
         if (!shutDownInProgress) {
@@ -283,6 +303,10 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
             if (p2PDataStorage != null)
                 p2PDataStorage.shutDown();
 
+            if (mailboxDecryptionExecutor != null)
+                mailboxDecryptionExecutor.shutdownNow();
+            pendingDecryptions.clear();
+
             if (peerManager != null)
                 peerManager.shutDown();
 
@@ -298,6 +322,9 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
             if (keepAliveManager != null)
                 keepAliveManager.shutDown();
 
+            if (warmConnectionManager != null)
+                warmConnectionManager.shutDown();
+
             if (networkReadySubscription != null)
                 networkReadySubscription.unsubscribe();
 
@@ -400,6 +427,7 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
         checkArgument(seedNodeOfPreliminaryDataRequest.isPresent(),
                 "seedNodeOfPreliminaryDataRequest must be present");
         peerExchangeManager.requestReportedPeersFromSeedNodes(seedNodeOfPreliminaryDataRequest.get());
+        warmConnectionManager.start();
 
         if (!isBootstrapped) {
             isBootstrapped = true;
@@ -455,7 +483,7 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
     @Override
     public void onMessage(NetworkEnvelope networkEnvelop, Connection connection) {
         if (networkEnvelop instanceof PrefixedSealedAndSignedMessage) {
-            Log.traceCall("\n\t" + networkEnvelop.toString() + "\n\tconnection=" + connection);
+            Log.traceCall(() -> "\n\t" + networkEnvelop.toString() + "\n\tconnection=" + connection);
             // Seed nodes don't have set the encryptionService
             if (optionalEncryptionService.isPresent()) {
                 try {
@@ -497,8 +525,13 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
 
     @Override
     public void onAdded(ProtectedStorageEntry protectedStorageEntry) {
-        if (protectedStorageEntry instanceof ProtectedMailboxStorageEntry)
-            processProtectedMailboxStorageEntry((ProtectedMailboxStorageEntry) protectedStorageEntry);
+        if (protectedStorageEntry instanceof ProtectedMailboxStorageEntry && optionalKeyRing.isPresent()) {
+            ProtectedMailboxStorageEntry protectedMailboxStorageEntry = (ProtectedMailboxStorageEntry) protectedStorageEntry;
+            // Cheap check to avoid the trial decryption of entries addressed to other keys
+            if (Arrays.equals(protectedMailboxStorageEntry.getReceiversPubKeyBytes(),
+                    Sig.getPublicKeyBytes(optionalKeyRing.get().getSignatureKeyPair().getPublic())))
+                processProtectedMailboxStorageEntry(protectedMailboxStorageEntry);
+        }
     }
 
     @Override
@@ -510,6 +543,12 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
     // DirectMessages
     ///////////////////////////////////////////////////////////////////////////////////////////
 
+    // We keep the connections to those peers open, so direct messages to them don't need to wait for a new
+    // connection. Replaces the previously set peers.
+    public void setWarmPeers(Collection<NodeAddress> peerNodeAddresses) {
+        warmConnectionManager.setNodeAddresses(peerNodeAddresses);
+    }
+
     public void sendEncryptedDirectMessage(NodeAddress peerNodeAddress, PubKeyRing pubKeyRing, NetworkEnvelope message,
                                            SendDirectMessageListener sendDirectMessageListener) {
         Log.traceCall();
@@ -562,43 +601,73 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
     // MailboxMessages
     ///////////////////////////////////////////////////////////////////////////////////////////
 
+    // Decryption is done on the mailboxDecryptionExecutor. The results are applied on the UserThread in the order of
+    // the entries.
     private void processProtectedMailboxStorageEntry(ProtectedMailboxStorageEntry protectedMailboxStorageEntry) {
         Log.traceCall();
         final NodeAddress nodeAddress = networkNode.getNodeAddress();
         // Seed nodes don't receive mailbox network_messages
-        if (optionalEncryptionService.isPresent() && nodeAddress != null && !seedNodesRepository.isSeedNode(nodeAddress)) {
+        if (optionalEncryptionService.isPresent() && nodeAddress != null && !seedNodesRepository.isSeedNode(nodeAddress)
+                && !shutDownInProgress) {
             Log.traceCall();
             MailboxStoragePayload mailboxStoragePayload = protectedMailboxStorageEntry.getMailboxStoragePayload();
             PrefixedSealedAndSignedMessage prefixedSealedAndSignedMessage = mailboxStoragePayload.getPrefixedSealedAndSignedMessage();
             if (verifyAddressPrefixHash(prefixedSealedAndSignedMessage)) {
-                try {
-                    DecryptedMessageWithPubKey decryptedMessageWithPubKey = optionalEncryptionService.get().decryptAndVerify(
-                            prefixedSealedAndSignedMessage.getSealedAndSigned());
-                    if (decryptedMessageWithPubKey.getNetworkEnvelope() instanceof MailboxMessage) {
-                        MailboxMessage mailboxMessage = (MailboxMessage) decryptedMessageWithPubKey.getNetworkEnvelope();
-                        NodeAddress senderNodeAddress = mailboxMessage.getSenderNodeAddress();
-                        checkNotNull(senderNodeAddress, "senderAddress must not be null for mailbox network_messages");
-
-                        mailboxMap.put(mailboxMessage.getUid(), protectedMailboxStorageEntry);
-                        log.trace("Decryption of SealedAndSignedMessage succeeded. senderAddress="
-                                + senderNodeAddress + " / my address=" + getAddress());
-                        decryptedMailboxListeners.stream().forEach(
-                                e -> e.onMailboxMessageAdded(decryptedMessageWithPubKey, senderNodeAddress));
-                    } else {
-                        log.warn("tryDecryptMailboxData: Expected MailboxMessage but got other type. " +
-                                "decryptedMsgWithPubKey.message=", decryptedMessageWithPubKey.getNetworkEnvelope());
-                    }
-                } catch (CryptoException e) {
-                    log.debug(e.toString());
-                    log.debug("Decryption of prefixedSealedAndSignedMessage.sealedAndSigned failed. " +
-                            "That is expected if the message is not intended for us.");
-                }
+                EncryptionService encryptionService = optionalEncryptionService.get();
+                ListenableFuture<DecryptedMessageWithPubKey> future = mailboxDecryptionExecutor.submit(() ->
+                        encryptionService.decryptAndVerify(prefixedSealedAndSignedMessage.getSealedAndSigned()));
+                pendingDecryptions.add(new PendingDecryption(protectedMailboxStorageEntry, future));
+                future.addListener(() -> UserThread.execute(this::applyDecryptedMailboxEntries), MoreExecutors.directExecutor());
             } else {
                 log.debug("Wrong blurredAddressHash. The message is not intended for us.");
             }
         }
     }
 
+    // We only apply the entry at the head of the queue to keep the order. If more entries are ready we continue in a
+    // new UserThread task so other tasks are not blocked until all entries are applied.
+    private void applyDecryptedMailboxEntries() {
+        PendingDecryption pendingDecryption = pendingDecryptions.peek();
+        if (pendingDecryption == null || !pendingDecryption.future.isDone())
+            return;
+
+        pendingDecryptions.poll();
+        try {
+            onMailboxEntryDecrypted(pendingDecryption.protectedMailboxStorageEntry, pendingDecryption.future.get());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CryptoException) {
+                log.debug(e.getCause().toString());
+                log.debug("Decryption of prefixedSealedAndSignedMessage.sealedAndSigned failed. " +
+                        "That is expected if the message is not intended for us.");
+            } else {
+                log.error("Unexpected error at decryption of mailbox entry. " + e.getCause());
+            }
+        } catch (InterruptedException | CancellationException e) {
+            log.debug("Decryption of mailbox entry was interrupted. " + e);
+        }
+
+        if (!pendingDecryptions.isEmpty() && pendingDecryptions.peek().future.isDone())
+            UserThread.execute(this::applyDecryptedMailboxEntries);
+    }
+
+    private void onMailboxEntryDecrypted(ProtectedMailboxStorageEntry protectedMailboxStorageEntry,
+                                         DecryptedMessageWithPubKey decryptedMessageWithPubKey) {
+        if (decryptedMessageWithPubKey.getNetworkEnvelope() instanceof MailboxMessage) {
+            MailboxMessage mailboxMessage = (MailboxMessage) decryptedMessageWithPubKey.getNetworkEnvelope();
+            NodeAddress senderNodeAddress = mailboxMessage.getSenderNodeAddress();
+            checkNotNull(senderNodeAddress, "senderAddress must not be null for mailbox network_messages");
+
+            mailboxMap.put(mailboxMessage.getUid(), protectedMailboxStorageEntry);
+            log.trace("Decryption of SealedAndSignedMessage succeeded. senderAddress="
+                    + senderNodeAddress + " / my address=" + getAddress());
+            decryptedMailboxListeners.stream().forEach(
+                    e -> e.onMailboxMessageAdded(decryptedMessageWithPubKey, senderNodeAddress));
+        } else {
+            log.warn("tryDecryptMailboxData: Expected MailboxMessage but got other type. " +
+                    "decryptedMsgWithPubKey.message=", decryptedMessageWithPubKey.getNetworkEnvelope());
+        }
+    }
+
     public void sendEncryptedMailboxMessage(NodeAddress peersNodeAddress, PubKeyRing peersPubKeyRing,
                                             NetworkEnvelope message,
                                             SendMailboxMessageListener sendMailboxMessageListener) {
@@ -894,6 +963,10 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
         return p2PDataStorage.getMap();
     }
 
+    public <T extends StoragePayload> List<T> getPayloads(Class<T> payloadClass) {
+        return p2PDataStorage.getPayloads(payloadClass);
+    }
+
     @VisibleForTesting
     public P2PDataStorage getP2PDataStorage() {
         return p2PDataStorage;
@@ -924,4 +997,20 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
             return false;
         }
     }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Static class
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final class PendingDecryption {
+        private final ProtectedMailboxStorageEntry protectedMailboxStorageEntry;
+        private final ListenableFuture<DecryptedMessageWithPubKey> future;
+
+        PendingDecryption(ProtectedMailboxStorageEntry protectedMailboxStorageEntry,
+                          ListenableFuture<DecryptedMessageWithPubKey> future) {
+            this.protectedMailboxStorageEntry = protectedMailboxStorageEntry;
+            this.future = future;
+        }
+    }
 }
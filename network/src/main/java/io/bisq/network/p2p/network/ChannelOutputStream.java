@@ -0,0 +1,62 @@
+package io.bisq.network.p2p.network;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * OutputStream for a SocketChannel in non-blocking mode (the stream of the socket cannot be used in that mode).
+ * Writes are done by the calling thread. If the socket's send buffer is full we wait on a private selector
+ * until the channel is writable again or the timeout is reached.
+ * Not thread safe, Connection guards it with the protoOutputStreamLock.
+ */
+class ChannelOutputStream extends OutputStream {
+    private final SocketChannel channel;
+    private final int timeoutMillis;
+    private Selector writeSelector;
+
+    ChannelOutputStream(SocketChannel channel, int timeoutMillis) {
+        this.channel = channel;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+        while (buffer.hasRemaining()) {
+            if (channel.write(buffer) == 0)
+                awaitWritable();
+        }
+    }
+
+    private void awaitWritable() throws IOException {
+        if (writeSelector == null) {
+            writeSelector = Selector.open();
+            channel.register(writeSelector, SelectionKey.OP_WRITE);
+        }
+
+        if (writeSelector.select(timeoutMillis) == 0)
+            throw new SocketTimeoutException("Channel was not writable for " + timeoutMillis + " ms.");
+
+        writeSelector.selectedKeys().clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (writeSelector != null)
+                writeSelector.close();
+        } finally {
+            channel.close();
+        }
+    }
+}
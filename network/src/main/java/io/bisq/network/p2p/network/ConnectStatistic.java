@@ -0,0 +1,67 @@
+package io.bisq.network.p2p.network;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the outbound connects of a NetworkNode and their duration. Creating the socket to a hidden service takes
+ * usually several seconds and adds directly to the latency of the first message to a peer.
+ * The histogram uses the power of two buckets of the MessageTypeStatistic. Updated from the executor threads.
+ */
+public class ConnectStatistic {
+    private final LongAdder numConnects = new LongAdder();
+    private final LongAdder numFailedConnects = new LongAdder();
+    private final LongAdder numDeduplicatedConnects = new LongAdder();
+    private final LongAdder totalDuration = new LongAdder();
+    private final AtomicLongArray durationHistogram = new AtomicLongArray(MessageTypeStatistic.NUM_BUCKETS);
+
+    void addConnect(long durationMs) {
+        numConnects.increment();
+        totalDuration.add(durationMs);
+        durationHistogram.incrementAndGet(MessageTypeStatistic.getBucket(durationMs));
+    }
+
+    void addFailedConnect() {
+        numFailedConnects.increment();
+    }
+
+    // A connect which used the pending connect attempt to the same peer
+    void addDeduplicatedConnect() {
+        numDeduplicatedConnects.increment();
+    }
+
+    public long getNumConnects() {
+        return numConnects.sum();
+    }
+
+    public long getNumFailedConnects() {
+        return numFailedConnects.sum();
+    }
+
+    public long getNumDeduplicatedConnects() {
+        return numDeduplicatedConnects.sum();
+    }
+
+    public long getAverageDuration() {
+        long numConnects = getNumConnects();
+        return numConnects > 0 ? totalDuration.sum() / numConnects : 0;
+    }
+
+    // Index i counts the connects which took up to 2^i - 1 ms
+    public long[] getDurationHistogram() {
+        long[] histogram = new long[MessageTypeStatistic.NUM_BUCKETS];
+        for (int i = 0; i < histogram.length; i++)
+            histogram[i] = durationHistogram.get(i);
+        return histogram;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectStatistic{" +
+                "numConnects=" + getNumConnects() +
+                ", numFailedConnects=" + getNumFailedConnects() +
+                ", numDeduplicatedConnects=" + getNumDeduplicatedConnects() +
+                ", averageDuration=" + getAverageDuration() + " ms" +
+                '}';
+    }
+}
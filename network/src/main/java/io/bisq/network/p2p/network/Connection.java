@@ -1,14 +1,13 @@
 package io.bisq.network.p2p.network;
 
-import com.google.common.util.concurrent.CycleDetectingLockFactory;
-import com.google.common.util.concurrent.MoreExecutors;
-import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.common.util.concurrent.*;
+import com.google.protobuf.InvalidProtocolBufferException;
 import io.bisq.common.UserThread;
+import io.bisq.common.app.Capabilities;
 import io.bisq.common.app.Log;
 import io.bisq.common.app.Version;
 import io.bisq.common.proto.network.NetworkEnvelope;
 import io.bisq.common.proto.network.NetworkProtoResolver;
-import io.bisq.common.util.Tuple2;
 import io.bisq.common.util.Utilities;
 import io.bisq.generated.protobuffer.PB;
 import io.bisq.network.p2p.*;
@@ -34,13 +33,12 @@ import java.io.*;
 import java.net.Socket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
-import java.util.UUID;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -63,6 +61,14 @@ public class Connection implements MessageListener {
         INITIAL_DATA_REQUEST
     }
 
+    // The writer sends the queued HIGH messages first. Large messages to peers supporting ENVELOPE_FRAMES are sent
+    // in frames, so a HIGH message does not need to wait for them. All other messages are sent in the order they got
+    // queued, as the peer must get a remove or refresh after the data sync response which contains the entry.
+    private enum Priority {
+        HIGH,
+        NORMAL
+    }
+
 
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Static
@@ -75,11 +81,29 @@ public class Connection implements MessageListener {
     static final int MSG_THROTTLE_PER_SEC = 200;              // With MAX_MSG_SIZE of 200kb results in bandwidth of 40MB/sec or 5 mbit/sec
     static final int MSG_THROTTLE_PER_10_SEC = 1000;          // With MAX_MSG_SIZE of 200kb results in bandwidth of 20MB/sec or 2.5 mbit/sec
     private static final int SOCKET_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(60);
+    static final long SEND_CLOSE_CONNECTION_MSG_TIMEOUT_MILLIS = 2000;
 
     public static int getPermittedMessageSize() {
         return PERMITTED_MESSAGE_SIZE;
     }
 
+    private static final Map<PeerType, ConnectionLimits> connectionLimitsByPeerType = new ConcurrentHashMap<>();
+
+    static {
+        connectionLimitsByPeerType.put(PeerType.SEED_NODE, ConnectionLimits.BULK_DATA);
+        connectionLimitsByPeerType.put(PeerType.PEER, ConnectionLimits.DEFAULT);
+        connectionLimitsByPeerType.put(PeerType.DIRECT_MSG_PEER, ConnectionLimits.DEFAULT);
+        connectionLimitsByPeerType.put(PeerType.INITIAL_DATA_REQUEST, ConnectionLimits.BULK_DATA);
+    }
+
+    public static void setConnectionLimits(PeerType peerType, ConnectionLimits connectionLimits) {
+        connectionLimitsByPeerType.put(peerType, connectionLimits);
+    }
+
+    public static ConnectionLimits getConnectionLimits(PeerType peerType) {
+        return connectionLimitsByPeerType.get(peerType);
+    }
+
     private static final CycleDetectingLockFactory cycleDetectingLockFactory = CycleDetectingLockFactory.newInstance(CycleDetectingLockFactory.Policies.THROW);
 
 
@@ -97,19 +121,37 @@ public class Connection implements MessageListener {
     // holder of state shared between InputHandler and Connection
     private final SharedModel sharedModel;
     private final Statistic statistic;
+    // Writes the queued outbound messages of all connections of the NetworkNode. Only one writer task per connection
+    // is scheduled at a time.
+    private final ScheduledExecutorService writerExecutor;
 
     // set in init
-    private InputHandler inputHandler;
+    private EnvelopeHandler inputHandler;
     private OutputStream protoOutputStream;
 
     // mutable data, set from other threads but not changed internally.
     private Optional<NodeAddress> peersNodeAddressOptional = Optional.empty();
     private volatile boolean stopped;
-    private PeerType peerType;
+    // Use Peer as default, in case of other types they will set it as soon as possible. The input handler reads it
+    // as soon as it is started, so it must never be null.
+    private volatile PeerType peerType = PeerType.PEER;
     private final ObjectProperty<NodeAddress> peersNodeAddressProperty = new SimpleObjectProperty<>();
-    private final List<Tuple2<Long, NetworkEnvelope>> messageTimeStamps = new ArrayList<>();
     private final CopyOnWriteArraySet<MessageListener> messageListeners = new CopyOnWriteArraySet<>();
-    private volatile long lastSendTimeStamp = 0;
+    // Only accessed by the input handler
+    private final RingBufferRateLimiter inboundRateLimiter = new RingBufferRateLimiter();
+    // Reassembles the EnvelopeFrames, only accessed by the input handler
+    private final EnvelopeFrames.Assembler frameAssembler = new EnvelopeFrames.Assembler();
+    private final Map<Priority, Queue<OutboundMessage>> outboundQueues = new EnumMap<>(Priority.class);
+    private final AtomicBoolean writerScheduled = new AtomicBoolean();
+    // Only accessed by the writer
+    private final TokenBucket outboundBytesBucket = new TokenBucket();
+    private final TokenBucket outboundMessagesBucket = new TokenBucket();
+    private int nextStreamId;
+
+    {
+        for (Priority priority : Priority.values())
+            outboundQueues.put(priority, new ConcurrentLinkedQueue<>());
+    }
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -117,9 +159,11 @@ public class Connection implements MessageListener {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     Connection(Socket socket, MessageListener messageListener, ConnectionListener connectionListener,
-               @Nullable NodeAddress peersNodeAddress, NetworkProtoResolver networkProtoResolver) {
+               @Nullable NodeAddress peersNodeAddress, NetworkProtoResolver networkProtoResolver,
+               @Nullable NioTransport nioTransport, ScheduledExecutorService writerExecutor) {
         this.socket = socket;
         this.connectionListener = connectionListener;
+        this.writerExecutor = writerExecutor;
         uid = UUID.randomUUID().toString();
         statistic = new Statistic();
 
@@ -132,25 +176,35 @@ public class Connection implements MessageListener {
         else
             portInfo = "localPort=" + socket.getLocalPort() + "/port=" + socket.getPort();
 
-        init(peersNodeAddress, networkProtoResolver);
+        init(peersNodeAddress, networkProtoResolver, nioTransport);
     }
 
-    private void init(@Nullable NodeAddress peersNodeAddress, NetworkProtoResolver networkProtoResolver) {
+    private void init(@Nullable NodeAddress peersNodeAddress, NetworkProtoResolver networkProtoResolver,
+                      @Nullable NioTransport nioTransport) {
         try {
             socket.setSoTimeout(SOCKET_TIMEOUT);
-            // Need to access first the ObjectOutputStream otherwise the ObjectInputStream would block
-            // See: https://stackoverflow.com/questions/5658089/java-creating-a-new-objectinputstream-blocks/5658109#5658109
-            // When you construct an ObjectInputStream, in the constructor the class attempts to read a header that
-            // the associated ObjectOutputStream on the other end of the connection has written.
-            // It will not return until that header has been read.
-            protoOutputStream = socket.getOutputStream();
-            InputStream protoInputStream = socket.getInputStream();
-            // We create a thread for handling inputStream data
-            inputHandler = new InputHandler(sharedModel, protoInputStream, portInfo, this, networkProtoResolver);
-            singleThreadExecutor.submit(inputHandler);
-
-            // Use Peer as default, in case of other types they will set it as soon as possible.
-            peerType = PeerType.PEER;
+            if (nioTransport != null && NioTransport.isSupported(socket)) {
+                // The socket streams cannot be used once the channel is in non-blocking mode
+                SocketChannel channel = socket.getChannel();
+                channel.configureBlocking(false);
+                protoOutputStream = new ChannelOutputStream(channel, SOCKET_TIMEOUT);
+                NioInputHandler nioInputHandler = new NioInputHandler(sharedModel, channel, portInfo, this, networkProtoResolver);
+                inputHandler = nioInputHandler;
+                nioTransport.register(nioInputHandler);
+            } else {
+                // Need to access first the ObjectOutputStream otherwise the ObjectInputStream would block
+                // See: https://stackoverflow.com/questions/5658089/java-creating-a-new-objectinputstream-blocks/5658109#5658109
+                // When you construct an ObjectInputStream, in the constructor the class attempts to read a header that
+                // the associated ObjectOutputStream on the other end of the connection has written.
+                // It will not return until that header has been read.
+                protoOutputStream = socket.getOutputStream();
+                InputStream protoInputStream = socket.getInputStream();
+                // We create a thread for handling inputStream data
+                InputHandler blockingInputHandler = new InputHandler(sharedModel, protoInputStream, portInfo, this,
+                        networkProtoResolver);
+                inputHandler = blockingInputHandler;
+                singleThreadExecutor.submit(blockingInputHandler);
+            }
 
             if (peersNodeAddress != null)
                 setPeersNodeAddress(peersNodeAddress);
@@ -174,79 +228,249 @@ public class Connection implements MessageListener {
     // API
     ///////////////////////////////////////////////////////////////////////////////////////////
 
-    // Called from various threads
-    public void sendMessage(NetworkEnvelope networkEnvelope) {
-        log.debug(">> Send networkEnvelope of type: " + networkEnvelope.getClass().getSimpleName());
+    // Called from various threads. The message gets queued and written by the writer of that connection.
+    // The returned future completes once the message is written to the socket.
+    public ListenableFuture<Connection> sendMessage(NetworkEnvelope networkEnvelope) {
+        log.debug(">> Send networkEnvelope of type: {}", networkEnvelope.getClass().getSimpleName());
 
+        SettableFuture<Connection> future = SettableFuture.create();
         if (!stopped) {
             if (!isCapabilityRequired(networkEnvelope) || isCapabilitySupported(networkEnvelope)) {
-                try {
-                    Log.traceCall();
-
-                    // Throttle outbound network_messages
-                    long now = System.currentTimeMillis();
-                    long elapsed = now - lastSendTimeStamp;
-                    if (elapsed < 20) {
-                        log.debug("We got 2 sendMessage requests in less than 20 ms. We set the thread to sleep " +
-                                        "for 50 ms to avoid flooding our peer. lastSendTimeStamp={}, now={}, elapsed={}",
-                                lastSendTimeStamp, now, elapsed);
-                        Thread.sleep(50);
-                    }
+                // We set the peer type before queuing as the rate limits depend on it
+                if (networkEnvelope instanceof PrefixedSealedAndSignedMessage && peersNodeAddressOptional.isPresent())
+                    setPeerType(Connection.PeerType.DIRECT_MSG_PEER);
+                else if (networkEnvelope instanceof GetDataResponse && ((GetDataResponse) networkEnvelope).isGetUpdatedDataResponse())
+                    setPeerType(Connection.PeerType.PEER);
+
+                Priority priority = getPriority(networkEnvelope);
+                outboundQueues.get(priority).add(new OutboundMessage(networkEnvelope, priority, future));
+                scheduleWriter(0);
+            } else {
+                future.set(this);
+            }
+        } else {
+            log.debug("called sendMessage but was already stopped");
+            future.set(this);
+        }
+        return future;
+    }
 
-                    lastSendTimeStamp = now;
-                    String peersNodeAddress = peersNodeAddressOptional.isPresent() ? peersNodeAddressOptional.get().toString() : "null";
-
-                    PB.NetworkEnvelope proto = networkEnvelope.toProtoNetworkEnvelope();
-                    log.debug("Sending message: {}", Utilities.toTruncatedString(proto.toString(), 10000));
-
-                    if (networkEnvelope instanceof Ping | networkEnvelope instanceof RefreshOfferMessage) {
-                        // pings and offer refresh msg we dont want to log in production
-                        log.trace("\n\n>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>\n" +
-                                        "Sending direct message to peer" +
-                                        "Write object to outputStream to peer: {} (uid={})\ntruncated message={} / size={}" +
-                                        "\n>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>\n",
-                                peersNodeAddress, uid, proto.toString(), proto.getSerializedSize());
-                    } else if (networkEnvelope instanceof PrefixedSealedAndSignedMessage && peersNodeAddressOptional.isPresent()) {
-                        setPeerType(Connection.PeerType.DIRECT_MSG_PEER);
-
-                        log.debug("\n\n>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>\n" +
-                                        "Sending direct message to peer" +
-                                        "Write object to outputStream to peer: {} (uid={})\ntruncated message={} / size={}" +
-                                        "\n>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>\n",
-                                peersNodeAddress, uid, Utilities.toTruncatedString(networkEnvelope), -1);
-                    } else if (networkEnvelope instanceof GetDataResponse && ((GetDataResponse) networkEnvelope).isGetUpdatedDataResponse()) {
-                        setPeerType(Connection.PeerType.PEER);
-                    } else {
-                        log.debug("\n\n>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>\n" +
-                                        "Write object to outputStream to peer: {} (uid={})\ntruncated message={} / size={}" +
-                                        "\n>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>\n",
-                                peersNodeAddress, uid, Utilities.toTruncatedString(networkEnvelope), proto.getSerializedSize());
-                    }
+    private void scheduleWriter(long delayMillis) {
+        if (writerScheduled.compareAndSet(false, true)) {
+            try {
+                writerExecutor.schedule(this::runWriter, delayMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                writerScheduled.set(false);
+                log.debug("The NetworkNode got shut down. We don't write the {} queued messages.", getNumQueuedMessages());
+            }
+        }
+    }
+
+    // Runs on the writerExecutor. Each run writes only one message or frame and then reschedules the writer, so the
+    // connections take turns on the writer threads and a slow peer with a long queue cannot hold a thread until its
+    // queue is empty.
+    private void runWriter() {
+        long delay = 0;
+        try {
+            delay = writeNextOutboundMessage();
+        } catch (Throwable t) {
+            log.error("Writing outbound messages failed. " + t.getMessage());
+            t.printStackTrace();
+        } finally {
+            writerScheduled.set(false);
+        }
 
-                    if (!stopped) {
-                        protoOutputStreamLock.lock();
-                        proto.writeDelimitedTo(protoOutputStream);
-                        protoOutputStream.flush();
+        // A message might have been added after we have seen an empty queue but before we reset the flag
+        if (delay > 0)
+            scheduleWriter(delay);
+        else if (getNumQueuedMessages() > 0)
+            scheduleWriter(0);
+    }
 
-                        statistic.addSentBytes(proto.getSerializedSize());
-                        statistic.addSentMessage(networkEnvelope);
+    // Trade messages and pings are small and time critical and do not depend on the order of the storage messages
+    private static Priority getPriority(NetworkEnvelope networkEnvelope) {
+        if (networkEnvelope instanceof PrefixedSealedAndSignedMessage || networkEnvelope instanceof KeepAliveMessage)
+            return Priority.HIGH;
+        else
+            return Priority.NORMAL;
+    }
 
-                        // We don't want to get the activity ts updated by ping/pong msg
-                        if (!(networkEnvelope instanceof KeepAliveMessage))
-                            statistic.updateLastActivityTimestamp();
-                    }
-                } catch (Throwable t) {
-                    handleException(t);
-                } finally {
-                    if (protoOutputStreamLock.isLocked())
-                        protoOutputStreamLock.unlock();
+    // Head of the queue with the highest priority. A message sent in frames stays at the head until its last frame
+    // is written.
+    @Nullable
+    private OutboundMessage peekOutboundMessage() {
+        for (Priority priority : Priority.values()) {
+            OutboundMessage outboundMessage = outboundQueues.get(priority).peek();
+            if (outboundMessage != null)
+                return outboundMessage;
+        }
+        return null;
+    }
+
+    private int getNumQueuedMessages() {
+        return outboundQueues.values().stream().mapToInt(Queue::size).sum();
+    }
+
+    // Writes the next message or frame. Returns the delay in ms if we have to wait for the rate limiter, otherwise 0.
+    private long writeNextOutboundMessage() {
+        OutboundMessage outboundMessage = peekOutboundMessage();
+        if (outboundMessage == null)
+            return 0;
+
+        if (stopped) {
+            log.debug("Connection got stopped. We drop {} queued messages.", getNumQueuedMessages());
+            for (Queue<OutboundMessage> queue : outboundQueues.values()) {
+                while ((outboundMessage = queue.poll()) != null) {
+                    outboundMessage.future.set(this);
                 }
             }
-        } else {
-            log.debug("called sendMessage but was already stopped");
+            return 0;
+        }
+
+        // The proto gets created by the writer as that might take a bit for large messages
+        if (outboundMessage.proto == null) {
+            outboundMessage.proto = outboundMessage.networkEnvelope.toProtoNetworkEnvelope();
+            maybeCompress(outboundMessage);
+            maybeSplit(outboundMessage);
+        }
+
+        // The message is counted by the rate limiter with its first frame, the bytes with each frame
+        PB.NetworkEnvelope part = outboundMessage.getNextPartToWrite();
+        int numMessages = outboundMessage.numWrittenFrames == 0 ? getNumMessages(outboundMessage.networkEnvelope) : 0;
+        long delay = getOutboundDelay(numMessages, part.getSerializedSize());
+        if (delay > 0) {
+            log.debug("We reached the outbound rate limit for peer type {}. We delay the queued messages by {} ms. " +
+                    "queueSize={}", peerType, delay, getNumQueuedMessages());
+            return delay;
+        }
+
+        boolean isLastPart = outboundMessage.isLastPart();
+        if (isLastPart)
+            outboundQueues.get(outboundMessage.priority).poll();
+        writeMessage(outboundMessage, part, isLastPart);
+        outboundMessage.numWrittenFrames++;
+        return 0;
+    }
+
+    // Encrypted messages don't compress, so we don't try it
+    private void maybeCompress(OutboundMessage outboundMessage) {
+        if (isCompressionSupported() && !(outboundMessage.networkEnvelope instanceof PrefixedSealedAndSignedMessage)) {
+            outboundMessage.compressedProto = EnvelopeCompression.compress(outboundMessage.proto);
+        }
+    }
+
+    private boolean isCompressionSupported() {
+        return isSupported(Capabilities.Capability.COMPRESSED_ENVELOPE);
+    }
+
+    // We split the compressed message as we need fewer frames then
+    private void maybeSplit(OutboundMessage outboundMessage) {
+        if (isSupported(Capabilities.Capability.ENVELOPE_FRAMES))
+            outboundMessage.frames = EnvelopeFrames.split(outboundMessage.getProtoToWrite(), nextStreamId++);
+    }
+
+    private boolean isSupported(Capabilities.Capability capability) {
+        List<Integer> supportedCapabilities = sharedModel.getSupportedCapabilities();
+        return supportedCapabilities != null && supportedCapabilities.contains(capability.ordinal());
+    }
+
+    // The peer applies its throttle to each message of a bundle, so we count them as well
+    private static int getNumMessages(NetworkEnvelope networkEnvelope) {
+        return networkEnvelope instanceof BundleOfEnvelopes ?
+                ((BundleOfEnvelopes) networkEnvelope).getEnvelopes().size() : 1;
+    }
+
+    private long getOutboundDelay(int numMessages, int size) {
+        ConnectionLimits limits = getConnectionLimits(peerType);
+        long now = System.currentTimeMillis();
+        long delay = Math.max(
+                outboundMessagesBucket.getDelay(numMessages, limits.getMaxBurstMessages(), limits.getMaxMessagesPerSec(), now),
+                outboundBytesBucket.getDelay(size, limits.getMaxBurstBytes(), limits.getMaxBytesPerSec(), now));
+        if (delay == 0) {
+            outboundMessagesBucket.consume(numMessages);
+            outboundBytesBucket.consume(size);
+        }
+        return delay;
+    }
+
+    // Writes the whole message or its next frame. The message counts as sent once its last part is written.
+    private void writeMessage(OutboundMessage outboundMessage, PB.NetworkEnvelope part, boolean isLastPart) {
+        NetworkEnvelope networkEnvelope = outboundMessage.networkEnvelope;
+        PB.NetworkEnvelope proto = outboundMessage.getProtoToWrite();
+        try {
+            Log.traceCall();
+            // Rendering a message is expensive (e.g. a large GetDataResponse), so we only do it if we log it
+            if (isLastPart && log.isDebugEnabled())
+                logSendMessage(networkEnvelope, proto);
+
+            if (!stopped) {
+                protoOutputStreamLock.lock();
+                part.writeDelimitedTo(protoOutputStream);
+                protoOutputStream.flush();
+
+                statistic.addSentBytes(part.getSerializedSize());
+                if (isLastPart) {
+                    statistic.addSuccessfulSend();
+                    addSentMessages(outboundMessage);
+                    if (outboundMessage.compressedProto != null)
+                        statistic.addSentCompressedBytes(outboundMessage.proto.getSerializedSize(), proto.getSerializedSize());
+
+                    MessageTrace.getInstance().add(MessageTrace.Direction.SENT, checkNotNull(outboundMessage.proto).getMessageCase(),
+                            proto.getSerializedSize(), peersNodeAddressOptional.orElse(null), uid);
+
+                    // We don't want to get the activity ts updated by ping/pong msg
+                    if (!(networkEnvelope instanceof KeepAliveMessage))
+                        statistic.updateLastActivityTimestamp();
+                }
+            }
+            if (isLastPart)
+                outboundMessage.future.set(this);
+        } catch (Throwable t) {
+            statistic.addFailedSend();
+            handleException(t);
+            outboundMessage.future.setException(t);
+        } finally {
+            if (protoOutputStreamLock.isLocked())
+                protoOutputStreamLock.unlock();
         }
     }
 
+    private void logSendMessage(NetworkEnvelope networkEnvelope, PB.NetworkEnvelope proto) {
+        String peersNodeAddress = peersNodeAddressOptional.isPresent() ? peersNodeAddressOptional.get().toString() : "null";
+
+        log.debug("Sending message: {}", Utilities.toLazyTruncatedString(proto, 10000));
+
+        if (networkEnvelope instanceof Ping | networkEnvelope instanceof RefreshOfferMessage) {
+            // pings and offer refresh msg we dont want to log in production
+            log.trace("\n\n>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>\n" +
+                            "Sending direct message to peer" +
+                            "Write object to outputStream to peer: {} (uid={})\ntruncated message={} / size={}" +
+                            "\n>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>\n",
+                    peersNodeAddress, uid, proto, proto.getSerializedSize());
+        } else if (networkEnvelope instanceof PrefixedSealedAndSignedMessage && peersNodeAddressOptional.isPresent()) {
+            log.debug("\n\n>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>\n" +
+                            "Sending direct message to peer" +
+                            "Write object to outputStream to peer: {} (uid={})\ntruncated message={} / size={}" +
+                            "\n>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>\n",
+                    peersNodeAddress, uid, Utilities.toLazyTruncatedString(networkEnvelope), -1);
+        } else if (!(networkEnvelope instanceof GetDataResponse && ((GetDataResponse) networkEnvelope).isGetUpdatedDataResponse())) {
+            log.debug("\n\n>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>\n" +
+                            "Write object to outputStream to peer: {} (uid={})\ntruncated message={} / size={}" +
+                            "\n>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>\n",
+                    peersNodeAddress, uid, Utilities.toLazyTruncatedString(networkEnvelope), proto.getSerializedSize());
+        }
+    }
+
+    private void addSentMessages(OutboundMessage outboundMessage) {
+        PB.NetworkEnvelope proto = checkNotNull(outboundMessage.proto, "proto must not be null");
+        long latency = System.currentTimeMillis() - outboundMessage.queuedTimestamp;
+        if (proto.getMessageCase() == PB.NetworkEnvelope.MessageCase.BUNDLE_OF_ENVELOPES)
+            proto.getBundleOfEnvelopes().getEnvelopesList()
+                    .forEach(envelope -> statistic.addSentMessage(envelope, envelope.getSerializedSize(), latency));
+        else
+            statistic.addSentMessage(proto, proto.getSerializedSize(), latency);
+    }
+
     public boolean isCapabilitySupported(NetworkEnvelope networkEnvelop) {
         if (networkEnvelop instanceof AddDataMessage) {
             final StoragePayload storagePayload = (((AddDataMessage) networkEnvelop).getProtectedStorageEntry()).getStoragePayload();
@@ -308,45 +532,16 @@ public class Connection implements MessageListener {
         return sharedModel.reportInvalidRequest(ruleViolation);
     }
 
-    // TODO either use the argument or delete it
+    // Only called from the input handler
     private boolean violatesThrottleLimit(NetworkEnvelope networkEnvelop) {
-        long now = System.currentTimeMillis();
-        boolean violated = false;
-        //TODO remove message storage after network is tested stable
-        if (messageTimeStamps.size() >= MSG_THROTTLE_PER_SEC) {
-            // check if we got more than 70 (MSG_THROTTLE_PER_SEC) msg per sec.
-            long compareValue = messageTimeStamps.get(messageTimeStamps.size() - MSG_THROTTLE_PER_SEC).first;
-            // if duration < 1 sec we received too much network_messages
-            violated = now - compareValue < TimeUnit.SECONDS.toMillis(1);
-            if (violated) {
-                log.error("violatesThrottleLimit MSG_THROTTLE_PER_SEC ");
-                log.error("elapsed " + (now - compareValue));
-                log.error("messageTimeStamps: \n\t" + messageTimeStamps.stream()
-                        .map(e -> "\n\tts=" + e.first.toString() + " message=" + e.second.getClass().getName())
-                        .collect(Collectors.toList()).toString());
-            }
-        }
-
-        if (messageTimeStamps.size() >= MSG_THROTTLE_PER_10_SEC) {
-            if (!violated) {
-                // check if we got more than 50 msg per 10 sec.
-                long compareValue = messageTimeStamps.get(messageTimeStamps.size() - MSG_THROTTLE_PER_10_SEC).first;
-                // if duration < 10 sec we received too much network_messages
-                violated = now - compareValue < TimeUnit.SECONDS.toMillis(10);
-
-                if (violated) {
-                    log.error("violatesThrottleLimit MSG_THROTTLE_PER_10_SEC ");
-                    log.error("elapsed " + (now - compareValue));
-                    log.error("messageTimeStamps: \n\t" + messageTimeStamps.stream()
-                            .map(e -> "\n\tts=" + e.first.toString() + " message=" + e.second.getClass().getName())
-                            .collect(Collectors.toList()).toString());
-                }
-            }
-            // we limit to max 50 (MSG_THROTTLE_PER_10SEC) entries
-            messageTimeStamps.remove(0);
+        ConnectionLimits limits = getConnectionLimits(peerType);
+        boolean violated = inboundRateLimiter.addAndCheckLimit(System.currentTimeMillis(),
+                limits.getMsgThrottlePerSec(), limits.getMsgThrottlePer10Sec());
+        if (violated) {
+            log.error("violatesThrottleLimit. peerType={}, msgThrottlePerSec={}, msgThrottlePer10Sec={}, " +
+                            "last message={}", peerType, limits.getMsgThrottlePerSec(), limits.getMsgThrottlePer10Sec(),
+                    networkEnvelop.getClass().getName());
         }
-
-        messageTimeStamps.add(new Tuple2<>(now, networkEnvelop));
         return violated;
     }
 
@@ -456,7 +651,13 @@ public class Connection implements MessageListener {
                     try {
                         String reason = closeConnectionReason == CloseConnectionReason.RULE_VIOLATION ?
                                 sharedModel.getRuleViolation().name() : closeConnectionReason.name();
-                        sendMessage(new CloseConnectionMessage(reason));
+                        try {
+                            // We wait until the message is written before we stop the connection
+                            sendMessage(new CloseConnectionMessage(reason))
+                                    .get(SEND_CLOSE_CONNECTION_MSG_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                        } catch (TimeoutException e) {
+                            log.debug("CloseConnectionMessage was not sent in time.");
+                        }
 
                         setStopFlags();
 
@@ -563,6 +764,46 @@ public class Connection implements MessageListener {
     }
 
 
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // OutboundMessage
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static class OutboundMessage {
+        private final NetworkEnvelope networkEnvelope;
+        private final Priority priority;
+        private final SettableFuture<Connection> future;
+        private final long queuedTimestamp = System.currentTimeMillis();
+        // Created by the writer
+        @Nullable
+        private PB.NetworkEnvelope proto;
+        // Set if we send the message in a CompressedEnvelope
+        @Nullable
+        private PB.NetworkEnvelope compressedProto;
+        // Set if we send the message in EnvelopeFrames
+        @Nullable
+        private List<PB.NetworkEnvelope> frames;
+        private int numWrittenFrames;
+
+        OutboundMessage(NetworkEnvelope networkEnvelope, Priority priority, SettableFuture<Connection> future) {
+            this.networkEnvelope = networkEnvelope;
+            this.priority = priority;
+            this.future = future;
+        }
+
+        private PB.NetworkEnvelope getProtoToWrite() {
+            return compressedProto != null ? compressedProto : checkNotNull(proto, "proto must not be null");
+        }
+
+        private PB.NetworkEnvelope getNextPartToWrite() {
+            return frames != null ? frames.get(numWrittenFrames) : getProtoToWrite();
+        }
+
+        private boolean isLastPart() {
+            return frames == null || numWrittenFrames == frames.size() - 1;
+        }
+    }
+
+
     ///////////////////////////////////////////////////////////////////////////////////////////
     // SharedSpace
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -648,6 +889,7 @@ public class Connection implements MessageListener {
                 closeConnectionReason = CloseConnectionReason.TERMINATED;
             } else if (e instanceof OptionalDataException || e instanceof StreamCorruptedException) {
                 closeConnectionReason = CloseConnectionReason.CORRUPTED_DATA;
+                log.warn("Corrupted data at connection {}\n\t{}", this, MessageTrace.getInstance().dump(connection.getUid()));
             } else {
                 // TODO sometimes we get StreamCorruptedException, OptionalDataException, IllegalStateException
                 closeConnectionReason = CloseConnectionReason.UNKNOWN_EXCEPTION;
@@ -658,6 +900,7 @@ public class Connection implements MessageListener {
                         this,
                         e.toString());
                 e.printStackTrace();
+                log.warn(MessageTrace.getInstance().dump(connection.getUid()));
             }
 
             shutDown(closeConnectionReason);
@@ -693,23 +936,290 @@ public class Connection implements MessageListener {
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
-    // InputHandler
+    // EnvelopeHandler
     ///////////////////////////////////////////////////////////////////////////////////////////
 
-    // Runs in same thread as Connection, receives a message, performs several checks on it
-    // (including throttling limits, validity and statistics)
-    // and delivers it to the message listener given in the constructor.
-    private static class InputHandler implements Runnable {
-        private static final Logger log = LoggerFactory.getLogger(InputHandler.class);
+    // Performs several checks on the received network_messages (including throttling limits, validity and statistics)
+    // and delivers them to the message listener given in the constructor. The subclasses read the data from the socket.
+    private static abstract class EnvelopeHandler {
+        private static final Logger log = LoggerFactory.getLogger(EnvelopeHandler.class);
 
-        private final SharedModel sharedModel;
-        private final InputStream protoInputStream;
-        private final String portInfo;
+        final SharedModel sharedModel;
+        final String portInfo;
         private final MessageListener messageListener;
         private final NetworkProtoResolver networkProtoResolver;
 
-        private volatile boolean stopped;
-        private long lastReadTimeStamp;
+        volatile boolean stopped;
+
+        EnvelopeHandler(SharedModel sharedModel,
+                        String portInfo,
+                        MessageListener messageListener,
+                        NetworkProtoResolver networkProtoResolver) {
+            this.sharedModel = sharedModel;
+            this.portInfo = portInfo;
+            this.messageListener = messageListener;
+            this.networkProtoResolver = networkProtoResolver;
+        }
+
+        // Stops reading from the socket
+        abstract void stop();
+
+        // Used by the NioInputHandler which does not have the exception handling of the run loop of the InputHandler.
+        // Returns false if we must not process any further network_messages.
+        boolean processProto(PB.NetworkEnvelope proto) {
+            try {
+                return handleProto(proto);
+            } catch (NoClassDefFoundError e) {
+                log.error(e.getMessage());
+                e.printStackTrace();
+                reportInvalidRequest(RuleViolation.INVALID_DATA_TYPE);
+                return !stopped;
+            } catch (Throwable t) {
+                handleException(t);
+                return false;
+            }
+        }
+
+        // Returns false if the connection got stopped or shut down and we must not process any further network_messages.
+        boolean handleProto(PB.NetworkEnvelope receivedProto) {
+            if (receivedProto.getMessageCase() == PB.NetworkEnvelope.MessageCase.ENVELOPE_FRAME)
+                return handleFrame(receivedProto);
+
+            return handleProto(receivedProto, true);
+        }
+
+        // The envelope gets handled once we have received its last frame
+        private boolean handleFrame(PB.NetworkEnvelope proto) {
+            Connection connection = checkNotNull(sharedModel.connection, "connection must not be null");
+            connection.statistic.addReceivedBytes(proto.getSerializedSize());
+            PB.NetworkEnvelope envelope;
+            try {
+                envelope = connection.frameAssembler.add(proto.getEnvelopeFrame());
+            } catch (IOException e) {
+                log.warn("Invalid EnvelopeFrame. " + e.getMessage());
+                return !reportInvalidRequest(RuleViolation.INVALID_DATA_TYPE) && !stopped;
+            }
+            return envelope == null ? !stopped : handleProto(envelope, false);
+        }
+
+        private boolean handleProto(PB.NetworkEnvelope receivedProto, boolean countReceivedBytes) {
+            Connection connection = checkNotNull(sharedModel.connection, "connection must not be null");
+            int receivedSize = receivedProto.getSerializedSize();
+            PB.NetworkEnvelope proto = receivedProto;
+            if (receivedProto.getMessageCase() == PB.NetworkEnvelope.MessageCase.COMPRESSED_ENVELOPE) {
+                if (countReceivedBytes)
+                    connection.statistic.addReceivedBytes(receivedSize);
+                // We check the announced size before we allocate the buffer for decompression
+                int uncompressedSize = receivedProto.getCompressedEnvelope().getUncompressedSize();
+                if (uncompressedSize > MAX_PERMITTED_MESSAGE_SIZE) {
+                    log.warn("Uncompressed size > MAX_MSG_SIZE. size={}", uncompressedSize);
+                    return !reportInvalidRequest(RuleViolation.MAX_MSG_SIZE_EXCEEDED) && !stopped;
+                }
+                try {
+                    proto = EnvelopeCompression.decompress(receivedProto.getCompressedEnvelope());
+                } catch (IOException e) {
+                    log.warn("Could not decompress CompressedEnvelope. " + e.getMessage());
+                    return !reportInvalidRequest(RuleViolation.INVALID_DATA_TYPE) && !stopped;
+                }
+                connection.statistic.addReceivedCompressedBytes(uncompressedSize, receivedSize);
+            }
+
+            // Frames are only sent as they are, never compressed
+            if (proto.getMessageCase() == PB.NetworkEnvelope.MessageCase.ENVELOPE_FRAME) {
+                log.warn("Nested EnvelopeFrame in {}", receivedProto.getMessageCase());
+                return !reportInvalidRequest(RuleViolation.INVALID_DATA_TYPE) && !stopped;
+            }
+
+            if (proto.getMessageCase() == PB.NetworkEnvelope.MessageCase.BUNDLE_OF_ENVELOPES)
+                return handleBundle(proto, countReceivedBytes && proto == receivedProto);
+
+            // We want to track the size of each object even if it is invalid data. Compressed and framed ones are
+            // counted already.
+            return handleEnvelope(proto, countReceivedBytes && proto == receivedProto);
+        }
+
+        // Each envelope of the bundle passes the same checks (size, throttle, network ID) as a single message
+        private boolean handleBundle(PB.NetworkEnvelope proto, boolean countReceivedBytes) {
+            Connection connection = checkNotNull(sharedModel.connection, "connection must not be null");
+            int size = proto.getSerializedSize();
+            if (countReceivedBytes)
+                connection.statistic.addReceivedBytes(size);
+
+            if (size > MAX_PERMITTED_MESSAGE_SIZE) {
+                log.warn("BundleOfEnvelopes size > MAX_MSG_SIZE. size={}", size);
+                return !reportInvalidRequest(RuleViolation.MAX_MSG_SIZE_EXCEEDED) && !stopped;
+            }
+
+            for (PB.NetworkEnvelope envelope : proto.getBundleOfEnvelopes().getEnvelopesList()) {
+                if (envelope.getMessageCase() == PB.NetworkEnvelope.MessageCase.BUNDLE_OF_ENVELOPES ||
+                        envelope.getMessageCase() == PB.NetworkEnvelope.MessageCase.COMPRESSED_ENVELOPE ||
+                        envelope.getMessageCase() == PB.NetworkEnvelope.MessageCase.ENVELOPE_FRAME) {
+                    log.warn("Nested {} in BundleOfEnvelopes", envelope.getMessageCase());
+                    return !reportInvalidRequest(RuleViolation.INVALID_DATA_TYPE) && !stopped;
+                }
+                if (!handleEnvelope(envelope, false))
+                    return false;
+            }
+            return !stopped;
+        }
+
+        private boolean handleEnvelope(PB.NetworkEnvelope proto, boolean countReceivedBytes) {
+            Connection connection = checkNotNull(sharedModel.connection, "connection must not be null");
+            NetworkEnvelope networkEnvelope = networkProtoResolver.fromProto(proto);
+            log.debug("<< Received networkEnvelope of type: {}", networkEnvelope.getClass().getSimpleName());
+
+            // The size checks below are done with the uncompressed size
+            int size = proto.getSerializedSize();
+            MessageTrace.getInstance().add(MessageTrace.Direction.RECEIVED, proto.getMessageCase(), size,
+                    connection.getPeersNodeAddressOptional().orElse(null), connection.getUid());
+            if (networkEnvelope instanceof Pong || networkEnvelope instanceof RefreshOfferMessage) {
+                // We only log Pong and RefreshOfferMsg when in dev environment (trace)
+                log.trace("\n\n<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<\n" +
+                                "New data arrived at inputHandler of connection {}.\n" +
+                                "Received object (truncated)={} / size={}"
+                                + "\n<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<\n",
+                        connection,
+                        Utilities.toLazyTruncatedString(proto),
+                        size);
+            } else {
+                // We want to log all incoming network_messages (except Pong and RefreshOfferMsg)
+                // so we log before the data type checks
+                //log.info("size={}; object={}", size, Utilities.toTruncatedString(rawInputObject.toString(), 100));
+                log.debug("\n\n<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<\n" +
+                                "New data arrived at inputHandler of connection {}.\n" +
+                                "Received object (truncated)={} / size={}"
+                                + "\n<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<\n",
+                        connection,
+                        Utilities.toLazyTruncatedString(proto),
+                        size);
+            }
+
+            if (countReceivedBytes)
+                connection.statistic.addReceivedBytes(size);
+
+            // We want to track the network_messages also before the checks, so do it early...
+            connection.statistic.addReceivedMessage(proto, size);
+
+            // First we check thel size
+            boolean exceeds;
+            if (networkEnvelope instanceof ExtendedDataSizePermission) {
+                exceeds = size > MAX_PERMITTED_MESSAGE_SIZE;
+                log.debug("size={}; object={}", size, Utilities.toLazyTruncatedString(proto, 100));
+            } else {
+                exceeds = size > PERMITTED_MESSAGE_SIZE;
+            }
+
+            if (exceeds) {
+                log.warn("size > MAX_MSG_SIZE. size={}; object={}", size, Utilities.toTruncatedString(proto));
+
+                if (reportInvalidRequest(RuleViolation.MAX_MSG_SIZE_EXCEEDED))
+                    return false;
+            }
+
+            if (connection.violatesThrottleLimit(networkEnvelope)
+                    && reportInvalidRequest(RuleViolation.THROTTLE_LIMIT_EXCEEDED))
+                return false;
+
+            // Check P2P network ID
+            if (proto.getMessageVersion() != Version.getP2PMessageVersion()
+                    && reportInvalidRequest(RuleViolation.WRONG_NETWORK_ID)) {
+                log.warn("RuleViolation.WRONG_NETWORK_ID. version of message={}, app version={}, " +
+                                "proto.toTruncatedString={}", proto.getMessageVersion(),
+                        Version.getP2PMessageVersion(),
+                        Utilities.toTruncatedString(proto.toString()));
+                return false;
+            }
+
+            if (sharedModel.getSupportedCapabilities() == null && networkEnvelope instanceof SupportedCapabilitiesMessage)
+                sharedModel.setSupportedCapabilities(((SupportedCapabilitiesMessage) networkEnvelope).getSupportedCapabilities());
+
+            if (networkEnvelope instanceof CloseConnectionMessage) {
+                // If we get a CloseConnectionMessage we shut down
+                log.debug("CloseConnectionMessage received. Reason={}\n\t" +
+                        "connection={}", proto.getCloseConnectionMessage().getReason(), connection);
+                if (CloseConnectionReason.PEER_BANNED.name().equals(proto.getCloseConnectionMessage().getReason())) {
+                    log.warn("We got shut down because we are banned by the other peer. (InputHandler.run CloseConnectionMessage)");
+                    stopAndShutDown(CloseConnectionReason.PEER_BANNED);
+                } else {
+                    stopAndShutDown(CloseConnectionReason.CLOSE_REQUESTED_BY_PEER);
+                }
+                return false;
+            } else if (!stopped) {
+                // We don't want to get the activity ts updated by ping/pong msg
+                if (!(networkEnvelope instanceof KeepAliveMessage))
+                    connection.statistic.updateLastActivityTimestamp();
+
+                if (networkEnvelope instanceof GetDataRequest)
+                    connection.setPeerType(PeerType.INITIAL_DATA_REQUEST);
+
+                // First a seed node gets a message from a peer (PreliminaryDataRequest using
+                // AnonymousMessage interface) which does not have its hidden service
+                // published, so it does not know its address. As the IncomingConnection does not have the
+                // peersNodeAddress set that connection cannot be used for outgoing network_messages until we
+                // get the address set.
+                // At the data update message (DataRequest using SendersNodeAddressMessage interface)
+                // after the HS is published we get the peer's address set.
+
+                // There are only those network_messages used for new connections to a peer:
+                // 1. PreliminaryDataRequest
+                // 2. DataRequest (implements SendersNodeAddressMessage)
+                // 3. GetPeersRequest (implements SendersNodeAddressMessage)
+                // 4. DirectMessage (implements SendersNodeAddressMessage)
+                if (networkEnvelope instanceof SendersNodeAddressMessage) {
+                    NodeAddress senderNodeAddress = ((SendersNodeAddressMessage) networkEnvelope).getSenderNodeAddress();
+                    // We must not shut down a banned peer at that moment as it would trigger a connection termination
+                    // and we could not send the CloseConnectionMessage.
+                    // We shut down a banned peer at the next step at setPeersNodeAddress().
+
+                    Optional<NodeAddress> peersNodeAddressOptional = connection.getPeersNodeAddressOptional();
+                    if (peersNodeAddressOptional.isPresent()) {
+                        // If we have already the peers address we check again if it matches our stored one
+                        checkArgument(peersNodeAddressOptional.get().equals(senderNodeAddress),
+                                "senderNodeAddress not matching connections peer address.\n\t" +
+                                        "message=" + networkEnvelope);
+                    } else {
+                        connection.setPeersNodeAddress(senderNodeAddress);
+                    }
+                }
+
+                if (networkEnvelope instanceof PrefixedSealedAndSignedMessage)
+                    connection.setPeerType(Connection.PeerType.DIRECT_MSG_PEER);
+
+                messageListener.onMessage(networkEnvelope, connection);
+            }
+            return !stopped;
+        }
+
+        void stopAndShutDown(CloseConnectionReason reason) {
+            stop();
+            sharedModel.shutDown(reason);
+        }
+
+        void handleException(Throwable e) {
+            stop();
+            if (sharedModel != null)
+                sharedModel.handleConnectionException(e);
+        }
+
+
+        boolean reportInvalidRequest(RuleViolation ruleViolation) {
+            boolean causedShutDown = sharedModel.reportInvalidRequest(ruleViolation);
+            if (causedShutDown)
+                stop();
+            return causedShutDown;
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // InputHandler
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Runs in same thread as Connection and reads the network_messages from the blocking input stream.
+    private static class InputHandler extends EnvelopeHandler implements Runnable {
+        private static final Logger log = LoggerFactory.getLogger(InputHandler.class);
+
+        private final InputStream protoInputStream;
         private boolean threadNameSet;
 
         public InputHandler(SharedModel sharedModel,
@@ -717,14 +1227,12 @@ public class Connection implements MessageListener {
                             String portInfo,
                             MessageListener messageListener,
                             NetworkProtoResolver networkProtoResolver) {
-            this.sharedModel = sharedModel;
+            super(sharedModel, portInfo, messageListener, networkProtoResolver);
             this.protoInputStream = protoInputStream;
-            this.portInfo = portInfo;
-            this.messageListener = messageListener;
-            this.networkProtoResolver = networkProtoResolver;
         }
 
-        public void stop() {
+        @Override
+        void stop() {
             if (!stopped) {
                 try {
                     protoInputStream.close();
@@ -757,16 +1265,6 @@ public class Connection implements MessageListener {
                         Connection connection = checkNotNull(sharedModel.connection, "connection must not be null");
                         log.trace("InputHandler waiting for incoming network_messages.\n\tConnection=" + connection);
 
-                        // Throttle inbound network_messages
-                        long now = System.currentTimeMillis();
-                        long elapsed = now - lastReadTimeStamp;
-                        if (elapsed < 10) {
-                            log.debug("We got 2 network_messages received in less than 10 ms. We set the thread to sleep " +
-                                            "for 20 ms to avoid getting flooded by our peer. lastReadTimeStamp={}, now={}, elapsed={}",
-                                    lastReadTimeStamp, now, elapsed);
-                            Thread.sleep(20);
-                        }
-
                         // Reading the protobuffer message from the inputstream
                         PB.NetworkEnvelope proto = PB.NetworkEnvelope.parseDelimitedFrom(protoInputStream);
 
@@ -777,126 +1275,8 @@ public class Connection implements MessageListener {
                             return;
                         }
 
-                        NetworkEnvelope networkEnvelope = networkProtoResolver.fromProto(proto);
-                        lastReadTimeStamp = now;
-                        log.debug("<< Received networkEnvelope of type: " + networkEnvelope.getClass().getSimpleName());
-
-                        int size = proto.getSerializedSize();
-                        if (networkEnvelope instanceof Pong || networkEnvelope instanceof RefreshOfferMessage) {
-                            // We only log Pong and RefreshOfferMsg when in dev environment (trace)
-                            log.trace("\n\n<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<\n" +
-                                            "New data arrived at inputHandler of connection {}.\n" +
-                                            "Received object (truncated)={} / size={}"
-                                            + "\n<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<\n",
-                                    connection,
-                                    Utilities.toTruncatedString(proto.toString()),
-                                    size);
-                        } else {
-                            // We want to log all incoming network_messages (except Pong and RefreshOfferMsg)
-                            // so we log before the data type checks
-                            //log.info("size={}; object={}", size, Utilities.toTruncatedString(rawInputObject.toString(), 100));
-                            log.debug("\n\n<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<\n" +
-                                            "New data arrived at inputHandler of connection {}.\n" +
-                                            "Received object (truncated)={} / size={}"
-                                            + "\n<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<\n",
-                                    connection,
-                                    Utilities.toTruncatedString(proto.toString()),
-                                    size);
-                        }
-
-                        // We want to track the size of each object even if it is invalid data
-                        connection.statistic.addReceivedBytes(size);
-
-                        // We want to track the network_messages also before the checks, so do it early...
-                        connection.statistic.addReceivedMessage(networkEnvelope);
-
-                        // First we check thel size
-                        boolean exceeds;
-                        if (networkEnvelope instanceof ExtendedDataSizePermission) {
-                            exceeds = size > MAX_PERMITTED_MESSAGE_SIZE;
-                            log.debug("size={}; object={}", size, Utilities.toTruncatedString(proto, 100));
-                        } else {
-                            exceeds = size > PERMITTED_MESSAGE_SIZE;
-                        }
-
-                        if (exceeds) {
-                            log.warn("size > MAX_MSG_SIZE. size={}; object={}", size, Utilities.toTruncatedString(proto));
-
-                            if (reportInvalidRequest(RuleViolation.MAX_MSG_SIZE_EXCEEDED))
-                                return;
-                        }
-
-                        if (connection.violatesThrottleLimit(networkEnvelope)
-                                && reportInvalidRequest(RuleViolation.THROTTLE_LIMIT_EXCEEDED))
+                        if (!handleProto(proto))
                             return;
-
-                        // Check P2P network ID
-                        if (proto.getMessageVersion() != Version.getP2PMessageVersion()
-                                && reportInvalidRequest(RuleViolation.WRONG_NETWORK_ID)) {
-                            log.warn("RuleViolation.WRONG_NETWORK_ID. version of message={}, app version={}, " +
-                                            "proto.toTruncatedString={}", proto.getMessageVersion(),
-                                    Version.getP2PMessageVersion(),
-                                    Utilities.toTruncatedString(proto.toString()));
-                            return;
-                        }
-
-                        if (sharedModel.getSupportedCapabilities() == null && networkEnvelope instanceof SupportedCapabilitiesMessage)
-                            sharedModel.setSupportedCapabilities(((SupportedCapabilitiesMessage) networkEnvelope).getSupportedCapabilities());
-
-                        if (networkEnvelope instanceof CloseConnectionMessage) {
-                            // If we get a CloseConnectionMessage we shut down
-                            log.debug("CloseConnectionMessage received. Reason={}\n\t" +
-                                    "connection={}", proto.getCloseConnectionMessage().getReason(), connection);
-                            if (CloseConnectionReason.PEER_BANNED.name().equals(proto.getCloseConnectionMessage().getReason())) {
-                                log.warn("We got shut down because we are banned by the other peer. (InputHandler.run CloseConnectionMessage)");
-                                stopAndShutDown(CloseConnectionReason.PEER_BANNED);
-                            } else {
-                                stopAndShutDown(CloseConnectionReason.CLOSE_REQUESTED_BY_PEER);
-                            }
-                            return;
-                        } else if (!stopped) {
-                            // We don't want to get the activity ts updated by ping/pong msg
-                            if (!(networkEnvelope instanceof KeepAliveMessage))
-                                connection.statistic.updateLastActivityTimestamp();
-
-                            if (networkEnvelope instanceof GetDataRequest)
-                                connection.setPeerType(PeerType.INITIAL_DATA_REQUEST);
-
-                            // First a seed node gets a message from a peer (PreliminaryDataRequest using
-                            // AnonymousMessage interface) which does not have its hidden service
-                            // published, so it does not know its address. As the IncomingConnection does not have the
-                            // peersNodeAddress set that connection cannot be used for outgoing network_messages until we
-                            // get the address set.
-                            // At the data update message (DataRequest using SendersNodeAddressMessage interface)
-                            // after the HS is published we get the peer's address set.
-
-                            // There are only those network_messages used for new connections to a peer:
-                            // 1. PreliminaryDataRequest
-                            // 2. DataRequest (implements SendersNodeAddressMessage)
-                            // 3. GetPeersRequest (implements SendersNodeAddressMessage)
-                            // 4. DirectMessage (implements SendersNodeAddressMessage)
-                            if (networkEnvelope instanceof SendersNodeAddressMessage) {
-                                NodeAddress senderNodeAddress = ((SendersNodeAddressMessage) networkEnvelope).getSenderNodeAddress();
-                                // We must not shut down a banned peer at that moment as it would trigger a connection termination
-                                // and we could not send the CloseConnectionMessage.
-                                // We shut down a banned peer at the next step at setPeersNodeAddress().
-
-                                Optional<NodeAddress> peersNodeAddressOptional = connection.getPeersNodeAddressOptional();
-                                if (peersNodeAddressOptional.isPresent()) {
-                                    // If we have already the peers address we check again if it matches our stored one
-                                    checkArgument(peersNodeAddressOptional.get().equals(senderNodeAddress),
-                                            "senderNodeAddress not matching connections peer address.\n\t" +
-                                                    "message=" + networkEnvelope);
-                                } else {
-                                    connection.setPeersNodeAddress(senderNodeAddress);
-                                }
-                            }
-
-                            if (networkEnvelope instanceof PrefixedSealedAndSignedMessage)
-                                connection.setPeerType(Connection.PeerType.DIRECT_MSG_PEER);
-
-                            messageListener.onMessage(networkEnvelope, connection);
-                        }
                     } catch (InvalidClassException e) {
                         log.error(e.getMessage());
                         e.printStackTrace();
@@ -914,32 +1294,152 @@ public class Connection implements MessageListener {
             }
         }
 
-        private void stopAndShutDown(CloseConnectionReason reason) {
-            stop();
-            sharedModel.shutDown(reason);
+        @Override
+        public String toString() {
+            return "InputHandler{" +
+                    "sharedSpace=" + sharedModel +
+                    ", port=" + portInfo +
+                    ", stopped=" + stopped +
+                    '}';
         }
+    }
 
-        private void handleException(Throwable e) {
-            stop();
-            if (sharedModel != null)
-                sharedModel.handleConnectionException(e);
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // NioInputHandler
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Used instead of the blocking InputHandler if the connection is served by the NioTransport.
+    // Gets called from an event loop thread when data is available, decodes the varint delimited frames
+    // from the pooled read buffer and processes the network_messages the same way as the InputHandler.
+    private static class NioInputHandler extends EnvelopeHandler implements NioTransport.ReadHandler {
+        private static final Logger log = LoggerFactory.getLogger(NioInputHandler.class);
+
+        private final SocketChannel channel;
+        private volatile long lastBytesReceivedTimeStamp = System.currentTimeMillis();
+        // Frame which did not fit into the remaining read buffer, gets completed with the next reads
+        @Nullable
+        private byte[] pendingFrame;
+        private int pendingFramePosition;
+        // Bytes of a frame exceeding MAX_PERMITTED_MESSAGE_SIZE which we do not buffer
+        private int numBytesToSkip;
+
+        public NioInputHandler(SharedModel sharedModel,
+                               SocketChannel channel,
+                               String portInfo,
+                               MessageListener messageListener,
+                               NetworkProtoResolver networkProtoResolver) {
+            super(sharedModel, portInfo, messageListener, networkProtoResolver);
+            this.channel = channel;
         }
 
+        @Override
+        void stop() {
+            // The channel gets closed with the socket at Connection.doShutDown which cancels our registration
+            stopped = true;
+        }
 
-        private boolean reportInvalidRequest(RuleViolation ruleViolation) {
-            boolean causedShutDown = sharedModel.reportInvalidRequest(ruleViolation);
-            if (causedShutDown)
-                stop();
-            return causedShutDown;
+        @Override
+        public SocketChannel getChannel() {
+            return channel;
         }
 
         @Override
-        public String toString() {
-            return "InputHandler{" +
-                    "sharedSpace=" + sharedModel +
-                    ", port=" + portInfo +
-                    ", stopped=" + stopped +
-                    '}';
+        public void onReadable(ByteBuffer readBuffer) throws IOException {
+            if (channel.read(readBuffer) == -1)
+                throw new EOFException("Channel has reached end-of-stream");
+
+            lastBytesReceivedTimeStamp = System.currentTimeMillis();
+            readBuffer.flip();
+            try {
+                //noinspection StatementWithEmptyBody
+                while (!stopped && decodeFrame(readBuffer)) {
+                }
+            } finally {
+                readBuffer.compact();
+            }
+        }
+
+        @Override
+        public long getLastReadTimeStamp() {
+            return lastBytesReceivedTimeStamp;
+        }
+
+        @Override
+        public long getReadTimeoutMillis() {
+            return SOCKET_TIMEOUT;
+        }
+
+        @Override
+        public void onFailure(Throwable throwable) {
+            handleException(throwable);
+        }
+
+        // Returns true if a frame got completed or skipped and there might be more frames in the buffer
+        private boolean decodeFrame(ByteBuffer readBuffer) throws IOException {
+            if (numBytesToSkip > 0) {
+                int length = Math.min(numBytesToSkip, readBuffer.remaining());
+                readBuffer.position(readBuffer.position() + length);
+                numBytesToSkip -= length;
+                return numBytesToSkip == 0;
+            }
+
+            if (pendingFrame == null) {
+                int startPosition = readBuffer.position();
+                int frameSize = readRawVarint32(readBuffer);
+                if (frameSize == -1) {
+                    // We wait until we have the complete size prefix
+                    readBuffer.position(startPosition);
+                    return false;
+                }
+
+                if (frameSize > MAX_PERMITTED_MESSAGE_SIZE) {
+                    // We don't buffer data which would fail the size check anyway
+                    log.warn("size > MAX_MSG_SIZE. size={}", frameSize);
+                    numBytesToSkip = frameSize;
+                    reportInvalidRequest(RuleViolation.MAX_MSG_SIZE_EXCEEDED);
+                    return !stopped;
+                }
+
+                if (readBuffer.remaining() >= frameSize) {
+                    // The frame is completely in our buffer, so we parse it without copying
+                    ByteBuffer frame = readBuffer.slice();
+                    frame.limit(frameSize);
+                    readBuffer.position(readBuffer.position() + frameSize);
+                    return processProto(PB.NetworkEnvelope.parseFrom(frame));
+                }
+
+                pendingFrame = new byte[frameSize];
+                pendingFramePosition = 0;
+            }
+
+            int length = Math.min(readBuffer.remaining(), pendingFrame.length - pendingFramePosition);
+            readBuffer.get(pendingFrame, pendingFramePosition, length);
+            pendingFramePosition += length;
+            if (pendingFramePosition < pendingFrame.length)
+                return false;
+
+            byte[] frame = pendingFrame;
+            pendingFrame = null;
+            return processProto(PB.NetworkEnvelope.parseFrom(frame));
+        }
+
+        // Same encoding as used by writeDelimitedTo. Returns -1 if the buffer does not contain the complete varint.
+        private static int readRawVarint32(ByteBuffer buffer) throws InvalidProtocolBufferException {
+            int result = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                if (!buffer.hasRemaining())
+                    return -1;
+
+                byte b = buffer.get();
+                result |= (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    if (result < 0)
+                        throw new InvalidProtocolBufferException("Received a negative frame size");
+                    return result;
+                }
+            }
+            throw new InvalidProtocolBufferException("Received a malformed frame size");
         }
     }
 }
@@ -0,0 +1,36 @@
+package io.bisq.network.p2p.network;
+
+import lombok.Value;
+
+/**
+ * Rate limits applied to a connection depending on its peer type.
+ * Outbound traffic gets queued and is delayed if the limits are reached. If a peer exceeds the inbound limits we
+ * report a THROTTLE_LIMIT_EXCEEDED rule violation.
+ */
+@Value
+public final class ConnectionLimits {
+    public static final ConnectionLimits DEFAULT = new ConnectionLimits(2 * 1024 * 1024, 512 * 1024, 50, 20,
+            Connection.MSG_THROTTLE_PER_SEC, Connection.MSG_THROTTLE_PER_10_SEC);
+    // Seed nodes and peers requesting the initial data get the large GetDataResponse, so we permit more bytes
+    public static final ConnectionLimits BULK_DATA = new ConnectionLimits(10 * 1024 * 1024, 2 * 1024 * 1024, 100, 50,
+            Connection.MSG_THROTTLE_PER_SEC, Connection.MSG_THROTTLE_PER_10_SEC);
+
+    // Outbound
+    private final long maxBytesPerSec;
+    private final long maxBurstBytes;
+    private final long maxMessagesPerSec;
+    private final long maxBurstMessages;
+    // Inbound
+    private final int msgThrottlePerSec;
+    private final int msgThrottlePer10Sec;
+
+    public ConnectionLimits(long maxBytesPerSec, long maxBurstBytes, long maxMessagesPerSec, long maxBurstMessages,
+                            int msgThrottlePerSec, int msgThrottlePer10Sec) {
+        this.maxBytesPerSec = maxBytesPerSec;
+        this.maxBurstBytes = maxBurstBytes;
+        this.maxMessagesPerSec = maxMessagesPerSec;
+        this.maxBurstMessages = maxBurstMessages;
+        this.msgThrottlePerSec = msgThrottlePerSec;
+        this.msgThrottlePer10Sec = msgThrottlePer10Sec;
+    }
+}
@@ -0,0 +1,106 @@
+package io.bisq.network.p2p.network;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.bisq.generated.protobuffer.PB;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses large NetworkEnvelopes into a CompressedEnvelope for peers supporting the COMPRESSED_ENVELOPE capability.
+ * We use Deflate from the JDK as it does not require a native library.
+ * <p/>
+ * The receiver checks the announced uncompressed size against MAX_PERMITTED_MESSAGE_SIZE before it allocates the
+ * buffer and never inflates more than the announced size, so a small compressed message cannot make us allocate more
+ * memory than an uncompressed one. The size checks of the InputHandler are done with the uncompressed size.
+ */
+final class EnvelopeCompression {
+    // Smaller messages (most of our network_messages) are not worth the effort
+    static final int MIN_SIZE_TO_COMPRESS = 4 * 1024;
+    // We send the message uncompressed if we don't save at least 10%
+    private static final double MAX_COMPRESSION_RATIO = 0.9;
+
+    private EnvelopeCompression() {
+    }
+
+    /**
+     * @return The CompressedEnvelope or null if the message is too small or does not compress well (e.g. encrypted
+     * data).
+     */
+    @Nullable
+    static PB.NetworkEnvelope compress(PB.NetworkEnvelope proto) {
+        int size = proto.getSerializedSize();
+        if (size < MIN_SIZE_TO_COMPRESS)
+            return null;
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(proto.toByteArray());
+            deflater.finish();
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(size / 2);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                outputStream.write(buffer, 0, deflater.deflate(buffer));
+                if (outputStream.size() > size * MAX_COMPRESSION_RATIO)
+                    return null;
+            }
+
+            return PB.NetworkEnvelope.newBuilder()
+                    .setMessageVersion(proto.getMessageVersion())
+                    .setCompressedEnvelope(PB.CompressedEnvelope.newBuilder()
+                            .setAlgorithm(PB.CompressedEnvelope.Algorithm.DEFLATE)
+                            .setUncompressedSize(size)
+                            .setData(ByteString.copyFrom(outputStream.toByteArray())))
+                    .build();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * @throws IOException If the data is corrupt, uses an unknown algorithm, or does not match the announced size
+     */
+    static PB.NetworkEnvelope decompress(PB.CompressedEnvelope compressedEnvelope) throws IOException {
+        if (compressedEnvelope.getAlgorithm() != PB.CompressedEnvelope.Algorithm.DEFLATE)
+            throw new IOException("Unsupported compression algorithm " + compressedEnvelope.getAlgorithm());
+
+        int uncompressedSize = compressedEnvelope.getUncompressedSize();
+        if (uncompressedSize < 0 || uncompressedSize > Connection.MAX_PERMITTED_MESSAGE_SIZE)
+            throw new IOException("Invalid uncompressed size " + uncompressedSize);
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressedEnvelope.getData().toByteArray());
+            byte[] uncompressed = new byte[uncompressedSize];
+            // Once we have the announced size only the end of the stream may follow
+            byte[] overflow = new byte[1];
+            int length = 0;
+            while (!inflater.finished()) {
+                int numBytes = length < uncompressedSize ?
+                        inflater.inflate(uncompressed, length, uncompressedSize - length) :
+                        inflater.inflate(overflow);
+                if (numBytes > 0 && length == uncompressedSize)
+                    throw new IOException("Uncompressed data exceeds the announced size " + uncompressedSize);
+                if (numBytes == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new IOException("Compressed data is incomplete");
+                length += numBytes;
+            }
+            if (length != uncompressedSize)
+                throw new IOException("Uncompressed data does not match the announced size " + uncompressedSize);
+
+            PB.NetworkEnvelope proto = PB.NetworkEnvelope.parseFrom(uncompressed);
+            if (proto.getMessageCase() == PB.NetworkEnvelope.MessageCase.COMPRESSED_ENVELOPE)
+                throw new InvalidProtocolBufferException("Nested CompressedEnvelope");
+            return proto;
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid compressed data", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
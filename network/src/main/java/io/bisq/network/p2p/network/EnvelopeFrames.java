@@ -0,0 +1,137 @@
+package io.bisq.network.p2p.network;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.bisq.generated.protobuffer.PB;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits large NetworkEnvelopes into EnvelopeFrames for peers supporting the ENVELOPE_FRAMES capability, so the writer
+ * can send small messages of higher priority (e.g. trade messages and keep alive pings) in between the frames of a
+ * bulk transfer instead of queuing them behind a GetDataResponse of several MB.
+ * <p/>
+ * The receiver checks the announced total size against MAX_PERMITTED_MESSAGE_SIZE before it buffers any data and
+ * limits the number of streams it reassembles at the same time.
+ */
+final class EnvelopeFrames {
+    // At about 100 kb/sec over Tor a frame takes less than 200 ms to send
+    static final int FRAME_SIZE = 16 * 1024;
+
+    private EnvelopeFrames() {
+    }
+
+    /**
+     * @return The frames or null if the message fits into a single frame.
+     */
+    @Nullable
+    static List<PB.NetworkEnvelope> split(PB.NetworkEnvelope proto, int streamId) {
+        int size = proto.getSerializedSize();
+        if (size <= FRAME_SIZE)
+            return null;
+
+        // Substrings of the ByteString share its data, so we serialize only once
+        ByteString data = proto.toByteString();
+        List<PB.NetworkEnvelope> frames = new ArrayList<>(size / FRAME_SIZE + 1);
+        for (int from = 0; from < size; from += FRAME_SIZE) {
+            int to = Math.min(from + FRAME_SIZE, size);
+            frames.add(PB.NetworkEnvelope.newBuilder()
+                    .setMessageVersion(proto.getMessageVersion())
+                    .setEnvelopeFrame(PB.EnvelopeFrame.newBuilder()
+                            .setStreamId(streamId)
+                            .setTotalSize(size)
+                            .setIsLast(to == size)
+                            .setData(data.substring(from, to)))
+                    .build());
+        }
+        return frames;
+    }
+
+    /**
+     * Reassembles the frames received from one connection. Not thread safe, used only by the InputHandler.
+     */
+    static class Assembler {
+        // The sender writes at most one message per priority at a time
+        static final int MAX_STREAMS = 8;
+
+        private final Map<Integer, ByteArrayOutputStream> streams = new HashMap<>();
+        private final Map<Integer, Integer> totalSizes = new HashMap<>();
+        private int numBufferedBytes;
+
+        /**
+         * @return The reassembled envelope if that was the last frame of the stream, otherwise null.
+         * @throws IOException If the frame is invalid or exceeds our limits. The data of that stream gets dropped.
+         */
+        @Nullable
+        PB.NetworkEnvelope add(PB.EnvelopeFrame frame) throws IOException {
+            int streamId = frame.getStreamId();
+            try {
+                return doAdd(frame);
+            } catch (IOException e) {
+                removeStream(streamId);
+                throw e;
+            }
+        }
+
+        int getNumStreams() {
+            return streams.size();
+        }
+
+        int getNumBufferedBytes() {
+            return numBufferedBytes;
+        }
+
+        @Nullable
+        private PB.NetworkEnvelope doAdd(PB.EnvelopeFrame frame) throws IOException {
+            int streamId = frame.getStreamId();
+            int totalSize = frame.getTotalSize();
+            ByteArrayOutputStream stream = streams.get(streamId);
+            if (stream == null) {
+                if (totalSize <= 0 || totalSize > Connection.MAX_PERMITTED_MESSAGE_SIZE)
+                    throw new IOException("Invalid total size " + totalSize);
+                if (streams.size() >= MAX_STREAMS)
+                    throw new IOException("Too many concurrent streams");
+                if (numBufferedBytes + totalSize > Connection.MAX_PERMITTED_MESSAGE_SIZE)
+                    throw new IOException("Buffered frames exceed MAX_PERMITTED_MESSAGE_SIZE");
+
+                // We don't allocate the announced size upfront as the frames might never arrive
+                stream = new ByteArrayOutputStream(Math.min(totalSize, 2 * EnvelopeFrames.FRAME_SIZE));
+                streams.put(streamId, stream);
+                totalSizes.put(streamId, totalSize);
+                numBufferedBytes += totalSize;
+            } else if (totalSizes.get(streamId) != totalSize) {
+                throw new IOException("Total size of stream " + streamId + " changed");
+            }
+
+            ByteString data = frame.getData();
+            if (stream.size() + data.size() > totalSize)
+                throw new IOException("Frames exceed the announced size " + totalSize);
+            data.writeTo(stream);
+
+            if (!frame.getIsLast())
+                return null;
+
+            if (stream.size() != totalSize)
+                throw new IOException("Frames do not match the announced size " + totalSize);
+
+            removeStream(streamId);
+            PB.NetworkEnvelope proto = PB.NetworkEnvelope.parseFrom(stream.toByteArray());
+            if (proto.getMessageCase() == PB.NetworkEnvelope.MessageCase.ENVELOPE_FRAME)
+                throw new InvalidProtocolBufferException("Nested EnvelopeFrame");
+            return proto;
+        }
+
+        private void removeStream(int streamId) {
+            Integer totalSize = totalSizes.remove(streamId);
+            if (totalSize != null)
+                numBufferedBytes -= totalSize;
+            streams.remove(streamId);
+        }
+    }
+}
@@ -1,14 +1,18 @@
 package io.bisq.network.p2p.network;
 
 import io.bisq.common.proto.network.NetworkProtoResolver;
+import org.jetbrains.annotations.Nullable;
 
 import java.net.Socket;
+import java.util.concurrent.ScheduledExecutorService;
 
 public class InboundConnection extends Connection {
     public InboundConnection(Socket socket,
                              MessageListener messageListener,
                              ConnectionListener connectionListener,
-                             NetworkProtoResolver networkProtoResolver) {
-        super(socket, messageListener, connectionListener, null, networkProtoResolver);
+                             NetworkProtoResolver networkProtoResolver,
+                             @Nullable NioTransport nioTransport,
+                             ScheduledExecutorService writerExecutor) {
+        super(socket, messageListener, connectionListener, null, networkProtoResolver, nioTransport, writerExecutor);
     }
 }
@@ -0,0 +1,128 @@
+package io.bisq.network.p2p.network;
+
+import io.bisq.generated.protobuffer.PB;
+import io.bisq.network.p2p.NodeAddress;
+import lombok.Value;
+import org.jetbrains.annotations.Nullable;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Keeps type, size, peer and time of the last sent and received messages in a ring buffer, so we can see what went
+ * over the wire when we investigate an issue without logging the messages. Recording a message costs one small object
+ * and no string building, the text is only created when the trace gets dumped. With a sample rate of n only every
+ * n-th message gets recorded, with a sample rate of 0 nothing gets recorded.
+ * <p/>
+ * The trace of a connection gets logged when it fails with corrupted data or an unknown exception, the whole trace
+ * gets logged at debug level at shut down.
+ * <p/>
+ * Written by the reader and writer threads of all connections. Entries written while we read the trace might be
+ * missing or already overwritten.
+ */
+public class MessageTrace {
+    static final int DEFAULT_CAPACITY = 1000;
+    public static final int DEFAULT_SAMPLE_RATE = 1;
+
+    private static final MessageTrace INSTANCE = new MessageTrace(DEFAULT_CAPACITY);
+
+    public static MessageTrace getInstance() {
+        return INSTANCE;
+    }
+
+    public enum Direction {
+        SENT,
+        RECEIVED
+    }
+
+    @Value
+    public static class Entry {
+        private final long timestamp;
+        private final Direction direction;
+        private final PB.NetworkEnvelope.MessageCase messageCase;
+        private final int size;
+        @Nullable
+        private final NodeAddress peersNodeAddress;
+        private final String connectionUid;
+
+        @Override
+        public String toString() {
+            return new SimpleDateFormat("HH:mm:ss.SSS").format(new Date(timestamp)) + " " + direction + " " +
+                    messageCase + " size=" + size + " peer=" + peersNodeAddress + " uid=" + connectionUid;
+        }
+    }
+
+    private final int capacity;
+    private final AtomicReferenceArray<Entry> entries;
+    private final AtomicLong numMessages = new AtomicLong();
+    private final AtomicLong numRecordedMessages = new AtomicLong();
+    private volatile int sampleRate = DEFAULT_SAMPLE_RATE;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    MessageTrace(int capacity) {
+        checkArgument(capacity > 0, "capacity must be positive");
+        this.capacity = capacity;
+        entries = new AtomicReferenceArray<>(capacity);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public void setSampleRate(int sampleRate) {
+        checkArgument(sampleRate >= 0, "sampleRate must not be negative");
+        this.sampleRate = sampleRate;
+    }
+
+    public void add(Direction direction, PB.NetworkEnvelope.MessageCase messageCase, int size,
+                    @Nullable NodeAddress peersNodeAddress, String connectionUid) {
+        int sampleRate = this.sampleRate;
+        if (sampleRate == 0 || numMessages.getAndIncrement() % sampleRate != 0)
+            return;
+
+        Entry entry = new Entry(System.currentTimeMillis(), direction, messageCase, size, peersNodeAddress, connectionUid);
+        entries.set((int) (numRecordedMessages.getAndIncrement() % capacity), entry);
+    }
+
+    // Oldest entry first
+    public List<Entry> getEntries() {
+        long end = numRecordedMessages.get();
+        List<Entry> result = new ArrayList<>();
+        for (long i = Math.max(0, end - capacity); i < end; i++) {
+            Entry entry = entries.get((int) (i % capacity));
+            if (entry != null)
+                result.add(entry);
+        }
+        return result;
+    }
+
+    public String dump() {
+        return dump(getEntries());
+    }
+
+    // Only the entries of the given connection
+    public String dump(String connectionUid) {
+        return dump(getEntries().stream()
+                .filter(entry -> entry.getConnectionUid().equals(connectionUid))
+                .collect(Collectors.toList()));
+    }
+
+    private String dump(List<Entry> entries) {
+        StringBuilder sb = new StringBuilder("MessageTrace (sampleRate=").append(sampleRate)
+                .append(", numMessages=").append(numMessages.get()).append(")");
+        entries.forEach(entry -> sb.append("\n").append(entry));
+        return sb.toString();
+    }
+}
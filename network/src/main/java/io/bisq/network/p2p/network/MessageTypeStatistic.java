@@ -0,0 +1,108 @@
+package io.bisq.network.p2p.network;
+
+import io.bisq.generated.protobuffer.PB;
+import lombok.Value;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free counters per message type, updated from the reader and writer threads of the connections. The message
+ * type is the MessageCase of the PB.NetworkEnvelope, so we index an array by its ordinal instead of looking up the
+ * class name in a map. Sizes (bytes) and latencies (ms) are counted in buckets of powers of two: bucket 0 holds 0,
+ * bucket i holds the values from 2^(i-1) to 2^i - 1 and the last bucket all larger values.
+ */
+public class MessageTypeStatistic {
+    public static final int NUM_BUCKETS = 32;
+
+    private static final PB.NetworkEnvelope.MessageCase[] MESSAGE_CASES = PB.NetworkEnvelope.MessageCase.values();
+
+    @Value
+    public static class Entry {
+        private final long count;
+        private final long bytes;
+        private final long[] sizeHistogram;
+        // Empty if we don't measure the latency for that direction
+        private final long[] latencyHistogram;
+    }
+
+    private final LongAdder[] counts = new LongAdder[MESSAGE_CASES.length];
+    private final LongAdder[] bytes = new LongAdder[MESSAGE_CASES.length];
+    private final AtomicLongArray sizeHistograms = new AtomicLongArray(MESSAGE_CASES.length * NUM_BUCKETS);
+    private final AtomicLongArray latencyHistograms = new AtomicLongArray(MESSAGE_CASES.length * NUM_BUCKETS);
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public MessageTypeStatistic() {
+        for (int i = 0; i < MESSAGE_CASES.length; i++) {
+            counts[i] = new LongAdder();
+            bytes[i] = new LongAdder();
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public void add(PB.NetworkEnvelope.MessageCase messageCase, int size) {
+        int index = messageCase.ordinal();
+        counts[index].increment();
+        bytes[index].add(size);
+        sizeHistograms.incrementAndGet(index * NUM_BUCKETS + getBucket(size));
+    }
+
+    public void add(PB.NetworkEnvelope.MessageCase messageCase, int size, long latencyMs) {
+        add(messageCase, size);
+        latencyHistograms.incrementAndGet(messageCase.ordinal() * NUM_BUCKETS + getBucket(latencyMs));
+    }
+
+    public long getCount(PB.NetworkEnvelope.MessageCase messageCase) {
+        return counts[messageCase.ordinal()].sum();
+    }
+
+    // The counters are not read atomically, so concurrent updates might be partly included
+    public Map<PB.NetworkEnvelope.MessageCase, Entry> getSnapshot() {
+        Map<PB.NetworkEnvelope.MessageCase, Entry> snapshot = new EnumMap<>(PB.NetworkEnvelope.MessageCase.class);
+        for (int i = 0; i < MESSAGE_CASES.length; i++) {
+            long count = counts[i].sum();
+            if (count > 0)
+                snapshot.put(MESSAGE_CASES[i], new Entry(count, bytes[i].sum(),
+                        getHistogram(sizeHistograms, i), getHistogram(latencyHistograms, i)));
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    static int getBucket(long value) {
+        return value <= 0 ? 0 : Math.min(NUM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("MessageTypeStatistic{");
+        getSnapshot().forEach((messageCase, entry) -> sb.append(messageCase).append("=")
+                .append(entry.getCount()).append("/").append(entry.getBytes()).append(" bytes, "));
+        return sb.append("}").toString();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static long[] getHistogram(AtomicLongArray histograms, int index) {
+        long[] histogram = new long[NUM_BUCKETS];
+        boolean isEmpty = true;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            histogram[i] = histograms.get(index * NUM_BUCKETS + i);
+            isEmpty &= histogram[i] == 0;
+        }
+        return isEmpty ? new long[0] : histogram;
+    }
+}
@@ -20,19 +20,25 @@ import java.io.IOException;
 import java.net.ConnectException;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.HashSet;
-import java.util.Optional;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 // Run in UserThread
 public abstract class NetworkNode implements MessageListener {
     private static final Logger log = LoggerFactory.getLogger(NetworkNode.class);
     private static final int CREATE_SOCKET_TIMEOUT_MILLIS = 10000;
+    private static final int NUM_NIO_EVENT_LOOPS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    // A write to a slow peer blocks its thread, so we allow as many writer threads as the executorService has
+    private static final int NUM_WRITER_THREADS = 30;
 
     final int servicePort;
     private final NetworkProtoResolver networkProtoResolver;
@@ -42,11 +48,17 @@ public abstract class NetworkNode implements MessageListener {
     private final CopyOnWriteArraySet<ConnectionListener> connectionListeners = new CopyOnWriteArraySet<>();
     final CopyOnWriteArraySet<SetupListener> setupListeners = new CopyOnWriteArraySet<>();
     ListeningExecutorService executorService;
+    ScheduledThreadPoolExecutor writerExecutor;
+    @Nullable
+    NioTransport nioTransport;
     private Server server;
+    private boolean useNioTransport;
 
     private volatile boolean shutDownInProgress;
     // accessed from different threads
     private final CopyOnWriteArraySet<OutboundConnection> outBoundConnections = new CopyOnWriteArraySet<>();
+    private final Map<NodeAddress, ListenableFuture<Connection>> pendingConnects = new ConcurrentHashMap<>();
+    private final ConnectStatistic connectStatistic = new ConnectStatistic();
     protected final ObjectProperty<NodeAddress> nodeAddressProperty = new SimpleObjectProperty<>();
 
 
@@ -67,14 +79,16 @@ public abstract class NetworkNode implements MessageListener {
     // when the events happen.
     abstract public void start(@Nullable SetupListener setupListener);
 
+    // Needs to be set before start is called
+    public void setUseNioTransport(boolean useNioTransport) {
+        this.useNioTransport = useNioTransport;
+    }
+
     public SettableFuture<Connection> sendMessage(@NotNull NodeAddress peersNodeAddress, NetworkEnvelope networkEnvelop) {
-        Log.traceCall("peersNodeAddress=" + peersNodeAddress + "\n\tmessage=" + Utilities.toTruncatedString(networkEnvelop));
+        Log.traceCall(() -> "peersNodeAddress=" + peersNodeAddress + "\n\tmessage=" + Utilities.toTruncatedString(networkEnvelop));
         checkNotNull(peersNodeAddress, "peerAddress must not be null");
 
-        Connection connection = getOutboundConnection(peersNodeAddress);
-        if (connection == null)
-            connection = getInboundConnection(peersNodeAddress);
-
+        Connection connection = getConnection(peersNodeAddress);
         if (connection != null) {
             return sendMessage(connection, networkEnvelop);
         } else {
@@ -82,94 +96,8 @@ public abstract class NetworkNode implements MessageListener {
                     "We will create a new outbound connection.", peersNodeAddress);
 
             final SettableFuture<Connection> resultFuture = SettableFuture.create();
-            ListenableFuture<Connection> future = executorService.submit(() -> {
-                Thread.currentThread().setName("NetworkNode:SendMessage-to-" + peersNodeAddress);
-                OutboundConnection outboundConnection = null;
-                try {
-                    // can take a while when using tor
-                    long startTs = System.currentTimeMillis();
-                    log.debug("Start create socket to peersNodeAddress {}", peersNodeAddress.getFullAddress());
-                    Socket socket = createSocket(peersNodeAddress);
-                    long duration = System.currentTimeMillis() - startTs;
-                    log.debug("Socket creation to peersNodeAddress {} took {} ms", peersNodeAddress.getFullAddress(),
-                            duration);
-
-                    if (duration > CREATE_SOCKET_TIMEOUT_MILLIS)
-                        throw new TimeoutException("A timeout occurred when creating a socket.");
-
-                    // Tor needs sometimes quite long to create a connection. To avoid that we get too many double 
-                    // sided connections we check again if we still don't have any connection for that node address.
-                    Connection existingConnection = getInboundConnection(peersNodeAddress);
-                    if (existingConnection == null)
-                        existingConnection = getOutboundConnection(peersNodeAddress);
-
-                    if (existingConnection != null) {
-                        log.debug("We found in the meantime a connection for peersNodeAddress {}, " +
-                                        "so we use that for sending the message.\n" +
-                                        "That can happen if Tor needs long for creating a new outbound connection.\n" +
-                                        "We might have got a new inbound or outbound connection.",
-                                peersNodeAddress.getFullAddress());
-                        try {
-                            socket.close();
-                        } catch (Throwable throwable) {
-                            log.error("Error at closing socket " + throwable);
-                        }
-                        existingConnection.sendMessage(networkEnvelop);
-                        return existingConnection;
-                    } else {
-                        final ConnectionListener connectionListener = new ConnectionListener() {
-                            @Override
-                            public void onConnection(Connection connection) {
-                                if (!connection.isStopped()) {
-                                    outBoundConnections.add((OutboundConnection) connection);
-                                    printOutBoundConnections();
-                                    connectionListeners.stream().forEach(e -> e.onConnection(connection));
-                                }
-                            }
-
-                            @Override
-                            public void onDisconnect(CloseConnectionReason closeConnectionReason, Connection connection) {
-                                log.trace("onDisconnect connectionListener\n\tconnection={}" + connection);
-                                //noinspection SuspiciousMethodCalls
-                                outBoundConnections.remove(connection);
-                                printOutBoundConnections();
-                                connectionListeners.stream().forEach(e -> e.onDisconnect(closeConnectionReason, connection));
-                            }
-
-                            @Override
-                            public void onError(Throwable throwable) {
-                                log.error("new OutboundConnection.ConnectionListener.onError " + throwable.getMessage());
-                                connectionListeners.stream().forEach(e -> e.onError(throwable));
-                            }
-                        };
-                        outboundConnection = new OutboundConnection(socket,
-                                NetworkNode.this,
-                                connectionListener,
-                                peersNodeAddress,
-                                networkProtoResolver);
-
-                        log.debug("\n\n%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%\n" +
-                                "NetworkNode created new outbound connection:"
-                                + "\nmyNodeAddress=" + getNodeAddress()
-                                + "\npeersNodeAddress=" + peersNodeAddress
-                                + "\nuid=" + outboundConnection.getUid()
-                                + "\nmessage=" + networkEnvelop
-                                + "\n%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%\n");
-
-                        // can take a while when using tor
-                        outboundConnection.sendMessage(networkEnvelop);
-                        return outboundConnection;
-                    }
-                } catch (Throwable throwable) {
-                    if (!(throwable instanceof ConnectException ||
-                            throwable instanceof IOException ||
-                            throwable instanceof TimeoutException)) {
-                        log.warn("Executing task failed. " + throwable.getMessage());
-                    }
-                    throw throwable;
-                }
-            });
-
+            ListenableFuture<Connection> future = Futures.transformAsync(connect(peersNodeAddress),
+                    newConnection -> newConnection.sendMessage(networkEnvelop));
             Futures.addCallback(future, new FutureCallback<Connection>() {
                 public void onSuccess(Connection connection) {
                     UserThread.execute(() -> resultFuture.set(connection));
@@ -184,6 +112,161 @@ public abstract class NetworkNode implements MessageListener {
         }
     }
 
+    /**
+     * Returns the existing connection to that peer or creates a new outbound connection. Concurrent calls for the same
+     * peer share one connect attempt, so we don't create several Tor circuits to the same hidden service.
+     * The returned future does not complete on the UserThread.
+     */
+    public ListenableFuture<Connection> connect(@NotNull NodeAddress peersNodeAddress) {
+        checkNotNull(peersNodeAddress, "peerAddress must not be null");
+        Connection connection = getConnection(peersNodeAddress);
+        if (connection != null)
+            return Futures.immediateFuture(connection);
+
+        SettableFuture<Connection> future = SettableFuture.create();
+        ListenableFuture<Connection> pendingFuture = pendingConnects.putIfAbsent(peersNodeAddress, future);
+        if (pendingFuture != null && pendingFuture.isDone()) {
+            // The attempt has completed but its listener has not removed it yet
+            pendingConnects.remove(peersNodeAddress, pendingFuture);
+            pendingFuture = pendingConnects.putIfAbsent(peersNodeAddress, future);
+        }
+        if (pendingFuture != null) {
+            log.debug("We are connecting already to peersNodeAddress {}. We wait for that connection.",
+                    peersNodeAddress.getFullAddress());
+            connectStatistic.addDeduplicatedConnect();
+            return pendingFuture;
+        }
+
+        future.addListener(() -> pendingConnects.remove(peersNodeAddress, future), MoreExecutors.directExecutor());
+        try {
+            future.setFuture(executorService.submit(() -> createOutboundConnection(peersNodeAddress)));
+        } catch (Throwable t) {
+            // The executor might be shut down already
+            future.setException(t);
+        }
+        return future;
+    }
+
+    /**
+     * Connects to all candidates in parallel and completes with the first connection, so a slow or offline peer does
+     * not delay us. The other connections get established as well and are left to the PeerManager.
+     * The returned future completes on the UserThread and fails if we could not connect to any of the candidates.
+     */
+    public SettableFuture<Connection> connectToAny(Collection<NodeAddress> candidates) {
+        checkArgument(!candidates.isEmpty(), "candidates must not be empty");
+        final SettableFuture<Connection> resultFuture = SettableFuture.create();
+        AtomicInteger numPendingConnects = new AtomicInteger(candidates.size());
+        candidates.forEach(candidate -> Futures.addCallback(connect(candidate), new FutureCallback<Connection>() {
+            public void onSuccess(Connection connection) {
+                UserThread.execute(() -> resultFuture.set(connection));
+            }
+
+            public void onFailure(@NotNull Throwable throwable) {
+                if (numPendingConnects.decrementAndGet() == 0)
+                    UserThread.execute(() -> resultFuture.setException(throwable));
+            }
+        }));
+        return resultFuture;
+    }
+
+    // Runs on the executorService
+    private Connection createOutboundConnection(NodeAddress peersNodeAddress) throws Exception {
+        Thread.currentThread().setName("NetworkNode:Connect-to-" + peersNodeAddress);
+        long startTs = System.currentTimeMillis();
+        try {
+            // can take a while when using tor
+            log.debug("Start create socket to peersNodeAddress {}", peersNodeAddress.getFullAddress());
+            Socket socket = createSocket(peersNodeAddress);
+            long duration = System.currentTimeMillis() - startTs;
+            log.debug("Socket creation to peersNodeAddress {} took {} ms", peersNodeAddress.getFullAddress(),
+                    duration);
+
+            if (duration > CREATE_SOCKET_TIMEOUT_MILLIS) {
+                try {
+                    socket.close();
+                } catch (Throwable throwable) {
+                    log.error("Error at closing socket " + throwable);
+                }
+                throw new TimeoutException("A timeout occurred when creating a socket.");
+            }
+            connectStatistic.addConnect(duration);
+
+            // Tor needs sometimes quite long to create a connection. To avoid that we get too many double
+            // sided connections we check again if we still don't have any connection for that node address.
+            Connection existingConnection = getConnection(peersNodeAddress);
+            if (existingConnection != null) {
+                log.debug("We found in the meantime a connection for peersNodeAddress {}, " +
+                                "so we use that for sending the message.\n" +
+                                "That can happen if Tor needs long for creating a new outbound connection.\n" +
+                                "We might have got a new inbound or outbound connection.",
+                        peersNodeAddress.getFullAddress());
+                try {
+                    socket.close();
+                } catch (Throwable throwable) {
+                    log.error("Error at closing socket " + throwable);
+                }
+                return existingConnection;
+            }
+
+            final ConnectionListener connectionListener = new ConnectionListener() {
+                @Override
+                public void onConnection(Connection connection) {
+                    if (!connection.isStopped()) {
+                        outBoundConnections.add((OutboundConnection) connection);
+                        printOutBoundConnections();
+                        connectionListeners.stream().forEach(e -> e.onConnection(connection));
+                    }
+                }
+
+                @Override
+                public void onDisconnect(CloseConnectionReason closeConnectionReason, Connection connection) {
+                    log.trace("onDisconnect connectionListener\n\tconnection={}" + connection);
+                    //noinspection SuspiciousMethodCalls
+                    outBoundConnections.remove(connection);
+                    printOutBoundConnections();
+                    connectionListeners.stream().forEach(e -> e.onDisconnect(closeConnectionReason, connection));
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    log.error("new OutboundConnection.ConnectionListener.onError " + throwable.getMessage());
+                    connectionListeners.stream().forEach(e -> e.onError(throwable));
+                }
+            };
+            OutboundConnection outboundConnection = new OutboundConnection(socket,
+                    NetworkNode.this,
+                    connectionListener,
+                    peersNodeAddress,
+                    networkProtoResolver,
+                    nioTransport,
+                    writerExecutor);
+
+            log.debug("\n\n%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%\n" +
+                    "NetworkNode created new outbound connection:"
+                    + "\nmyNodeAddress=" + getNodeAddress()
+                    + "\npeersNodeAddress=" + peersNodeAddress
+                    + "\nuid=" + outboundConnection.getUid()
+                    + "\n%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%\n");
+            return outboundConnection;
+        } catch (Throwable throwable) {
+            connectStatistic.addFailedConnect();
+            if (!(throwable instanceof ConnectException ||
+                    throwable instanceof IOException ||
+                    throwable instanceof TimeoutException)) {
+                log.warn("Executing task failed. " + throwable.getMessage());
+            }
+            throw throwable;
+        }
+    }
+
+    @Nullable
+    private Connection getConnection(@NotNull NodeAddress peersNodeAddress) {
+        Connection connection = getOutboundConnection(peersNodeAddress);
+        if (connection == null)
+            connection = getInboundConnection(peersNodeAddress);
+        return connection;
+    }
+
     @Nullable
     private InboundConnection getInboundConnection(@NotNull NodeAddress peersNodeAddress) {
         Optional<InboundConnection> inboundConnectionOptional = lookupInBoundConnection(peersNodeAddress);
@@ -227,13 +310,9 @@ public abstract class NetworkNode implements MessageListener {
 
 
     public SettableFuture<Connection> sendMessage(Connection connection, NetworkEnvelope networkEnvelop) {
-        Log.traceCall("\n\tmessage=" + Utilities.toTruncatedString(networkEnvelop) + "\n\tconnection=" + connection);
-        // connection.sendMessage might take a bit (compression, write to stream), so we use a thread to not block
-        ListenableFuture<Connection> future = executorService.submit(() -> {
-            Thread.currentThread().setName("NetworkNode:SendMessage-to-" + connection.getUid());
-            connection.sendMessage(networkEnvelop);
-            return connection;
-        });
+        Log.traceCall(() -> "\n\tmessage=" + Utilities.toTruncatedString(networkEnvelop) + "\n\tconnection=" + connection);
+        // The connection queues the message and writes it with its own writer, so we don't block the caller
+        ListenableFuture<Connection> future = connection.sendMessage(networkEnvelop);
         final SettableFuture<Connection> resultFuture = SettableFuture.create();
         Futures.addCallback(future, new FutureCallback<Connection>() {
             public void onSuccess(Connection connection) {
@@ -247,6 +326,10 @@ public abstract class NetworkNode implements MessageListener {
         return resultFuture;
     }
 
+    public ConnectStatistic getConnectStatistic() {
+        return connectStatistic;
+    }
+
     public ReadOnlyObjectProperty<NodeAddress> nodeAddressProperty() {
         return nodeAddressProperty;
     }
@@ -285,6 +368,20 @@ public abstract class NetworkNode implements MessageListener {
             }
 
             getAllConnections().stream().forEach(c -> c.shutDown(CloseConnectionReason.APP_SHUT_DOWN));
+
+            if (nioTransport != null) {
+                nioTransport.shutDown();
+                nioTransport = null;
+            }
+
+            // The connections write their CloseConnectionMessage with the writerExecutor, so we give them the time
+            // they wait for it to be sent. Already scheduled writes still run after shutdown.
+            if (writerExecutor != null)
+                writerExecutor.schedule(writerExecutor::shutdown, Connection.SEND_CLOSE_CONNECTION_MSG_TIMEOUT_MILLIS,
+                        TimeUnit.MILLISECONDS);
+            log.info("Outbound connects: {}", connectStatistic);
+            if (log.isDebugEnabled())
+                log.debug(MessageTrace.getInstance().dump());
             log.debug("NetworkNode shutdown complete");
         }
         if (shutDownCompleteHandler != null) shutDownCompleteHandler.run();
@@ -350,6 +447,17 @@ public abstract class NetworkNode implements MessageListener {
 
     void createExecutorService() {
         executorService = Utilities.getListeningExecutorService("NetworkNode-" + servicePort, 15, 30, 60);
+        writerExecutor = Utilities.getScheduledThreadPoolExecutor("NetworkNode-" + servicePort + "-Writer-%d",
+                NUM_WRITER_THREADS, NUM_WRITER_THREADS, 60);
+
+        if (useNioTransport) {
+            try {
+                nioTransport = new NioTransport("NetworkNode-" + servicePort, NUM_NIO_EVENT_LOOPS);
+            } catch (IOException e) {
+                log.error("Could not create NioTransport. We use the blocking transport instead. " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
     }
 
     void startServer(ServerSocket serverSocket) {
@@ -381,7 +489,9 @@ public abstract class NetworkNode implements MessageListener {
         server = new Server(serverSocket,
                 NetworkNode.this,
                 connectionListener,
-                networkProtoResolver);
+                networkProtoResolver,
+                nioTransport,
+                writerExecutor);
         executorService.submit(server);
     }
 
@@ -0,0 +1,257 @@
+package io.bisq.network.p2p.network;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Selector based transport for connections whose socket is backed by a SocketChannel.
+ * Instead of one blocking InputHandler thread per connection a few event loop threads read the data of all
+ * registered connections into pooled buffers and hand over complete frames to the connection's ReadHandler.
+ * Sockets without a channel (e.g. the socks sockets used for outbound tor connections) are not supported and
+ * still use the blocking InputHandler.
+ */
+class NioTransport {
+    private static final Logger log = LoggerFactory.getLogger(NioTransport.class);
+
+    private static final int SELECT_TIMEOUT_MILLIS = 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 256;
+
+    static boolean isSupported(Socket socket) {
+        return socket.getChannel() != null;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // ReadHandler
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    interface ReadHandler {
+        SocketChannel getChannel();
+
+        // Called from the event loop thread when data is available. The buffer is in write mode.
+        void onReadable(ByteBuffer readBuffer) throws IOException;
+
+        long getLastReadTimeStamp();
+
+        long getReadTimeoutMillis();
+
+        void onFailure(Throwable throwable);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Class fields
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private final EventLoop[] eventLoops;
+    private final AtomicInteger nextEventLoop = new AtomicInteger();
+    private final Queue<ByteBuffer> bufferPool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger numPooledBuffers = new AtomicInteger();
+    private volatile boolean stopped;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    NioTransport(String name, int numEventLoops) throws IOException {
+        eventLoops = new EventLoop[numEventLoops];
+        for (int i = 0; i < numEventLoops; i++) {
+            eventLoops[i] = new EventLoop(Selector.open());
+            Thread thread = new Thread(eventLoops[i], name + "-EventLoop-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Called from various threads. The channel must be already in non-blocking mode.
+    void register(ReadHandler readHandler) {
+        if (!stopped) {
+            int index = Math.abs(nextEventLoop.getAndIncrement() % eventLoops.length);
+            eventLoops[index].register(readHandler);
+        } else {
+            log.debug("called register but was already stopped");
+        }
+    }
+
+    void shutDown() {
+        if (!stopped) {
+            stopped = true;
+            for (EventLoop eventLoop : eventLoops) {
+                eventLoop.stop();
+            }
+            bufferPool.clear();
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Buffer pool
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private ByteBuffer borrowBuffer() {
+        ByteBuffer buffer = bufferPool.poll();
+        if (buffer != null) {
+            numPooledBuffers.decrementAndGet();
+            return buffer;
+        } else {
+            return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+    }
+
+    private void returnBuffer(ByteBuffer buffer) {
+        if (!stopped && numPooledBuffers.incrementAndGet() <= MAX_POOLED_BUFFERS) {
+            buffer.clear();
+            bufferPool.offer(buffer);
+        } else {
+            numPooledBuffers.decrementAndGet();
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // EventLoop
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<ReadHandler> pendingRegistrations = new ConcurrentLinkedQueue<>();
+        private volatile boolean stopped;
+        private long lastTimeoutCheck;
+
+        EventLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        void register(ReadHandler readHandler) {
+            pendingRegistrations.offer(readHandler);
+            selector.wakeup();
+        }
+
+        void stop() {
+            stopped = true;
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!stopped && !Thread.currentThread().isInterrupted()) {
+                    selector.select(SELECT_TIMEOUT_MILLIS);
+                    processPendingRegistrations();
+
+                    for (SelectionKey key : selector.selectedKeys()) {
+                        if (key.isValid() && key.isReadable())
+                            read(key);
+                    }
+                    selector.selectedKeys().clear();
+
+                    checkTimeouts();
+                }
+            } catch (ClosedSelectorException e) {
+                log.debug("Selector closed");
+            } catch (Throwable t) {
+                log.error("Executing event loop failed. " + t.getMessage());
+                t.printStackTrace();
+            } finally {
+                closeSelector();
+            }
+        }
+
+        private void processPendingRegistrations() {
+            ReadHandler readHandler;
+            while ((readHandler = pendingRegistrations.poll()) != null) {
+                try {
+                    // Each registered connection keeps its read buffer for its lifetime. Incomplete frames are
+                    // kept in that buffer between read events.
+                    readHandler.getChannel().register(selector, SelectionKey.OP_READ,
+                            new Registration(readHandler, borrowBuffer()));
+                } catch (Throwable t) {
+                    readHandler.onFailure(t);
+                }
+            }
+        }
+
+        private void read(SelectionKey key) {
+            Registration registration = (Registration) key.attachment();
+            try {
+                registration.readHandler.onReadable(registration.readBuffer);
+            } catch (Throwable t) {
+                release(key);
+                registration.readHandler.onFailure(t);
+            }
+        }
+
+        // Replaces the SO_TIMEOUT of the blocking sockets
+        private void checkTimeouts() {
+            long now = System.currentTimeMillis();
+            if (now - lastTimeoutCheck < SELECT_TIMEOUT_MILLIS)
+                return;
+
+            lastTimeoutCheck = now;
+            for (SelectionKey key : selector.keys()) {
+                if (!key.isValid()) {
+                    release(key);
+                    continue;
+                }
+
+                ReadHandler readHandler = ((Registration) key.attachment()).readHandler;
+                long idle = now - readHandler.getLastReadTimeStamp();
+                if (idle > readHandler.getReadTimeoutMillis()) {
+                    release(key);
+                    readHandler.onFailure(new SocketTimeoutException("No data received for " +
+                            TimeUnit.MILLISECONDS.toSeconds(idle) + " sec."));
+                }
+            }
+        }
+
+        private void release(SelectionKey key) {
+            key.cancel();
+            Registration registration = (Registration) key.attachment();
+            if (registration != null && registration.readBuffer != null) {
+                returnBuffer(registration.readBuffer);
+                registration.readBuffer = null;
+            }
+        }
+
+        private void closeSelector() {
+            for (SelectionKey key : selector.keys()) {
+                release(key);
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                log.debug("IOException at closing selector " + e.getMessage());
+            }
+        }
+    }
+
+    private static class Registration {
+        private final ReadHandler readHandler;
+        private ByteBuffer readBuffer;
+
+        Registration(ReadHandler readHandler, ByteBuffer readBuffer) {
+            this.readHandler = readHandler;
+            this.readBuffer = readBuffer;
+        }
+    }
+}
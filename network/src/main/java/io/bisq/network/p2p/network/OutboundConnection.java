@@ -2,15 +2,20 @@ package io.bisq.network.p2p.network;
 
 import io.bisq.common.proto.network.NetworkProtoResolver;
 import io.bisq.network.p2p.NodeAddress;
+import org.jetbrains.annotations.Nullable;
 
 import java.net.Socket;
+import java.util.concurrent.ScheduledExecutorService;
 
 public class OutboundConnection extends Connection {
     public OutboundConnection(Socket socket,
                               MessageListener messageListener,
                               ConnectionListener connectionListener,
                               NodeAddress peersNodeAddress,
-                              NetworkProtoResolver networkProtoResolver) {
-        super(socket, messageListener, connectionListener, peersNodeAddress, networkProtoResolver);
+                              NetworkProtoResolver networkProtoResolver,
+                              @Nullable NioTransport nioTransport,
+                              ScheduledExecutorService writerExecutor) {
+        super(socket, messageListener, connectionListener, peersNodeAddress, networkProtoResolver, nioTransport,
+                writerExecutor);
     }
 }
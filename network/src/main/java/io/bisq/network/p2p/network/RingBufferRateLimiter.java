@@ -0,0 +1,44 @@
+package io.bisq.network.p2p.network;
+
+/**
+ * Keeps the timestamps of the last received messages in a bounded ring buffer and checks if more messages than
+ * permitted have been received in the last second or the last 10 seconds.
+ * Replaces the unbounded list of (timestamp, message) tuples we used before. Not thread safe, used only by the
+ * input handler of a connection.
+ */
+class RingBufferRateLimiter {
+    private long[] timeStamps = new long[0];
+    // Position where the next timestamp gets written
+    private int head;
+    private int size;
+
+    // Adds the timestamp and returns true if the limits got violated
+    boolean addAndCheckLimit(long now, int maxMessagesPerSec, int maxMessagesPer10Sec) {
+        int capacity = Math.max(maxMessagesPerSec, maxMessagesPer10Sec);
+        if (timeStamps.length != capacity) {
+            // Limits have changed (e.g. peer type got updated), we start from scratch
+            timeStamps = new long[capacity];
+            head = 0;
+            size = 0;
+        }
+
+        boolean violated = size >= maxMessagesPerSec && now - get(maxMessagesPerSec) < 1000;
+        if (!violated)
+            violated = size >= maxMessagesPer10Sec && now - get(maxMessagesPer10Sec) < 10_000;
+
+        timeStamps[head] = now;
+        head = (head + 1) % timeStamps.length;
+        if (size < timeStamps.length)
+            size++;
+        return violated;
+    }
+
+    // Returns the timestamp of the n-th last added entry (n=1 is the last one)
+    long get(int n) {
+        return timeStamps[(head - n + timeStamps.length) % timeStamps.length];
+    }
+
+    int size() {
+        return size;
+    }
+}
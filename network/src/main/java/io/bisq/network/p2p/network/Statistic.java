@@ -1,18 +1,21 @@
 package io.bisq.network.p2p.network;
 
-import io.bisq.common.UserThread;
-import io.bisq.common.proto.network.NetworkEnvelope;
+import io.bisq.generated.protobuffer.PB;
 import javafx.beans.property.IntegerProperty;
-import javafx.beans.property.LongProperty;
 import javafx.beans.property.SimpleIntegerProperty;
-import javafx.beans.property.SimpleLongProperty;
+import lombok.Value;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Date;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Traffic counters of a connection and the totals of all connections. They are updated from the reader and writer
+ * threads of the connections with lock free counters, so we don't post a task to the UserThread for each message.
+ * The GUI samples the values instead of getting notified at each change.
+ */
 public class Statistic {
     private static final Logger log = LoggerFactory.getLogger(Statistic.class);
 
@@ -21,23 +24,41 @@ public class Statistic {
     // Static
     ///////////////////////////////////////////////////////////////////////////////////////////
 
-    private final static LongProperty totalSentBytes = new SimpleLongProperty(0);
-    private final static LongProperty totalReceivedBytes = new SimpleLongProperty(0);
+    private final static LongAdder totalSentBytes = new LongAdder();
+    private final static LongAdder totalReceivedBytes = new LongAdder();
+    private final static MessageTypeStatistic totalSentMessages = new MessageTypeStatistic();
+    private final static MessageTypeStatistic totalReceivedMessages = new MessageTypeStatistic();
 
     public static long getTotalSentBytes() {
-        return totalSentBytes.get();
+        return totalSentBytes.sum();
     }
 
-    public static LongProperty totalSentBytesProperty() {
-        return totalSentBytes;
+    public static long getTotalReceivedBytes() {
+        return totalReceivedBytes.sum();
     }
 
-    public static long getTotalReceivedBytes() {
-        return totalReceivedBytes.get();
+    public static MetricsSnapshot getMetricsSnapshot() {
+        return new MetricsSnapshot(System.currentTimeMillis(),
+                totalSentBytes.sum(),
+                totalReceivedBytes.sum(),
+                totalSentMessages.getSnapshot(),
+                totalReceivedMessages.getSnapshot());
     }
 
-    public static LongProperty totalReceivedBytesProperty() {
-        return totalReceivedBytes;
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // MetricsSnapshot
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Totals of all connections since the start of the app. The latency of sent messages is the time from
+    // queuing the message until it got written to the socket.
+    @Value
+    public static class MetricsSnapshot {
+        private final long timestamp;
+        private final long totalSentBytes;
+        private final long totalReceivedBytes;
+        private final Map<PB.NetworkEnvelope.MessageCase, MessageTypeStatistic.Entry> sentMessages;
+        private final Map<PB.NetworkEnvelope.MessageCase, MessageTypeStatistic.Entry> receivedMessages;
     }
 
 
@@ -46,11 +67,20 @@ public class Statistic {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     private final Date creationDate;
-    private long lastActivityTimestamp = System.currentTimeMillis();
-    private final LongProperty sentBytes = new SimpleLongProperty(0);
-    private final LongProperty receivedBytes = new SimpleLongProperty(0);
-    private final Map<String, Integer> receivedMessages = new ConcurrentHashMap<>();
-    private final Map<String, Integer> sentMessages = new ConcurrentHashMap<>();
+    private volatile long lastActivityTimestamp = System.currentTimeMillis();
+    private final LongAdder sentBytes = new LongAdder();
+    private final LongAdder receivedBytes = new LongAdder();
+    // Sizes of the messages sent or received in a CompressedEnvelope, before and after compression. The compressed
+    // sizes are included in sentBytes and receivedBytes.
+    private final LongAdder sentUncompressedBytes = new LongAdder();
+    private final LongAdder sentCompressedBytes = new LongAdder();
+    private final LongAdder receivedUncompressedBytes = new LongAdder();
+    private final LongAdder receivedCompressedBytes = new LongAdder();
+    // Messages written to the socket or failed at writing
+    private final LongAdder numSuccessfulSends = new LongAdder();
+    private final LongAdder numFailedSends = new LongAdder();
+    private final MessageTypeStatistic receivedMessages = new MessageTypeStatistic();
+    private final MessageTypeStatistic sentMessages = new MessageTypeStatistic();
     private final IntegerProperty roundTripTime = new SimpleIntegerProperty(0);
 
 
@@ -67,40 +97,47 @@ public class Statistic {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     public void updateLastActivityTimestamp() {
-        UserThread.execute(() -> lastActivityTimestamp = System.currentTimeMillis());
+        lastActivityTimestamp = System.currentTimeMillis();
     }
 
     public void addSentBytes(int value) {
-        UserThread.execute(() -> {
-            sentBytes.set(sentBytes.get() + value);
-            totalSentBytes.set(totalSentBytes.get() + value);
-        });
+        sentBytes.add(value);
+        totalSentBytes.add(value);
     }
 
     public void addReceivedBytes(int value) {
-        UserThread.execute(() -> {
-            receivedBytes.set(receivedBytes.get() + value);
-            totalReceivedBytes.set(totalReceivedBytes.get() + value);
-        });
+        receivedBytes.add(value);
+        totalReceivedBytes.add(value);
     }
 
-    // TODO would need msg inspection to get useful information...
-    public void addReceivedMessage(NetworkEnvelope networkEnvelop) {
-        String messageClassName = networkEnvelop.getClass().getSimpleName();
-        int counter = 1;
-        if (receivedMessages.containsKey(messageClassName))
-            counter = receivedMessages.get(messageClassName) + 1;
+    public void addSentCompressedBytes(int uncompressedSize, int compressedSize) {
+        sentUncompressedBytes.add(uncompressedSize);
+        sentCompressedBytes.add(compressedSize);
+    }
 
-        receivedMessages.put(messageClassName, counter);
+    public void addReceivedCompressedBytes(int uncompressedSize, int compressedSize) {
+        receivedUncompressedBytes.add(uncompressedSize);
+        receivedCompressedBytes.add(compressedSize);
     }
 
-    public void addSentMessage(NetworkEnvelope networkEnvelop) {
-        String messageClassName = networkEnvelop.getClass().getSimpleName();
-        int counter = 1;
-        if (sentMessages.containsKey(messageClassName))
-            counter = sentMessages.get(messageClassName) + 1;
+    // The size is the one of the uncompressed message
+    public void addReceivedMessage(PB.NetworkEnvelope proto, int size) {
+        receivedMessages.add(proto.getMessageCase(), size);
+        totalReceivedMessages.add(proto.getMessageCase(), size);
+    }
+
+    // The latency is the time from queuing the message until it got written
+    public void addSentMessage(PB.NetworkEnvelope proto, int size, long latencyMs) {
+        sentMessages.add(proto.getMessageCase(), size, latencyMs);
+        totalSentMessages.add(proto.getMessageCase(), size, latencyMs);
+    }
 
-        sentMessages.put(messageClassName, counter);
+    public void addSuccessfulSend() {
+        numSuccessfulSends.increment();
+    }
+
+    public void addFailedSend() {
+        numFailedSends.increment();
     }
 
     public void setRoundTripTime(int roundTripTime) {
@@ -120,19 +157,43 @@ public class Statistic {
     }
 
     public long getSentBytes() {
-        return sentBytes.get();
+        return sentBytes.sum();
+    }
+
+    public long getReceivedBytes() {
+        return receivedBytes.sum();
     }
 
-    public LongProperty sentBytesProperty() {
-        return sentBytes;
+    public long getSentUncompressedBytes() {
+        return sentUncompressedBytes.sum();
     }
 
-    public long getReceivedBytes() {
-        return receivedBytes.get();
+    public long getSentCompressedBytes() {
+        return sentCompressedBytes.sum();
+    }
+
+    public long getReceivedUncompressedBytes() {
+        return receivedUncompressedBytes.sum();
+    }
+
+    public long getReceivedCompressedBytes() {
+        return receivedCompressedBytes.sum();
+    }
+
+    public long getNumSuccessfulSends() {
+        return numSuccessfulSends.sum();
+    }
+
+    public long getNumFailedSends() {
+        return numFailedSends.sum();
+    }
+
+    public Map<PB.NetworkEnvelope.MessageCase, MessageTypeStatistic.Entry> getSentMessages() {
+        return sentMessages.getSnapshot();
     }
 
-    public LongProperty receivedBytesProperty() {
-        return receivedBytes;
+    public Map<PB.NetworkEnvelope.MessageCase, MessageTypeStatistic.Entry> getReceivedMessages() {
+        return receivedMessages.getSnapshot();
     }
 
     public Date getCreationDate() {
@@ -150,6 +211,14 @@ public class Statistic {
                 ", lastActivityTimestamp=" + lastActivityTimestamp +
                 ", sentBytes=" + sentBytes +
                 ", receivedBytes=" + receivedBytes +
+                ", sentUncompressedBytes=" + sentUncompressedBytes +
+                ", sentCompressedBytes=" + sentCompressedBytes +
+                ", receivedUncompressedBytes=" + receivedUncompressedBytes +
+                ", receivedCompressedBytes=" + receivedCompressedBytes +
+                ", numSuccessfulSends=" + numSuccessfulSends +
+                ", numFailedSends=" + numFailedSends +
+                ", sentMessages=" + sentMessages +
+                ", receivedMessages=" + receivedMessages +
                 '}';
     }
 
@@ -0,0 +1,42 @@
+package io.bisq.network.p2p.network;
+
+/**
+ * Token bucket used for limiting the outbound traffic of a connection.
+ * The capacity and refill rate are passed at each call as they depend on the peer type of the connection which
+ * can change over time.
+ * A request larger than the capacity is granted once the bucket is full, the bucket goes into debt in that case.
+ * Not thread safe, used only by the writer of a connection.
+ */
+class TokenBucket {
+    private double tokens;
+    private long lastRefillTimeStamp;
+    private boolean initialized;
+
+    // Returns 0 if the tokens are available, otherwise the time in ms until enough tokens are available
+    long getDelay(long numTokens, long capacity, long refillPerSec, long now) {
+        refill(capacity, refillPerSec, now);
+
+        double required = Math.min(numTokens, capacity);
+        if (tokens >= required)
+            return 0;
+        else
+            return Math.max(1, (long) Math.ceil((required - tokens) * 1000 / refillPerSec));
+    }
+
+    // Must only be called after getDelay returned 0
+    void consume(long numTokens) {
+        tokens -= numTokens;
+    }
+
+    private void refill(long capacity, long refillPerSec, long now) {
+        if (!initialized) {
+            // We start with a full bucket
+            tokens = capacity;
+            initialized = true;
+        } else {
+            long elapsed = Math.max(0, now - lastRefillTimeStamp);
+            tokens = Math.min(capacity, tokens + elapsed * refillPerSec / 1000d);
+        }
+        lastRefillTimeStamp = now;
+    }
+}
@@ -228,7 +228,9 @@ public class TorNetworkNode extends NetworkNode {
             Utilities.setThreadName("TorNetworkNode:CreateHiddenService");
             {
                 long ts = System.currentTimeMillis();
-                HiddenServiceDescriptor hiddenServiceDescriptor = torNode.createHiddenService(localPort, servicePort);
+                // With the NioTransport the inbound connections are served by the selector, so we need a channel
+                HiddenServiceDescriptor hiddenServiceDescriptor = torNode.createHiddenService(localPort, servicePort,
+                        null, nioTransport != null);
                 torNode.addHiddenServiceReadyListener(hiddenServiceDescriptor, descriptor -> {
                     log.debug("\n\n############################################################\n" +
                             "Hidden service published:" +
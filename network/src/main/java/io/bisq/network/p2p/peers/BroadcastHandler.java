@@ -1,8 +1,5 @@
 package io.bisq.network.p2p.peers;
 
-import com.google.common.util.concurrent.FutureCallback;
-import com.google.common.util.concurrent.Futures;
-import com.google.common.util.concurrent.SettableFuture;
 import io.bisq.common.Timer;
 import io.bisq.common.UserThread;
 import io.bisq.common.app.Log;
@@ -11,13 +8,11 @@ import io.bisq.network.p2p.NodeAddress;
 import io.bisq.network.p2p.network.Connection;
 import io.bisq.network.p2p.network.NetworkNode;
 import io.bisq.network.p2p.storage.messages.BroadcastMessage;
-import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class BroadcastHandler implements PeerManager.Listener {
@@ -59,6 +54,7 @@ public class BroadcastHandler implements PeerManager.Listener {
     private final NetworkNode networkNode;
     public final String uid;
     private final PeerManager peerManager;
+    private final BroadcastScheduler broadcastScheduler;
     private boolean stopped = false;
     private int numOfCompletedBroadcasts = 0;
     private int numOfFailedBroadcasts = 0;
@@ -74,9 +70,10 @@ public class BroadcastHandler implements PeerManager.Listener {
     // Constructor
     ///////////////////////////////////////////////////////////////////////////////////////////
 
-    public BroadcastHandler(NetworkNode networkNode, PeerManager peerManager) {
+    BroadcastHandler(NetworkNode networkNode, PeerManager peerManager, BroadcastScheduler broadcastScheduler) {
         this.networkNode = networkNode;
         this.peerManager = peerManager;
+        this.broadcastScheduler = broadcastScheduler;
         peerManager.addListener(this);
         uid = UUID.randomUUID().toString();
     }
@@ -97,7 +94,7 @@ public class BroadcastHandler implements PeerManager.Listener {
         this.resultHandler = resultHandler;
         this.listener = listener;
 
-        Log.traceCall("Sender=" + sender + "\n\t" +
+        Log.traceCall(() -> "Sender=" + sender + "\n\t" +
                 "Message=" + Utilities.toTruncatedString(message));
         Set<Connection> connectedPeersSet = networkNode.getConfirmedConnections()
                 .stream()
@@ -106,8 +103,10 @@ public class BroadcastHandler implements PeerManager.Listener {
         if (!connectedPeersSet.isEmpty()) {
             numOfCompletedBroadcasts = 0;
 
-            List<Connection> connectedPeersList = new ArrayList<>(connectedPeersSet);
-            Collections.shuffle(connectedPeersList);
+            // Better scored peers come first with a higher probability, so relays prefer them and we send to them
+            // with the shorter delays
+            List<Connection> connectedPeersList = PeerScore.getWeightedRandomOrder(connectedPeersSet,
+                    PeerScore::getScore, new Random());
             numOfPeers = connectedPeersList.size();
             int delay = 50;
             if (!isDataOwner) {
@@ -135,8 +134,7 @@ public class BroadcastHandler implements PeerManager.Listener {
 
                 final long minDelay = (i + 1) * delay;
                 final long maxDelay = (i + 2) * delay;
-                final Connection connection = connectedPeersList.get(i);
-                UserThread.runAfterRandomDelay(() -> sendToPeer(connection, message), minDelay, maxDelay, TimeUnit.MILLISECONDS);
+                sendToPeer(connectedPeersList.get(i), message, minDelay, maxDelay);
             }
         } else {
             onFault("Message not broadcasted because we have no available peers yet.\n\t" +
@@ -144,63 +142,62 @@ public class BroadcastHandler implements PeerManager.Listener {
         }
     }
 
-    private void sendToPeer(Connection connection, BroadcastMessage message) {
-        String errorMessage = "Message not broadcasted because we have stopped the handler already.\n\t" +
-                "message = " + Utilities.toTruncatedString(message);
+    // The message gets sent by the broadcastScheduler after the delay, together with other messages to that peer
+    private void sendToPeer(Connection connection, BroadcastMessage message, long minDelay, long maxDelay) {
+        if (!connection.isCapabilityRequired(message) || connection.isCapabilitySupported(message))
+            broadcastScheduler.schedule(connection, message, this, minDelay, maxDelay);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Called by the BroadcastScheduler
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    boolean isStopped() {
+        return stopped;
+    }
+
+    void onSent(Connection connection) {
+        numOfCompletedBroadcasts++;
         if (!stopped) {
-            if (!connection.isStopped()) {
-                if (!connection.isCapabilityRequired(message) || connection.isCapabilitySupported(message)) {
-                    NodeAddress nodeAddress = connection.getPeersNodeAddressOptional().get();
-                    log.trace("Broadcast message to " + nodeAddress + ".");
-                    SettableFuture<Connection> future = networkNode.sendMessage(connection, message);
-                    Futures.addCallback(future, new FutureCallback<Connection>() {
-                        @Override
-                        public void onSuccess(Connection connection) {
-                            numOfCompletedBroadcasts++;
-                            if (!stopped) {
-                                log.trace("Broadcast to " + nodeAddress + " succeeded.");
-
-                                if (listener != null)
-                                    listener.onBroadcasted(message, numOfCompletedBroadcasts);
-
-                                if (listener != null && numOfCompletedBroadcasts == 1)
-                                    listener.onBroadcastedToFirstPeer(message);
-
-                                if (numOfCompletedBroadcasts + numOfFailedBroadcasts == numOfPeers) {
-                                    if (listener != null)
-                                        listener.onBroadcastCompleted(message, numOfCompletedBroadcasts, numOfFailedBroadcasts);
-
-                                    cleanup();
-                                    resultHandler.onCompleted(BroadcastHandler.this);
-                                }
-                            } else {
-                                // TODO investigate why that is called very often at seed nodes
-                                onFault("stopped at onSuccess: " + errorMessage, false);
-                            }
-                        }
-
-                        @Override
-                        public void onFailure(@NotNull Throwable throwable) {
-                            numOfFailedBroadcasts++;
-                            if (!stopped) {
-                                log.debug("Broadcast to " + nodeAddress + " failed.\n\t" +
-                                        "ErrorMessage=" + throwable.getMessage());
-                                if (numOfCompletedBroadcasts + numOfFailedBroadcasts == numOfPeers)
-                                    onFault("stopped at onFailure: " + errorMessage);
-                            } else {
-                                onFault("stopped at onFailure: " + errorMessage);
-                            }
-                        }
-                    });
-                }
-            } else {
-                onFault("Connection stopped already", false);
+            log.trace("Broadcast to " + connection.getPeersNodeAddressOptional() + " succeeded.");
+
+            if (listener != null)
+                listener.onBroadcasted(message, numOfCompletedBroadcasts);
+
+            if (listener != null && numOfCompletedBroadcasts == 1)
+                listener.onBroadcastedToFirstPeer(message);
+
+            if (numOfCompletedBroadcasts + numOfFailedBroadcasts == numOfPeers) {
+                if (listener != null)
+                    listener.onBroadcastCompleted(message, numOfCompletedBroadcasts, numOfFailedBroadcasts);
+
+                cleanup();
+                resultHandler.onCompleted(BroadcastHandler.this);
             }
         } else {
-            onFault("stopped at sendToPeer: " + errorMessage, false);
+            // TODO investigate why that is called very often at seed nodes
+            onFault("stopped at onSuccess: " + getStoppedErrorMessage(), false);
+        }
+    }
+
+    void onSendFailed(Connection connection, String errorMessage) {
+        numOfFailedBroadcasts++;
+        if (!stopped) {
+            log.debug("Broadcast to " + connection.getPeersNodeAddressOptional() + " failed.\n\t" +
+                    "ErrorMessage=" + errorMessage);
+            if (numOfCompletedBroadcasts + numOfFailedBroadcasts == numOfPeers)
+                onFault("stopped at onFailure: " + getStoppedErrorMessage());
+        } else {
+            onFault("stopped at onFailure: " + getStoppedErrorMessage());
         }
     }
 
+    private String getStoppedErrorMessage() {
+        return "Message not broadcasted because we have stopped the handler already.\n\t" +
+                "message = " + Utilities.toTruncatedString(message);
+    }
+
 
     ///////////////////////////////////////////////////////////////////////////////////////////
     // PeerManager.Listener implementation
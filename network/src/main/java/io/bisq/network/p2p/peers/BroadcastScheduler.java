@@ -0,0 +1,191 @@
+package io.bisq.network.p2p.peers;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import io.bisq.common.Timer;
+import io.bisq.common.UserThread;
+import io.bisq.common.app.Capabilities;
+import io.bisq.common.proto.network.NetworkEnvelope;
+import io.bisq.network.p2p.BundleOfEnvelopes;
+import io.bisq.network.p2p.network.Connection;
+import io.bisq.network.p2p.network.NetworkNode;
+import io.bisq.network.p2p.storage.messages.BroadcastMessage;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the BroadcastMessages to the same peer which are due within the delay of the first one and sends them
+ * together in a BundleOfEnvelopes if the peer supports it. That way a burst of broadcasts (e.g. many offers getting
+ * removed or refreshed at once) costs one timer and one message per peer instead of one per message and peer.
+ * A message which is already queued for a peer (e.g. received from several peers we relay to) is not queued again,
+ * the handlers of both broadcasts get notified by the single send.
+ * <p/>
+ * Only used from the UserThread.
+ */
+class BroadcastScheduler {
+    private static final Logger log = LoggerFactory.getLogger(BroadcastScheduler.class);
+
+    // Limits the size of a bundle. Each envelope is counted by the rate limits of both peers as a single message.
+    static final int MAX_ENVELOPES_PER_BUNDLE = 20;
+
+    private final NetworkNode networkNode;
+    private final Map<Connection, PendingBatch> pendingBatches = new HashMap<>();
+
+    // Statistics
+    private long numScheduledMessages;
+    private long numSuppressedDuplicates;
+    private long numSentMessages;
+    private long numSentBundles;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    BroadcastScheduler(NetworkNode networkNode) {
+        this.networkNode = networkNode;
+    }
+
+    void shutDown() {
+        pendingBatches.values().forEach(batch -> batch.timer.stop());
+        pendingBatches.clear();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // The delay is only applied if there is no pending batch for that peer, otherwise the message joins that batch
+    void schedule(Connection connection, BroadcastMessage message, BroadcastHandler handler, long minDelay,
+                  long maxDelay) {
+        numScheduledMessages++;
+        PendingBatch batch = pendingBatches.get(connection);
+        if (batch == null) {
+            Timer timer = UserThread.runAfterRandomDelay(() -> flush(connection), minDelay, maxDelay,
+                    TimeUnit.MILLISECONDS);
+            batch = new PendingBatch(timer);
+            pendingBatches.put(connection, batch);
+        }
+
+        List<BroadcastHandler> handlers = batch.handlersByMessage.get(message);
+        if (handlers == null) {
+            handlers = new ArrayList<>();
+            batch.handlersByMessage.put(message, handlers);
+        } else {
+            numSuppressedDuplicates++;
+            log.trace("Message is already queued for that peer. We don't send it again.");
+        }
+        handlers.add(handler);
+    }
+
+    long getNumScheduledMessages() {
+        return numScheduledMessages;
+    }
+
+    long getNumSuppressedDuplicates() {
+        return numSuppressedDuplicates;
+    }
+
+    long getNumSentMessages() {
+        return numSentMessages;
+    }
+
+    long getNumSentBundles() {
+        return numSentBundles;
+    }
+
+    @Override
+    public String toString() {
+        return "BroadcastScheduler{" +
+                "numScheduledMessages=" + numScheduledMessages +
+                ", numSuppressedDuplicates=" + numSuppressedDuplicates +
+                ", numSentMessages=" + numSentMessages +
+                ", numSentBundles=" + numSentBundles +
+                ", numPendingBatches=" + pendingBatches.size() +
+                '}';
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void flush(Connection connection) {
+        PendingBatch batch = pendingBatches.remove(connection);
+        if (batch == null)
+            return;
+
+        // We don't send messages of broadcasts which got canceled or timed out in the meantime
+        batch.handlersByMessage.values().removeIf(handlers -> {
+            handlers.removeIf(BroadcastHandler::isStopped);
+            return handlers.isEmpty();
+        });
+        if (batch.handlersByMessage.isEmpty())
+            return;
+
+        if (connection.isStopped()) {
+            batch.handlersByMessage.values().forEach(handlers ->
+                    handlers.forEach(handler -> handler.onSendFailed(connection, "Connection stopped already")));
+            return;
+        }
+
+        List<BroadcastMessage> messages = new ArrayList<>(batch.handlersByMessage.keySet());
+        if (messages.size() == 1 || !isBundleSupported(connection)) {
+            messages.forEach(message -> send(connection, message, 1, batch.handlersByMessage.get(message)));
+        } else {
+            Lists.partition(messages, MAX_ENVELOPES_PER_BUNDLE).forEach(partition -> {
+                List<BroadcastHandler> handlers = new ArrayList<>();
+                partition.forEach(message -> handlers.addAll(batch.handlersByMessage.get(message)));
+                if (partition.size() == 1) {
+                    send(connection, partition.get(0), 1, handlers);
+                } else {
+                    numSentBundles++;
+                    send(connection, new BundleOfEnvelopes(partition), partition.size(), handlers);
+                }
+            });
+        }
+    }
+
+    private void send(Connection connection, NetworkEnvelope networkEnvelope, int numMessages,
+                      List<BroadcastHandler> handlers) {
+        numSentMessages += numMessages;
+        Futures.addCallback(networkNode.sendMessage(connection, networkEnvelope), new FutureCallback<Connection>() {
+            @Override
+            public void onSuccess(Connection connection) {
+                handlers.forEach(handler -> handler.onSent(connection));
+            }
+
+            @Override
+            public void onFailure(@NotNull Throwable throwable) {
+                handlers.forEach(handler -> handler.onSendFailed(connection, throwable.getMessage()));
+            }
+        });
+    }
+
+    private static boolean isBundleSupported(Connection connection) {
+        List<Integer> supportedCapabilities = connection.getSupportedCapabilities();
+        return supportedCapabilities != null &&
+                supportedCapabilities.contains(Capabilities.Capability.BUNDLE_OF_ENVELOPES.ordinal());
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // PendingBatch
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static class PendingBatch {
+        private final Timer timer;
+        // Keeps the order in which the messages got scheduled
+        private final Map<BroadcastMessage, List<BroadcastHandler>> handlersByMessage = new LinkedHashMap<>();
+
+        PendingBatch(Timer timer) {
+            this.timer = timer;
+        }
+    }
+}
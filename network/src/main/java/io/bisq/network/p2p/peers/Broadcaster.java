@@ -18,6 +18,8 @@ public class Broadcaster implements BroadcastHandler.ResultHandler {
     private final NetworkNode networkNode;
     private final PeerManager peerManager;
     private final Set<BroadcastHandler> broadcastHandlers = new CopyOnWriteArraySet<>();
+    private final BroadcastScheduler broadcastScheduler;
+    private long numBroadcasts;
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -27,11 +29,15 @@ public class Broadcaster implements BroadcastHandler.ResultHandler {
     public Broadcaster(NetworkNode networkNode, PeerManager peerManager) {
         this.networkNode = networkNode;
         this.peerManager = peerManager;
+        broadcastScheduler = new BroadcastScheduler(networkNode);
     }
 
     public void shutDown() {
+        log.info("Broadcast statistics at shutdown: numBroadcasts={}, averageFanOut={}, {}",
+                numBroadcasts, getAverageFanOut(), broadcastScheduler);
         broadcastHandlers.stream().forEach(BroadcastHandler::cancel);
         broadcastHandlers.clear();
+        broadcastScheduler.shutDown();
     }
 
 
@@ -41,14 +47,38 @@ public class Broadcaster implements BroadcastHandler.ResultHandler {
 
     public void broadcast(BroadcastMessage message, @Nullable NodeAddress sender,
                           @Nullable BroadcastHandler.Listener listener, boolean isDataOwner) {
-        Log.traceCall("Sender=" + sender + "\n\t" +
+        Log.traceCall(() -> "Sender=" + sender + "\n\t" +
                 "Message=" + Utilities.toTruncatedString(message));
 
-        BroadcastHandler broadcastHandler = new BroadcastHandler(networkNode, peerManager);
+        numBroadcasts++;
+        BroadcastHandler broadcastHandler = new BroadcastHandler(networkNode, peerManager, broadcastScheduler);
         broadcastHandler.broadcast(message, sender, this, listener, isDataOwner);
         broadcastHandlers.add(broadcastHandler);
     }
 
+    public long getNumBroadcasts() {
+        return numBroadcasts;
+    }
+
+    // Number of peers we have sent a broadcast message to on average
+    public double getAverageFanOut() {
+        return numBroadcasts > 0 ? (double) broadcastScheduler.getNumScheduledMessages() / numBroadcasts : 0;
+    }
+
+    // Messages not sent as they have been queued for the same peer already
+    public long getNumSuppressedDuplicates() {
+        return broadcastScheduler.getNumSuppressedDuplicates();
+    }
+
+    // Messages sent in a BundleOfEnvelopes count each
+    public long getNumSentMessages() {
+        return broadcastScheduler.getNumSentMessages();
+    }
+
+    public long getNumSentBundles() {
+        return broadcastScheduler.getNumSentBundles();
+    }
+
 
     ///////////////////////////////////////////////////////////////////////////////////////////
     // BroadcastHandler.ResultHandler implementation
@@ -63,6 +63,9 @@ public class PeerManager implements ConnectionListener, PersistedDataHost {
     private final Set<Peer> reportedPeers = new HashSet<>();
     private final Clock.Listener listener;
     private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    // Peers we expect to talk to soon (e.g. trading peers of pending trades). We don't close their connections if
+    // we have too many connections unless we exceed maxConnectionsAbsolute.
+    private final Set<NodeAddress> warmNodeAddresses = new HashSet<>();
     private Timer checkMaxConnectionsTimer;
     private boolean stopped;
     private boolean lostAllConnections;
@@ -253,6 +256,7 @@ public class PeerManager implements ConnectionListener, PersistedDataHost {
             List<Connection> candidates = allConnections.stream()
                     .filter(e -> e instanceof InboundConnection)
                     .filter(e -> e.getPeerType() == Connection.PeerType.PEER)
+                    .filter(e -> !isWarm(e))
                     .collect(Collectors.toList());
 
             if (candidates.size() == 0) {
@@ -262,6 +266,7 @@ public class PeerManager implements ConnectionListener, PersistedDataHost {
                     log.debug("Lets try to remove ANY connection of type PEER.");
                     candidates = allConnections.stream()
                             .filter(e -> e.getPeerType() == Connection.PeerType.PEER)
+                            .filter(e -> !isWarm(e))
                             .collect(Collectors.toList());
 
                     if (candidates.size() == 0) {
@@ -271,6 +276,7 @@ public class PeerManager implements ConnectionListener, PersistedDataHost {
                             log.debug("Lets try to remove any connection which is not of type DIRECT_MSG_PEER or INITIAL_DATA_REQUEST.");
                             candidates = allConnections.stream()
                                     .filter(e -> e.getPeerType() != Connection.PeerType.DIRECT_MSG_PEER && e.getPeerType() != Connection.PeerType.INITIAL_DATA_REQUEST)
+                                    .filter(e -> !isWarm(e))
                                     .collect(Collectors.toList());
 
                             if (candidates.size() == 0) {
@@ -287,10 +293,9 @@ public class PeerManager implements ConnectionListener, PersistedDataHost {
             }
 
             if (candidates.size() > 0) {
-                candidates.sort((o1, o2) -> ((Long) o1.getStatistic().getLastActivityTimestamp()).compareTo(((Long) o2.getStatistic().getLastActivityTimestamp())));
                 log.debug("Candidates.size() for shut down=" + candidates.size());
-                Connection connection = candidates.remove(0);
-                log.debug("We are going to shut down the oldest connection.\n\tconnection=" + connection.toString());
+                Connection connection = getLowestScored(candidates);
+                log.debug("We are going to shut down the connection with the lowest score.\n\tconnection=" + connection.toString());
                 if (!connection.isStopped())
                     connection.shutDown(CloseConnectionReason.TOO_MANY_CONNECTIONS_OPEN, () -> checkMaxConnections(limit));
                 return true;
@@ -330,16 +335,24 @@ public class PeerManager implements ConnectionListener, PersistedDataHost {
                         .collect(Collectors.toList());
 
                 if (candidates.size() > 1) {
-                    candidates.sort((o1, o2) -> ((Long) o1.getStatistic().getLastActivityTimestamp()).compareTo(((Long) o2.getStatistic().getLastActivityTimestamp())));
                     log.debug("Number of connections exceeding MAX_CONNECTIONS_EXTENDED_1. Current size=" + candidates.size());
-                    Connection connection = candidates.remove(0);
-                    log.debug("We are going to shut down the oldest connection.\n\tconnection=" + connection.toString());
+                    Connection connection = getLowestScored(candidates);
+                    log.debug("We are going to shut down the connection with the lowest score.\n\tconnection=" + connection.toString());
                     connection.shutDown(CloseConnectionReason.TOO_MANY_SEED_NODES_CONNECTED, this::removeSuperfluousSeedNodes);
                 }
             }
         }
     }
 
+    // The statistic gets updated by the connection threads, so we must not sort by it. At equal scores we remove the
+    // least recently active connection.
+    private static Connection getLowestScored(List<Connection> connections) {
+        return connections.stream()
+                .min(Comparator.comparingDouble((Connection connection) -> PeerScore.getScore(connection))
+                        .thenComparingLong(connection -> connection.getStatistic().getLastActivityTimestamp()))
+                .get();
+    }
+
 
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Reported peers
@@ -527,6 +540,19 @@ public class PeerManager implements ConnectionListener, PersistedDataHost {
         return connection.hasPeersNodeAddress() && seedNodeAddresses.contains(connection.getPeersNodeAddressOptional().get());
     }
 
+    public void setWarmNodeAddresses(Collection<NodeAddress> nodeAddresses) {
+        warmNodeAddresses.clear();
+        warmNodeAddresses.addAll(nodeAddresses);
+    }
+
+    public Set<NodeAddress> getWarmNodeAddresses() {
+        return Collections.unmodifiableSet(warmNodeAddresses);
+    }
+
+    public boolean isWarm(Connection connection) {
+        return connection.hasPeersNodeAddress() && warmNodeAddresses.contains(connection.getPeersNodeAddressOptional().get());
+    }
+
     public boolean isSelf(Peer reportedPeer) {
         return isSelf(reportedPeer.getNodeAddress());
     }
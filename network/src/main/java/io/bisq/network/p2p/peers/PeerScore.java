@@ -0,0 +1,75 @@
+package io.bisq.network.p2p.peers;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.bisq.network.p2p.network.Connection;
+import io.bisq.network.p2p.network.Statistic;
+
+import java.util.*;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Scores a connection by the round trip time of the keep alive pings, the success rate of the messages we have sent
+ * and the throughput, so we prefer fast and reliable peers and slow Tor circuits get chosen less often. Scores are
+ * between 0 and 1, higher is better. Values we don't know yet (e.g. the RTT of a new connection) count as neutral.
+ * <p/>
+ * We don't simply pick the best peers, as that would concentrate the traffic on a few peers and make our choice
+ * predictable. Instead we use a random order weighted by the score.
+ */
+public final class PeerScore {
+    public static final double NEUTRAL_SCORE = 0.5;
+
+    // Typical RTT over Tor, gets a score of 0.5
+    private static final double REFERENCE_RTT_MS = 1000;
+    // Throughput which gets a score of 0.5
+    private static final double REFERENCE_BYTES_PER_SEC = 1000;
+    // We need a few seconds to get a meaningful throughput
+    private static final long MIN_AGE_FOR_THROUGHPUT_MS = 10_000;
+
+    private static final double RTT_WEIGHT = 0.5;
+    private static final double SUCCESS_RATE_WEIGHT = 0.3;
+    private static final double THROUGHPUT_WEIGHT = 0.2;
+
+    private PeerScore() {
+    }
+
+    // Must be called on the UserThread as the RTT is set there
+    public static double getScore(Connection connection) {
+        Statistic statistic = connection.getStatistic();
+        return getScore(statistic.roundTripTimeProperty().get(),
+                statistic.getNumSuccessfulSends(),
+                statistic.getNumFailedSends(),
+                statistic.getSentBytes() + statistic.getReceivedBytes(),
+                System.currentTimeMillis() - statistic.getCreationDate().getTime());
+    }
+
+    /**
+     * @return The items in a random order where items with a higher score come first with a higher probability.
+     */
+    public static <T> List<T> getWeightedRandomOrder(Collection<T> items, ToDoubleFunction<T> scoreFunction,
+                                                     Random random) {
+        // Weighted random sampling without replacement (Efraimidis and Spirakis): we sort by random^(1/weight)
+        Map<T, Double> keys = new HashMap<>();
+        items.forEach(item -> {
+            double weight = Math.max(scoreFunction.applyAsDouble(item), 0.01);
+            keys.put(item, Math.pow(random.nextDouble(), 1 / weight));
+        });
+        return items.stream()
+                .sorted(Comparator.comparingDouble((T item) -> keys.get(item)).reversed())
+                .collect(Collectors.toList());
+    }
+
+    @VisibleForTesting
+    static double getScore(int roundTripTime, long numSuccessfulSends, long numFailedSends, long numBytes,
+                           long ageMs) {
+        double rttScore = roundTripTime > 0 ? 1 / (1 + roundTripTime / REFERENCE_RTT_MS) : NEUTRAL_SCORE;
+        // With one success and one failure added we get a neutral value without data and avoid extremes at start
+        double successRate = (numSuccessfulSends + 1d) / (numSuccessfulSends + numFailedSends + 2d);
+        double throughputScore = NEUTRAL_SCORE;
+        if (ageMs >= MIN_AGE_FOR_THROUGHPUT_MS) {
+            double bytesPerSec = numBytes * 1000d / ageMs;
+            throughputScore = bytesPerSec / (bytesPerSec + REFERENCE_BYTES_PER_SEC);
+        }
+        return RTT_WEIGHT * rttScore + SUCCESS_RATE_WEIGHT * successRate + THROUGHPUT_WEIGHT * throughputScore;
+    }
+}
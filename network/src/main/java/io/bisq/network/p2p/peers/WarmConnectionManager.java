@@ -0,0 +1,144 @@
+package io.bisq.network.p2p.peers;
+
+import io.bisq.common.Timer;
+import io.bisq.common.UserThread;
+import io.bisq.common.app.Log;
+import io.bisq.network.p2p.NodeAddress;
+import io.bisq.network.p2p.network.CloseConnectionReason;
+import io.bisq.network.p2p.network.Connection;
+import io.bisq.network.p2p.network.ConnectionListener;
+import io.bisq.network.p2p.network.NetworkNode;
+import io.bisq.network.p2p.peers.peerexchange.PeerExchangeManager;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps connections open to the peers we are likely to talk to soon (e.g. the trading peers and arbitrators of our
+ * pending trades), so a trade message does not have to wait several seconds until Tor has set up a circuit to the
+ * hidden service of the peer.
+ * <p/>
+ * We open a missing connection with a GetPeersRequest, so the peer knows our address and does not close the connection
+ * as anonymous. The KeepAliveManager keeps it open and the PeerManager does not close it as long as we are below
+ * maxConnectionsAbsolute. If we cannot connect we retry with an increasing delay.
+ */
+@Slf4j
+public class WarmConnectionManager implements ConnectionListener {
+    private static final long REFRESH_INTERVAL_SEC = 60;
+    private static final int MAX_WARM_PEERS = 10;
+    private static final long MIN_RETRY_DELAY_MS = TimeUnit.SECONDS.toMillis(60);
+    private static final long MAX_RETRY_DELAY_MS = TimeUnit.MINUTES.toMillis(16);
+
+    private final NetworkNode networkNode;
+    private final PeerManager peerManager;
+    private final PeerExchangeManager peerExchangeManager;
+    // Time of the next connect attempt and the delay after that one for peers we are not connected to
+    private final Map<NodeAddress, Long> nextAttemptTimestamps = new HashMap<>();
+    private final Map<NodeAddress, Long> retryDelays = new HashMap<>();
+    private Timer refreshTimer;
+    private boolean stopped;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public WarmConnectionManager(NetworkNode networkNode, PeerManager peerManager,
+                                 PeerExchangeManager peerExchangeManager) {
+        this.networkNode = networkNode;
+        this.peerManager = peerManager;
+        this.peerExchangeManager = peerExchangeManager;
+
+        networkNode.addConnectionListener(this);
+    }
+
+    public void shutDown() {
+        Log.traceCall();
+        stopped = true;
+        networkNode.removeConnectionListener(this);
+        if (refreshTimer != null) {
+            refreshTimer.stop();
+            refreshTimer = null;
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public void start() {
+        if (refreshTimer == null)
+            refreshTimer = UserThread.runPeriodically(this::refresh, REFRESH_INTERVAL_SEC);
+        refresh();
+    }
+
+    // Replaces the peers we keep the connections warm for
+    public void setNodeAddresses(Collection<NodeAddress> nodeAddresses) {
+        Set<NodeAddress> warmNodeAddresses = nodeAddresses.stream()
+                .filter(nodeAddress -> !peerManager.isSelf(nodeAddress))
+                .limit(MAX_WARM_PEERS)
+                .collect(Collectors.toSet());
+        if (warmNodeAddresses.size() < nodeAddresses.size())
+            log.debug("We keep only {} of {} connections warm", warmNodeAddresses.size(), nodeAddresses.size());
+
+        peerManager.setWarmNodeAddresses(warmNodeAddresses);
+        nextAttemptTimestamps.keySet().retainAll(warmNodeAddresses);
+        retryDelays.keySet().retainAll(warmNodeAddresses);
+        if (refreshTimer != null)
+            refresh();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // ConnectionListener implementation
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void onConnection(Connection connection) {
+        // Inbound connections get the address set later, we reset the delay at the next refresh in that case
+        if (peerManager.isWarm(connection))
+            resetRetryDelay(connection.getPeersNodeAddressOptional().get());
+    }
+
+    @Override
+    public void onDisconnect(CloseConnectionReason closeConnectionReason, Connection connection) {
+        // We reconnect at the next refresh, so we don't hammer a peer which closes the connection
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void refresh() {
+        // We need our own address for the GetPeersRequest
+        if (stopped || networkNode.getNodeAddress() == null)
+            return;
+
+        Set<NodeAddress> connectedNodeAddresses = networkNode.getNodeAddressesOfConfirmedConnections();
+        long now = System.currentTimeMillis();
+        peerManager.getWarmNodeAddresses().forEach(nodeAddress -> {
+            if (connectedNodeAddresses.contains(nodeAddress)) {
+                resetRetryDelay(nodeAddress);
+            } else if (now >= nextAttemptTimestamps.getOrDefault(nodeAddress, 0L)) {
+                long retryDelay = retryDelays.getOrDefault(nodeAddress, MIN_RETRY_DELAY_MS);
+                nextAttemptTimestamps.put(nodeAddress, now + retryDelay);
+                retryDelays.put(nodeAddress, Math.min(retryDelay * 2, MAX_RETRY_DELAY_MS));
+                log.debug("We open a connection to warm peer {}", nodeAddress);
+                peerExchangeManager.requestReportedPeers(nodeAddress);
+            }
+        });
+    }
+
+    private void resetRetryDelay(NodeAddress nodeAddress) {
+        nextAttemptTimestamps.remove(nodeAddress);
+        retryDelays.remove(nodeAddress);
+    }
+}
@@ -0,0 +1,64 @@
+package io.bisq.network.p2p.peers.getdata;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+
+/**
+ * Compact summary of the keys a node has already, sent instead of the full list of excluded keys if the peer supports
+ * the GET_DATA_RECONCILIATION capability. The responder only sends entries which are not in the filter.
+ * <p>
+ * A false positive means the responder does not send an entry we don't have. The filter is salted with the nonce of
+ * the request, so a missed entry is a false positive only with the false positive probability at each later request
+ * (or at the requests to other peers) and we get it eventually.
+ */
+public final class ExcludedKeysFilter {
+    static final double FALSE_POSITIVE_PROBABILITY = 0.001;
+
+    private final BloomFilter<byte[]> bloomFilter;
+
+    public static ExcludedKeysFilter create(Collection<byte[]> keys, int salt) {
+        BloomFilter<byte[]> bloomFilter = BloomFilter.create(getFunnel(salt), Math.max(1, keys.size()),
+                FALSE_POSITIVE_PROBABILITY);
+        keys.forEach(bloomFilter::put);
+        return new ExcludedKeysFilter(bloomFilter);
+    }
+
+    public static ExcludedKeysFilter fromBytes(byte[] bytes, int salt) throws IOException {
+        // Serialized BloomFilter: strategy (byte), number of hash functions (byte), number of longs (int), longs.
+        // We check the length before BloomFilter.readFrom allocates the array for the announced number of longs.
+        if (bytes.length < 6 || bytes.length != 6 + 8L * ByteBuffer.wrap(bytes, 2, 4).getInt())
+            throw new IOException("Invalid size of excluded keys filter");
+
+        return new ExcludedKeysFilter(BloomFilter.readFrom(new ByteArrayInputStream(bytes), getFunnel(salt)));
+    }
+
+    // The keys are hashes already but we need different bits for each request, so we hash them with the salt
+    private static Funnel<byte[]> getFunnel(int salt) {
+        return (key, into) -> into.putInt(salt).putBytes(key);
+    }
+
+    private ExcludedKeysFilter(BloomFilter<byte[]> bloomFilter) {
+        this.bloomFilter = bloomFilter;
+    }
+
+    public boolean mightContain(byte[] key) {
+        return bloomFilter.mightContain(key);
+    }
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            bloomFilter.writeTo(outputStream);
+        } catch (IOException e) {
+            // Cannot happen with a ByteArrayOutputStream
+            throw new RuntimeException(e);
+        }
+        return outputStream.toByteArray();
+    }
+}
@@ -1,10 +1,12 @@
 package io.bisq.network.p2p.peers.getdata;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.SettableFuture;
 import io.bisq.common.Timer;
 import io.bisq.common.UserThread;
+import io.bisq.common.app.Capabilities;
 import io.bisq.common.app.Log;
 import io.bisq.common.util.Utilities;
 import io.bisq.network.p2p.network.CloseConnectionReason;
@@ -21,16 +23,20 @@ import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.io.IOException;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class GetDataRequestHandler {
     private static final Logger log = LoggerFactory.getLogger(GetDataRequestHandler.class);
 
     private static final long TIME_OUT_SEC = 40;
+    // Well below the PERMITTED_MESSAGE_SIZE of 200 kb
+    static final int MAX_CHUNK_SIZE = 100 * 1024;
+    // Estimated bytes of the wrapper, the other fields of the entry and the field tags
+    private static final int ENTRY_OVERHEAD = 32;
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -71,18 +77,12 @@ public class GetDataRequestHandler {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     public void handle(GetDataRequest getDataRequest, final Connection connection) {
-        Log.traceCall(getDataRequest + "\n\tconnection=" + connection);
+        Log.traceCall(() -> getDataRequest + "\n\tconnection=" + connection);
 
         final HashSet<ProtectedStorageEntry> filteredDataSet = new HashSet<>();
         final Set<Integer> lookupSet = new HashSet<>();
 
-        Set<P2PDataStorage.ByteArray> excludedItems = getDataRequest.getExcludedKeys() != null ?
-                getDataRequest.getExcludedKeys().stream()
-                        .map(P2PDataStorage.ByteArray::new)
-                        .collect(Collectors.toSet())
-                : new HashSet<>();
-
-        for (ProtectedStorageEntry protectedStorageEntry : dataStorage.getFilteredValues(excludedItems)) {
+        for (ProtectedStorageEntry protectedStorageEntry : dataStorage.getFilteredValues(getExclusionPredicate(getDataRequest))) {
             final StoragePayload storagePayload = protectedStorageEntry.getStoragePayload();
             boolean doAdd = false;
             if (storagePayload instanceof CapabilityRequiringPayload) {
@@ -120,17 +120,39 @@ public class GetDataRequestHandler {
                     filteredDataSet.add(protectedStorageEntry);
             }
         }
-        GetDataResponse getDataResponse = new GetDataResponse(filteredDataSet, getDataRequest.getNonce(),
-                getDataRequest instanceof GetUpdatedDataRequest);
-
-        if (timeoutTimer == null) {
-            timeoutTimer = UserThread.runAfter(() -> {  // setup before sending to avoid race conditions
-                        String errorMessage = "A timeout occurred for getDataResponse:" + getDataResponse +
-                                " on connection:" + connection;
-                        handleFault(errorMessage, CloseConnectionReason.SEND_MSG_TIMEOUT, connection);
-                    },
-                    TIME_OUT_SEC, TimeUnit.SECONDS);
+        boolean isGetUpdatedDataResponse = getDataRequest instanceof GetUpdatedDataRequest;
+        Deque<HashSet<ProtectedStorageEntry>> chunks = new ArrayDeque<>();
+        if (isChunkedResponseSupported(connection)) {
+            chunks.addAll(getChunks(filteredDataSet));
+            log.debug("We send {} entries in {} chunks", filteredDataSet.size(), chunks.size());
+        } else {
+            chunks.add(filteredDataSet);
         }
+        sendChunks(chunks, getDataRequest.getNonce(), isGetUpdatedDataResponse, connection);
+    }
+
+    public void stop() {
+        cleanup();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // We send the next chunk only after the previous one was written, so we never hold the serialized data of more
+    // than one chunk and the timeout applies to each chunk.
+    private void sendChunks(Deque<HashSet<ProtectedStorageEntry>> chunks, int nonce, boolean isGetUpdatedDataResponse,
+                            Connection connection) {
+        GetDataResponse getDataResponse = new GetDataResponse(chunks.poll(), nonce, isGetUpdatedDataResponse,
+                chunks.size());
+
+        stopTimeoutTimer();
+        timeoutTimer = UserThread.runAfter(() -> {  // setup before sending to avoid race conditions
+                    String errorMessage = "A timeout occurred for getDataResponse:" + getDataResponse +
+                            " on connection:" + connection;
+                    handleFault(errorMessage, CloseConnectionReason.SEND_MSG_TIMEOUT, connection);
+                },
+                TIME_OUT_SEC, TimeUnit.SECONDS);
 
         SettableFuture<Connection> future = networkNode.sendMessage(connection, getDataResponse);
         Futures.addCallback(future, new FutureCallback<Connection>() {
@@ -139,8 +161,12 @@ public class GetDataRequestHandler {
                 if (!stopped) {
                     log.trace("Send DataResponse to {} succeeded. getDataResponse={}",
                             connection.getPeersNodeAddressOptional(), getDataResponse);
-                    cleanup();
-                    listener.onComplete();
+                    if (chunks.isEmpty()) {
+                        cleanup();
+                        listener.onComplete();
+                    } else {
+                        sendChunks(chunks, nonce, isGetUpdatedDataResponse, connection);
+                    }
                 } else {
                     log.trace("We have stopped already. We ignore that networkNode.sendMessage.onSuccess call.");
                 }
@@ -160,13 +186,57 @@ public class GetDataRequestHandler {
         });
     }
 
-    public void stop() {
-        cleanup();
+    private boolean isChunkedResponseSupported(Connection connection) {
+        List<Integer> supportedCapabilities = connection.getSupportedCapabilities();
+        return supportedCapabilities != null &&
+                supportedCapabilities.contains(Capabilities.Capability.CHUNKED_GET_DATA_RESPONSE.ordinal());
     }
 
-    ///////////////////////////////////////////////////////////////////////////////////////////
-    // Private
-    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Splits the entries into chunks which stay below the PERMITTED_MESSAGE_SIZE of the connection. An entry larger
+    // than MAX_CHUNK_SIZE gets its own chunk.
+    @VisibleForTesting
+    static List<HashSet<ProtectedStorageEntry>> getChunks(Set<ProtectedStorageEntry> entries) {
+        List<HashSet<ProtectedStorageEntry>> chunks = new ArrayList<>();
+        HashSet<ProtectedStorageEntry> chunk = new HashSet<>();
+        int chunkSize = 0;
+        for (ProtectedStorageEntry entry : entries) {
+            int entrySize = getEstimatedSize(entry);
+            if (!chunk.isEmpty() && chunkSize + entrySize > MAX_CHUNK_SIZE) {
+                chunks.add(chunk);
+                chunk = new HashSet<>();
+                chunkSize = 0;
+            }
+            chunk.add(entry);
+            chunkSize += entrySize;
+        }
+        chunks.add(chunk);
+        return chunks;
+    }
+
+    // The proto of the payload is cached by the entry, so that is cheap
+    private static int getEstimatedSize(ProtectedStorageEntry entry) {
+        return entry.getStoragePayloadProto().getSerializedSize() + entry.getOwnerPubKeyBytes().length +
+                entry.getSignature().length + ENTRY_OVERHEAD;
+    }
+
+    private Predicate<P2PDataStorage.ByteArray> getExclusionPredicate(GetDataRequest getDataRequest) {
+        if (getDataRequest.getExcludedKeysFilter() != null) {
+            try {
+                ExcludedKeysFilter filter = ExcludedKeysFilter.fromBytes(getDataRequest.getExcludedKeysFilter(),
+                        getDataRequest.getNonce());
+                return key -> filter.mightContain(key.bytes);
+            } catch (IOException e) {
+                log.warn("Could not read the excludedKeysFilter. We use the excludedKeys. " + e.getMessage());
+            }
+        }
+
+        Set<P2PDataStorage.ByteArray> excludedItems = getDataRequest.getExcludedKeys() != null ?
+                getDataRequest.getExcludedKeys().stream()
+                        .map(P2PDataStorage.ByteArray::new)
+                        .collect(Collectors.toSet())
+                : new HashSet<>();
+        return excludedItems::contains;
+    }
 
     private void handleFault(String errorMessage, CloseConnectionReason closeConnectionReason, Connection connection) {
         if (!stopped) {
@@ -180,6 +250,10 @@ public class GetDataRequestHandler {
 
     private void cleanup() {
         stopped = true;
+        stopTimeoutTimer();
+    }
+
+    private void stopTimeoutTimer() {
         if (timeoutTimer != null) {
             timeoutTimer.stop();
             timeoutTimer = null;
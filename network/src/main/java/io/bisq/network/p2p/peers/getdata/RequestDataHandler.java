@@ -5,6 +5,7 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.SettableFuture;
 import io.bisq.common.Timer;
 import io.bisq.common.UserThread;
+import io.bisq.common.app.Capabilities;
 import io.bisq.common.app.Log;
 import io.bisq.common.proto.network.NetworkEnvelope;
 import io.bisq.network.p2p.NodeAddress;
@@ -19,7 +20,6 @@ import io.bisq.network.p2p.peers.getdata.messages.GetUpdatedDataRequest;
 import io.bisq.network.p2p.peers.getdata.messages.PreliminaryGetDataRequest;
 import io.bisq.network.p2p.storage.P2PDataStorage;
 import io.bisq.network.p2p.storage.payload.LazyProcessedStoragePayload;
-import io.bisq.network.p2p.storage.payload.PersistedStoragePayload;
 import io.bisq.network.p2p.storage.payload.ProtectedStorageEntry;
 import io.bisq.network.p2p.storage.payload.StoragePayload;
 import org.jetbrains.annotations.NotNull;
@@ -28,7 +28,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -97,15 +96,24 @@ public class RequestDataHandler implements MessageListener {
             // PersistedStoragePayload items don't get removed, so we don't have an issue with the case that
             // an object gets removed in between PreliminaryGetDataRequest and the GetUpdatedDataRequest and we would 
             // miss that event if we do not load the full set or use some delta handling.
-            Set<byte[]> excludedKeys = dataStorage.getMap().entrySet().stream()
-                    .filter(e -> e.getValue().getStoragePayload() instanceof PersistedStoragePayload)
-                    .map(e -> e.getKey().bytes)
+            Set<byte[]> excludedKeys = dataStorage.getPersistedStoragePayloadKeys().stream()
+                    .map(e -> e.bytes)
                     .collect(Collectors.toSet());
 
+            // If the peer supports it we send a compact filter of our keys instead of all keys
+            byte[] excludedKeysFilter = null;
+            if (isReconciliationSupported(nodeAddress)) {
+                excludedKeysFilter = ExcludedKeysFilter.create(excludedKeys, nonce).toBytes();
+                log.debug("We send an excludedKeysFilter of {} bytes for {} keys", excludedKeysFilter.length,
+                        excludedKeys.size());
+                excludedKeys = new HashSet<>();
+            }
+
             if (isPreliminaryDataRequest)
-                getDataRequest = new PreliminaryGetDataRequest(nonce, excludedKeys);
+                getDataRequest = new PreliminaryGetDataRequest(nonce, excludedKeys, excludedKeysFilter);
             else
-                getDataRequest = new GetUpdatedDataRequest(networkNode.getNodeAddress(), nonce, excludedKeys);
+                getDataRequest = new GetUpdatedDataRequest(networkNode.getNodeAddress(), nonce, excludedKeys,
+                        excludedKeysFilter);
 
             if (timeoutTimer == null) {
                 timeoutTimer = UserThread.runAfter(() -> {  // setup before sending to avoid race conditions
@@ -166,7 +174,7 @@ public class RequestDataHandler implements MessageListener {
     public void onMessage(NetworkEnvelope networkEnvelop, Connection connection) {
         if (networkEnvelop instanceof GetDataResponse) {
             if (connection.getPeersNodeAddressOptional().isPresent() && connection.getPeersNodeAddressOptional().get().equals(peersNodeAddress)) {
-                Log.traceCall(networkEnvelop.toString() + "\n\tconnection=" + connection);
+                Log.traceCall(() -> networkEnvelop.toString() + "\n\tconnection=" + connection);
                 if (!stopped) {
                     GetDataResponse getDataResponse = (GetDataResponse) networkEnvelop;
                     Map<String, Set<StoragePayload>> payloadByClassName = new HashMap<>();
@@ -188,7 +196,10 @@ public class RequestDataHandler implements MessageListener {
                     // Log different data types
                     StringBuilder sb = new StringBuilder();
                     sb.append("\n#################################################################");
-                    sb.append("\nReceived ").append(dataSet.size()).append(" instances of storage payload\n");
+                    sb.append("\nReceived ").append(dataSet.size()).append(" instances of storage payload");
+                    if (getDataResponse.getNumRemainingChunks() > 0)
+                        sb.append(" (").append(getDataResponse.getNumRemainingChunks()).append(" more chunks follow)");
+                    sb.append("\n");
                     payloadByClassName.entrySet().stream().forEach(e -> sb.append(e.getKey())
                             .append(": ")
                             .append(e.getValue().size())
@@ -204,42 +215,47 @@ public class RequestDataHandler implements MessageListener {
 
                         final NodeAddress sender = connection.getPeersNodeAddressOptional().get();
 
+                        List<ProtectedStorageEntry> items = new ArrayList<>();
                         List<ProtectedStorageEntry> processDelayedItems = new ArrayList<>();
                         dataSet.stream().forEach(e -> {
                             if (e.getStoragePayload() instanceof LazyProcessedStoragePayload)
                                 processDelayedItems.add(e);
-                            else {
-                                // We dont broadcast here (last param) as we are only connected to the seed node and would be pointless
-                                dataStorage.add(e, sender, null, false, false);
-                            }
+                            else
+                                items.add(e);
                         });
 
-                        // We process the LazyProcessedStoragePayload items (TradeStatistics) in batches with a delay in between.
-                        // We want avoid that the UI get stuck when processing many entries.
-                        // The dataStorage.add call is a bit expensive as sig checks is done there.
+                        // If the peer sends the data in chunks we apply each chunk as it arrives and wait for the
+                        // next one. Batches are applied in order, so the listener is notified once the items of all
+                        // chunks are in our map.
+                        boolean isLastChunk = getDataResponse.getNumRemainingChunks() == 0;
+                        if (isLastChunk)
+                            cleanup();
+                        else
+                            startChunkTimeoutTimer();
+
+                        // The signatures are verified in parallel on a thread pool and the items are added on the
+                        // UserThread afterwards. We notify the listener once the items are in our map.
+                        // We dont broadcast here (allowBroadcast=false) as we are only connected to the seed node and
+                        // would be pointless
+                        dataStorage.addAll(items, sender, false, isLastChunk ? listener::onComplete : null);
+
+                        // We process the LazyProcessedStoragePayload items (TradeStatistics) in batches after the
+                        // other items. Each batch is applied in its own UserThread task so we avoid that the UI get
+                        // stuck when processing many entries (the listeners of the TradeStatistics are not cheap).
 
-                        // Using a background thread might be an alternative but it would require much more effort and 
-                        // it would also decrease user experience if the app gets under heavy load (like at startup with wallet sync).
                         // Beside that we mitigated the problem already as we will not get the whole TradeStatistics as we 
                         // pass the excludeKeys and we pack the latest data dump 
                         // into the resources, so a new user do not need to request all data.
 
                         // In future we will probably limit by date or load on demand from user intent to not get too much data.
 
-                        // We split the list into sub lists with max 50 items and delay each batch with 200 ms.
+                        // We split the list into sub lists with max 50 items.
                         int size = processDelayedItems.size();
                         int chunkSize = 50;
-                        int chunks = 1 + size / chunkSize;
-                        int startIndex = 0;
-                        for (int i = 0; i < chunks && startIndex < size; i++, startIndex += chunkSize) {
-                            long delay = (i + 1) * 200;
+                        for (int startIndex = 0; startIndex < size; startIndex += chunkSize) {
                             int endIndex = Math.min(size, startIndex + chunkSize);
-                            List<ProtectedStorageEntry> subList = processDelayedItems.subList(startIndex, endIndex);
-                            UserThread.runAfter(() -> subList.stream().forEach(protectedStorageEntry -> dataStorage.add(protectedStorageEntry, sender, null, false, false)), delay, TimeUnit.MILLISECONDS);
+                            dataStorage.addAll(processDelayedItems.subList(startIndex, endIndex), sender, false, null);
                         }
-
-                        cleanup();
-                        listener.onComplete();
                     } else {
                         log.debug("Nonce not matching. That can happen rarely if we get a response after a canceled " +
                                         "handshake (timeout causes connection close but peer might have sent a msg before " +
@@ -264,6 +280,31 @@ public class RequestDataHandler implements MessageListener {
     // Private
     ///////////////////////////////////////////////////////////////////////////////////////////
 
+    // We know the capabilities only if we are connected to the peer already, e.g. from the preliminary request at
+    // startup. Otherwise we use the excluded keys which are supported by all versions.
+    private boolean isReconciliationSupported(NodeAddress nodeAddress) {
+        return networkNode.getConfirmedConnections().stream()
+                .filter(connection -> connection.getPeersNodeAddressOptional().isPresent() &&
+                        connection.getPeersNodeAddressOptional().get().equals(nodeAddress))
+                .map(Connection::getSupportedCapabilities)
+                .anyMatch(capabilities -> capabilities != null &&
+                        capabilities.contains(Capabilities.Capability.GET_DATA_RECONCILIATION.ordinal()));
+    }
+
+
+    private void startChunkTimeoutTimer() {
+        timeoutTimer = UserThread.runAfter(() -> {
+                    if (!stopped) {
+                        String errorMessage = "A timeout occurred at waiting for the next chunk of the " +
+                                "getDataResponse from nodeAddress:" + peersNodeAddress;
+                        log.debug(errorMessage + " / RequestDataHandler=" + RequestDataHandler.this);
+                        handleFault(errorMessage, peersNodeAddress, CloseConnectionReason.SEND_MSG_TIMEOUT);
+                    } else {
+                        log.trace("We have stopped already. We ignore that timeoutTimer.run call.");
+                    }
+                },
+                TIME_OUT_SEC);
+    }
 
     @SuppressWarnings("UnusedParameters")
     private void handleFault(String errorMessage, NodeAddress nodeAddress, CloseConnectionReason closeConnectionReason) {
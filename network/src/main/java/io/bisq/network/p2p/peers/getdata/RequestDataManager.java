@@ -1,5 +1,7 @@
 package io.bisq.network.p2p.peers.getdata;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import io.bisq.common.Timer;
 import io.bisq.common.UserThread;
 import io.bisq.common.app.Log;
@@ -7,9 +9,11 @@ import io.bisq.common.proto.network.NetworkEnvelope;
 import io.bisq.network.p2p.NodeAddress;
 import io.bisq.network.p2p.network.*;
 import io.bisq.network.p2p.peers.PeerManager;
+import io.bisq.network.p2p.peers.PeerScore;
 import io.bisq.network.p2p.peers.getdata.messages.GetDataRequest;
 import io.bisq.network.p2p.peers.peerexchange.Peer;
 import io.bisq.network.p2p.storage.P2PDataStorage;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,6 +28,7 @@ public class RequestDataManager implements MessageListener, ConnectionListener,
 
     private static final long RETRY_DELAY_SEC = 10;
     private static final long CLEANUP_TIMER = 120;
+    private static final int NUM_RACING_SEED_NODES = 3;
     private boolean isPreliminaryDataRequest = true;
 
 
@@ -95,15 +100,32 @@ public class RequestDataManager implements MessageListener, ConnectionListener,
     // API
     ///////////////////////////////////////////////////////////////////////////////////////////
 
+    // We connect to several seed nodes in parallel and request the data from the first one we got connected to, so an
+    // offline seed node does not delay our startup by the socket timeout.
     public boolean requestPreliminaryData() {
         Log.traceCall();
-        ArrayList<NodeAddress> nodeAddresses = new ArrayList<>(seedNodeAddresses);
+        List<NodeAddress> nodeAddresses = getOrderedByScore(seedNodeAddresses);
         if (!nodeAddresses.isEmpty()) {
-            Collections.shuffle(nodeAddresses);
-            NodeAddress nextCandidate = nodeAddresses.get(0);
-            nodeAddresses.remove(nextCandidate);
             isPreliminaryDataRequest = true;
-            requestData(nextCandidate, nodeAddresses);
+            List<NodeAddress> candidates = new ArrayList<>(nodeAddresses.subList(0,
+                    Math.min(NUM_RACING_SEED_NODES, nodeAddresses.size())));
+            Futures.addCallback(networkNode.connectToAny(candidates), new FutureCallback<Connection>() {
+                @Override
+                public void onSuccess(Connection connection) {
+                    NodeAddress nextCandidate = connection.getPeersNodeAddressOptional().orElse(candidates.get(0));
+                    nodeAddresses.remove(nextCandidate);
+                    requestData(nextCandidate, nodeAddresses);
+                }
+
+                @Override
+                public void onFailure(@NotNull Throwable throwable) {
+                    log.debug("We could not connect to any of the seed nodes {}. {}", candidates, throwable.getMessage());
+                    // We continue as before, so the fault handling tries the remaining seed nodes and restarts
+                    NodeAddress nextCandidate = nodeAddresses.get(0);
+                    nodeAddresses.remove(nextCandidate);
+                    requestData(nextCandidate, nodeAddresses);
+                }
+            });
             return true;
         } else {
             return false;
@@ -114,9 +136,8 @@ public class RequestDataManager implements MessageListener, ConnectionListener,
         Log.traceCall();
         checkArgument(nodeAddressOfPreliminaryDataRequest.isPresent(), "nodeAddressOfPreliminaryDataRequest must be present");
         dataUpdateRequested = true;
-        List<NodeAddress> remainingNodeAddresses = new ArrayList<>(seedNodeAddresses);
+        List<NodeAddress> remainingNodeAddresses = getOrderedByScore(seedNodeAddresses);
         if (!remainingNodeAddresses.isEmpty()) {
-            Collections.shuffle(remainingNodeAddresses);
             NodeAddress candidate = nodeAddressOfPreliminaryDataRequest.get();
             remainingNodeAddresses.remove(candidate);
             isPreliminaryDataRequest = false;
@@ -193,7 +214,7 @@ public class RequestDataManager implements MessageListener, ConnectionListener,
     @Override
     public void onMessage(NetworkEnvelope networkEnvelop, Connection connection) {
         if (networkEnvelop instanceof GetDataRequest) {
-            Log.traceCall(networkEnvelop.toString() + "\n\tconnection=" + connection);
+            Log.traceCall(() -> networkEnvelop.toString() + "\n\tconnection=" + connection);
             if (!stopped) {
                 if (peerManager.isSeedNode(connection))
                     connection.setPeerType(Connection.PeerType.SEED_NODE);
@@ -340,11 +361,10 @@ public class RequestDataManager implements MessageListener, ConnectionListener,
                         stopRetryTimer();
 
                         // We create a new list of candidates
-                        // 1. shuffled seedNodes
+                        // 1. seedNodes in a random order weighted by their score
                         // 2. reported peers sorted by last activity date
                         // 3. Add as last persisted peers sorted by last activity date
-                        List<NodeAddress> list = getFilteredList(new ArrayList<>(seedNodeAddresses), new ArrayList<>());
-                        Collections.shuffle(list);
+                        List<NodeAddress> list = getOrderedByScore(getFilteredList(new ArrayList<>(seedNodeAddresses), new ArrayList<>()));
 
                         List<NodeAddress> filteredReportedPeers = getFilteredNonSeedNodeList(getSortedNodeAddresses(peerManager.getReportedPeers()), list);
                         list.addAll(filteredReportedPeers);
@@ -362,6 +382,16 @@ public class RequestDataManager implements MessageListener, ConnectionListener,
         }
     }
 
+    // Seed nodes we are connected to are weighted by the score of the connection, the others count as neutral
+    private List<NodeAddress> getOrderedByScore(Collection<NodeAddress> nodeAddresses) {
+        Map<NodeAddress, Double> scores = networkNode.getConfirmedConnections().stream()
+                .filter(connection -> connection.getPeersNodeAddressOptional().isPresent())
+                .collect(Collectors.toMap(connection -> connection.getPeersNodeAddressOptional().get(),
+                        PeerScore::getScore, Math::max));
+        return PeerScore.getWeightedRandomOrder(nodeAddresses,
+                nodeAddress -> scores.getOrDefault(nodeAddress, PeerScore.NEUTRAL_SCORE), new Random());
+    }
+
     private List<NodeAddress> getSortedNodeAddresses(Collection<Peer> collection) {
         return collection.stream()
                 .collect(Collectors.toList())
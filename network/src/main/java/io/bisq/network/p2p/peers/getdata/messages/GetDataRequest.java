@@ -6,6 +6,7 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.ToString;
 
+import javax.annotation.Nullable;
 import java.util.Set;
 
 @EqualsAndHashCode(callSuper = true)
@@ -14,10 +15,14 @@ import java.util.Set;
 public abstract class GetDataRequest extends NetworkEnvelope implements ExtendedDataSizePermission {
     protected final int nonce;
     protected final Set<byte[]> excludedKeys;
+    // Serialized ExcludedKeysFilter, only used if the peer supports the GET_DATA_RECONCILIATION capability
+    @Nullable
+    protected final byte[] excludedKeysFilter;
 
-    public GetDataRequest(int messageVersion, int nonce, Set<byte[]> excludedKeys) {
+    public GetDataRequest(int messageVersion, int nonce, Set<byte[]> excludedKeys, @Nullable byte[] excludedKeysFilter) {
         super(messageVersion);
         this.nonce = nonce;
         this.excludedKeys = excludedKeys;
+        this.excludedKeysFilter = excludedKeysFilter;
     }
 }
@@ -24,21 +24,30 @@ public final class GetDataResponse extends NetworkEnvelope implements SupportedC
     private final HashSet<ProtectedStorageEntry> dataSet;
     private final int requestNonce;
     private final boolean isGetUpdatedDataResponse;
+    // If the peer supports CHUNKED_GET_DATA_RESPONSE the data is split into several responses. The last one has 0.
+    private final int numRemainingChunks;
     private final ArrayList<Integer> supportedCapabilities = Capabilities.getCapabilities();
 
     public GetDataResponse(HashSet<ProtectedStorageEntry> dataSet, int requestNonce, boolean isGetUpdatedDataResponse) {
-        this(dataSet, requestNonce, isGetUpdatedDataResponse, Version.getP2PMessageVersion());
+        this(dataSet, requestNonce, isGetUpdatedDataResponse, 0);
+    }
+
+    public GetDataResponse(HashSet<ProtectedStorageEntry> dataSet, int requestNonce, boolean isGetUpdatedDataResponse,
+                           int numRemainingChunks) {
+        this(dataSet, requestNonce, isGetUpdatedDataResponse, numRemainingChunks, Version.getP2PMessageVersion());
     }
 
     ///////////////////////////////////////////////////////////////////////////////////////////
     // PROTO BUFFER
     ///////////////////////////////////////////////////////////////////////////////////////////
 
-    private GetDataResponse(HashSet<ProtectedStorageEntry> dataSet, int requestNonce, boolean isGetUpdatedDataResponse, int messageVersion) {
+    private GetDataResponse(HashSet<ProtectedStorageEntry> dataSet, int requestNonce, boolean isGetUpdatedDataResponse,
+                            int numRemainingChunks, int messageVersion) {
         super(messageVersion);
         this.dataSet = dataSet;
         this.requestNonce = requestNonce;
         this.isGetUpdatedDataResponse = isGetUpdatedDataResponse;
+        this.numRemainingChunks = numRemainingChunks;
     }
 
     @Override
@@ -57,7 +66,8 @@ public final class GetDataResponse extends NetworkEnvelope implements SupportedC
                                 .collect(Collectors.toList()))
                         .setRequestNonce(requestNonce)
                         .setIsGetUpdatedDataResponse(isGetUpdatedDataResponse)
-                        .addAllSupportedCapabilities(supportedCapabilities))
+                        .addAllSupportedCapabilities(supportedCapabilities)
+                        .setNumRemainingChunks(numRemainingChunks))
                 .build();
     }
 
@@ -69,6 +79,7 @@ public final class GetDataResponse extends NetworkEnvelope implements SupportedC
         return new GetDataResponse(dataSet,
                 proto.getRequestNonce(),
                 proto.getIsGetUpdatedDataResponse(),
+                proto.getNumRemainingChunks(),
                 messageVersion);
     }
 }
@@ -9,6 +9,8 @@ import io.bisq.network.p2p.SendersNodeAddressMessage;
 import lombok.EqualsAndHashCode;
 import lombok.Value;
 
+import javax.annotation.Nullable;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -22,9 +24,17 @@ public final class GetUpdatedDataRequest extends GetDataRequest implements Sende
     public GetUpdatedDataRequest(NodeAddress senderNodeAddress,
                                  int nonce,
                                  Set<byte[]> excludedKeys) {
+        this(senderNodeAddress, nonce, excludedKeys, null);
+    }
+
+    public GetUpdatedDataRequest(NodeAddress senderNodeAddress,
+                                 int nonce,
+                                 Set<byte[]> excludedKeys,
+                                 @Nullable byte[] excludedKeysFilter) {
         this(senderNodeAddress,
                 nonce,
                 excludedKeys,
+                excludedKeysFilter,
                 Version.getP2PMessageVersion());
     }
 
@@ -36,23 +46,27 @@ public final class GetUpdatedDataRequest extends GetDataRequest implements Sende
     private GetUpdatedDataRequest(NodeAddress senderNodeAddress,
                                   int nonce,
                                   Set<byte[]> excludedKeys,
+                                  @Nullable byte[] excludedKeysFilter,
                                   int messageVersion) {
         super(messageVersion,
                 nonce,
-                excludedKeys);
+                excludedKeys,
+                excludedKeysFilter);
         checkNotNull(senderNodeAddress, "senderNodeAddress must not be null at GetUpdatedDataRequest");
         this.senderNodeAddress = senderNodeAddress;
     }
 
     @Override
     public PB.NetworkEnvelope toProtoNetworkEnvelope() {
+        final PB.GetUpdatedDataRequest.Builder builder = PB.GetUpdatedDataRequest.newBuilder()
+                .setSenderNodeAddress(senderNodeAddress.toProtoMessage())
+                .setNonce(nonce)
+                .addAllExcludedKeys(excludedKeys.stream()
+                        .map(ByteString::copyFrom)
+                        .collect(Collectors.toList()));
+        Optional.ofNullable(excludedKeysFilter).ifPresent(e -> builder.setExcludedKeysFilter(ByteString.copyFrom(e)));
         return getNetworkEnvelopeBuilder()
-                .setGetUpdatedDataRequest(PB.GetUpdatedDataRequest.newBuilder()
-                        .setSenderNodeAddress(senderNodeAddress.toProtoMessage())
-                        .setNonce(nonce)
-                        .addAllExcludedKeys(excludedKeys.stream()
-                                .map(ByteString::copyFrom)
-                                .collect(Collectors.toList())))
+                .setGetUpdatedDataRequest(builder)
                 .build();
     }
 
@@ -60,6 +74,7 @@ public final class GetUpdatedDataRequest extends GetDataRequest implements Sende
         return new GetUpdatedDataRequest(NodeAddress.fromProto(proto.getSenderNodeAddress()),
                 proto.getNonce(),
                 ProtoUtil.byteSetFromProtoByteStringList(proto.getExcludedKeysList()),
+                proto.getExcludedKeysFilter().isEmpty() ? null : proto.getExcludedKeysFilter().toByteArray(),
                 messageVersion);
     }
 }
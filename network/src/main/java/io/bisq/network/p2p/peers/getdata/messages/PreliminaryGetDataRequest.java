@@ -10,7 +10,9 @@ import io.bisq.network.p2p.SupportedCapabilitiesMessage;
 import lombok.EqualsAndHashCode;
 import lombok.Value;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -21,7 +23,11 @@ public final class PreliminaryGetDataRequest extends GetDataRequest implements A
     private final ArrayList<Integer> supportedCapabilities = Capabilities.getCapabilities();
 
     public PreliminaryGetDataRequest(int nonce, Set<byte[]> excludedKeys) {
-        this(nonce, excludedKeys, Version.getP2PMessageVersion());
+        this(nonce, excludedKeys, null);
+    }
+
+    public PreliminaryGetDataRequest(int nonce, Set<byte[]> excludedKeys, @Nullable byte[] excludedKeysFilter) {
+        this(nonce, excludedKeys, excludedKeysFilter, Version.getP2PMessageVersion());
     }
 
 
@@ -29,25 +35,29 @@ public final class PreliminaryGetDataRequest extends GetDataRequest implements A
     // PROTO BUFFER
     ///////////////////////////////////////////////////////////////////////////////////////////
 
-    private PreliminaryGetDataRequest(int nonce, Set<byte[]> excludedKeys, int messageVersion) {
-        super(messageVersion, nonce, excludedKeys);
+    private PreliminaryGetDataRequest(int nonce, Set<byte[]> excludedKeys, @Nullable byte[] excludedKeysFilter,
+                                      int messageVersion) {
+        super(messageVersion, nonce, excludedKeys, excludedKeysFilter);
     }
 
     @Override
     public PB.NetworkEnvelope toProtoNetworkEnvelope() {
+        final PB.PreliminaryGetDataRequest.Builder builder = PB.PreliminaryGetDataRequest.newBuilder()
+                .setNonce(nonce)
+                .addAllExcludedKeys(excludedKeys.stream()
+                        .map(ByteString::copyFrom)
+                        .collect(Collectors.toList()))
+                .addAllSupportedCapabilities(supportedCapabilities);
+        Optional.ofNullable(excludedKeysFilter).ifPresent(e -> builder.setExcludedKeysFilter(ByteString.copyFrom(e)));
         return getNetworkEnvelopeBuilder()
-                .setPreliminaryGetDataRequest(PB.PreliminaryGetDataRequest.newBuilder()
-                        .setNonce(nonce)
-                        .addAllExcludedKeys(excludedKeys.stream()
-                                .map(ByteString::copyFrom)
-                                .collect(Collectors.toList()))
-                        .addAllSupportedCapabilities(supportedCapabilities))
+                .setPreliminaryGetDataRequest(builder)
                 .build();
     }
 
     public static PreliminaryGetDataRequest fromProto(PB.PreliminaryGetDataRequest proto, int messageVersion) {
         return new PreliminaryGetDataRequest(proto.getNonce(),
                 ProtoUtil.byteSetFromProtoByteStringList(proto.getExcludedKeysList()),
+                proto.getExcludedKeysFilter().isEmpty() ? null : proto.getExcludedKeysFilter().toByteArray(),
                 messageVersion);
     }
 }
@@ -75,6 +75,12 @@ public class PeerExchangeManager implements MessageListener, ConnectionListener,
         startPeriodicTimer();
     }
 
+    // Used for opening a connection to a peer which knows our address then, so it does not close it as anonymous
+    public void requestReportedPeers(NodeAddress nodeAddress) {
+        Preconditions.checkNotNull(networkNode.getNodeAddress(), "My node address must not be null at requestReportedPeers");
+        requestReportedPeers(nodeAddress, new ArrayList<>());
+    }
+
 
     ///////////////////////////////////////////////////////////////////////////////////////////
     // ConnectionListener implementation
@@ -146,7 +152,7 @@ public class PeerExchangeManager implements MessageListener, ConnectionListener,
     @Override
     public void onMessage(NetworkEnvelope networkEnvelop, Connection connection) {
         if (networkEnvelop instanceof GetPeersRequest) {
-            Log.traceCall(networkEnvelop.toString() + "\n\tconnection=" + connection);
+            Log.traceCall(() -> networkEnvelop.toString() + "\n\tconnection=" + connection);
             if (!stopped) {
                 if (peerManager.isSeedNode(connection))
                     connection.setPeerType(Connection.PeerType.SEED_NODE);
@@ -0,0 +1,89 @@
+package io.bisq.network.p2p.storage;
+
+import io.bisq.network.p2p.storage.P2PDataStorage.ByteArray;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Deadline ordered queue of the expiry times of the storage entries. At each tick we only touch the entries which
+ * are actually expired instead of iterating the whole map.
+ * <p/>
+ * If the TTL of an entry changes (refreshTTL, backDate) it gets scheduled again. We don't remove the old deadline
+ * from the heap (that would be O(n)) but ignore it when it comes up as it does not match the current expiry time of
+ * that entry anymore.
+ */
+final class ExpiryQueue {
+    // If there are that many more deadlines in the heap than scheduled entries we rebuild the heap to get rid of the
+    // outdated deadlines (e.g. from offers which got refreshed many times).
+    private static final int MAX_OUTDATED_DEADLINES = 1000;
+
+    private final PriorityQueue<Deadline> deadlines = new PriorityQueue<>();
+    private final Map<ByteArray, Long> expiryTimeByHash = new HashMap<>();
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    synchronized void schedule(ByteArray hashOfPayload, long expiryTime) {
+        Long previous = expiryTimeByHash.put(hashOfPayload, expiryTime);
+        if (previous == null || previous != expiryTime) {
+            deadlines.add(new Deadline(expiryTime, hashOfPayload));
+            if (deadlines.size() - expiryTimeByHash.size() > MAX_OUTDATED_DEADLINES)
+                rebuild();
+        }
+    }
+
+    synchronized void cancel(ByteArray hashOfPayload) {
+        expiryTimeByHash.remove(hashOfPayload);
+    }
+
+    /**
+     * @return The hashes of all entries with an expiry time before now. They are not scheduled anymore.
+     */
+    synchronized List<ByteArray> pollExpired(long now) {
+        List<ByteArray> expired = new ArrayList<>();
+        while (!deadlines.isEmpty() && deadlines.peek().expiryTime < now) {
+            Deadline deadline = deadlines.poll();
+            Long expiryTime = expiryTimeByHash.get(deadline.hashOfPayload);
+            if (expiryTime != null && expiryTime == deadline.expiryTime) {
+                expiryTimeByHash.remove(deadline.hashOfPayload);
+                expired.add(deadline.hashOfPayload);
+            }
+        }
+        return expired;
+    }
+
+    synchronized int size() {
+        return expiryTimeByHash.size();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void rebuild() {
+        deadlines.clear();
+        expiryTimeByHash.forEach((hashOfPayload, expiryTime) -> deadlines.add(new Deadline(expiryTime, hashOfPayload)));
+    }
+
+    private static final class Deadline implements Comparable<Deadline> {
+        private final long expiryTime;
+        private final ByteArray hashOfPayload;
+
+        Deadline(long expiryTime, ByteArray hashOfPayload) {
+            this.expiryTime = expiryTime;
+            this.hashOfPayload = hashOfPayload;
+        }
+
+        @Override
+        public int compareTo(Deadline other) {
+            return Long.compare(expiryTime, other.expiryTime);
+        }
+    }
+}
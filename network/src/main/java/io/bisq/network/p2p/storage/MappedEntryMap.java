@@ -0,0 +1,346 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bisq.network.p2p.storage;
+
+import io.bisq.common.proto.network.NetworkProtoResolver;
+import io.bisq.common.storage.FileUtil;
+import io.bisq.generated.protobuffer.PB;
+import io.bisq.network.p2p.storage.P2PDataStorage.ByteArray;
+import io.bisq.network.p2p.storage.payload.ProtectedStorageEntry;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Read only store of PersistedStoragePayload entries with an index from the hash of the payload to the serialized
+ * entry. The file gets memory mapped and the index is binary searched in the mapped buffer, so opening the file does
+ * not depend on the number of entries. Entries are only decoded when they get accessed. The index records the class
+ * of each payload, so the entries of a payload class can be found without decoding the others.
+ * <p>
+ * File layout (big endian):
+ * <pre>
+ * int magic | int version | int numEntries | int hashLength | int numPayloadClasses
+ * numPayloadClasses class names as written by DataOutputStream.writeUTF
+ * numEntries index records sorted by hash: byte[hashLength] hash | long offset | int length | int payloadClassIndex
+ * serialized PB.ProtectedStorageEntry messages
+ * </pre>
+ */
+@Slf4j
+final class MappedEntryMap {
+    private static final int MAGIC = 0x42454d46;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 20;
+    // offset (long), length (int) and payloadClassIndex (int) following the hash in an index record
+    private static final int RECORD_POINTER_SIZE = 16;
+
+    private final ByteBuffer buffer;
+    private final NetworkProtoResolver networkProtoResolver;
+    private final int size;
+    private final int hashLength;
+    private final int recordSize;
+    private final int indexPosition;
+    private final List<String> payloadClassNames = new ArrayList<>();
+    // Null if the class is not known to us
+    private final List<Class<?>> payloadClasses = new ArrayList<>();
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // SerializedEntry
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    static final class SerializedEntry {
+        final byte[] bytes;
+        final String payloadClassName;
+
+        SerializedEntry(byte[] bytes, String payloadClassName) {
+            this.bytes = bytes;
+            this.payloadClassName = payloadClassName;
+        }
+
+        static SerializedEntry of(ProtectedStorageEntry entry) {
+            return new SerializedEntry(entry.toProtoMessage().toByteArray(),
+                    entry.getStoragePayload().getClass().getName());
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Static
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    static MappedEntryMap map(File file, NetworkProtoResolver networkProtoResolver) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedEntryMap(buffer, networkProtoResolver);
+        }
+    }
+
+    // Reads the file into the heap. Used when we rewrite the file as on some OS a mapped file cannot be replaced.
+    static MappedEntryMap read(File file, NetworkProtoResolver networkProtoResolver) throws IOException {
+        return new MappedEntryMap(ByteBuffer.wrap(Files.readAllBytes(file.toPath())), networkProtoResolver);
+    }
+
+    static void write(File file, Map<ByteArray, SerializedEntry> serializedEntries) throws IOException {
+        SortedMap<ByteArray, SerializedEntry> sorted = new TreeMap<>((o1, o2) -> compare(o1.bytes, o2.bytes));
+        sorted.putAll(serializedEntries);
+        int hashLength = sorted.isEmpty() ? 0 : sorted.firstKey().bytes.length;
+        checkArgument(sorted.keySet().stream().allMatch(hash -> hash.bytes.length == hashLength),
+                "All hashes must have the same length");
+        List<String> payloadClassNames = new ArrayList<>(new TreeSet<>(sorted.values().stream()
+                .map(e -> e.payloadClassName)
+                .collect(Collectors.toSet())));
+
+        File tempFile = File.createTempFile("temp", null, file.getParentFile());
+        try {
+            try (FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
+                 DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(fileOutputStream))) {
+                outputStream.writeInt(MAGIC);
+                outputStream.writeInt(VERSION);
+                outputStream.writeInt(sorted.size());
+                outputStream.writeInt(hashLength);
+                outputStream.writeInt(payloadClassNames.size());
+                for (String payloadClassName : payloadClassNames)
+                    outputStream.writeUTF(payloadClassName);
+
+                long offset = outputStream.size() + (long) sorted.size() * (hashLength + RECORD_POINTER_SIZE);
+                for (Map.Entry<ByteArray, SerializedEntry> entry : sorted.entrySet()) {
+                    outputStream.write(entry.getKey().bytes);
+                    outputStream.writeLong(offset);
+                    outputStream.writeInt(entry.getValue().bytes.length);
+                    outputStream.writeInt(payloadClassNames.indexOf(entry.getValue().payloadClassName));
+                    offset += entry.getValue().bytes.length;
+                }
+                for (SerializedEntry serializedEntry : sorted.values())
+                    outputStream.write(serializedEntry.bytes);
+
+                outputStream.flush();
+                fileOutputStream.getFD().sync();
+            }
+            FileUtil.renameFile(tempFile, file);
+        } finally {
+            if (tempFile.exists() && !tempFile.delete())
+                log.warn("Cannot delete temp file {}", tempFile);
+        }
+    }
+
+    // Unsigned lexicographic order
+    private static int compare(byte[] o1, byte[] o2) {
+        for (int i = 0; i < Math.min(o1.length, o2.length); i++) {
+            int result = Integer.compare(o1[i] & 0xff, o2[i] & 0xff);
+            if (result != 0)
+                return result;
+        }
+        return Integer.compare(o1.length, o2.length);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private MappedEntryMap(ByteBuffer buffer, NetworkProtoResolver networkProtoResolver) throws IOException {
+        this.buffer = buffer;
+        this.networkProtoResolver = networkProtoResolver;
+
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IOException("File is not a MappedEntryMap");
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException("Unsupported MappedEntryMap version " + buffer.getInt(4));
+
+        size = buffer.getInt(8);
+        hashLength = buffer.getInt(12);
+        int numPayloadClasses = buffer.getInt(16);
+        recordSize = hashLength + RECORD_POINTER_SIZE;
+        if (size < 0 || hashLength < 0 || numPayloadClasses < 0)
+            throw new IOException("MappedEntryMap header is corrupted");
+
+        try {
+            ByteBuffer duplicate = buffer.duplicate();
+            duplicate.position(HEADER_SIZE);
+            for (int i = 0; i < numPayloadClasses; i++) {
+                byte[] name = new byte[duplicate.getShort() & 0xffff];
+                duplicate.get(name);
+                payloadClassNames.add(new String(name, StandardCharsets.UTF_8));
+            }
+            indexPosition = duplicate.position();
+        } catch (BufferUnderflowException e) {
+            throw new IOException("MappedEntryMap payload classes are corrupted");
+        }
+        if (buffer.capacity() < indexPosition + (long) size * recordSize)
+            throw new IOException("MappedEntryMap index is corrupted");
+
+        payloadClassNames.forEach(name -> payloadClasses.add(loadClass(name)));
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    int size() {
+        return size;
+    }
+
+    boolean containsKey(ByteArray hash) {
+        return indexOf(hash.bytes) >= 0;
+    }
+
+    /**
+     * Decodes the entry for the given hash. Each call decodes the entry again, so the caller should keep the result.
+     */
+    @Nullable
+    ProtectedStorageEntry get(ByteArray hash) {
+        int index = indexOf(hash.bytes);
+        if (index < 0)
+            return null;
+
+        try {
+            return ProtectedStorageEntry.fromProto(PB.ProtectedStorageEntry.parseFrom(getSerializedEntry(index)),
+                    networkProtoResolver);
+        } catch (Throwable t) {
+            log.error("Could not decode entry " + hash, t);
+            return null;
+        }
+    }
+
+    /**
+     * @return The hashes of all entries. Only the index gets read, no entry is decoded.
+     */
+    List<ByteArray> getKeys() {
+        List<ByteArray> keys = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            keys.add(getHash(i));
+        return keys;
+    }
+
+    /**
+     * @return The hashes of the entries whose payload is an instance of the given class. Only the index gets read,
+     * no entry is decoded.
+     */
+    List<ByteArray> getKeys(Class<?> payloadClass) {
+        boolean[] matches = new boolean[payloadClasses.size()];
+        for (int i = 0; i < matches.length; i++) {
+            Class<?> clazz = payloadClasses.get(i);
+            matches[i] = clazz != null && payloadClass.isAssignableFrom(clazz);
+        }
+
+        List<ByteArray> keys = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            int payloadClassIndex = getPayloadClassIndex(i);
+            if (payloadClassIndex >= 0 && payloadClassIndex < matches.length && matches[payloadClassIndex])
+                keys.add(getHash(i));
+        }
+        return keys;
+    }
+
+    void forEachSerializedEntry(BiConsumer<ByteArray, SerializedEntry> consumer) {
+        for (int i = 0; i < size; i++) {
+            int payloadClassIndex = getPayloadClassIndex(i);
+            checkArgument(payloadClassIndex >= 0 && payloadClassIndex < payloadClassNames.size(),
+                    "Index record points to an unknown payload class");
+            consumer.accept(getHash(i), new SerializedEntry(getSerializedEntry(i), payloadClassNames.get(payloadClassIndex)));
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private int indexOf(byte[] hash) {
+        if (hash.length != hashLength)
+            return -1;
+
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int result = compareWithRecord(mid, hash);
+            if (result < 0)
+                low = mid + 1;
+            else if (result > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    // Compares the hash of the record at the given index with the given hash without copying it out of the buffer
+    private int compareWithRecord(int index, byte[] hash) {
+        int position = indexPosition + index * recordSize;
+        for (int i = 0; i < hashLength; i++) {
+            int result = Integer.compare(buffer.get(position + i) & 0xff, hash[i] & 0xff);
+            if (result != 0)
+                return result;
+        }
+        return 0;
+    }
+
+    private ByteArray getHash(int index) {
+        byte[] hash = new byte[hashLength];
+        // We use a duplicate as the relative get methods are not thread safe
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(indexPosition + index * recordSize);
+        duplicate.get(hash);
+        return new ByteArray(hash);
+    }
+
+    private byte[] getSerializedEntry(int index) {
+        int position = indexPosition + index * recordSize + hashLength;
+        long offset = buffer.getLong(position);
+        int length = buffer.getInt(position + 8);
+        checkArgument(offset >= 0 && length >= 0 && offset + length <= buffer.capacity(),
+                "Index record points outside of the file");
+
+        byte[] serializedEntry = new byte[length];
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position((int) offset);
+        duplicate.get(serializedEntry);
+        return serializedEntry;
+    }
+
+    private int getPayloadClassIndex(int index) {
+        return buffer.getInt(indexPosition + index * recordSize + hashLength + 12);
+    }
+
+    // Payload classes are in the core module which we don't depend on, so we look them up by name
+    @Nullable
+    private static Class<?> loadClass(String name) {
+        try {
+            return Class.forName(name, false, MappedEntryMap.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            log.warn("Unknown payload class {} in MappedEntryMap", name);
+            return null;
+        }
+    }
+}
@@ -1,14 +1,21 @@
 package io.bisq.network.p2p.storage;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.protobuf.ByteString;
 import io.bisq.common.Timer;
 import io.bisq.common.UserThread;
 import io.bisq.common.app.Log;
 import io.bisq.common.crypto.CryptoException;
+import io.bisq.common.crypto.Hash;
 import io.bisq.common.crypto.Sig;
 import io.bisq.common.proto.network.NetworkEnvelope;
 import io.bisq.common.proto.network.NetworkPayload;
+import io.bisq.common.proto.network.NetworkProtoResolver;
 import io.bisq.common.proto.persistable.PersistablePayload;
 import io.bisq.common.proto.persistable.PersistedDataHost;
 import io.bisq.common.proto.persistable.PersistenceProtoResolver;
@@ -25,6 +32,10 @@ import io.bisq.network.p2p.peers.BroadcastHandler;
 import io.bisq.network.p2p.peers.Broadcaster;
 import io.bisq.network.p2p.storage.messages.*;
 import io.bisq.network.p2p.storage.payload.*;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.LongProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleLongProperty;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
 import org.apache.commons.lang3.StringUtils;
@@ -34,14 +45,14 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Paths;
 import java.security.KeyPair;
 import java.security.PublicKey;
 import java.util.*;
 import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 // Run in UserThread
@@ -56,15 +67,32 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     @VisibleForTesting
     public static int CHECK_TTL_INTERVAL_SEC = 60;
 
+    private static final int NUM_SIGNATURE_VERIFICATION_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private static final String MAPPED_ENTRY_MAP_FILE_NAME = "MappedEntryMap";
+
     private final Broadcaster broadcaster;
     private final File storageDir;
     private final Map<ByteArray, ProtectedStorageEntry> map = new ConcurrentHashMap<>();
+    private final StorageEntryIndex index = new StorageEntryIndex();
+    private final ExpiryQueue expiryQueue = new ExpiryQueue();
     private final CopyOnWriteArraySet<HashMapChangedListener> hashMapChangedListeners = new CopyOnWriteArraySet<>();
     private Timer removeExpiredEntriesTimer;
     private final SequenceNumberMap sequenceNumberMap = new SequenceNumberMap();
     private final Storage<SequenceNumberMap> sequenceNumberMapStorage;
     private final Storage<PersistedEntryMap> persistedEntryMapStorage;
     private PersistedEntryMap persistedEntryMap;
+    private final NetworkProtoResolver networkProtoResolver;
+    // Entries of the mappedEntryMap are decoded and added to the map at first access
+    @Nullable
+    private volatile MappedEntryMap mappedEntryMap;
+    private volatile boolean allMappedEntriesDecoded;
+    // Removed entries of the mappedEntryMap must not get decoded again
+    private final Set<ByteArray> removedMappedEntryKeys = ConcurrentHashMap.newKeySet();
+    private final IntegerProperty numExpiredEntriesAtLastTick = new SimpleIntegerProperty(0);
+    private final LongProperty totalExpiredEntries = new SimpleLongProperty(0);
+    private final ListeningExecutorService signatureVerificationExecutor;
+    // Only accessed from the UserThread
+    private final Deque<PendingBatch> pendingBatches = new ArrayDeque<>();
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -74,9 +102,11 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     public P2PDataStorage(Broadcaster broadcaster,
                           NetworkNode networkNode,
                           File storageDir,
-                          PersistenceProtoResolver persistenceProtoResolver) {
+                          PersistenceProtoResolver persistenceProtoResolver,
+                          NetworkProtoResolver networkProtoResolver) {
         this.broadcaster = broadcaster;
         this.storageDir = storageDir;
+        this.networkProtoResolver = networkProtoResolver;
 
         networkNode.addMessageListener(this);
         networkNode.addConnectionListener(this);
@@ -85,6 +115,12 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         persistedEntryMapStorage = new Storage<>(storageDir, persistenceProtoResolver);
         sequenceNumberMapStorage.setNumMaxBackupFiles(5);
         persistedEntryMapStorage.setNumMaxBackupFiles(1);
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(NUM_SIGNATURE_VERIFICATION_THREADS,
+                NUM_SIGNATURE_VERIFICATION_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("SignatureVerification-%d").setDaemon(true).build());
+        executor.allowCoreThreadTimeOut(true);
+        signatureVerificationExecutor = MoreExecutors.listeningDecorator(executor);
     }
 
     @Override
@@ -120,20 +156,61 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         } else {
             log.debug(storageFileName + " file exists already.");
         }
-        // takes about 4 seconds with PB! :-(
+        // The EntryMap file only holds the entries added since the last start, all older entries are in the
+        // MappedEntryMap file. Only at the first start (or after an update of the resource file) we have to decode
+        // the full EntryMap.
         persistedEntryMap = persistedEntryMapStorage.<HashMap<ByteArray, MapValue>>initAndGetPersistedWithFileName(storageFileName);
+        if (persistedEntryMap == null)
+            persistedEntryMap = new PersistedEntryMap();
 
-        if (persistedEntryMap != null) {
-            map.putAll(persistedEntryMap.getMap());
-            log.info("persistedEntryMap size=" + map.size());
+        File mappedEntryMapFile = new File(storageDir, MAPPED_ENTRY_MAP_FILE_NAME);
+        if (!persistedEntryMap.getMap().isEmpty()) {
+            try {
+                writeMappedEntryMap(mappedEntryMapFile, persistedEntryMap.getMap());
+                // The entries are in the MappedEntryMap now. If we crash before the EntryMap is saved we move the
+                // same entries again at the next start.
+                persistedEntryMap.getMap().forEach(this::putEntry);
+                persistedEntryMap = new PersistedEntryMap();
+                persistedEntryMapStorage.queueUpForSave(persistedEntryMap, 100);
+            } catch (Throwable t) {
+                log.error("Could not write " + MAPPED_ENTRY_MAP_FILE_NAME + ". We keep all entries in the EntryMap.", t);
+                persistedEntryMap.getMap().forEach(this::putEntry);
+            }
+        }
 
-            // In case another object is already listening...
-            if (!hashMapChangedListeners.isEmpty())
-                map.values().stream()
-                        .forEach(protectedStorageEntry -> hashMapChangedListeners.stream().forEach(e -> e.onAdded(protectedStorageEntry)));
-        } else {
-            persistedEntryMap = new PersistedEntryMap();
+        if (mappedEntryMapFile.exists()) {
+            try {
+                mappedEntryMap = MappedEntryMap.map(mappedEntryMapFile, networkProtoResolver);
+                log.info("MappedEntryMap size=" + mappedEntryMap.size());
+            } catch (Throwable t) {
+                log.error("Could not map " + MAPPED_ENTRY_MAP_FILE_NAME + ". We delete it and request the data " +
+                        "from the network.", t);
+                if (!mappedEntryMapFile.delete())
+                    log.error("Could not delete " + mappedEntryMapFile);
+            }
         }
+
+        // Entries of the MappedEntryMap are added without calling the listeners as that would force decoding of all
+        // entries. Listeners interested in persisted data have to get them with getPayloads at startup.
+    }
+
+    // Moves the given entries and the entries of an existing MappedEntryMap file into a new MappedEntryMap file.
+    // The existing entries are only copied, not decoded.
+    private void writeMappedEntryMap(File mappedEntryMapFile, Map<ByteArray, ProtectedStorageEntry> entries)
+            throws IOException {
+        long ts = System.currentTimeMillis();
+        Map<ByteArray, MappedEntryMap.SerializedEntry> serializedEntries = new HashMap<>();
+        if (mappedEntryMapFile.exists()) {
+            try {
+                MappedEntryMap.read(mappedEntryMapFile, networkProtoResolver).forEachSerializedEntry(serializedEntries::put);
+            } catch (IOException e) {
+                log.error("Could not read existing " + MAPPED_ENTRY_MAP_FILE_NAME + ". We replace it.", e);
+            }
+        }
+        entries.forEach((hash, entry) -> serializedEntries.put(hash, MappedEntryMap.SerializedEntry.of(entry)));
+        MappedEntryMap.write(mappedEntryMapFile, serializedEntries);
+        log.info("Wrote {} entries to {} in {} ms", serializedEntries.size(), MAPPED_ENTRY_MAP_FILE_NAME,
+                System.currentTimeMillis() - ts);
     }
 
 
@@ -144,37 +221,13 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     public void shutDown() {
         if (removeExpiredEntriesTimer != null)
             removeExpiredEntriesTimer.stop();
+
+        signatureVerificationExecutor.shutdownNow();
+        pendingBatches.clear();
     }
 
     public void onBootstrapComplete() {
-        removeExpiredEntriesTimer = UserThread.runPeriodically(() -> {
-            log.trace("removeExpiredEntries");
-            // The moment when an object becomes expired will not be synchronous in the network and we could
-            // get add network_messages after the object has expired. To avoid repeated additions of already expired
-            // object when we get it sent from new peers, we don’t remove the sequence number from the map.
-            // That way an ADD message for an already expired data will fail because the sequence number
-            // is equal and not larger as expected.
-            Map<ByteArray, ProtectedStorageEntry> temp = new HashMap<>(map);
-            Set<ProtectedStorageEntry> toRemoveSet = new HashSet<>();
-            temp.entrySet().stream()
-                    .filter(entry -> entry.getValue().isExpired())
-                    .forEach(entry -> {
-                        ByteArray hashOfPayload = entry.getKey();
-                        ProtectedStorageEntry protectedStorageEntry = map.get(hashOfPayload);
-                        if (!(protectedStorageEntry.getStoragePayload() instanceof PersistedStoragePayload)) {
-                            toRemoveSet.add(protectedStorageEntry);
-                            log.debug("We found an expired data entry. We remove the protectedData:\n\t" + Utilities.toTruncatedString(protectedStorageEntry));
-                            map.remove(hashOfPayload);
-                        }
-                    });
-
-            toRemoveSet.stream().forEach(
-                    protectedDataToRemove -> hashMapChangedListeners.stream().forEach(
-                            listener -> listener.onRemoved(protectedDataToRemove)));
-
-            if (sequenceNumberMap.size() > 1000)
-                sequenceNumberMap.setMap(getPurgedSequenceNumberMap(sequenceNumberMap.getMap()));
-        }, CHECK_TTL_INTERVAL_SEC);
+        removeExpiredEntriesTimer = UserThread.runPeriodically(this::removeExpiredEntries, CHECK_TTL_INTERVAL_SEC);
     }
 
 
@@ -185,17 +238,27 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     @Override
     public void onMessage(NetworkEnvelope networkEnvelop, Connection connection) {
         if (networkEnvelop instanceof BroadcastMessage) {
-            Log.traceCall(Utilities.toTruncatedString(networkEnvelop) + "\n\tconnection=" + connection);
+            Log.traceCall(() -> Utilities.toTruncatedString(networkEnvelop) + "\n\tconnection=" + connection);
             connection.getPeersNodeAddressOptional().ifPresent(peersNodeAddress -> {
-                if (networkEnvelop instanceof AddDataMessage) {
-                    add(((AddDataMessage) networkEnvelop).getProtectedStorageEntry(), peersNodeAddress, null, false);
-                } else if (networkEnvelop instanceof RemoveDataMessage) {
-                    remove(((RemoveDataMessage) networkEnvelop).getProtectedStorageEntry(), peersNodeAddress, false);
-                } else if (networkEnvelop instanceof RemoveMailboxDataMessage) {
-                    removeMailboxData(((RemoveMailboxDataMessage) networkEnvelop).getProtectedMailboxStorageEntry(), peersNodeAddress, false);
-                } else if (networkEnvelop instanceof RefreshOfferMessage) {
-                    refreshTTL((RefreshOfferMessage) networkEnvelop, peersNodeAddress, false);
-                }
+                Runnable handler = () -> {
+                    if (networkEnvelop instanceof AddDataMessage) {
+                        add(((AddDataMessage) networkEnvelop).getProtectedStorageEntry(), peersNodeAddress, null, false);
+                    } else if (networkEnvelop instanceof RemoveDataMessage) {
+                        remove(((RemoveDataMessage) networkEnvelop).getProtectedStorageEntry(), peersNodeAddress, false);
+                    } else if (networkEnvelop instanceof RemoveMailboxDataMessage) {
+                        removeMailboxData(((RemoveMailboxDataMessage) networkEnvelop).getProtectedMailboxStorageEntry(), peersNodeAddress, false);
+                    } else if (networkEnvelop instanceof RefreshOfferMessage) {
+                        refreshTTL((RefreshOfferMessage) networkEnvelop, peersNodeAddress, false);
+                    }
+                };
+
+                // The entry a remove or refresh refers to might be in a batch which is still being verified. If we
+                // applied the message now it would be ignored and the batch would add the removed entry again, so
+                // we apply it after the last pending batch to keep the order in which we received the data.
+                if (pendingBatches.isEmpty())
+                    handler.run();
+                else
+                    pendingBatches.peekLast().deferredMessageHandlers.add(handler);
             });
         }
     }
@@ -212,47 +275,35 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     @Override
     public void onDisconnect(CloseConnectionReason closeConnectionReason, Connection connection) {
         if (connection.hasPeersNodeAddress() && !closeConnectionReason.isIntended) {
-            map.values().stream()
-                    .forEach(protectedData -> {
-                        ExpirablePayload expirablePayload = protectedData.getStoragePayload();
-                        if (expirablePayload instanceof RequiresOwnerIsOnlinePayload) {
-                            RequiresOwnerIsOnlinePayload requiresOwnerIsOnlinePayload = (RequiresOwnerIsOnlinePayload) expirablePayload;
-                            NodeAddress ownerNodeAddress = requiresOwnerIsOnlinePayload.getOwnerNodeAddress();
-                            if (ownerNodeAddress.equals(connection.getPeersNodeAddressOptional().get())) {
-                                // We have a RequiresLiveOwnerData data object with the node address of the
-                                // disconnected peer. We remove that data from our map.
-
-                                // Check if we have the data (e.g. OfferPayload)
-                                ByteArray hashOfPayload = getHashAsByteArray(expirablePayload);
-                                boolean containsKey = map.containsKey(hashOfPayload);
-                                if (containsKey) {
-                                    log.debug("We remove the data as the data owner got disconnected with " +
-                                            "closeConnectionReason=" + closeConnectionReason);
-
-                                    //noinspection ConstantConditions
-                                    Log.logIfStressTests("We remove the data as the data owner got disconnected with " +
-                                            "closeConnectionReason=" + closeConnectionReason +
-                                            " / isIntended=" + closeConnectionReason.isIntended +
-                                            " / peer=" + (connection.getPeersNodeAddressOptional().isPresent() ? connection.getPeersNodeAddressOptional().get() : "PeersNode unknown"));
-
-                                    // We only set the data back by half of the TTL and remove the data only if is has
-                                    // expired after tha back dating.
-                                    // We might get connection drops which are not caused by the node going offline, so
-                                    // we give more tolerance with that approach, giving the node the change to
-                                    // refresh the TTL with a refresh message.
-                                    // We observed those issues during stress tests, but it might have been caused by the
-                                    // test set up (many nodes/connections over 1 router)
-                                    // TODO investigate what causes the disconnections.
-                                    // Usually the are: SOCKET_TIMEOUT ,TERMINATED (EOFException)
-                                    protectedData.backDate();
-                                    if (protectedData.isExpired())
-                                        doRemoveProtectedExpirableData(protectedData, hashOfPayload);
-                                } else {
-                                    log.debug("Remove data ignored as we don't have an entry for that data.");
-                                }
-                            }
-                        }
-                    });
+            NodeAddress peersNodeAddress = connection.getPeersNodeAddressOptional().get();
+            // We have RequiresLiveOwnerData data objects with the node address of the
+            // disconnected peer. We remove that data from our map.
+            index.getEntriesByOwnerNodeAddress(peersNodeAddress).forEach(protectedData -> {
+                ByteArray hashOfPayload = getHashOfPayload(protectedData);
+                log.debug("We remove the data as the data owner got disconnected with " +
+                        "closeConnectionReason=" + closeConnectionReason);
+
+                //noinspection ConstantConditions
+                Log.logIfStressTests("We remove the data as the data owner got disconnected with " +
+                        "closeConnectionReason=" + closeConnectionReason +
+                        " / isIntended=" + closeConnectionReason.isIntended +
+                        " / peer=" + peersNodeAddress);
+
+                // We only set the data back by half of the TTL and remove the data only if is has
+                // expired after tha back dating.
+                // We might get connection drops which are not caused by the node going offline, so
+                // we give more tolerance with that approach, giving the node the change to
+                // refresh the TTL with a refresh message.
+                // We observed those issues during stress tests, but it might have been caused by the
+                // test set up (many nodes/connections over 1 router)
+                // TODO investigate what causes the disconnections.
+                // Usually the are: SOCKET_TIMEOUT ,TERMINATED (EOFException)
+                protectedData.backDate();
+                if (protectedData.isExpired())
+                    doRemoveProtectedExpirableData(protectedData, hashOfPayload);
+                else
+                    scheduleExpiry(hashOfPayload, protectedData);
+            });
         }
     }
 
@@ -275,14 +326,45 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     public boolean add(ProtectedStorageEntry protectedStorageEntry, @Nullable NodeAddress sender,
                        @Nullable BroadcastHandler.Listener listener, boolean isDataOwner, boolean allowBroadcast) {
         Log.traceCall("with allowBroadcast=" + allowBroadcast);
+        return doAdd(protectedStorageEntry, sender, listener, isDataOwner, allowBroadcast,
+                checkPublicKeysAndSignature(protectedStorageEntry));
+    }
+
+    /**
+     * Adds a batch of entries (e.g. from a GetDataResponse). The public keys and signatures are verified in
+     * parallel on the signature verification threads. The entries are then added in their original order on the
+     * UserThread with the same sequence number checks as in add. Batches are applied in the order of the
+     * addAll calls. Broadcast messages we receive while a batch is pending get applied after that batch.
+     *
+     * @param completeHandler Called on the UserThread once all entries of the batch have been processed.
+     */
+    public void addAll(Collection<ProtectedStorageEntry> protectedStorageEntries, @Nullable NodeAddress sender,
+                       boolean allowBroadcast, @Nullable Runnable completeHandler) {
+        Log.traceCall("with " + protectedStorageEntries.size() + " entries");
+        List<ProtectedStorageEntry> entries = new ArrayList<>(protectedStorageEntries);
+        ListenableFuture<List<Boolean>> verificationResults;
+        try {
+            verificationResults = Futures.allAsList(entries.stream()
+                    .map(entry -> signatureVerificationExecutor.submit(() -> checkPublicKeysAndSignature(entry)))
+                    .collect(Collectors.toList()));
+        } catch (RejectedExecutionException e) {
+            log.debug("addAll called after shutDown. We ignore that call.");
+            return;
+        }
+
+        pendingBatches.add(new PendingBatch(entries, verificationResults, sender, allowBroadcast, completeHandler));
+        verificationResults.addListener(() -> UserThread.execute(this::applyVerifiedBatches), MoreExecutors.directExecutor());
+    }
+
+    private boolean doAdd(ProtectedStorageEntry protectedStorageEntry, @Nullable NodeAddress sender,
+                          @Nullable BroadcastHandler.Listener listener, boolean isDataOwner, boolean allowBroadcast,
+                          boolean publicKeysAndSignatureValid) {
         final StoragePayload storagePayload = protectedStorageEntry.getStoragePayload();
-        ByteArray hashOfPayload = getHashAsByteArray(storagePayload);
+        ByteArray hashOfPayload = getHashOfPayload(protectedStorageEntry);
         boolean sequenceNrValid = isSequenceNrValid(protectedStorageEntry.getSequenceNumber(), hashOfPayload);
-        boolean result = checkPublicKeys(protectedStorageEntry, true)
-                && checkSignature(protectedStorageEntry)
-                && sequenceNrValid;
+        boolean result = publicKeysAndSignatureValid && sequenceNrValid;
 
-        boolean containsKey = map.containsKey(hashOfPayload);
+        boolean containsKey = getEntry(hashOfPayload) != null;
         if (containsKey)
             result = result && checkIfStoredDataPubKeyMatchesNewDataPubKey(protectedStorageEntry.getOwnerPubKey(), hashOfPayload);
 
@@ -292,12 +374,13 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
 
             if (!containsKey || hasSequenceNrIncreased) {
                 // At startup we don't have the item so we store it. At updates of the seq nr we store as well.
-                map.put(hashOfPayload, protectedStorageEntry);
+                putEntry(hashOfPayload, protectedStorageEntry);
 
                 // If we get a PersistedStoragePayload we save to disc
                 if (storagePayload instanceof PersistedStoragePayload) {
                     persistedEntryMap.put(hashOfPayload, protectedStorageEntry);
-                    persistedEntryMapStorage.queueUpForSave(persistedEntryMap, 2000);
+                    persistedEntryMapStorage.queueUpForAppend(persistedEntryMap,
+                            new PersistedEntryMap(Collections.singletonMap(hashOfPayload, protectedStorageEntry)), 2000);
                 }
 
                 hashMapChangedListeners.stream().forEach(e -> e.onAdded(protectedStorageEntry));
@@ -307,9 +390,8 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
             }
 
             if (hasSequenceNrIncreased) {
-                sequenceNumberMap.put(hashOfPayload, new MapValue(protectedStorageEntry.getSequenceNumber(), System.currentTimeMillis()));
                 // We set the delay higher as we might receive a batch of items
-                sequenceNumberMapStorage.queueUpForSave(SequenceNumberMap.clone(sequenceNumberMap), 2000);
+                updateSequenceNumberMap(hashOfPayload, protectedStorageEntry.getSequenceNumber(), 2000);
 
                 if (allowBroadcast)
                     broadcast(new AddDataMessage(protectedStorageEntry), sender, listener, isDataOwner);
@@ -330,9 +412,8 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         ByteArray hashOfPayload = new ByteArray(refreshTTLMessage.getHashOfPayload());
         int sequenceNumber = refreshTTLMessage.getSequenceNumber();
 
-        if (map.containsKey(hashOfPayload)) {
-            ProtectedStorageEntry storedData = map.get(hashOfPayload);
-
+        ProtectedStorageEntry storedData = getEntry(hashOfPayload);
+        if (storedData != null) {
             if (sequenceNumberMap.containsKey(hashOfPayload) && sequenceNumberMap.get(hashOfPayload).sequenceNr == sequenceNumber) {
                 log.trace("We got that message with that seq nr already from another peer. We ignore that message.");
                 return true;
@@ -350,11 +431,11 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
                 if (allValid) {
                     log.debug("refreshDate called for storedData:\n\t" + StringUtils.abbreviate(storedData.toString(), 100));
                     storedData.refreshTTL();
+                    scheduleExpiry(hashOfPayload, storedData);
                     storedData.updateSequenceNumber(sequenceNumber);
                     storedData.updateSignature(signature);
                     printData("after refreshTTL");
-                    sequenceNumberMap.put(hashOfPayload, new MapValue(sequenceNumber, System.currentTimeMillis()));
-                    sequenceNumberMapStorage.queueUpForSave(SequenceNumberMap.clone(sequenceNumberMap), 1000);
+                    updateSequenceNumberMap(hashOfPayload, sequenceNumber, 1000);
 
                     broadcast(refreshTTLMessage, sender, null, isDataOwner);
                 }
@@ -368,8 +449,8 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
 
     public boolean remove(ProtectedStorageEntry protectedStorageEntry, @Nullable NodeAddress sender, boolean isDataOwner) {
         Log.traceCall();
-        ByteArray hashOfPayload = getHashAsByteArray(protectedStorageEntry.getStoragePayload());
-        boolean containsKey = map.containsKey(hashOfPayload);
+        ByteArray hashOfPayload = getHashOfPayload(protectedStorageEntry);
+        boolean containsKey = getEntry(hashOfPayload) != null;
         if (!containsKey)
             log.debug("Remove data ignored as we don't have an entry for that data.");
         boolean result = containsKey
@@ -382,8 +463,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         if (result) {
             doRemoveProtectedExpirableData(protectedStorageEntry, hashOfPayload);
             printData("after remove");
-            sequenceNumberMap.put(hashOfPayload, new MapValue(protectedStorageEntry.getSequenceNumber(), System.currentTimeMillis()));
-            sequenceNumberMapStorage.queueUpForSave(SequenceNumberMap.clone(sequenceNumberMap), 300);
+            updateSequenceNumberMap(hashOfPayload, protectedStorageEntry.getSequenceNumber(), 300);
 
             broadcast(new RemoveDataMessage(protectedStorageEntry), sender, null, isDataOwner);
         } else {
@@ -395,7 +475,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     @SuppressWarnings("UnusedReturnValue")
     public boolean removeMailboxData(ProtectedMailboxStorageEntry protectedMailboxStorageEntry, @Nullable NodeAddress sender, boolean isDataOwner) {
         Log.traceCall();
-        ByteArray hashOfData = getHashAsByteArray(protectedMailboxStorageEntry.getStoragePayload());
+        ByteArray hashOfData = getHashOfPayload(protectedMailboxStorageEntry);
         boolean containsKey = map.containsKey(hashOfData);
         if (!containsKey)
             log.debug("Remove data ignored as we don't have an entry for that data.");
@@ -410,8 +490,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         if (result) {
             doRemoveProtectedExpirableData(protectedMailboxStorageEntry, hashOfData);
             printData("after removeMailboxData");
-            sequenceNumberMap.put(hashOfData, new MapValue(protectedMailboxStorageEntry.getSequenceNumber(), System.currentTimeMillis()));
-            sequenceNumberMapStorage.queueUpForSave(SequenceNumberMap.clone(sequenceNumberMap), 300);
+            updateSequenceNumberMap(hashOfData, protectedMailboxStorageEntry.getSequenceNumber(), 300);
 
             broadcast(new RemoveMailboxDataMessage(protectedMailboxStorageEntry), sender, null, isDataOwner);
         } else {
@@ -421,8 +500,60 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     }
 
 
+    /**
+     * Decodes all entries of the MappedEntryMap which have not been accessed yet. Use getPersistedStoragePayloadKeys
+     * or getFilteredValues if the entries of the MappedEntryMap are not required.
+     */
     public Map<ByteArray, ProtectedStorageEntry> getMap() {
-        return map;
+        decodeAllMappedEntries();
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * @return All entries whose payload is an instance of the given class. Uses the payload class index so the
+     * costs depend on the number of matching entries and not on the size of the map. Only the entries of the
+     * MappedEntryMap with a matching payload class get decoded.
+     */
+    public List<ProtectedStorageEntry> getEntriesByPayloadClass(Class<? extends StoragePayload> payloadClass) {
+        MappedEntryMap mappedEntryMap = this.mappedEntryMap;
+        if (mappedEntryMap != null && !allMappedEntriesDecoded && mayBePersistedStoragePayload(payloadClass))
+            mappedEntryMap.getKeys(payloadClass).forEach(this::getEntry);
+        return index.getEntriesByPayloadClass(payloadClass);
+    }
+
+    public <T extends StoragePayload> List<T> getPayloads(Class<T> payloadClass) {
+        return getEntriesByPayloadClass(payloadClass).stream()
+                .map(e -> payloadClass.cast(e.getStoragePayload()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return The hashes of all entries with a PersistedStoragePayload. Does not decode the entries of the
+     * MappedEntryMap.
+     */
+    public Set<ByteArray> getPersistedStoragePayloadKeys() {
+        Set<ByteArray> keys = new HashSet<>();
+        MappedEntryMap mappedEntryMap = this.mappedEntryMap;
+        if (mappedEntryMap != null)
+            mappedEntryMap.getKeys().stream()
+                    .filter(hash -> !removedMappedEntryKeys.contains(hash))
+                    .forEach(keys::add);
+        index.getEntriesByPayloadClass(PersistedStoragePayload.class).forEach(e -> keys.add(getHashOfPayload(e)));
+        return keys;
+    }
+
+    /**
+     * @return All entries with a RequiresOwnerIsOnlinePayload owned by the given node.
+     */
+    public List<ProtectedStorageEntry> getEntriesByOwnerNodeAddress(NodeAddress ownerNodeAddress) {
+        return index.getEntriesByOwnerNodeAddress(ownerNodeAddress);
+    }
+
+    /**
+     * @return All mailbox entries addressed to the given receivers storage signature pub key.
+     */
+    public List<ProtectedMailboxStorageEntry> getMailboxEntriesByReceiversPubKey(PublicKey receiversPubKey) {
+        return index.getMailboxEntriesByReceiversPubKey(new ByteArray(Sig.getPublicKeyBytes(receiversPubKey)));
     }
 
     public ProtectedStorageEntry getProtectedData(StoragePayload storagePayload, KeyPair ownerStoragePubKey)
@@ -469,6 +600,22 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
                 storageSignaturePubKey.getPublic(), sequenceNumber, signature, receiversPublicKey);
     }
 
+    public int getNumExpiredEntriesAtLastTick() {
+        return numExpiredEntriesAtLastTick.get();
+    }
+
+    public IntegerProperty numExpiredEntriesAtLastTickProperty() {
+        return numExpiredEntriesAtLastTick;
+    }
+
+    public long getTotalExpiredEntries() {
+        return totalExpiredEntries.get();
+    }
+
+    public LongProperty totalExpiredEntriesProperty() {
+        return totalExpiredEntries;
+    }
+
     public void addHashMapChangedListener(HashMapChangedListener hashMapChangedListener) {
         hashMapChangedListeners.add(hashMapChangedListener);
     }
@@ -478,10 +625,28 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     }
 
     public Set<ProtectedStorageEntry> getFilteredValues(Set<ByteArray> excludedKeys) {
-        return map.entrySet().stream()
-                .filter(e -> !excludedKeys.contains(e.getKey()))
+        return getFilteredValues(excludedKeys::contains);
+    }
+
+    /**
+     * @param isExcludedPersistedKey Only applied to keys of entries with a PersistedStoragePayload as requesters
+     *                               only exclude those.
+     *                               Only the entries of the MappedEntryMap which are not excluded get decoded.
+     */
+    public Set<ProtectedStorageEntry> getFilteredValues(Predicate<ByteArray> isExcludedPersistedKey) {
+        Set<ProtectedStorageEntry> result = map.entrySet().stream()
+                .filter(e -> !(e.getValue().getStoragePayload() instanceof PersistedStoragePayload) ||
+                        !isExcludedPersistedKey.test(e.getKey()))
                 .map(Entry::getValue)
                 .collect(Collectors.toSet());
+        MappedEntryMap mappedEntryMap = this.mappedEntryMap;
+        if (mappedEntryMap != null && !allMappedEntriesDecoded)
+            mappedEntryMap.getKeys().stream()
+                    .filter(hash -> !map.containsKey(hash) && !isExcludedPersistedKey.test(hash))
+                    .map(this::getEntry)
+                    .filter(Objects::nonNull)
+                    .forEach(result::add);
+        return result;
     }
 
 
@@ -489,8 +654,136 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     // Private
     ///////////////////////////////////////////////////////////////////////////////////////////
 
+    // Returns the entry from the map. Entries of the MappedEntryMap are decoded and added to the map at first access.
+    @Nullable
+    private ProtectedStorageEntry getEntry(ByteArray hashOfPayload) {
+        ProtectedStorageEntry entry = map.get(hashOfPayload);
+        MappedEntryMap mappedEntryMap = this.mappedEntryMap;
+        if (entry == null && mappedEntryMap != null && !allMappedEntriesDecoded &&
+                !removedMappedEntryKeys.contains(hashOfPayload)) {
+            entry = mappedEntryMap.get(hashOfPayload);
+            if (entry != null)
+                putEntry(hashOfPayload, entry);
+        }
+        return entry;
+    }
+
+    private void decodeAllMappedEntries() {
+        MappedEntryMap mappedEntryMap = this.mappedEntryMap;
+        if (mappedEntryMap != null && !allMappedEntriesDecoded) {
+            long ts = System.currentTimeMillis();
+            mappedEntryMap.getKeys().forEach(this::getEntry);
+            allMappedEntriesDecoded = true;
+            log.info("Decoding {} entries of the MappedEntryMap took {} ms", mappedEntryMap.size(),
+                    System.currentTimeMillis() - ts);
+        }
+    }
+
+    // All entries of the MappedEntryMap have a PersistedStoragePayload
+    private static boolean mayBePersistedStoragePayload(Class<? extends StoragePayload> payloadClass) {
+        return payloadClass.isInterface() || PersistedStoragePayload.class.isAssignableFrom(payloadClass);
+    }
+
+    // All changes of the map have to go through putEntry and removeEntry to keep the index in sync
+    private void putEntry(ByteArray hashOfPayload, ProtectedStorageEntry protectedStorageEntry) {
+        ProtectedStorageEntry previous = map.put(hashOfPayload, protectedStorageEntry);
+        if (previous != null)
+            index.remove(hashOfPayload, previous);
+        index.add(hashOfPayload, protectedStorageEntry);
+        scheduleExpiry(hashOfPayload, protectedStorageEntry);
+    }
+
+    private void removeEntry(ByteArray hashOfPayload) {
+        MappedEntryMap mappedEntryMap = this.mappedEntryMap;
+        if (mappedEntryMap != null && mappedEntryMap.containsKey(hashOfPayload))
+            removedMappedEntryKeys.add(hashOfPayload);
+        ProtectedStorageEntry removed = map.remove(hashOfPayload);
+        if (removed != null)
+            index.remove(hashOfPayload, removed);
+        expiryQueue.cancel(hashOfPayload);
+    }
+
+    // Must be called whenever the creationTimeStamp of an entry in the map has changed.
+    // PersistedStoragePayloads never get removed by expiry so we don't schedule them.
+    private void scheduleExpiry(ByteArray hashOfPayload, ProtectedStorageEntry protectedStorageEntry) {
+        if (!(protectedStorageEntry.getStoragePayload() instanceof PersistedStoragePayload))
+            expiryQueue.schedule(hashOfPayload, protectedStorageEntry.getCreationTimeStamp() + protectedStorageEntry.getStoragePayload().getTTL());
+    }
+
+    private void removeExpiredEntries() {
+        log.trace("removeExpiredEntries");
+        // The moment when an object becomes expired will not be synchronous in the network and we could
+        // get add network_messages after the object has expired. To avoid repeated additions of already expired
+        // object when we get it sent from new peers, we don’t remove the sequence number from the map.
+        // That way an ADD message for an already expired data will fail because the sequence number
+        // is equal and not larger as expected.
+        List<ProtectedStorageEntry> toRemoveList = new ArrayList<>();
+        expiryQueue.pollExpired(System.currentTimeMillis()).forEach(hashOfPayload -> {
+            ProtectedStorageEntry protectedStorageEntry = map.get(hashOfPayload);
+            if (protectedStorageEntry != null) {
+                if (protectedStorageEntry.isExpired()) {
+                    toRemoveList.add(protectedStorageEntry);
+                    log.debug("We found an expired data entry. We remove the protectedData:\n\t" + Utilities.toTruncatedString(protectedStorageEntry));
+                    removeEntry(hashOfPayload);
+                } else {
+                    scheduleExpiry(hashOfPayload, protectedStorageEntry);
+                }
+            }
+        });
+
+        toRemoveList.stream().forEach(
+                protectedDataToRemove -> hashMapChangedListeners.stream().forEach(
+                        listener -> listener.onRemoved(protectedDataToRemove)));
+
+        numExpiredEntriesAtLastTick.set(toRemoveList.size());
+        totalExpiredEntries.set(totalExpiredEntries.get() + toRemoveList.size());
+        if (!toRemoveList.isEmpty())
+            log.debug("Removed {} expired entries. Remaining entries with expiry: {}", toRemoveList.size(), expiryQueue.size());
+
+        if (sequenceNumberMap.size() > 1000) {
+            sequenceNumberMap.setMap(getPurgedSequenceNumberMap(sequenceNumberMap.getMap()));
+            // Purged entries cannot be expressed as appended delta so we write a new snapshot
+            sequenceNumberMapStorage.queueUpForSave(SequenceNumberMap.clone(sequenceNumberMap), 2000);
+        }
+    }
+
+    // We only apply the batch at the head of the queue to keep the order. If more batches are ready we continue in a
+    // new UserThread task so other tasks (e.g. UI updates) are not blocked until all batches are applied.
+    private void applyVerifiedBatches() {
+        PendingBatch batch = pendingBatches.peek();
+        if (batch == null || !batch.verificationResults.isDone())
+            return;
+
+        pendingBatches.poll();
+        List<Boolean> results = batch.getVerificationResults();
+        for (int i = 0; i < batch.entries.size(); i++) {
+            doAdd(batch.entries.get(i), batch.sender, null, false, batch.allowBroadcast, results.get(i));
+        }
+
+        if (batch.completeHandler != null)
+            batch.completeHandler.run();
+
+        batch.deferredMessageHandlers.forEach(Runnable::run);
+
+        if (!pendingBatches.isEmpty() && pendingBatches.peek().verificationResults.isDone())
+            UserThread.execute(this::applyVerifiedBatches);
+    }
+
+    // Does not access the map so it can be called from any thread
+    private boolean checkPublicKeysAndSignature(ProtectedStorageEntry protectedStorageEntry) {
+        return checkPublicKeys(protectedStorageEntry, true) && checkSignature(protectedStorageEntry);
+    }
+
+    // Only the changed entry gets appended to the persisted file
+    private void updateSequenceNumberMap(ByteArray hashOfPayload, int sequenceNumber, long saveDelayInMilli) {
+        MapValue mapValue = new MapValue(sequenceNumber, System.currentTimeMillis());
+        sequenceNumberMap.put(hashOfPayload, mapValue);
+        sequenceNumberMapStorage.queueUpForAppend(sequenceNumberMap, SequenceNumberMap.ofEntry(hashOfPayload, mapValue),
+                saveDelayInMilli);
+    }
+
     private void doRemoveProtectedExpirableData(ProtectedStorageEntry protectedStorageEntry, ByteArray hashOfPayload) {
-        map.remove(hashOfPayload);
+        removeEntry(hashOfPayload);
         log.trace("Data removed from our map. We broadcast the message to our peers.");
         hashMapChangedListeners.stream().forEach(e -> e.onRemoved(protectedStorageEntry));
     }
@@ -559,7 +852,12 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     }
 
     private boolean checkSignature(ProtectedStorageEntry protectedStorageEntry) {
-        byte[] hashOfDataAndSeqNr = EncryptionService.getHash(new DataAndSeqNrPair(protectedStorageEntry.getStoragePayload(), protectedStorageEntry.getSequenceNumber()));
+        // Same as the hash of a DataAndSeqNrPair but we reuse the cached proto message of the payload
+        byte[] hashOfDataAndSeqNr = Hash.getHash(PB.DataAndSeqNrPair.newBuilder()
+                .setPayload(protectedStorageEntry.getStoragePayloadProto())
+                .setSequenceNumber(protectedStorageEntry.getSequenceNumber())
+                .build()
+                .toByteArray());
         return checkSignature(protectedStorageEntry.getOwnerPubKey(), hashOfDataAndSeqNr, protectedStorageEntry.getSignature());
     }
 
@@ -596,7 +894,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     }
 
     private boolean checkIfStoredDataPubKeyMatchesNewDataPubKey(PublicKey ownerPubKey, ByteArray hashOfData) {
-        ProtectedStorageEntry storedData = map.get(hashOfData);
+        ProtectedStorageEntry storedData = getEntry(hashOfData);
         boolean result = storedData.getOwnerPubKey() != null && storedData.getOwnerPubKey().equals(ownerPubKey);
         if (!result)
             log.warn("New data entry does not match our stored data. storedData.ownerPubKey=" +
@@ -612,7 +910,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
             ProtectedMailboxStorageEntry entry = (ProtectedMailboxStorageEntry) storedData;
             // publicKey is not the same (stored: sender, new: receiver)
             boolean result = entry.getReceiversPubKey().equals(receiversPubKey)
-                    && getHashAsByteArray(entry.getStoragePayload()).equals(hashOfData);
+                    && getHashOfPayload(entry).equals(hashOfData);
             if (!result)
                 log.warn("New data entry does not match our stored data. entry.receiversPubKey=" + entry.getReceiversPubKey()
                         + ", receiversPubKey=" + receiversPubKey);
@@ -633,6 +931,10 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         return new ByteArray(EncryptionService.getHash(data));
     }
 
+    private ByteArray getHashOfPayload(ProtectedStorageEntry protectedStorageEntry) {
+        return new ByteArray(protectedStorageEntry.getHashOfPayload());
+    }
+
     // Get a new map with entries older than PURGE_AGE_DAYS purged from the given map.
     private Map<ByteArray, MapValue> getPurgedSequenceNumberMap(Map<ByteArray, MapValue> persisted) {
         Map<ByteArray, MapValue> purged = new HashMap<>();
@@ -650,13 +952,13 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
             sb.append("Data set ").append(info).append(" operation");
             // We print the items sorted by hash with the payload class name and id
             List<Tuple2<String, ProtectedStorageEntry>> tempList = map.values().stream()
-                    .map(e -> new Tuple2<>(org.bitcoinj.core.Utils.HEX.encode(getHashAsByteArray(e.getStoragePayload()).bytes), e))
+                    .map(e -> new Tuple2<>(org.bitcoinj.core.Utils.HEX.encode(e.getHashOfPayload()), e))
                     .collect(Collectors.toList());
             tempList.sort((o1, o2) -> o1.first.compareTo(o2.first));
             tempList.stream().forEach(e -> {
                 final ProtectedStorageEntry storageEntry = e.second;
                 final StoragePayload storagePayload = storageEntry.getStoragePayload();
-                final MapValue mapValue = sequenceNumberMap.get(getHashAsByteArray(storagePayload));
+                final MapValue mapValue = sequenceNumberMap.get(getHashOfPayload(storageEntry));
                 sb.append("\n")
                         .append("Hash=")
                         .append(e.first)
@@ -684,6 +986,37 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     // Static class
     ///////////////////////////////////////////////////////////////////////////////////////////
 
+    private static final class PendingBatch {
+        private final List<ProtectedStorageEntry> entries;
+        private final ListenableFuture<List<Boolean>> verificationResults;
+        @Nullable
+        private final NodeAddress sender;
+        private final boolean allowBroadcast;
+        @Nullable
+        private final Runnable completeHandler;
+        // Broadcast messages received while the batch was pending
+        private final List<Runnable> deferredMessageHandlers = new ArrayList<>();
+
+        PendingBatch(List<ProtectedStorageEntry> entries, ListenableFuture<List<Boolean>> verificationResults,
+                     @Nullable NodeAddress sender, boolean allowBroadcast, @Nullable Runnable completeHandler) {
+            this.entries = entries;
+            this.verificationResults = verificationResults;
+            this.sender = sender;
+            this.allowBroadcast = allowBroadcast;
+            this.completeHandler = completeHandler;
+        }
+
+        // Must only be called once verificationResults is done
+        List<Boolean> getVerificationResults() {
+            try {
+                return verificationResults.get();
+            } catch (InterruptedException | ExecutionException e) {
+                log.error("Signature verification failed. We treat all entries of that batch as invalid. " + e.getMessage());
+                return Collections.nCopies(entries.size(), false);
+            }
+        }
+    }
+
     /**
      * Used as container for calculating cryptographic hash of data and sequenceNumber.
      */
@@ -19,6 +19,7 @@ package io.bisq.network.p2p.storage;
 
 import com.google.protobuf.Message;
 import io.bisq.common.proto.network.NetworkProtoResolver;
+import io.bisq.common.proto.persistable.AppendablePersistableEnvelope;
 import io.bisq.common.proto.persistable.PersistableEnvelope;
 import io.bisq.generated.protobuffer.PB;
 import io.bisq.network.p2p.storage.payload.ProtectedStorageEntry;
@@ -31,7 +32,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Slf4j
-public class PersistedEntryMap implements PersistableEnvelope {
+public class PersistedEntryMap implements AppendablePersistableEnvelope<PersistedEntryMap> {
     @Getter
     private Map<P2PDataStorage.ByteArray, ProtectedStorageEntry> map = new ConcurrentHashMap<>();
 
@@ -70,4 +71,9 @@ public class PersistedEntryMap implements PersistableEnvelope {
     public void put(P2PDataStorage.ByteArray key, ProtectedStorageEntry value) {
         map.put(key, value);
     }
+
+    @Override
+    public void merge(PersistedEntryMap delta) {
+        map.putAll(delta.getMap());
+    }
 }
@@ -17,11 +17,11 @@
 
 package io.bisq.network.p2p.storage;
 
-import io.bisq.common.proto.persistable.PersistableEnvelope;
+import io.bisq.common.proto.persistable.AppendablePersistableEnvelope;
 import io.bisq.generated.protobuffer.PB;
 import lombok.Getter;
-import lombok.Setter;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -32,9 +32,10 @@ import java.util.stream.Collectors;
  * in protobuffer the map construct can't be anything, so the straightforward mapping was not possible.
  * Hence this Persistable class.
  */
-public class SequenceNumberMap implements PersistableEnvelope {
+public class SequenceNumberMap implements AppendablePersistableEnvelope<SequenceNumberMap> {
+    // The persistence thread iterates the map when it writes a snapshot while the UserThread changes it, so it must
+    // always be a ConcurrentHashMap
     @Getter
-    @Setter
     private Map<P2PDataStorage.ByteArray, P2PDataStorage.MapValue> map = new ConcurrentHashMap<>();
 
     public SequenceNumberMap() {
@@ -44,6 +45,11 @@ public class SequenceNumberMap implements PersistableEnvelope {
         return new SequenceNumberMap(map.getMap());
     }
 
+    // Used as delta for appending a single change to the persisted file
+    public static SequenceNumberMap ofEntry(P2PDataStorage.ByteArray key, P2PDataStorage.MapValue value) {
+        return new SequenceNumberMap(Collections.singletonMap(key, value));
+    }
+
 
     ///////////////////////////////////////////////////////////////////////////////////////////
     // PROTO BUFFER
@@ -78,6 +84,10 @@ public class SequenceNumberMap implements PersistableEnvelope {
     // API
     ///////////////////////////////////////////////////////////////////////////////////////////
 
+    public void setMap(Map<P2PDataStorage.ByteArray, P2PDataStorage.MapValue> map) {
+        this.map = new ConcurrentHashMap<>(map);
+    }
+
     // Delegates
     public int size() {
         return map.size();
@@ -94,4 +104,9 @@ public class SequenceNumberMap implements PersistableEnvelope {
     public void put(P2PDataStorage.ByteArray key, P2PDataStorage.MapValue value) {
         map.put(key, value);
     }
+
+    @Override
+    public void merge(SequenceNumberMap delta) {
+        map.putAll(delta.getMap());
+    }
 }
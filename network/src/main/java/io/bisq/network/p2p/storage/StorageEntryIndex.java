@@ -0,0 +1,113 @@
+package io.bisq.network.p2p.storage;
+
+import io.bisq.network.p2p.NodeAddress;
+import io.bisq.network.p2p.storage.P2PDataStorage.ByteArray;
+import io.bisq.network.p2p.storage.payload.ProtectedMailboxStorageEntry;
+import io.bisq.network.p2p.storage.payload.ProtectedStorageEntry;
+import io.bisq.network.p2p.storage.payload.RequiresOwnerIsOnlinePayload;
+import io.bisq.network.p2p.storage.payload.StoragePayload;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Secondary indexes of the entries in the P2PDataStorage map. Lets us look up entries by payload class, by the
+ * owner's node address of RequiresOwnerIsOnlinePayloads and by the receiver's pub key of mailbox entries without
+ * iterating over the whole map, which holds tens of thousands of trade statistics.
+ * <p/>
+ * The index must be updated with each change of the map. Entries are kept keyed by the hash of the payload as
+ * ProtectedStorageEntry is mutable (sequence number, signature) and cannot be used in a hash set.
+ */
+final class StorageEntryIndex {
+    private final Map<Class<? extends StoragePayload>, Map<ByteArray, ProtectedStorageEntry>> entriesByPayloadClass = new ConcurrentHashMap<>();
+    private final Map<NodeAddress, Map<ByteArray, ProtectedStorageEntry>> entriesByOwnerNodeAddress = new ConcurrentHashMap<>();
+    private final Map<ByteArray, Map<ByteArray, ProtectedMailboxStorageEntry>> mailboxEntriesByReceiversPubKey = new ConcurrentHashMap<>();
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Update
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    void add(ByteArray hashOfPayload, ProtectedStorageEntry protectedStorageEntry) {
+        StoragePayload storagePayload = protectedStorageEntry.getStoragePayload();
+        addToBucket(entriesByPayloadClass, storagePayload.getClass(), hashOfPayload, protectedStorageEntry);
+
+        if (storagePayload instanceof RequiresOwnerIsOnlinePayload) {
+            NodeAddress ownerNodeAddress = ((RequiresOwnerIsOnlinePayload) storagePayload).getOwnerNodeAddress();
+            if (ownerNodeAddress != null)
+                addToBucket(entriesByOwnerNodeAddress, ownerNodeAddress, hashOfPayload, protectedStorageEntry);
+        }
+
+        if (protectedStorageEntry instanceof ProtectedMailboxStorageEntry) {
+            ProtectedMailboxStorageEntry mailboxEntry = (ProtectedMailboxStorageEntry) protectedStorageEntry;
+            addToBucket(mailboxEntriesByReceiversPubKey, new ByteArray(mailboxEntry.getReceiversPubKeyBytes()), hashOfPayload, mailboxEntry);
+        }
+    }
+
+    void remove(ByteArray hashOfPayload, ProtectedStorageEntry protectedStorageEntry) {
+        StoragePayload storagePayload = protectedStorageEntry.getStoragePayload();
+        removeFromBucket(entriesByPayloadClass, storagePayload.getClass(), hashOfPayload);
+
+        if (storagePayload instanceof RequiresOwnerIsOnlinePayload) {
+            NodeAddress ownerNodeAddress = ((RequiresOwnerIsOnlinePayload) storagePayload).getOwnerNodeAddress();
+            if (ownerNodeAddress != null)
+                removeFromBucket(entriesByOwnerNodeAddress, ownerNodeAddress, hashOfPayload);
+        }
+
+        if (protectedStorageEntry instanceof ProtectedMailboxStorageEntry) {
+            ProtectedMailboxStorageEntry mailboxEntry = (ProtectedMailboxStorageEntry) protectedStorageEntry;
+            removeFromBucket(mailboxEntriesByReceiversPubKey, new ByteArray(mailboxEntry.getReceiversPubKeyBytes()), hashOfPayload);
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Queries
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // We match subclasses and interfaces as well. The number of payload classes is small so iterating the keys
+    // is cheap compared to iterating all entries.
+    List<ProtectedStorageEntry> getEntriesByPayloadClass(Class<? extends StoragePayload> payloadClass) {
+        List<ProtectedStorageEntry> result = new ArrayList<>();
+        entriesByPayloadClass.forEach((clazz, entries) -> {
+            if (payloadClass.isAssignableFrom(clazz))
+                result.addAll(entries.values());
+        });
+        return result;
+    }
+
+    List<ProtectedStorageEntry> getEntriesByOwnerNodeAddress(NodeAddress ownerNodeAddress) {
+        Map<ByteArray, ProtectedStorageEntry> entries = entriesByOwnerNodeAddress.get(ownerNodeAddress);
+        return entries != null ? new ArrayList<>(entries.values()) : Collections.emptyList();
+    }
+
+    List<ProtectedMailboxStorageEntry> getMailboxEntriesByReceiversPubKey(ByteArray receiversPubKeyBytes) {
+        Map<ByteArray, ProtectedMailboxStorageEntry> entries = mailboxEntriesByReceiversPubKey.get(receiversPubKeyBytes);
+        return entries != null ? new ArrayList<>(entries.values()) : Collections.emptyList();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Buckets are created and removed atomically so that a concurrent remove cannot drop a bucket we just added to
+    private static <K, V> void addToBucket(Map<K, Map<ByteArray, V>> index, K key, ByteArray hashOfPayload, V value) {
+        index.compute(key, (k, entries) -> {
+            if (entries == null)
+                entries = new ConcurrentHashMap<>();
+            entries.put(hashOfPayload, value);
+            return entries;
+        });
+    }
+
+    private static <K, V> void removeFromBucket(Map<K, Map<ByteArray, V>> index, K key, ByteArray hashOfPayload) {
+        index.computeIfPresent(key, (k, entries) -> {
+            entries.remove(hashOfPayload);
+            return entries.isEmpty() ? null : entries;
+        });
+    }
+}
@@ -2,6 +2,7 @@ package io.bisq.network.p2p.storage.payload;
 
 import com.google.protobuf.ByteString;
 import com.google.protobuf.Message;
+import io.bisq.common.crypto.Hash;
 import io.bisq.common.crypto.Sig;
 import io.bisq.common.proto.network.NetworkPayload;
 import io.bisq.common.proto.network.NetworkProtoResolver;
@@ -22,6 +23,13 @@ public class ProtectedStorageEntry implements NetworkPayload, PersistablePayload
     private byte[] signature;
     private long creationTimeStamp;
 
+    // The storagePayload is immutable so we cache its proto message and hash. Hashing a payload requires to build and
+    // serialize the proto message, which we would do otherwise at each storage operation, at each signature check and
+    // each time the entry gets serialized (broadcast, GetDataResponse, persistence).
+    // Transient fields are not used in equals and hashCode.
+    transient private volatile PB.StoragePayload storagePayloadProto;
+    transient private volatile byte[] hashOfPayload;
+
     public ProtectedStorageEntry(StoragePayload storagePayload,
                                  PublicKey ownerPubKey,
                                  int sequenceNumber,
@@ -58,7 +66,7 @@ public class ProtectedStorageEntry implements NetworkPayload, PersistablePayload
 
     public Message toProtoMessage() {
         return PB.ProtectedStorageEntry.newBuilder()
-                .setStoragePayload((PB.StoragePayload) storagePayload.toProtoMessage())
+                .setStoragePayload(getStoragePayloadProto())
                 .setOwnerPubKeyBytes(ByteString.copyFrom(ownerPubKeyBytes))
                 .setSequenceNumber(sequenceNumber)
                 .setSignature(ByteString.copyFrom(signature))
@@ -80,6 +88,27 @@ public class ProtectedStorageEntry implements NetworkPayload, PersistablePayload
     // API
     ///////////////////////////////////////////////////////////////////////////////////////////
 
+    public PB.StoragePayload getStoragePayloadProto() {
+        PB.StoragePayload proto = storagePayloadProto;
+        if (proto == null) {
+            proto = (PB.StoragePayload) storagePayload.toProtoMessage();
+            storagePayloadProto = proto;
+        }
+        return proto;
+    }
+
+    /**
+     * @return The hash of the storagePayload, as used as key in the P2PDataStorage map. Must not be modified.
+     */
+    public byte[] getHashOfPayload() {
+        byte[] hash = hashOfPayload;
+        if (hash == null) {
+            hash = Hash.getHash(getStoragePayloadProto().toByteArray());
+            hashOfPayload = hash;
+        }
+        return hash;
+    }
+
     public void maybeAdjustCreationTimeStamp() {
         // We don't allow creation date in the future, but we cannot be too strict as clocks are not synced
         if (creationTimeStamp > System.currentTimeMillis())
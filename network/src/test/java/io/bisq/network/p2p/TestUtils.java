@@ -10,6 +10,7 @@ import io.bisq.common.proto.persistable.PersistableEnvelope;
 import io.bisq.common.proto.persistable.PersistenceProtoResolver;
 import io.bisq.generated.protobuffer.PB;
 import io.bisq.network.crypto.EncryptionService;
+import io.bisq.network.p2p.network.MessageTrace;
 import io.bisq.network.p2p.seed.SeedNodesRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -105,7 +106,7 @@ public class TestUtils {
 
         P2PService p2PService = new P2PService(seedNodesRepository, port, new File("seed_node_" + port), useLocalhostForP2P,
                 2, P2PService.MAX_CONNECTIONS_DEFAULT, new File("dummy"), null, null, null,
-                new Clock(), null, encryptionService, keyRing, getNetworkProtoResolver(), getPersistenceProtoResolver());
+                false, MessageTrace.DEFAULT_SAMPLE_RATE, new Clock(), null, encryptionService, keyRing, getNetworkProtoResolver(), getPersistenceProtoResolver());
         p2PService.start(new P2PServiceListener() {
             @Override
             public void onRequestingDataCompleted() {
@@ -0,0 +1,125 @@
+package io.bisq.network.p2p.network;
+
+import io.bisq.common.Payload;
+import io.bisq.common.proto.network.NetworkEnvelope;
+import io.bisq.common.proto.network.NetworkPayload;
+import io.bisq.common.proto.network.NetworkProtoResolver;
+import io.bisq.common.util.Utilities;
+import io.bisq.generated.protobuffer.PB;
+import io.bisq.network.p2p.peers.keepalive.messages.Ping;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ConnectionTest {
+    private ServerSocketChannel serverChannel;
+    private ScheduledThreadPoolExecutor writerExecutor;
+    private NioTransport nioTransport;
+    private Connection connection;
+
+    @Before
+    public void setup() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress("localhost", 0));
+        writerExecutor = Utilities.getScheduledThreadPoolExecutor("ConnectionTest-Writer-%d", 1, 1, 60);
+        nioTransport = new NioTransport("ConnectionTest", 1);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (connection != null)
+            connection.shutDown(CloseConnectionReason.SOCKET_CLOSED);
+        nioTransport.shutDown();
+        writerExecutor.shutdownNow();
+        serverChannel.close();
+    }
+
+    // The input handler starts reading while the connection is still initialized
+    @Test
+    public void testMessageReceivedBeforeInitReturns() throws Exception {
+        assertMessageReceivedBeforeInitReturns(null);
+    }
+
+    @Test
+    public void testMessageReceivedBeforeInitReturnsWithNioTransport() throws Exception {
+        assertMessageReceivedBeforeInitReturns(nioTransport);
+    }
+
+    private void assertMessageReceivedBeforeInitReturns(NioTransport nioTransport) throws Exception {
+        try (Socket client = new Socket("localhost", serverChannel.socket().getLocalPort())) {
+            Ping ping = new Ping(1, 0);
+            ping.toProtoNetworkEnvelope().writeDelimitedTo(client.getOutputStream());
+            client.getOutputStream().flush();
+
+            TestListener listener = new TestListener();
+            Socket socket = serverChannel.accept().socket();
+            connection = new InboundConnection(socket, listener, listener, getNetworkProtoResolver(), nioTransport,
+                    writerExecutor);
+
+            assertTrue(listener.messageLatch.await(10, TimeUnit.SECONDS));
+            assertTrue(listener.message.get() instanceof Ping);
+            assertEquals(1, ((Ping) listener.message.get()).getNonce());
+            assertNull(listener.closeConnectionReason.get());
+        }
+    }
+
+    private static NetworkProtoResolver getNetworkProtoResolver() {
+        return new NetworkProtoResolver() {
+            @Override
+            public Payload fromProto(PB.PaymentAccountPayload proto) {
+                return null;
+            }
+
+            @Override
+            public NetworkEnvelope fromProto(PB.NetworkEnvelope envelope) {
+                return Ping.fromProto(envelope.getPing(), envelope.getMessageVersion());
+            }
+
+            @Override
+            public NetworkPayload fromProto(PB.StoragePayload proto) {
+                return null;
+            }
+
+            @Override
+            public NetworkPayload fromProto(PB.StorageEntryWrapper proto) {
+                return null;
+            }
+        };
+    }
+
+    private static class TestListener implements MessageListener, ConnectionListener {
+        private final CountDownLatch messageLatch = new CountDownLatch(1);
+        private final AtomicReference<NetworkEnvelope> message = new AtomicReference<>();
+        private final AtomicReference<CloseConnectionReason> closeConnectionReason = new AtomicReference<>();
+
+        @Override
+        public void onMessage(NetworkEnvelope networkEnvelope, Connection connection) {
+            message.compareAndSet(null, networkEnvelope);
+            messageLatch.countDown();
+        }
+
+        @Override
+        public void onConnection(Connection connection) {
+        }
+
+        @Override
+        public void onDisconnect(CloseConnectionReason closeConnectionReason, Connection connection) {
+            this.closeConnectionReason.compareAndSet(null, closeConnectionReason);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+    }
+}
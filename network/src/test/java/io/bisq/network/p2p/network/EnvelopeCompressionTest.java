@@ -0,0 +1,91 @@
+package io.bisq.network.p2p.network;
+
+import com.google.common.base.Strings;
+import com.google.protobuf.ByteString;
+import io.bisq.generated.protobuffer.PB;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.*;
+
+public class EnvelopeCompressionTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        PB.NetworkEnvelope proto = getCloseConnectionMessage(Strings.repeat("offer ", 10_000));
+        PB.NetworkEnvelope compressed = EnvelopeCompression.compress(proto);
+        assertNotNull(compressed);
+        assertEquals(PB.NetworkEnvelope.MessageCase.COMPRESSED_ENVELOPE, compressed.getMessageCase());
+        assertEquals(proto.getMessageVersion(), compressed.getMessageVersion());
+        assertTrue(compressed.getSerializedSize() < proto.getSerializedSize() / 10);
+        assertEquals(proto, EnvelopeCompression.decompress(compressed.getCompressedEnvelope()));
+    }
+
+    @Test
+    public void testSmallOrIncompressibleMessagesAreNotCompressed() {
+        assertNull(EnvelopeCompression.compress(getCloseConnectionMessage("reason")));
+
+        // Random keys don't compress
+        Random random = new Random(1);
+        PB.PreliminaryGetDataRequest.Builder builder = PB.PreliminaryGetDataRequest.newBuilder();
+        for (int i = 0; i < 500; i++) {
+            byte[] key = new byte[32];
+            random.nextBytes(key);
+            builder.addExcludedKeys(ByteString.copyFrom(key));
+        }
+        assertNull(EnvelopeCompression.compress(PB.NetworkEnvelope.newBuilder()
+                .setMessageVersion(1)
+                .setPreliminaryGetDataRequest(builder)
+                .build()));
+    }
+
+    @Test(expected = IOException.class)
+    public void testDecompressedDataExceedsAnnouncedSize() throws IOException {
+        // A bomb: 1 MB of zeros compresses to about 1 kb, but we announce only 100 bytes
+        EnvelopeCompression.decompress(PB.CompressedEnvelope.newBuilder()
+                .setUncompressedSize(100)
+                .setData(ByteString.copyFrom(deflate(new byte[1024 * 1024])))
+                .build());
+    }
+
+    @Test(expected = IOException.class)
+    public void testAnnouncedSizeExceedsMaxPermittedSize() throws IOException {
+        EnvelopeCompression.decompress(PB.CompressedEnvelope.newBuilder()
+                .setUncompressedSize(Connection.MAX_PERMITTED_MESSAGE_SIZE + 1)
+                .setData(ByteString.copyFrom(deflate(new byte[1024])))
+                .build());
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedData() throws IOException {
+        PB.NetworkEnvelope compressed = EnvelopeCompression.compress(getCloseConnectionMessage(Strings.repeat("a", 10_000)));
+        assertNotNull(compressed);
+        PB.CompressedEnvelope compressedEnvelope = compressed.getCompressedEnvelope();
+        EnvelopeCompression.decompress(compressedEnvelope.toBuilder()
+                .setData(compressedEnvelope.getData().substring(0, compressedEnvelope.getData().size() / 2))
+                .build());
+    }
+
+    private static PB.NetworkEnvelope getCloseConnectionMessage(String reason) {
+        return PB.NetworkEnvelope.newBuilder()
+                .setMessageVersion(1)
+                .setCloseConnectionMessage(PB.CloseConnectionMessage.newBuilder().setReason(reason))
+                .build();
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished())
+            outputStream.write(buffer, 0, deflater.deflate(buffer));
+        deflater.end();
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,101 @@
+package io.bisq.network.p2p.network;
+
+import com.google.common.base.Strings;
+import com.google.protobuf.ByteString;
+import io.bisq.generated.protobuffer.PB;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EnvelopeFramesTest {
+
+    @Test
+    public void testSplitAndReassemble() throws IOException {
+        PB.NetworkEnvelope proto = getCloseConnectionMessage(Strings.repeat("offer ", 10_000));
+        List<PB.NetworkEnvelope> frames = EnvelopeFrames.split(proto, 7);
+        assertNotNull(frames);
+        assertEquals((proto.getSerializedSize() + EnvelopeFrames.FRAME_SIZE - 1) / EnvelopeFrames.FRAME_SIZE, frames.size());
+        assertTrue(frames.get(frames.size() - 1).getEnvelopeFrame().getIsLast());
+        assertFalse(frames.get(0).getEnvelopeFrame().getIsLast());
+
+        EnvelopeFrames.Assembler assembler = new EnvelopeFrames.Assembler();
+        for (int i = 0; i < frames.size() - 1; i++)
+            assertNull(assembler.add(frames.get(i).getEnvelopeFrame()));
+        assertEquals(1, assembler.getNumStreams());
+        assertEquals(proto, assembler.add(frames.get(frames.size() - 1).getEnvelopeFrame()));
+        assertEquals(0, assembler.getNumStreams());
+        assertEquals(0, assembler.getNumBufferedBytes());
+    }
+
+    @Test
+    public void testInterleavedStreams() throws IOException {
+        PB.NetworkEnvelope bulk = getCloseConnectionMessage(Strings.repeat("bulk ", 10_000));
+        PB.NetworkEnvelope urgent = getCloseConnectionMessage(Strings.repeat("urgent ", 5_000));
+        List<PB.NetworkEnvelope> bulkFrames = EnvelopeFrames.split(bulk, 1);
+        List<PB.NetworkEnvelope> urgentFrames = EnvelopeFrames.split(urgent, 2);
+        assertNotNull(bulkFrames);
+        assertNotNull(urgentFrames);
+
+        EnvelopeFrames.Assembler assembler = new EnvelopeFrames.Assembler();
+        assertNull(assembler.add(bulkFrames.get(0).getEnvelopeFrame()));
+        for (int i = 0; i < urgentFrames.size() - 1; i++)
+            assertNull(assembler.add(urgentFrames.get(i).getEnvelopeFrame()));
+        assertEquals(urgent, assembler.add(urgentFrames.get(urgentFrames.size() - 1).getEnvelopeFrame()));
+        for (int i = 1; i < bulkFrames.size() - 1; i++)
+            assertNull(assembler.add(bulkFrames.get(i).getEnvelopeFrame()));
+        assertEquals(bulk, assembler.add(bulkFrames.get(bulkFrames.size() - 1).getEnvelopeFrame()));
+    }
+
+    @Test
+    public void testSmallMessagesAreNotSplit() {
+        assertNull(EnvelopeFrames.split(getCloseConnectionMessage("reason"), 1));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTotalSizeExceedsMaxPermittedSize() throws IOException {
+        new EnvelopeFrames.Assembler().add(PB.EnvelopeFrame.newBuilder()
+                .setStreamId(1)
+                .setTotalSize(Connection.MAX_PERMITTED_MESSAGE_SIZE + 1)
+                .setData(ByteString.copyFrom(new byte[10]))
+                .build());
+    }
+
+    @Test
+    public void testDataExceedsAnnouncedSize() throws IOException {
+        EnvelopeFrames.Assembler assembler = new EnvelopeFrames.Assembler();
+        try {
+            assembler.add(PB.EnvelopeFrame.newBuilder()
+                    .setStreamId(1)
+                    .setTotalSize(5)
+                    .setData(ByteString.copyFrom(new byte[10]))
+                    .build());
+            fail("Expected IOException");
+        } catch (IOException ignore) {
+        }
+        // The data of the invalid stream got dropped
+        assertEquals(0, assembler.getNumStreams());
+        assertEquals(0, assembler.getNumBufferedBytes());
+    }
+
+    @Test(expected = IOException.class)
+    public void testTooManyStreams() throws IOException {
+        EnvelopeFrames.Assembler assembler = new EnvelopeFrames.Assembler();
+        for (int i = 0; i <= EnvelopeFrames.Assembler.MAX_STREAMS; i++) {
+            assembler.add(PB.EnvelopeFrame.newBuilder()
+                    .setStreamId(i)
+                    .setTotalSize(100)
+                    .setData(ByteString.copyFrom(new byte[10]))
+                    .build());
+        }
+    }
+
+    private static PB.NetworkEnvelope getCloseConnectionMessage(String reason) {
+        return PB.NetworkEnvelope.newBuilder()
+                .setMessageVersion(1)
+                .setCloseConnectionMessage(PB.CloseConnectionMessage.newBuilder().setReason(reason))
+                .build();
+    }
+}
@@ -0,0 +1,57 @@
+package io.bisq.network.p2p.network;
+
+import com.google.protobuf.ByteString;
+import io.bisq.common.util.Utilities;
+import io.bisq.generated.protobuffer.PB;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.helpers.NOPLogger;
+
+import java.util.Random;
+
+import static io.bisq.common.util.Benchmark.measure;
+
+/**
+ * Shows what the debug logging of a received message costs when debug is disabled: rendering a large message
+ * (a PreliminaryGetDataRequest with 3000 excluded keys) eagerly as we did before against the lazy rendering, which
+ * must not allocate. Also measures recording the message in the MessageTrace, which runs for every message.
+ */
+@Ignore("Benchmark")
+public class MessageLoggingBenchmark {
+    private static final int NUM_WARM_UP_OPS = 200;
+    // A logger with all levels disabled
+    private static final Logger DISABLED_LOGGER = NOPLogger.NOP_LOGGER;
+
+    private PB.NetworkEnvelope proto;
+
+    @Before
+    public void setup() {
+        Random random = new Random(1);
+        PB.PreliminaryGetDataRequest.Builder builder = PB.PreliminaryGetDataRequest.newBuilder();
+        for (int i = 0; i < 3000; i++) {
+            byte[] key = new byte[32];
+            random.nextBytes(key);
+            builder.addExcludedKeys(ByteString.copyFrom(key));
+        }
+        proto = PB.NetworkEnvelope.newBuilder()
+                .setMessageVersion(1)
+                .setPreliminaryGetDataRequest(builder)
+                .build();
+    }
+
+    @Test
+    public void testLogging() throws Exception {
+        measure("Eager rendering", NUM_WARM_UP_OPS, () ->
+                DISABLED_LOGGER.debug("Received object (truncated)={} / size={}",
+                        Utilities.toTruncatedString(proto.toString()), proto.getSerializedSize()));
+        measure("Lazy rendering", NUM_WARM_UP_OPS, () ->
+                DISABLED_LOGGER.debug("Received object (truncated)={} / size={}",
+                        Utilities.toLazyTruncatedString(proto), proto.getSerializedSize()));
+        MessageTrace messageTrace = new MessageTrace(MessageTrace.DEFAULT_CAPACITY);
+        measure("MessageTrace", NUM_WARM_UP_OPS, () ->
+                messageTrace.add(MessageTrace.Direction.RECEIVED, proto.getMessageCase(), proto.getSerializedSize(),
+                        null, "uid"));
+    }
+}
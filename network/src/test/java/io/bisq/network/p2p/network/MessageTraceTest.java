@@ -0,0 +1,61 @@
+package io.bisq.network.p2p.network;
+
+import io.bisq.generated.protobuffer.PB;
+import io.bisq.network.p2p.NodeAddress;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MessageTraceTest {
+    private final NodeAddress nodeAddress = new NodeAddress("localhost:1000");
+
+    @Test
+    public void testRingBuffer() {
+        MessageTrace messageTrace = new MessageTrace(3);
+        for (int i = 0; i < 5; i++)
+            messageTrace.add(MessageTrace.Direction.SENT, PB.NetworkEnvelope.MessageCase.PING, i, nodeAddress, "uid");
+
+        // We keep only the last 3, oldest first
+        List<MessageTrace.Entry> entries = messageTrace.getEntries();
+        assertEquals(3, entries.size());
+        assertEquals(2, entries.get(0).getSize());
+        assertEquals(4, entries.get(2).getSize());
+        assertTrue(messageTrace.dump().contains("PING size=4"));
+    }
+
+    @Test
+    public void testSampleRate() {
+        MessageTrace messageTrace = new MessageTrace(100);
+        messageTrace.setSampleRate(10);
+        for (int i = 0; i < 100; i++)
+            messageTrace.add(MessageTrace.Direction.RECEIVED, PB.NetworkEnvelope.MessageCase.PONG, i, null, "uid");
+
+        List<MessageTrace.Entry> entries = messageTrace.getEntries();
+        assertEquals(10, entries.size());
+        assertEquals(10, entries.get(1).getSize());
+    }
+
+    @Test
+    public void testDisabled() {
+        MessageTrace messageTrace = new MessageTrace(100);
+        messageTrace.setSampleRate(0);
+        messageTrace.add(MessageTrace.Direction.RECEIVED, PB.NetworkEnvelope.MessageCase.PONG, 1, null, "uid");
+
+        assertTrue(messageTrace.getEntries().isEmpty());
+    }
+
+    @Test
+    public void testDumpOfConnection() {
+        MessageTrace messageTrace = new MessageTrace(100);
+        messageTrace.add(MessageTrace.Direction.SENT, PB.NetworkEnvelope.MessageCase.PING, 1, nodeAddress, "uid1");
+        messageTrace.add(MessageTrace.Direction.RECEIVED, PB.NetworkEnvelope.MessageCase.PONG, 2, nodeAddress, "uid2");
+
+        String dump = messageTrace.dump("uid2");
+        assertTrue(dump.contains("PONG size=2"));
+        assertFalse(dump.contains("PING"));
+    }
+}
@@ -0,0 +1,64 @@
+package io.bisq.network.p2p.network;
+
+import io.bisq.generated.protobuffer.PB;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class MessageTypeStatisticTest {
+
+    @Test
+    public void testGetBucket() {
+        assertEquals(0, MessageTypeStatistic.getBucket(0));
+        assertEquals(1, MessageTypeStatistic.getBucket(1));
+        assertEquals(2, MessageTypeStatistic.getBucket(2));
+        assertEquals(2, MessageTypeStatistic.getBucket(3));
+        assertEquals(11, MessageTypeStatistic.getBucket(1024));
+        assertEquals(MessageTypeStatistic.NUM_BUCKETS - 1, MessageTypeStatistic.getBucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testSnapshot() {
+        MessageTypeStatistic statistic = new MessageTypeStatistic();
+        statistic.add(PB.NetworkEnvelope.MessageCase.PING, 10, 5);
+        statistic.add(PB.NetworkEnvelope.MessageCase.PING, 20, 5);
+        statistic.add(PB.NetworkEnvelope.MessageCase.ADD_DATA_MESSAGE, 1000);
+
+        Map<PB.NetworkEnvelope.MessageCase, MessageTypeStatistic.Entry> snapshot = statistic.getSnapshot();
+        assertEquals(2, snapshot.size());
+        assertFalse(snapshot.containsKey(PB.NetworkEnvelope.MessageCase.PONG));
+
+        MessageTypeStatistic.Entry ping = snapshot.get(PB.NetworkEnvelope.MessageCase.PING);
+        assertEquals(2, ping.getCount());
+        assertEquals(30, ping.getBytes());
+        assertEquals(1, ping.getSizeHistogram()[MessageTypeStatistic.getBucket(10)]);
+        assertEquals(1, ping.getSizeHistogram()[MessageTypeStatistic.getBucket(20)]);
+        assertEquals(2, ping.getLatencyHistogram()[MessageTypeStatistic.getBucket(5)]);
+
+        // We don't have a latency for that message
+        assertEquals(0, snapshot.get(PB.NetworkEnvelope.MessageCase.ADD_DATA_MESSAGE).getLatencyHistogram().length);
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws InterruptedException {
+        MessageTypeStatistic statistic = new MessageTypeStatistic();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 10_000; j++)
+                    statistic.add(PB.NetworkEnvelope.MessageCase.PING, 1);
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        assertEquals(40_000, statistic.getCount(PB.NetworkEnvelope.MessageCase.PING));
+    }
+}
@@ -0,0 +1,93 @@
+package io.bisq.network.p2p.network;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import io.bisq.network.p2p.NodeAddress;
+import org.jetbrains.annotations.Nullable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class NetworkNodeConnectTest {
+    private final NodeAddress nodeAddress = new NodeAddress("localhost:1000");
+    private TestNetworkNode networkNode;
+
+    @Before
+    public void setup() {
+        networkNode = new TestNetworkNode();
+        networkNode.createExecutorService();
+    }
+
+    @After
+    public void tearDown() {
+        networkNode.executorService.shutdownNow();
+        networkNode.writerExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentConnectsShareOneAttempt() throws InterruptedException {
+        ListenableFuture<Connection> future1 = networkNode.connect(nodeAddress);
+        ListenableFuture<Connection> future2 = networkNode.connect(nodeAddress);
+        assertSame(future1, future2);
+
+        networkNode.createSocketLatch.countDown();
+        assertFailed(future1);
+        assertEquals(1, networkNode.numCreateSocketCalls.get());
+
+        ConnectStatistic connectStatistic = networkNode.getConnectStatistic();
+        assertEquals(1, connectStatistic.getNumFailedConnects());
+        assertEquals(1, connectStatistic.getNumDeduplicatedConnects());
+    }
+
+    @Test
+    public void testNewAttemptAfterCompletedConnect() throws InterruptedException {
+        networkNode.createSocketLatch.countDown();
+        assertFailed(networkNode.connect(nodeAddress));
+        assertFailed(networkNode.connect(nodeAddress));
+        assertEquals(2, networkNode.numCreateSocketCalls.get());
+    }
+
+    private static void assertFailed(ListenableFuture<Connection> future) throws InterruptedException {
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("Expected the connect to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        } catch (java.util.concurrent.TimeoutException e) {
+            fail("Connect did not complete");
+        }
+    }
+
+    // Fails to create the socket once the latch got released
+    private static class TestNetworkNode extends NetworkNode {
+        private final CountDownLatch createSocketLatch = new CountDownLatch(1);
+        private final AtomicInteger numCreateSocketCalls = new AtomicInteger();
+
+        TestNetworkNode() {
+            super(9999, null);
+        }
+
+        @Override
+        public void start(@Nullable SetupListener setupListener) {
+        }
+
+        @Override
+        protected Socket createSocket(NodeAddress peersNodeAddress) throws IOException {
+            numCreateSocketCalls.incrementAndGet();
+            try {
+                createSocketLatch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IOException("Peer is offline");
+        }
+    }
+}
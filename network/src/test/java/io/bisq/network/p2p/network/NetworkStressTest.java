@@ -384,7 +384,7 @@ public class NetworkStressTest {
 
         return new P2PService(seedNodesRepository, port, peerTorDir, useLocalhostForP2P,
                 REGTEST_NETWORK_ID, P2PService.MAX_CONNECTIONS_DEFAULT, peerStorageDir, null, null, null,
-                new Clock(), null, peerEncryptionService, peerKeyRing,
+                false, MessageTrace.DEFAULT_SAMPLE_RATE, new Clock(), null, peerEncryptionService, peerKeyRing,
                 TestUtils.getNetworkProtoResolver(), TestUtils.getPersistenceProtoResolver());
     }
 
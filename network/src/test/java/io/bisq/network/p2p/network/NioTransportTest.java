@@ -0,0 +1,276 @@
+package io.bisq.network.p2p.network;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class NioTransportTest {
+    private NioTransport nioTransport;
+    private ServerSocketChannel serverChannel;
+
+    @Before
+    public void setup() throws IOException {
+        nioTransport = new NioTransport("NioTransportTest", 2);
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress("localhost", 0));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        nioTransport.shutDown();
+        serverChannel.close();
+    }
+
+    @Test
+    public void testAcceptAndRead() throws Exception {
+        try (Socket client = connect()) {
+            SocketChannel channel = accept();
+            TestReadHandler readHandler = new TestReadHandler(channel, 60_000);
+            nioTransport.register(readHandler);
+
+            // Data sent in several writes and larger than the read buffer gets delivered in order
+            byte[] data = getRandomBytes(300 * 1024);
+            OutputStream outputStream = client.getOutputStream();
+            for (int i = 0; i < data.length; i += 10_000) {
+                outputStream.write(data, i, Math.min(10_000, data.length - i));
+                outputStream.flush();
+            }
+
+            assertTrue(readHandler.awaitBytes(data.length));
+            assertArrayEquals(data, readHandler.getReceivedBytes());
+            assertNull(readHandler.failure.get());
+        }
+    }
+
+    @Test
+    public void testManyConnections() throws Exception {
+        Socket[] clients = new Socket[10];
+        TestReadHandler[] readHandlers = new TestReadHandler[clients.length];
+        try {
+            for (int i = 0; i < clients.length; i++) {
+                clients[i] = connect();
+                readHandlers[i] = new TestReadHandler(accept(), 60_000);
+                nioTransport.register(readHandlers[i]);
+            }
+            for (int i = 0; i < clients.length; i++) {
+                clients[i].getOutputStream().write(new byte[]{(byte) i});
+            }
+            for (int i = 0; i < clients.length; i++) {
+                assertTrue(readHandlers[i].awaitBytes(1));
+                assertArrayEquals(new byte[]{(byte) i}, readHandlers[i].getReceivedBytes());
+            }
+        } finally {
+            for (Socket client : clients) {
+                if (client != null)
+                    client.close();
+            }
+        }
+    }
+
+    @Test
+    public void testCloseByPeer() throws Exception {
+        Socket client = connect();
+        TestReadHandler readHandler = new TestReadHandler(accept(), 60_000);
+        nioTransport.register(readHandler);
+
+        client.close();
+
+        assertTrue(readHandler.failureLatch.await(10, TimeUnit.SECONDS));
+        assertTrue(readHandler.failure.get() instanceof EOFException);
+    }
+
+    @Test
+    public void testReadTimeout() throws Exception {
+        try (Socket ignored = connect()) {
+            TestReadHandler readHandler = new TestReadHandler(accept(), 100);
+            nioTransport.register(readHandler);
+
+            // The timeouts are checked about once per second
+            assertTrue(readHandler.failureLatch.await(10, TimeUnit.SECONDS));
+            assertTrue(readHandler.failure.get() instanceof SocketTimeoutException);
+        }
+    }
+
+    @Test
+    public void testRegisterAfterShutDown() throws Exception {
+        nioTransport.shutDown();
+        try (Socket client = connect()) {
+            TestReadHandler readHandler = new TestReadHandler(accept(), 60_000);
+            nioTransport.register(readHandler);
+            client.getOutputStream().write(1);
+
+            assertFalse(readHandler.awaitBytes(1, 500));
+            assertNull(readHandler.failure.get());
+        }
+    }
+
+    @Test
+    public void testWriteWaitsUntilPeerReads() throws Exception {
+        try (Socket client = connect()) {
+            SocketChannel channel = accept();
+            ChannelOutputStream outputStream = new ChannelOutputStream(channel, 10_000);
+
+            // Much larger than the socket buffers, so the writer has to wait until the peer has read the data
+            byte[] data = getRandomBytes(8 * 1024 * 1024);
+            AtomicReference<Throwable> writeFailure = new AtomicReference<>();
+            CountDownLatch written = new CountDownLatch(1);
+            Thread writer = new Thread(() -> {
+                try {
+                    outputStream.write(data);
+                } catch (Throwable t) {
+                    writeFailure.set(t);
+                } finally {
+                    written.countDown();
+                }
+            });
+            writer.start();
+
+            // As long as the peer does not read the write cannot complete
+            assertFalse(written.await(200, TimeUnit.MILLISECONDS));
+
+            byte[] received = readFully(client.getInputStream(), data.length);
+            assertTrue(written.await(10, TimeUnit.SECONDS));
+            assertNull(writeFailure.get());
+            assertArrayEquals(data, received);
+            outputStream.close();
+        }
+    }
+
+    @Test
+    public void testWriteTimeout() throws Exception {
+        try (Socket ignored = connect()) {
+            SocketChannel channel = accept();
+            ChannelOutputStream outputStream = new ChannelOutputStream(channel, 200);
+            try {
+                // The peer never reads
+                outputStream.write(getRandomBytes(8 * 1024 * 1024));
+                fail("Expected SocketTimeoutException");
+            } catch (SocketTimeoutException expected) {
+            } finally {
+                outputStream.close();
+            }
+            assertFalse(channel.isOpen());
+        }
+    }
+
+    private Socket connect() throws IOException {
+        return new Socket("localhost", serverChannel.socket().getLocalPort());
+    }
+
+    private SocketChannel accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        channel.configureBlocking(false);
+        return channel;
+    }
+
+    private static byte[] getRandomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(1).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] readFully(InputStream inputStream, int size) throws IOException {
+        byte[] bytes = new byte[size];
+        int position = 0;
+        while (position < size) {
+            int read = inputStream.read(bytes, position, size - position);
+            if (read == -1)
+                throw new EOFException();
+            position += read;
+        }
+        return bytes;
+    }
+
+    private static class TestReadHandler implements NioTransport.ReadHandler {
+        private final SocketChannel channel;
+        private final long readTimeoutMillis;
+        private final ByteArrayOutputStream receivedBytes = new ByteArrayOutputStream();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final CountDownLatch failureLatch = new CountDownLatch(1);
+        private volatile long lastReadTimeStamp = System.currentTimeMillis();
+
+        TestReadHandler(SocketChannel channel, long readTimeoutMillis) {
+            this.channel = channel;
+            this.readTimeoutMillis = readTimeoutMillis;
+        }
+
+        @Override
+        public SocketChannel getChannel() {
+            return channel;
+        }
+
+        @Override
+        public void onReadable(ByteBuffer readBuffer) throws IOException {
+            if (channel.read(readBuffer) == -1)
+                throw new EOFException("Channel has reached end-of-stream");
+
+            lastReadTimeStamp = System.currentTimeMillis();
+            readBuffer.flip();
+            byte[] bytes = new byte[readBuffer.remaining()];
+            readBuffer.get(bytes);
+            readBuffer.clear();
+            synchronized (receivedBytes) {
+                receivedBytes.write(bytes, 0, bytes.length);
+                receivedBytes.notifyAll();
+            }
+        }
+
+        @Override
+        public long getLastReadTimeStamp() {
+            return lastReadTimeStamp;
+        }
+
+        @Override
+        public long getReadTimeoutMillis() {
+            return readTimeoutMillis;
+        }
+
+        @Override
+        public void onFailure(Throwable throwable) {
+            failure.compareAndSet(null, throwable);
+            failureLatch.countDown();
+        }
+
+        boolean awaitBytes(int size) throws InterruptedException {
+            return awaitBytes(size, 10_000);
+        }
+
+        boolean awaitBytes(int size, long timeoutMillis) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            synchronized (receivedBytes) {
+                while (receivedBytes.size() < size) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0)
+                        return false;
+                    receivedBytes.wait(remaining);
+                }
+                return true;
+            }
+        }
+
+        byte[] getReceivedBytes() {
+            synchronized (receivedBytes) {
+                return Arrays.copyOf(receivedBytes.toByteArray(), receivedBytes.size());
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package io.bisq.network.p2p.network;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RingBufferRateLimiterTest {
+
+    @Test
+    public void testLimitPerSec() {
+        RingBufferRateLimiter limiter = new RingBufferRateLimiter();
+        long now = 10_000;
+        for (int i = 0; i < 5; i++) {
+            assertFalse(limiter.addAndCheckLimit(now + i, 5, 20));
+        }
+        assertTrue(limiter.addAndCheckLimit(now + 5, 5, 20));
+
+        // After 1 sec the oldest entries are outside of the window
+        assertFalse(limiter.addAndCheckLimit(now + 1001, 5, 20));
+    }
+
+    @Test
+    public void testLimitPer10SecAndBoundedSize() {
+        RingBufferRateLimiter limiter = new RingBufferRateLimiter();
+        long now = 10_000;
+        for (int i = 0; i < 20; i++) {
+            assertFalse(limiter.addAndCheckLimit(now + i * 300, 5, 20));
+        }
+        assertTrue(limiter.addAndCheckLimit(now + 20 * 300, 5, 20));
+
+        for (int i = 0; i < 100; i++) {
+            limiter.addAndCheckLimit(now + 100_000 + i * 1000, 5, 20);
+        }
+        assertEquals(20, limiter.size());
+    }
+}
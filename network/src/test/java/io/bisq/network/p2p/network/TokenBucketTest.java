@@ -0,0 +1,37 @@
+package io.bisq.network.p2p.network;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TokenBucketTest {
+
+    @Test
+    public void testBurstAndRefill() {
+        TokenBucket tokenBucket = new TokenBucket();
+        long now = 1000;
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, tokenBucket.getDelay(1, 10, 100, now));
+            tokenBucket.consume(1);
+        }
+
+        // Bucket is empty, with 100 tokens/sec we get a new one after 10 ms
+        assertEquals(10, tokenBucket.getDelay(1, 10, 100, now));
+        assertEquals(0, tokenBucket.getDelay(1, 10, 100, now + 10));
+    }
+
+    @Test
+    public void testRequestLargerThanCapacity() {
+        TokenBucket tokenBucket = new TokenBucket();
+        long now = 1000;
+        // A full bucket grants a large request and goes into debt
+        assertEquals(0, tokenBucket.getDelay(50, 10, 100, now));
+        tokenBucket.consume(50);
+
+        // 40 tokens debt + 1 token requested
+        long delay = tokenBucket.getDelay(1, 10, 100, now);
+        assertEquals(410, delay);
+        assertTrue(tokenBucket.getDelay(1, 10, 100, now + delay) == 0);
+    }
+}
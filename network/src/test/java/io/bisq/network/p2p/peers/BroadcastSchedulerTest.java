@@ -0,0 +1,173 @@
+package io.bisq.network.p2p.peers;
+
+import com.google.common.util.concurrent.SettableFuture;
+import io.bisq.common.FrameRateTimer;
+import io.bisq.common.Timer;
+import io.bisq.common.UserThread;
+import io.bisq.common.app.Capabilities;
+import io.bisq.common.proto.network.NetworkEnvelope;
+import io.bisq.network.p2p.BundleOfEnvelopes;
+import io.bisq.network.p2p.network.Connection;
+import io.bisq.network.p2p.network.NetworkNode;
+import io.bisq.network.p2p.storage.messages.RefreshOfferMessage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class BroadcastSchedulerTest {
+    private static final List<Runnable> scheduledRunnables = new ArrayList<>();
+
+    // Runs the scheduled actions only when we call runScheduled
+    public static class ManualTimer implements Timer {
+        @Override
+        public Timer runLater(Duration delay, Runnable action) {
+            scheduledRunnables.add(action);
+            return this;
+        }
+
+        @Override
+        public Timer runPeriodically(Duration interval, Runnable runnable) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void stop() {
+        }
+    }
+
+    private NetworkNode networkNode;
+    private Connection connection;
+    private BroadcastScheduler broadcastScheduler;
+
+    @Before
+    public void setup() {
+        UserThread.setTimerClass(ManualTimer.class);
+        scheduledRunnables.clear();
+
+        connection = mock(Connection.class);
+        networkNode = mock(NetworkNode.class);
+        SettableFuture<Connection> future = SettableFuture.create();
+        future.set(connection);
+        when(networkNode.sendMessage(any(Connection.class), any(NetworkEnvelope.class))).thenReturn(future);
+        broadcastScheduler = new BroadcastScheduler(networkNode);
+    }
+
+    @After
+    public void tearDown() {
+        scheduledRunnables.clear();
+        UserThread.setTimerClass(FrameRateTimer.class);
+    }
+
+    @Test
+    public void testMessagesAreBundled() {
+        when(connection.getSupportedCapabilities())
+                .thenReturn(Collections.singletonList(Capabilities.Capability.BUNDLE_OF_ENVELOPES.ordinal()));
+        BroadcastHandler handler1 = mock(BroadcastHandler.class);
+        BroadcastHandler handler2 = mock(BroadcastHandler.class);
+        broadcastScheduler.schedule(connection, getMessage(1), handler1, 50, 100);
+        broadcastScheduler.schedule(connection, getMessage(2), handler2, 50, 100);
+        // Only the first message starts a timer
+        assertEquals(1, scheduledRunnables.size());
+
+        runScheduled();
+
+        ArgumentCaptor<NetworkEnvelope> captor = ArgumentCaptor.forClass(NetworkEnvelope.class);
+        verify(networkNode, times(1)).sendMessage(eq(connection), captor.capture());
+        assertTrue(captor.getValue() instanceof BundleOfEnvelopes);
+        assertEquals(2, ((BundleOfEnvelopes) captor.getValue()).getEnvelopes().size());
+        verify(handler1).onSent(connection);
+        verify(handler2).onSent(connection);
+        assertEquals(1, broadcastScheduler.getNumSentBundles());
+        assertEquals(2, broadcastScheduler.getNumSentMessages());
+    }
+
+    @Test
+    public void testBundlesAreLimitedInSize() {
+        when(connection.getSupportedCapabilities())
+                .thenReturn(Collections.singletonList(Capabilities.Capability.BUNDLE_OF_ENVELOPES.ordinal()));
+        BroadcastHandler handler = mock(BroadcastHandler.class);
+        int numMessages = BroadcastScheduler.MAX_ENVELOPES_PER_BUNDLE + 1;
+        for (int i = 0; i < numMessages; i++)
+            broadcastScheduler.schedule(connection, getMessage(i), handler, 50, 100);
+
+        runScheduled();
+
+        // A full bundle and a single message
+        verify(networkNode, times(1)).sendMessage(eq(connection), any(BundleOfEnvelopes.class));
+        verify(networkNode, times(1)).sendMessage(eq(connection), any(RefreshOfferMessage.class));
+        verify(handler, times(numMessages)).onSent(connection);
+    }
+
+    @Test
+    public void testMessagesAreSentOneByOneIfBundleIsNotSupported() {
+        when(connection.getSupportedCapabilities()).thenReturn(null);
+        BroadcastHandler handler = mock(BroadcastHandler.class);
+        broadcastScheduler.schedule(connection, getMessage(1), handler, 50, 100);
+        broadcastScheduler.schedule(connection, getMessage(2), handler, 50, 100);
+
+        runScheduled();
+
+        verify(networkNode, times(2)).sendMessage(eq(connection), any(RefreshOfferMessage.class));
+        assertEquals(0, broadcastScheduler.getNumSentBundles());
+    }
+
+    @Test
+    public void testDuplicatesAreSuppressed() {
+        BroadcastHandler handler1 = mock(BroadcastHandler.class);
+        BroadcastHandler handler2 = mock(BroadcastHandler.class);
+        broadcastScheduler.schedule(connection, getMessage(1), handler1, 50, 100);
+        broadcastScheduler.schedule(connection, getMessage(1), handler2, 50, 100);
+
+        runScheduled();
+
+        verify(networkNode, times(1)).sendMessage(eq(connection), any(RefreshOfferMessage.class));
+        // Both broadcasts got delivered to that peer
+        verify(handler1).onSent(connection);
+        verify(handler2).onSent(connection);
+        assertEquals(1, broadcastScheduler.getNumSuppressedDuplicates());
+    }
+
+    @Test
+    public void testStoppedHandlersAreSkipped() {
+        BroadcastHandler handler = mock(BroadcastHandler.class);
+        when(handler.isStopped()).thenReturn(true);
+        broadcastScheduler.schedule(connection, getMessage(1), handler, 50, 100);
+
+        runScheduled();
+
+        verify(networkNode, never()).sendMessage(any(Connection.class), any(NetworkEnvelope.class));
+    }
+
+    @Test
+    public void testStoppedConnection() {
+        when(connection.isStopped()).thenReturn(true);
+        BroadcastHandler handler = mock(BroadcastHandler.class);
+        broadcastScheduler.schedule(connection, getMessage(1), handler, 50, 100);
+
+        runScheduled();
+
+        verify(networkNode, never()).sendMessage(any(Connection.class), any(NetworkEnvelope.class));
+        verify(handler).onSendFailed(eq(connection), any(String.class));
+    }
+
+    private static RefreshOfferMessage getMessage(int i) {
+        return new RefreshOfferMessage(new byte[]{(byte) i}, new byte[]{1}, new byte[]{(byte) i}, i);
+    }
+
+    private static void runScheduled() {
+        List<Runnable> runnables = new ArrayList<>(scheduledRunnables);
+        scheduledRunnables.clear();
+        runnables.forEach(Runnable::run);
+    }
+}
@@ -0,0 +1,44 @@
+package io.bisq.network.p2p.peers;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PeerScoreTest {
+
+    @Test
+    public void testScore() {
+        // Without any data we get a neutral score
+        assertEquals(PeerScore.NEUTRAL_SCORE, PeerScore.getScore(0, 0, 0, 0, 0), 0.0001);
+
+        double fast = PeerScore.getScore(200, 100, 0, 1_000_000, 60_000);
+        double slow = PeerScore.getScore(5000, 100, 0, 1_000_000, 60_000);
+        double failing = PeerScore.getScore(200, 10, 90, 1_000_000, 60_000);
+        double idle = PeerScore.getScore(200, 100, 0, 0, 60_000);
+        assertTrue(fast > slow);
+        assertTrue(fast > failing);
+        assertTrue(fast > idle);
+        assertTrue(fast <= 1 && slow >= 0);
+    }
+
+    @Test
+    public void testWeightedRandomOrder() {
+        Map<String, Double> scores = new HashMap<>();
+        scores.put("good", 0.9);
+        scores.put("bad", 0.1);
+        Random random = new Random(1);
+        int numGoodFirst = 0;
+        for (int i = 0; i < 1000; i++) {
+            List<String> order = PeerScore.getWeightedRandomOrder(scores.keySet(), scores::get, random);
+            assertEquals(2, order.size());
+            if (order.get(0).equals("good"))
+                numGoodFirst++;
+        }
+        // Expected is 0.9 / (0.9 + 0.1) = 90%, but the bad one still gets chosen first sometimes
+        assertTrue(numGoodFirst > 800);
+        assertTrue(numGoodFirst < 1000);
+    }
+}
@@ -0,0 +1,105 @@
+package io.bisq.network.p2p.peers.getdata;
+
+import io.bisq.network.p2p.NodeAddress;
+import io.bisq.network.p2p.peers.getdata.messages.GetUpdatedDataRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the bytes exchanged by a GetUpdatedDataRequest with the excluded keys and with the ExcludedKeysFilter for
+ * a map with 50k persisted entries where the requester misses 1% of the entries.
+ */
+@Slf4j
+public class GetDataReconciliationStressTest {
+    private static final int NUM_ENTRIES = 50_000;
+    private static final double DIVERGENCE = 0.01;
+    private static final int KEY_SIZE = 32;
+    // About the size of a serialized TradeStatistics entry
+    private static final int ENTRY_SIZE = 600;
+
+    private final NodeAddress nodeAddress = new NodeAddress("localhost:1000");
+    private final List<byte[]> respondersKeys = new ArrayList<>();
+    private final Set<byte[]> requestersKeys = new HashSet<>();
+    private final Set<String> missingKeys = new HashSet<>();
+
+    @Before
+    public void setup() {
+        Random random = new Random(1);
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            byte[] key = new byte[KEY_SIZE];
+            random.nextBytes(key);
+            respondersKeys.add(key);
+            if (random.nextDouble() < DIVERGENCE)
+                missingKeys.add(Arrays.toString(key));
+            else
+                requestersKeys.add(key);
+        }
+    }
+
+    @Test
+    public void testBytesExchanged() {
+        int nonce = 42;
+
+        long ts = System.currentTimeMillis();
+        GetUpdatedDataRequest legacyRequest = new GetUpdatedDataRequest(nodeAddress, nonce, requestersKeys);
+        int legacyRequestSize = legacyRequest.toProtoNetworkEnvelope().getSerializedSize();
+        Set<String> excludedKeys = requestersKeys.stream().map(Arrays::toString).collect(Collectors.toSet());
+        List<byte[]> legacyResponse = respondersKeys.stream()
+                .filter(key -> !excludedKeys.contains(Arrays.toString(key)))
+                .collect(Collectors.toList());
+        long legacyDuration = System.currentTimeMillis() - ts;
+
+        ts = System.currentTimeMillis();
+        byte[] filterBytes = ExcludedKeysFilter.create(requestersKeys, nonce).toBytes();
+        GetUpdatedDataRequest request = new GetUpdatedDataRequest(nodeAddress, nonce, new HashSet<>(), filterBytes);
+        int requestSize = request.toProtoNetworkEnvelope().getSerializedSize();
+        ExcludedKeysFilter filter;
+        try {
+            filter = ExcludedKeysFilter.fromBytes(request.getExcludedKeysFilter(), nonce);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        List<byte[]> response = respondersKeys.stream()
+                .filter(key -> !filter.mightContain(key))
+                .collect(Collectors.toList());
+        long duration = System.currentTimeMillis() - ts;
+
+        long numMissed = missingKeys.size() - response.size();
+        log.info("Missing entries: {}\n" +
+                        "Excluded keys:  request {} bytes, response {} entries ({} bytes), {} ms\n" +
+                        "Filter:         request {} bytes, response {} entries ({} bytes), {} ms, missed {} entries",
+                missingKeys.size(),
+                legacyRequestSize, legacyResponse.size(), legacyResponse.size() * ENTRY_SIZE, legacyDuration,
+                requestSize, response.size(), response.size() * ENTRY_SIZE, duration, numMissed);
+
+        assertEquals(missingKeys.size(), legacyResponse.size());
+        // The responder never sends entries we have already
+        assertTrue(response.stream().allMatch(key -> missingKeys.contains(Arrays.toString(key))));
+        // Only false positives of the filter are missed
+        assertTrue(numMissed <= Math.max(3, missingKeys.size() * ExcludedKeysFilter.FALSE_POSITIVE_PROBABILITY * 5));
+        assertTrue(requestSize * 10 < legacyRequestSize);
+    }
+
+    @Test
+    public void testFilterIsSaltedWithNonce() throws Exception {
+        List<byte[]> keys = new ArrayList<>(requestersKeys);
+        byte[] filter1 = ExcludedKeysFilter.create(keys, 1).toBytes();
+        byte[] filter2 = ExcludedKeysFilter.create(keys, 2).toBytes();
+        assertTrue(!Arrays.equals(filter1, filter2));
+        // A filter must be read with the same salt
+        assertTrue(keys.stream().allMatch(ExcludedKeysFilter.fromBytes(filter1, 1)::mightContain));
+    }
+
+    @Test(expected = java.io.IOException.class)
+    public void testInvalidFilterSize() throws Exception {
+        // Announces 2^31-1 longs
+        ExcludedKeysFilter.fromBytes(new byte[]{0, 5, 0x7f, (byte) 0xff, (byte) 0xff, (byte) 0xff}, 1);
+    }
+}
@@ -0,0 +1,66 @@
+package io.bisq.network.p2p.peers.getdata;
+
+import io.bisq.common.crypto.SealedAndSigned;
+import io.bisq.common.crypto.Sig;
+import io.bisq.network.p2p.NodeAddress;
+import io.bisq.network.p2p.PrefixedSealedAndSignedMessage;
+import io.bisq.network.p2p.peers.getdata.messages.GetDataResponse;
+import io.bisq.network.p2p.storage.payload.MailboxStoragePayload;
+import io.bisq.network.p2p.storage.payload.ProtectedStorageEntry;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.security.KeyPair;
+import java.security.Security;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GetDataResponseChunkTest {
+    private static final int NUM_ENTRIES = 300;
+    private static final int PAYLOAD_SIZE = 2000;
+
+    private final Set<ProtectedStorageEntry> entries = new HashSet<>();
+
+    @Before
+    public void setup() {
+        Security.addProvider(new BouncyCastleProvider());
+        KeyPair keyPair = Sig.generateKeyPair();
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            byte[] encryptedPayload = new byte[PAYLOAD_SIZE];
+            encryptedPayload[0] = (byte) i;
+            encryptedPayload[1] = (byte) (i >> 8);
+            SealedAndSigned sealedAndSigned = new SealedAndSigned(new byte[256], encryptedPayload, new byte[46],
+                    keyPair.getPublic());
+            PrefixedSealedAndSignedMessage message = new PrefixedSealedAndSignedMessage(new NodeAddress("localhost:1000"),
+                    sealedAndSigned, new byte[20], "uid" + i);
+            MailboxStoragePayload payload = new MailboxStoragePayload(message, keyPair.getPublic(), keyPair.getPublic());
+            entries.add(new ProtectedStorageEntry(payload, keyPair.getPublic(), 1, new byte[46]));
+        }
+    }
+
+    @Test
+    public void testChunksAreLimitedInSize() {
+        List<HashSet<ProtectedStorageEntry>> chunks = GetDataRequestHandler.getChunks(entries);
+        assertTrue(chunks.size() > 1);
+
+        Set<ProtectedStorageEntry> received = new HashSet<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            GetDataResponse response = new GetDataResponse(chunks.get(i), 1, false, chunks.size() - 1 - i);
+            assertTrue(response.toProtoNetworkEnvelope().getSerializedSize() <= GetDataRequestHandler.MAX_CHUNK_SIZE);
+            received.addAll(response.getDataSet());
+        }
+        assertEquals(entries, received);
+    }
+
+    @Test
+    public void testEmptyData() {
+        List<HashSet<ProtectedStorageEntry>> chunks = GetDataRequestHandler.getChunks(new HashSet<>());
+        assertEquals(1, chunks.size());
+        assertTrue(chunks.get(0).isEmpty());
+    }
+}
@@ -0,0 +1,69 @@
+package io.bisq.network.p2p.storage;
+
+import io.bisq.network.p2p.storage.P2PDataStorage.ByteArray;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ExpiryQueueTest {
+    private ExpiryQueue expiryQueue;
+
+    @Before
+    public void setup() {
+        expiryQueue = new ExpiryQueue();
+    }
+
+    @Test
+    public void testPollExpired() {
+        expiryQueue.schedule(hash(1), 300);
+        expiryQueue.schedule(hash(2), 100);
+        expiryQueue.schedule(hash(3), 200);
+
+        assertTrue(expiryQueue.pollExpired(100).isEmpty());
+        assertEquals(Arrays.asList(hash(2), hash(3)), expiryQueue.pollExpired(250));
+        assertEquals(1, expiryQueue.size());
+        assertEquals(Collections.singletonList(hash(1)), expiryQueue.pollExpired(1000));
+        assertEquals(0, expiryQueue.size());
+    }
+
+    @Test
+    public void testReschedule() {
+        expiryQueue.schedule(hash(1), 100);
+        // refreshTTL
+        expiryQueue.schedule(hash(1), 500);
+        assertTrue(expiryQueue.pollExpired(200).isEmpty());
+
+        // backDate
+        expiryQueue.schedule(hash(1), 300);
+        assertEquals(Collections.singletonList(hash(1)), expiryQueue.pollExpired(400));
+        // The outdated deadline at 500 must be ignored
+        assertTrue(expiryQueue.pollExpired(1000).isEmpty());
+    }
+
+    @Test
+    public void testCancel() {
+        expiryQueue.schedule(hash(1), 100);
+        expiryQueue.schedule(hash(2), 100);
+        expiryQueue.cancel(hash(1));
+
+        assertEquals(Collections.singletonList(hash(2)), expiryQueue.pollExpired(200));
+    }
+
+    @Test
+    public void testRebuild() {
+        for (int i = 0; i < 5000; i++)
+            expiryQueue.schedule(hash(1), i);
+
+        assertEquals(1, expiryQueue.size());
+        assertEquals(Collections.singletonList(hash(1)), expiryQueue.pollExpired(10000));
+    }
+
+    private static ByteArray hash(int i) {
+        return new ByteArray(new byte[]{(byte) i});
+    }
+}
@@ -0,0 +1,164 @@
+package io.bisq.network.p2p.storage;
+
+import io.bisq.common.Payload;
+import io.bisq.common.crypto.SealedAndSigned;
+import io.bisq.common.crypto.Sig;
+import io.bisq.common.proto.network.NetworkEnvelope;
+import io.bisq.common.proto.network.NetworkPayload;
+import io.bisq.common.proto.network.NetworkProtoResolver;
+import io.bisq.generated.protobuffer.PB;
+import io.bisq.network.p2p.NodeAddress;
+import io.bisq.network.p2p.PrefixedSealedAndSignedMessage;
+import io.bisq.network.p2p.storage.P2PDataStorage.ByteArray;
+import io.bisq.network.p2p.storage.MappedEntryMap.SerializedEntry;
+import io.bisq.network.p2p.storage.payload.MailboxStoragePayload;
+import io.bisq.network.p2p.storage.payload.PersistedStoragePayload;
+import io.bisq.network.p2p.storage.payload.ProtectedStorageEntry;
+import io.bisq.network.p2p.storage.payload.StoragePayload;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.security.Security;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class MappedEntryMapTest {
+    private final NetworkProtoResolver networkProtoResolver = new NetworkProtoResolver() {
+        @Override
+        public Payload fromProto(PB.PaymentAccountPayload proto) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public NetworkEnvelope fromProto(PB.NetworkEnvelope envelope) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public NetworkPayload fromProto(PB.StoragePayload proto) {
+            return MailboxStoragePayload.fromProto(proto.getMailboxStoragePayload());
+        }
+
+        @Override
+        public NetworkPayload fromProto(PB.StorageEntryWrapper proto) {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    private File dir;
+    private File file;
+
+    @Before
+    public void setup() throws IOException {
+        Security.addProvider(new BouncyCastleProvider());
+        dir = Files.createTempDirectory("mapped_entry_map_test").toFile();
+        file = new File(dir, "MappedEntryMap");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null)
+            for (File file : files)
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+        //noinspection ResultOfMethodCallIgnored
+        dir.delete();
+    }
+
+    @Test
+    public void testLookup() throws Exception {
+        KeyPair keyPair = Sig.generateKeyPair();
+        Map<ByteArray, ProtectedStorageEntry> entries = new HashMap<>();
+        Map<ByteArray, SerializedEntry> serializedEntries = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            ProtectedStorageEntry entry = createEntry(keyPair, i);
+            ByteArray hash = new ByteArray(entry.getHashOfPayload());
+            entries.put(hash, entry);
+            serializedEntries.put(hash, SerializedEntry.of(entry));
+        }
+        MappedEntryMap.write(file, serializedEntries);
+
+        MappedEntryMap mappedEntryMap = MappedEntryMap.map(file, networkProtoResolver);
+        assertEquals(100, mappedEntryMap.size());
+        assertEquals(entries.keySet(), new HashSet<>(mappedEntryMap.getKeys()));
+        entries.forEach((hash, entry) -> {
+            assertTrue(mappedEntryMap.containsKey(hash));
+            ProtectedStorageEntry decoded = mappedEntryMap.get(hash);
+            assertNotNull(decoded);
+            assertArrayEquals(entry.getHashOfPayload(), decoded.getHashOfPayload());
+            assertEquals(entry.getSequenceNumber(), decoded.getSequenceNumber());
+        });
+
+        ByteArray unknown = new ByteArray(new byte[32]);
+        assertFalse(mappedEntryMap.containsKey(unknown));
+        assertNull(mappedEntryMap.get(unknown));
+        assertFalse(mappedEntryMap.containsKey(new ByteArray(new byte[]{1})));
+
+        Map<ByteArray, SerializedEntry> copied = new HashMap<>();
+        MappedEntryMap.read(file, networkProtoResolver).forEachSerializedEntry(copied::put);
+        assertEquals(serializedEntries.keySet(), copied.keySet());
+        serializedEntries.forEach((hash, serializedEntry) -> {
+            assertArrayEquals(serializedEntry.bytes, copied.get(hash).bytes);
+            assertEquals(serializedEntry.payloadClassName, copied.get(hash).payloadClassName);
+        });
+    }
+
+    @Test
+    public void testKeysByPayloadClass() throws Exception {
+        KeyPair keyPair = Sig.generateKeyPair();
+        Map<ByteArray, SerializedEntry> serializedEntries = new HashMap<>();
+        for (int i = 0; i < 10; i++) {
+            ProtectedStorageEntry entry = createEntry(keyPair, i);
+            serializedEntries.put(new ByteArray(entry.getHashOfPayload()), SerializedEntry.of(entry));
+        }
+        // An entry of a payload class we don't know, e.g. written by a newer version
+        ProtectedStorageEntry unknownClassEntry = createEntry(keyPair, 10);
+        serializedEntries.put(new ByteArray(unknownClassEntry.getHashOfPayload()),
+                new SerializedEntry(unknownClassEntry.toProtoMessage().toByteArray(), "io.bisq.UnknownPayload"));
+        MappedEntryMap.write(file, serializedEntries);
+
+        MappedEntryMap mappedEntryMap = MappedEntryMap.map(file, networkProtoResolver);
+        assertEquals(11, mappedEntryMap.size());
+        Set<ByteArray> expected = new HashSet<>(serializedEntries.keySet());
+        expected.remove(new ByteArray(unknownClassEntry.getHashOfPayload()));
+        assertEquals(expected, new HashSet<>(mappedEntryMap.getKeys(MailboxStoragePayload.class)));
+        // Interfaces and super classes of the payload match as well
+        assertEquals(expected, new HashSet<>(mappedEntryMap.getKeys(StoragePayload.class)));
+        assertTrue(mappedEntryMap.getKeys(PersistedStoragePayload.class).isEmpty());
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        MappedEntryMap.write(file, new HashMap<>());
+        MappedEntryMap mappedEntryMap = MappedEntryMap.map(file, networkProtoResolver);
+        assertEquals(0, mappedEntryMap.size());
+        assertTrue(mappedEntryMap.getKeys().isEmpty());
+        assertFalse(mappedEntryMap.containsKey(new ByteArray(new byte[32])));
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidFile() throws Exception {
+        Files.write(file.toPath(), new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17});
+        MappedEntryMap.map(file, networkProtoResolver);
+    }
+
+    private static ProtectedStorageEntry createEntry(KeyPair keyPair, int i) {
+        SealedAndSigned sealedAndSigned = new SealedAndSigned(new byte[]{1}, new byte[]{(byte) i}, new byte[]{3},
+                keyPair.getPublic());
+        PrefixedSealedAndSignedMessage message = new PrefixedSealedAndSignedMessage(new NodeAddress("localhost:1000"),
+                sealedAndSigned, new byte[]{4}, "uid" + i);
+        MailboxStoragePayload payload = new MailboxStoragePayload(message, keyPair.getPublic(), keyPair.getPublic());
+        return new ProtectedStorageEntry(payload, keyPair.getPublic(), i, new byte[]{5});
+    }
+}
@@ -0,0 +1,220 @@
+package io.bisq.network.p2p.storage;
+
+import io.bisq.common.UserThread;
+import io.bisq.common.crypto.CryptoException;
+import io.bisq.common.crypto.SealedAndSigned;
+import io.bisq.common.crypto.Sig;
+import io.bisq.common.proto.persistable.PersistenceProtoResolver;
+import io.bisq.network.crypto.EncryptionService;
+import io.bisq.network.p2p.NodeAddress;
+import io.bisq.network.p2p.PrefixedSealedAndSignedMessage;
+import io.bisq.network.p2p.TestUtils;
+import io.bisq.network.p2p.network.Connection;
+import io.bisq.network.p2p.network.NetworkNode;
+import io.bisq.network.p2p.peers.Broadcaster;
+import io.bisq.network.p2p.storage.messages.RemoveMailboxDataMessage;
+import io.bisq.network.p2p.storage.payload.MailboxStoragePayload;
+import io.bisq.network.p2p.storage.payload.ProtectedMailboxStorageEntry;
+import io.bisq.network.p2p.storage.payload.ProtectedStorageEntry;
+import mockit.Expectations;
+import mockit.Mocked;
+import mockit.integration.junit4.JMockit;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.security.Security;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JMockit.class)
+public class P2PDataStorageAddAllTest {
+    private static final NodeAddress PEERS_NODE_ADDRESS = new NodeAddress("localhost:1000");
+
+    @Mocked
+    Broadcaster broadcaster;
+    @Mocked
+    NetworkNode networkNode;
+    @Mocked
+    PersistenceProtoResolver persistenceProtoResolver;
+    @Mocked
+    Connection connection;
+
+    private Executor previousUserThreadExecutor;
+    private ExecutorService userThreadExecutor;
+    private P2PDataStorage dataStorage;
+    private KeyPair senderKeyPair;
+    private KeyPair receiverKeyPair;
+    private final List<ProtectedStorageEntry> addedEntries = Collections.synchronizedList(new ArrayList<>());
+    private final List<ProtectedStorageEntry> removedEntries = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setup() throws IOException {
+        Security.addProvider(new BouncyCastleProvider());
+        previousUserThreadExecutor = UserThread.getExecutor();
+        userThreadExecutor = Executors.newSingleThreadExecutor();
+        UserThread.setExecutor(userThreadExecutor);
+
+        File storageDir = Files.createTempDirectory("p2p_data_storage_add_all_test").toFile();
+        dataStorage = new P2PDataStorage(broadcaster, networkNode, storageDir, persistenceProtoResolver,
+                TestUtils.getNetworkProtoResolver());
+        dataStorage.addHashMapChangedListener(new HashMapChangedListener() {
+            @Override
+            public void onAdded(ProtectedStorageEntry data) {
+                addedEntries.add(data);
+            }
+
+            @Override
+            public void onRemoved(ProtectedStorageEntry data) {
+                removedEntries.add(data);
+            }
+        });
+
+        senderKeyPair = Sig.generateKeyPair();
+        receiverKeyPair = Sig.generateKeyPair();
+
+        new Expectations() {{
+            connection.getPeersNodeAddressOptional();
+            result = Optional.of(PEERS_NODE_ADDRESS);
+            minTimes = 0;
+        }};
+    }
+
+    @After
+    public void tearDown() {
+        dataStorage.shutDown();
+        userThreadExecutor.shutdownNow();
+        UserThread.setExecutor(previousUserThreadExecutor);
+    }
+
+    @Test
+    public void testBatchesAreAppliedInOrder() throws Exception {
+        List<ProtectedStorageEntry> batch1 = new ArrayList<>();
+        for (int i = 0; i < 50; i++)
+            batch1.add(getAddEntry(getPayload()));
+        List<ProtectedStorageEntry> batch2 = Collections.singletonList(getAddEntry(getPayload()));
+
+        List<Integer> completedBatches = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(2);
+        // The small second batch is verified before the first one but must be applied after it
+        UserThread.execute(() -> {
+            dataStorage.addAll(batch1, PEERS_NODE_ADDRESS, false, () -> {
+                completedBatches.add(1);
+                latch.countDown();
+            });
+            dataStorage.addAll(batch2, PEERS_NODE_ADDRESS, false, () -> {
+                completedBatches.add(2);
+                latch.countDown();
+            });
+        });
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList(1, 2), completedBatches);
+        List<ProtectedStorageEntry> expected = new ArrayList<>(batch1);
+        expected.addAll(batch2);
+        assertEquals(expected, addedEntries);
+        assertEquals(51, dataStorage.getMap().size());
+    }
+
+    @Test
+    public void testInvalidEntriesAreRejected() throws Exception {
+        MailboxStoragePayload payload = getPayload();
+        ProtectedStorageEntry valid = getAddEntry(getPayload());
+        // Signed with the key of the receiver instead of the key of the sender
+        ProtectedStorageEntry invalidSignature = new ProtectedMailboxStorageEntry(payload, senderKeyPair.getPublic(), 1,
+                sign(receiverKeyPair, payload, 1), receiverKeyPair.getPublic());
+        // Added with the key of the receiver which is only allowed for the remove
+        ProtectedStorageEntry invalidOwner = getEntry(getPayload(), receiverKeyPair, 1);
+
+        CountDownLatch latch = new CountDownLatch(1);
+        UserThread.execute(() -> dataStorage.addAll(Arrays.asList(invalidSignature, valid, invalidOwner),
+                PEERS_NODE_ADDRESS, false, latch::countDown));
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+
+        assertEquals(Collections.singletonList(valid), addedEntries);
+        assertEquals(1, dataStorage.getMap().size());
+    }
+
+    @Test
+    public void testOldSequenceNrInLaterBatchIsRejected() throws Exception {
+        MailboxStoragePayload payload = getPayload();
+        ProtectedStorageEntry newer = getEntry(payload, senderKeyPair, 2);
+        ProtectedStorageEntry older = getEntry(payload, senderKeyPair, 1);
+
+        CountDownLatch latch = new CountDownLatch(2);
+        UserThread.execute(() -> {
+            dataStorage.addAll(Collections.singletonList(newer), PEERS_NODE_ADDRESS, false, latch::countDown);
+            dataStorage.addAll(Collections.singletonList(older), PEERS_NODE_ADDRESS, false, latch::countDown);
+        });
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+
+        assertEquals(Collections.singletonList(newer), addedEntries);
+        assertEquals(2, dataStorage.getMap().values().iterator().next().getSequenceNumber());
+    }
+
+    @Test
+    public void testRemoveReceivedWhileBatchIsPending() throws Exception {
+        MailboxStoragePayload payload = getPayload();
+        ProtectedStorageEntry entry = getEntry(payload, senderKeyPair, 1);
+        // Only the receiver can remove a mailbox entry
+        ProtectedMailboxStorageEntry removeEntry = new ProtectedMailboxStorageEntry(payload,
+                receiverKeyPair.getPublic(), 2, sign(receiverKeyPair, payload, 2), receiverKeyPair.getPublic());
+
+        CountDownLatch latch = new CountDownLatch(1);
+        // Both run in the same UserThread task, so the batch is still pending when we get the remove message
+        UserThread.execute(() -> {
+            dataStorage.addAll(Collections.singletonList(entry), PEERS_NODE_ADDRESS, false, latch::countDown);
+            dataStorage.onMessage(new RemoveMailboxDataMessage(removeEntry), connection);
+        });
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        waitForUserThread();
+
+        assertEquals(Collections.singletonList(entry), addedEntries);
+        assertEquals(Collections.singletonList(removeEntry), removedEntries);
+        assertTrue(dataStorage.getMap().isEmpty());
+    }
+
+    private MailboxStoragePayload getPayload() {
+        SealedAndSigned sealedAndSigned = new SealedAndSigned(new byte[256], new byte[100], new byte[46],
+                senderKeyPair.getPublic());
+        PrefixedSealedAndSignedMessage message = new PrefixedSealedAndSignedMessage(PEERS_NODE_ADDRESS,
+                sealedAndSigned, new byte[20], UUID.randomUUID().toString());
+        return new MailboxStoragePayload(message, senderKeyPair.getPublic(), receiverKeyPair.getPublic());
+    }
+
+    private ProtectedStorageEntry getAddEntry(MailboxStoragePayload payload) throws CryptoException {
+        return getEntry(payload, senderKeyPair, 1);
+    }
+
+    private ProtectedStorageEntry getEntry(MailboxStoragePayload payload, KeyPair ownerKeyPair, int sequenceNumber)
+            throws CryptoException {
+        return new ProtectedMailboxStorageEntry(payload, ownerKeyPair.getPublic(), sequenceNumber,
+                sign(ownerKeyPair, payload, sequenceNumber), receiverKeyPair.getPublic());
+    }
+
+    private static byte[] sign(KeyPair keyPair, MailboxStoragePayload payload, int sequenceNumber)
+            throws CryptoException {
+        byte[] hashOfDataAndSeqNr = EncryptionService.getHash(new P2PDataStorage.DataAndSeqNrPair(payload, sequenceNumber));
+        return Sig.sign(keyPair.getPrivate(), hashOfDataAndSeqNr);
+    }
+
+    // Returns after all tasks queued on the UserThread so far have been run
+    private void waitForUserThread() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        UserThread.execute(latch::countDown);
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+    }
+}
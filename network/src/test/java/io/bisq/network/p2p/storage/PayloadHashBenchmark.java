@@ -0,0 +1,117 @@
+package io.bisq.network.p2p.storage;
+
+import io.bisq.common.crypto.CryptoException;
+import io.bisq.common.crypto.Hash;
+import io.bisq.common.crypto.SealedAndSigned;
+import io.bisq.common.crypto.Sig;
+import io.bisq.common.proto.persistable.PersistenceProtoResolver;
+import io.bisq.generated.protobuffer.PB;
+import io.bisq.network.crypto.EncryptionService;
+import io.bisq.network.p2p.NodeAddress;
+import io.bisq.network.p2p.PrefixedSealedAndSignedMessage;
+import io.bisq.network.p2p.TestUtils;
+import io.bisq.network.p2p.network.NetworkNode;
+import io.bisq.network.p2p.peers.Broadcaster;
+import io.bisq.network.p2p.storage.payload.MailboxStoragePayload;
+import io.bisq.network.p2p.storage.payload.ProtectedMailboxStorageEntry;
+import mockit.Mocked;
+import mockit.integration.junit4.JMockit;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static io.bisq.common.util.Benchmark.measure;
+import static io.bisq.common.util.Benchmark.time;
+
+/**
+ * Compares the hashing done for each added mailbox entry with 2000 byte payloads: the hash of the payload and of
+ * the DataAndSeqNrPair built from the payload objects, as we did before, against the cached proto message and hash
+ * of the ProtectedStorageEntry. testAdd measures the add throughput of the P2PDataStorage including the signature
+ * check, so it shows how much of an add the hashing is.
+ */
+@RunWith(JMockit.class)
+@Ignore("Benchmark")
+public class PayloadHashBenchmark {
+    private static final int NUM_ENTRIES = 2000;
+    private static final int PAYLOAD_SIZE = 2000;
+
+    @Mocked
+    Broadcaster broadcaster;
+    @Mocked
+    NetworkNode networkNode;
+    @Mocked
+    PersistenceProtoResolver persistenceProtoResolver;
+
+    private P2PDataStorage dataStorage;
+    private final List<ProtectedMailboxStorageEntry> entries = new ArrayList<>();
+    private int entryIndex;
+
+    @Before
+    public void setup() throws IOException, CryptoException {
+        Security.addProvider(new BouncyCastleProvider());
+        File storageDir = Files.createTempDirectory("payload_hash_benchmark").toFile();
+        dataStorage = new P2PDataStorage(broadcaster, networkNode, storageDir, persistenceProtoResolver,
+                TestUtils.getNetworkProtoResolver());
+
+        KeyPair senderKeyPair = Sig.generateKeyPair();
+        KeyPair receiverKeyPair = Sig.generateKeyPair();
+        Random random = new Random(1);
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            byte[] encryptedPayload = new byte[PAYLOAD_SIZE];
+            random.nextBytes(encryptedPayload);
+            SealedAndSigned sealedAndSigned = new SealedAndSigned(new byte[256], encryptedPayload, new byte[46],
+                    senderKeyPair.getPublic());
+            PrefixedSealedAndSignedMessage message = new PrefixedSealedAndSignedMessage(new NodeAddress("localhost:1000"),
+                    sealedAndSigned, new byte[20], UUID.randomUUID().toString());
+            MailboxStoragePayload payload = new MailboxStoragePayload(message, senderKeyPair.getPublic(),
+                    receiverKeyPair.getPublic());
+            entries.add(dataStorage.getMailboxDataWithSignedSeqNr(payload, senderKeyPair, receiverKeyPair.getPublic()));
+        }
+    }
+
+    @Test
+    public void testHashing() throws Exception {
+        measure("Hash uncached", NUM_ENTRIES, () -> hashUncached(nextEntry()));
+        measure("Hash cached", NUM_ENTRIES, () -> hashCached(nextEntry()));
+    }
+
+    @Test
+    public void testAdd() throws Exception {
+        time("Add", NUM_ENTRIES, () -> entries.forEach(entry -> dataStorage.add(entry, null, null, false, false)));
+    }
+
+    // Cycles through the entries, so the hashes of an entry are not in the CPU cache from the last op
+    private ProtectedMailboxStorageEntry nextEntry() {
+        ProtectedMailboxStorageEntry entry = entries.get(entryIndex);
+        entryIndex = (entryIndex + 1) % entries.size();
+        return entry;
+    }
+
+    // What P2PDataStorage did before at each add: hash the payload for the map key and hash the DataAndSeqNrPair
+    // for the signature check, both built and serialized from the payload object.
+    private static void hashUncached(ProtectedMailboxStorageEntry entry) {
+        EncryptionService.getHash(entry.getStoragePayload());
+        EncryptionService.getHash(new P2PDataStorage.DataAndSeqNrPair(entry.getStoragePayload(), entry.getSequenceNumber()));
+    }
+
+    private static void hashCached(ProtectedMailboxStorageEntry entry) {
+        entry.getHashOfPayload();
+        Hash.getHash(PB.DataAndSeqNrPair.newBuilder()
+                .setPayload(entry.getStoragePayloadProto())
+                .setSequenceNumber(entry.getSequenceNumber())
+                .build()
+                .toByteArray());
+    }
+}
@@ -0,0 +1,154 @@
+package io.bisq.network.p2p.storage;
+
+import io.bisq.common.Payload;
+import io.bisq.common.proto.persistable.PersistableEnvelope;
+import io.bisq.common.proto.persistable.PersistenceProtoResolver;
+import io.bisq.common.storage.FileManager;
+import io.bisq.generated.protobuffer.PB;
+import io.bisq.network.p2p.storage.P2PDataStorage.ByteArray;
+import io.bisq.network.p2p.storage.P2PDataStorage.MapValue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SequenceNumberMapPersistenceTest {
+    private final PersistenceProtoResolver persistenceProtoResolver = new PersistenceProtoResolver() {
+        @Override
+        public PersistableEnvelope fromProto(PB.PersistableEnvelope proto) {
+            return SequenceNumberMap.fromProto(proto.getSequenceNumberMap());
+        }
+
+        @Override
+        public Payload fromProto(PB.PaymentAccountPayload proto) {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    private File dir;
+    private File storageFile;
+
+    @Before
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("sequence_number_map_test").toFile();
+        storageFile = new File(dir, "SequenceNumberMap");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null)
+            for (File file : files)
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+        //noinspection ResultOfMethodCallIgnored
+        dir.delete();
+    }
+
+    @Test
+    public void testAppendAndMerge() throws Exception {
+        FileManager<SequenceNumberMap> fileManager = new FileManager<>(dir, storageFile, 0, persistenceProtoResolver);
+        SequenceNumberMap sequenceNumberMap = new SequenceNumberMap();
+
+        // First write is always a snapshot
+        put(fileManager, sequenceNumberMap, 1, 1);
+        put(fileManager, sequenceNumberMap, 2, 1);
+        put(fileManager, sequenceNumberMap, 1, 2);
+
+        // The snapshot at the beginning of the file only contains the first entry, the others got appended
+        try (FileInputStream inputStream = new FileInputStream(storageFile)) {
+            assertEquals(1, PB.PersistableEnvelope.parseDelimitedFrom(inputStream).getSequenceNumberMap().getSequenceNumberEntriesCount());
+        }
+
+        SequenceNumberMap persisted = new FileManager<SequenceNumberMap>(dir, storageFile, 0, persistenceProtoResolver).read(storageFile);
+        assertEquals(2, persisted.size());
+        assertEquals(2, persisted.get(hash(1)).sequenceNr);
+        assertEquals(1, persisted.get(hash(2)).sequenceNr);
+    }
+
+    @Test
+    public void testIncompleteAppendIsIgnored() throws Exception {
+        FileManager<SequenceNumberMap> fileManager = new FileManager<>(dir, storageFile, 0, persistenceProtoResolver);
+        SequenceNumberMap sequenceNumberMap = new SequenceNumberMap();
+        put(fileManager, sequenceNumberMap, 1, 1);
+        put(fileManager, sequenceNumberMap, 2, 1);
+
+        // Simulate an interrupted append: length prefix of 100 bytes but only 2 bytes of data
+        try (FileOutputStream outputStream = new FileOutputStream(storageFile, true)) {
+            outputStream.write(new byte[]{100, 1, 2});
+        }
+
+        fileManager = new FileManager<>(dir, storageFile, 0, persistenceProtoResolver);
+        SequenceNumberMap persisted = fileManager.read(storageFile);
+        assertEquals(2, persisted.size());
+
+        // After a corrupted tail we must write a new snapshot instead of appending
+        put(fileManager, persisted, 3, 1);
+        try (FileInputStream inputStream = new FileInputStream(storageFile)) {
+            assertEquals(3, PB.PersistableEnvelope.parseDelimitedFrom(inputStream).getSequenceNumberMap().getSequenceNumberEntriesCount());
+        }
+    }
+
+    @Test
+    public void testSnapshotWhileMapIsChanged() throws Exception {
+        SequenceNumberMap sequenceNumberMap = new SequenceNumberMap();
+        // P2PDataStorage sets the purged map, which is a HashMap
+        Map<ByteArray, MapValue> purgedMap = new HashMap<>();
+        for (int i = 0; i < 1000; i++)
+            purgedMap.put(hash(i), new MapValue(1, System.currentTimeMillis()));
+        sequenceNumberMap.setMap(purgedMap);
+
+        // Simulates the UserThread which keeps changing the map while the snapshot gets written
+        AtomicBoolean stopped = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            int i = 1000;
+            while (!stopped.get()) {
+                sequenceNumberMap.put(hash(i), new MapValue(1, System.currentTimeMillis()));
+                sequenceNumberMap.getMap().remove(hash(i - 500));
+                i = i < 100_000 ? i + 1 : 1000;
+            }
+        });
+        writer.start();
+        try {
+            FileManager<SequenceNumberMap> fileManager = new FileManager<>(dir, storageFile, 0, persistenceProtoResolver);
+            for (int i = 0; i < 20; i++) {
+                // A failed snapshot would leave the file of the previous round, so we delete it
+                //noinspection ResultOfMethodCallIgnored
+                storageFile.delete();
+                fileManager.saveNow(sequenceNumberMap);
+                assertTrue(storageFile.exists());
+                SequenceNumberMap persisted = new FileManager<SequenceNumberMap>(dir, storageFile, 0,
+                        persistenceProtoResolver).read(storageFile);
+                // Entries below 500 are never removed
+                assertTrue(persisted.size() >= 500);
+            }
+        } finally {
+            stopped.set(true);
+            writer.join();
+        }
+    }
+
+    private void put(FileManager<SequenceNumberMap> fileManager, SequenceNumberMap sequenceNumberMap, int key, int sequenceNr)
+            throws InterruptedException {
+        MapValue mapValue = new MapValue(sequenceNr, System.currentTimeMillis());
+        sequenceNumberMap.put(hash(key), mapValue);
+        fileManager.appendLater(sequenceNumberMap, SequenceNumberMap.ofEntry(hash(key), mapValue), 0);
+        // Writes are done on a background thread
+        Thread.sleep(300);
+    }
+
+    private static ByteArray hash(int i) {
+        return new ByteArray(new byte[]{(byte) i});
+    }
+}
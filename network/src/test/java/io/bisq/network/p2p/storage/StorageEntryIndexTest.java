@@ -0,0 +1,115 @@
+package io.bisq.network.p2p.storage;
+
+import io.bisq.common.crypto.Sig;
+import io.bisq.network.p2p.NodeAddress;
+import io.bisq.network.p2p.storage.P2PDataStorage.ByteArray;
+import io.bisq.network.p2p.storage.mocks.MockData;
+import io.bisq.network.p2p.storage.payload.*;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.security.Security;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StorageEntryIndexTest {
+    private StorageEntryIndex index;
+    private KeyPair keyPair;
+
+    @Before
+    public void setup() {
+        Security.addProvider(new BouncyCastleProvider());
+        index = new StorageEntryIndex();
+        keyPair = Sig.generateKeyPair();
+    }
+
+    @Test
+    public void testPayloadClassIndex() {
+        ProtectedStorageEntry data = getEntry(new MockData("data", keyPair.getPublic()));
+        ProtectedStorageEntry offer = getEntry(new MockOwnerData("offer", keyPair.getPublic(), new NodeAddress("localhost:1000")));
+        index.add(hash(1), data);
+        index.add(hash(2), offer);
+
+        assertEquals(1, index.getEntriesByPayloadClass(MockOwnerData.class).size());
+        // Subclasses are matched as well
+        assertEquals(2, index.getEntriesByPayloadClass(MockData.class).size());
+
+        index.remove(hash(1), data);
+        assertEquals(1, index.getEntriesByPayloadClass(MockData.class).size());
+        index.remove(hash(2), offer);
+        assertTrue(index.getEntriesByPayloadClass(MockData.class).isEmpty());
+    }
+
+    @Test
+    public void testOwnerNodeAddressIndex() {
+        NodeAddress owner1 = new NodeAddress("localhost:1000");
+        NodeAddress owner2 = new NodeAddress("localhost:2000");
+        ProtectedStorageEntry offer1 = getEntry(new MockOwnerData("offer1", keyPair.getPublic(), owner1));
+        ProtectedStorageEntry offer2 = getEntry(new MockOwnerData("offer2", keyPair.getPublic(), owner1));
+        ProtectedStorageEntry offer3 = getEntry(new MockOwnerData("offer3", keyPair.getPublic(), owner2));
+        index.add(hash(1), offer1);
+        index.add(hash(2), offer2);
+        index.add(hash(3), offer3);
+
+        assertEquals(2, index.getEntriesByOwnerNodeAddress(owner1).size());
+        assertEquals(1, index.getEntriesByOwnerNodeAddress(owner2).size());
+
+        // Replacing an entry with the same hash must not duplicate it
+        index.add(hash(1), offer1);
+        assertEquals(2, index.getEntriesByOwnerNodeAddress(owner1).size());
+
+        index.remove(hash(1), offer1);
+        index.remove(hash(2), offer2);
+        assertTrue(index.getEntriesByOwnerNodeAddress(owner1).isEmpty());
+        assertEquals(1, index.getEntriesByOwnerNodeAddress(owner2).size());
+    }
+
+    @Test
+    public void testMailboxIndex() {
+        PublicKey receiver1 = Sig.generateKeyPair().getPublic();
+        PublicKey receiver2 = Sig.generateKeyPair().getPublic();
+        ProtectedMailboxStorageEntry mailbox1 = getMailboxEntry(receiver1);
+        ProtectedMailboxStorageEntry mailbox2 = getMailboxEntry(receiver2);
+        index.add(hash(1), mailbox1);
+        index.add(hash(2), mailbox2);
+
+        ByteArray receiver1Bytes = new ByteArray(Sig.getPublicKeyBytes(receiver1));
+        assertEquals(1, index.getMailboxEntriesByReceiversPubKey(receiver1Bytes).size());
+        assertEquals(mailbox1, index.getMailboxEntriesByReceiversPubKey(receiver1Bytes).get(0));
+
+        index.remove(hash(1), mailbox1);
+        assertTrue(index.getMailboxEntriesByReceiversPubKey(receiver1Bytes).isEmpty());
+        assertEquals(1, index.getMailboxEntriesByReceiversPubKey(new ByteArray(Sig.getPublicKeyBytes(receiver2))).size());
+    }
+
+    private ProtectedStorageEntry getEntry(StoragePayload storagePayload) {
+        return new ProtectedStorageEntry(storagePayload, keyPair.getPublic(), 1, new byte[0]);
+    }
+
+    private ProtectedMailboxStorageEntry getMailboxEntry(PublicKey receiversPubKey) {
+        MailboxStoragePayload payload = new MailboxStoragePayload(null, keyPair.getPublic(), receiversPubKey);
+        return new ProtectedMailboxStorageEntry(payload, keyPair.getPublic(), 1, new byte[0], receiversPubKey);
+    }
+
+    private static ByteArray hash(int i) {
+        return new ByteArray(new byte[]{(byte) i});
+    }
+
+    private static class MockOwnerData extends MockData implements RequiresOwnerIsOnlinePayload {
+        private final NodeAddress ownerNodeAddress;
+
+        MockOwnerData(String msg, PublicKey publicKey, NodeAddress ownerNodeAddress) {
+            super(msg, publicKey);
+            this.ownerNodeAddress = ownerNodeAddress;
+        }
+
+        @Override
+        public NodeAddress getOwnerNodeAddress() {
+            return ownerNodeAddress;
+        }
+    }
+}
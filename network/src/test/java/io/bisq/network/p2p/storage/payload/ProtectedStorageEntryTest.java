@@ -0,0 +1,41 @@
+package io.bisq.network.p2p.storage.payload;
+
+import io.bisq.common.crypto.SealedAndSigned;
+import io.bisq.common.crypto.Sig;
+import io.bisq.network.crypto.EncryptionService;
+import io.bisq.network.p2p.NodeAddress;
+import io.bisq.network.p2p.PrefixedSealedAndSignedMessage;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.security.KeyPair;
+import java.security.Security;
+
+import static org.junit.Assert.*;
+
+public class ProtectedStorageEntryTest {
+    private KeyPair keyPair;
+
+    @Before
+    public void setup() {
+        Security.addProvider(new BouncyCastleProvider());
+        keyPair = Sig.generateKeyPair();
+    }
+
+    @Test
+    public void testCachedHashOfPayload() {
+        SealedAndSigned sealedAndSigned = new SealedAndSigned(new byte[]{1}, new byte[]{2}, new byte[]{3}, keyPair.getPublic());
+        PrefixedSealedAndSignedMessage message = new PrefixedSealedAndSignedMessage(new NodeAddress("localhost:1000"),
+                sealedAndSigned, new byte[]{4}, "uid");
+        MailboxStoragePayload payload = new MailboxStoragePayload(message, keyPair.getPublic(), keyPair.getPublic());
+        ProtectedStorageEntry entry = new ProtectedStorageEntry(payload, keyPair.getPublic(), 1, new byte[]{5});
+
+        int hashCodeBeforeCaching = entry.hashCode();
+        assertArrayEquals(EncryptionService.getHash(payload), entry.getHashOfPayload());
+        assertSame(entry.getHashOfPayload(), entry.getHashOfPayload());
+        assertEquals(payload.toProtoMessage(), entry.getStoragePayloadProto());
+        // The cached values must not have an effect on equals and hashCode
+        assertEquals(hashCodeBeforeCaching, entry.hashCode());
+    }
+}